@@ -16,6 +16,7 @@
 package au.gov.ga.earthsci.bookmark.ui;
 
 import static au.gov.ga.earthsci.bookmark.ui.Messages.*;
+import gov.nasa.worldwind.Model;
 import gov.nasa.worldwind.View;
 
 import java.awt.event.MouseAdapter;
@@ -53,11 +54,14 @@ import au.gov.ga.earthsci.bookmark.model.IBookmark;
 import au.gov.ga.earthsci.bookmark.model.IBookmarkList;
 import au.gov.ga.earthsci.bookmark.model.IBookmarkProperty;
 import au.gov.ga.earthsci.bookmark.model.IBookmarks;
+import au.gov.ga.earthsci.bookmark.properties.camera.CameraProperty;
 import au.gov.ga.earthsci.bookmark.ui.editor.BookmarkEditorDialog;
 import au.gov.ga.earthsci.bookmark.ui.preferences.IBookmarksPreferences;
 import au.gov.ga.earthsci.common.ui.dialogs.EmptyStringInputValidator;
 import au.gov.ga.earthsci.common.util.AbstractPropertyChangeBean;
 import au.gov.ga.earthsci.worldwind.common.WorldWindowRegistry;
+import au.gov.ga.earthsci.worldwind.common.retrieve.PrefetchBudget;
+import au.gov.ga.earthsci.worldwind.common.retrieve.TilePrefetcher;
 import au.gov.ga.earthsci.worldwind.common.util.Util;
 
 
@@ -149,6 +153,13 @@ public class BookmarksController extends AbstractPropertyChangeBean implements I
 	 */
 	private transient Future<?> currentPlaylistTask;
 
+	/**
+	 * The budget of the current tile prefetch, and the camera state it is
+	 * prefetching tiles for. <code>null</code> implies no running prefetch.
+	 */
+	private transient volatile PrefetchBudget currentPrefetchBudget;
+	private transient volatile CameraProperty currentPrefetchTarget;
+
 	public BookmarksController()
 	{
 		addPropertyChangeListener("currentList", new PropertyChangeListener() //$NON-NLS-1$
@@ -485,6 +496,80 @@ public class BookmarksController extends AbstractPropertyChangeBean implements I
 			currentApplicatorTask.cancel(true);
 			currentApplicatorTask = null;
 		}
+		cancelPrefetch();
+	}
+
+	/**
+	 * Start prefetching the tiles required along the camera transition between
+	 * the given camera states, so they are available by the time the camera
+	 * arrives. Any previous prefetch for a different destination is cancelled.
+	 * 
+	 * @param view
+	 *            The view that will be animated
+	 * @param start
+	 *            The camera state at the start of the transition; may be
+	 *            <code>null</code>, in which case only the destination is
+	 *            prefetched
+	 * @param end
+	 *            The camera state at the end of the transition
+	 */
+	private void prefetch(View view, CameraProperty start, CameraProperty end)
+	{
+		if (end == null || end.getEyePosition() == null || end.getLookatPosition() == null)
+		{
+			return;
+		}
+		if (end == currentPrefetchTarget && currentPrefetchBudget != null && !currentPrefetchBudget.isCancelled())
+		{
+			// Already prefetching for this destination (eg. during the playlist pause)
+			return;
+		}
+		cancelPrefetch();
+
+		int tileLimit = preferences.getPrefetchTileLimit();
+		Model model = view.getViewInputHandler().getWorldWindow().getModel();
+		if (tileLimit <= 0 || model == null)
+		{
+			return;
+		}
+
+		PrefetchBudget budget = new PrefetchBudget(tileLimit, preferences.getPrefetchMaxPending());
+		TilePrefetcher prefetcher = new TilePrefetcher(view, model);
+		if (start == null || start.getEyePosition() == null || start.getLookatPosition() == null)
+		{
+			prefetcher.prefetch(end.getEyePosition(), end.getLookatPosition(), budget);
+		}
+		else
+		{
+			prefetcher.prefetchTransition(start.getEyePosition(), start.getLookatPosition(), end.getEyePosition(),
+					end.getLookatPosition(), TilePrefetcher.DEFAULT_PATH_SAMPLES, budget);
+		}
+		currentPrefetchTarget = end;
+		currentPrefetchBudget = budget;
+	}
+
+	/**
+	 * Cancel the current tile prefetch, if any
+	 */
+	private void cancelPrefetch()
+	{
+		PrefetchBudget budget = currentPrefetchBudget;
+		if (budget != null)
+		{
+			budget.cancel();
+		}
+		currentPrefetchBudget = null;
+		currentPrefetchTarget = null;
+	}
+
+	/**
+	 * Return the camera property of the given bookmark, or <code>null</code> if
+	 * it doesn't have one
+	 */
+	private static CameraProperty getCameraProperty(IBookmark bookmark)
+	{
+		IBookmarkProperty property = bookmark.getProperty(CameraProperty.TYPE);
+		return property instanceof CameraProperty ? (CameraProperty) property : null;
 	}
 
 	/**
@@ -519,6 +604,10 @@ public class BookmarksController extends AbstractPropertyChangeBean implements I
 			for (IBookmarkProperty property : bookmark.getProperties())
 			{
 				final IBookmarkProperty currentProperty = currentState.getProperty(property.getType());
+				if (property instanceof CameraProperty)
+				{
+					prefetch(view, getCameraProperty(currentState), (CameraProperty) property);
+				}
 				final IBookmarkPropertyApplicator applicator =
 						BookmarkPropertyApplicatorRegistry.getApplicator(property);
 				if (applicator != null)
@@ -608,6 +697,11 @@ public class BookmarksController extends AbstractPropertyChangeBean implements I
 					doApply(currentBookmark);
 					currentApplicatorTask.get();
 
+					// Prefetch the next bookmark's tiles while paused
+					int nextIndex = (list.indexOf(currentBookmark) + 1) % list.size();
+					IBookmark nextBookmark = list.get(nextIndex);
+					prefetch(view, getCameraProperty(currentBookmark), getCameraProperty(nextBookmark));
+
 					// Wait for user specified time
 					view.getViewInputHandler().getWorldWindow().getInputHandler().addMouseListener(mouseStopListener);
 					Thread.sleep(preferences.getPlayBookmarksWaitDuration());
@@ -615,8 +709,7 @@ public class BookmarksController extends AbstractPropertyChangeBean implements I
 							.removeMouseListener(mouseStopListener);
 
 					// Proceed to next bookmark
-					int nextIndex = (list.indexOf(currentBookmark) + 1) % list.size();
-					currentBookmark = list.get(nextIndex);
+					currentBookmark = nextBookmark;
 
 					if (Thread.interrupted())
 					{
@@ -42,6 +42,8 @@ public class Messages extends NLS
 	public static String BookmarksPreferencesPage_DefaultPropertiesLabel;
 	public static String BookmarksPreferencesPage_Description;
 	public static String BookmarksPreferencesPage_PlayBookmarksPauseDurationLabel;
+	public static String BookmarksPreferencesPage_PrefetchMaxPendingLabel;
+	public static String BookmarksPreferencesPage_PrefetchTileLimitLabel;
 	public static String BookmarksPreferencesPage_PropertyColumn;
 	public static String BookmarksPreferencesPage_Title;
 	public static String BookmarksPreferencesPage_TransitionDurationFieldTitle;
@@ -37,6 +37,8 @@ public class BookmarksPreferenceInitializer extends AbstractPreferenceInitialize
 		store.putValue(IBookmarksPreferences.DEFAULT_TRANSITION_DURATION, Long.toString(3000L));
 		store.putValue(IBookmarksPreferences.PLAY_BOOKMARKS_WAIT_DURATION, Long.toString(3000L));
 		store.putValue(IBookmarksPreferences.ASK_LIST_DELETE_CONFIRM, "true"); //$NON-NLS-1$
+		store.putValue(IBookmarksPreferences.PREFETCH_TILE_LIMIT, Integer.toString(200));
+		store.putValue(IBookmarksPreferences.PREFETCH_MAX_PENDING, Integer.toString(50));
 	}
 
 }
@@ -49,6 +49,14 @@ public class BookmarksPreferences implements IBookmarksPreferences
 	@Preference(nodePath = QUALIFIER_ID, value = PLAY_BOOKMARKS_WAIT_DURATION)
 	private long playBookmarksWaitDuration;
 
+	@Inject
+	@Preference(nodePath = QUALIFIER_ID, value = PREFETCH_TILE_LIMIT)
+	private int prefetchTileLimit;
+
+	@Inject
+	@Preference(nodePath = QUALIFIER_ID, value = PREFETCH_MAX_PENDING)
+	private int prefetchMaxPending;
+
 	@Inject
 	@Preference(nodePath = QUALIFIER_ID, value = DEFAULT_PROPERTIES)
 	private String defaultProperties;
@@ -69,6 +77,18 @@ public class BookmarksPreferences implements IBookmarksPreferences
 		return playBookmarksWaitDuration;
 	}
 
+	@Override
+	public int getPrefetchTileLimit()
+	{
+		return prefetchTileLimit;
+	}
+
+	@Override
+	public int getPrefetchMaxPending()
+	{
+		return prefetchMaxPending;
+	}
+
 	@Override
 	public String[] getDefaultPropertyTypes()
 	{
@@ -48,6 +48,8 @@ public class BookmarksPreferencesPage extends FieldEditorPreferencePage
 
 	private IntegerFieldEditor transitionDurationEditor;
 	private IntegerFieldEditor playBookmarksWaitDurationEditor;
+	private IntegerFieldEditor prefetchTileLimitEditor;
+	private IntegerFieldEditor prefetchMaxPendingEditor;
 	private BooleanFieldEditor askForDeleteConfirmationEditor;
 	private MultiSelectTableListFieldEditor<IBookmarkProperty> defaultProperties;
 	private Map<String, IBookmarkProperty> cachedProperties;
@@ -82,6 +84,18 @@ public class BookmarksPreferencesPage extends FieldEditorPreferencePage
 
 		addField(new SpacerFieldEditor(getFieldEditorParent()));
 
+		prefetchTileLimitEditor =
+				new IntegerFieldEditor(IBookmarksPreferences.PREFETCH_TILE_LIMIT,
+						Messages.BookmarksPreferencesPage_PrefetchTileLimitLabel, getFieldEditorParent());
+		addField(prefetchTileLimitEditor);
+
+		prefetchMaxPendingEditor =
+				new IntegerFieldEditor(IBookmarksPreferences.PREFETCH_MAX_PENDING,
+						Messages.BookmarksPreferencesPage_PrefetchMaxPendingLabel, getFieldEditorParent());
+		addField(prefetchMaxPendingEditor);
+
+		addField(new SpacerFieldEditor(getFieldEditorParent()));
+
 		askForDeleteConfirmationEditor =
 				new BooleanFieldEditor(IBookmarksPreferences.ASK_LIST_DELETE_CONFIRM,
 						Messages.BookmarksPreferencesPage_AskConfirmDeleteLabel, getFieldEditorParent());
@@ -31,6 +31,8 @@ public interface IBookmarksPreferences
 	String PLAY_BOOKMARKS_WAIT_DURATION = "au.gov.ga.earthsci.bookmarks.preferences.playBookmarksWaitDuration"; //$NON-NLS-1$
 	String ASK_LIST_DELETE_CONFIRM = "au.gov.ga.earthsci.bookmarks.preferences.askListDeleteConfirmation"; //$NON-NLS-1$
 	String DEFAULT_PROPERTIES = "au.gov.ga.earthsci.bookmarks.preferences.defaultProperties"; //$NON-NLS-1$
+	String PREFETCH_TILE_LIMIT = "au.gov.ga.earthsci.bookmarks.preferences.prefetchTileLimit"; //$NON-NLS-1$
+	String PREFETCH_MAX_PENDING = "au.gov.ga.earthsci.bookmarks.preferences.prefetchMaxPending"; //$NON-NLS-1$
 
 	/**
 	 * Returns the default duration to be used when transitioning from the
@@ -51,6 +53,25 @@ public interface IBookmarksPreferences
 	 */
 	long getPlayBookmarksWaitDuration();
 
+	/**
+	 * Returns the maximum number of tiles to prefetch for the destination of
+	 * a bookmark transition, before the camera arrives there
+	 * 
+	 * @return The maximum number of tiles to prefetch per bookmark;
+	 *         <code>0</code> to disable prefetching
+	 */
+	int getPrefetchTileLimit();
+
+	/**
+	 * Returns the number of tile retrievals that can be pending before
+	 * prefetching pauses, so that prefetching doesn't delay the tiles required
+	 * by the current view
+	 * 
+	 * @return The maximum number of pending retrievals while prefetching;
+	 *         <code>0</code> for no limit
+	 */
+	int getPrefetchMaxPending();
+
 	/**
 	 * Returns the default list of bookmark properties that are to be included
 	 * when new bookmarks are created.
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.common.buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link BufferUtil} class
+ * 
+ * @author James Navin (james.navin@ga.gov.au)
+ */
+public class BufferUtilTest
+{
+	private static final double[] VALUES = { 0, 1, 2, 100, 127, 3, 42, 9 };
+
+	@Test
+	public void testPrimitiveReadsMatchBoxedReads()
+	{
+		for (ByteOrder order : new ByteOrder[] { ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN })
+		{
+			for (BufferType type : BufferType.values())
+			{
+				ByteBuffer buffer = createBuffer(type, order, VALUES);
+				for (int i = 0; i < VALUES.length; i++)
+				{
+					double boxed = BufferUtil.getValue(buffer, type).doubleValue();
+					assertEquals(type.name(), VALUES[i], boxed, 0);
+					assertEquals(type.name(), boxed, BufferUtil.getDouble(buffer, i, type), 0);
+					assertEquals(type.name(), (float) boxed, BufferUtil.getFloat(buffer, i, type), 0);
+				}
+
+				buffer.rewind();
+				for (int i = 0; i < VALUES.length; i++)
+				{
+					assertEquals(type.name(), VALUES[i], BufferUtil.getDouble(buffer, type), 0);
+				}
+				assertEquals(type.name(), buffer.limit(), buffer.position());
+			}
+		}
+	}
+
+	@Test
+	public void testUnsignedValuesUseFullRange()
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(4);
+		buffer.putInt(0, 0xfffffffe);
+
+		assertEquals(0xfffffffeL, BufferUtil.getDouble(buffer, 0, BufferType.UNSIGNED_INT), 0);
+		assertEquals(0xfffffffeL, BufferUtil.getValue(buffer, BufferType.UNSIGNED_INT));
+		assertEquals(0xffff, BufferUtil.getDouble(buffer, 0, BufferType.UNSIGNED_SHORT), 0);
+		assertEquals(0xfffe, BufferUtil.getDouble(buffer, 1, BufferType.UNSIGNED_SHORT), 0);
+		assertEquals(0xff, BufferUtil.getDouble(buffer, 0, BufferType.BYTE), 0);
+	}
+
+	@Test
+	public void testGetDoublesStrided()
+	{
+		for (BufferType type : BufferType.values())
+		{
+			ByteBuffer buffer = createBuffer(type, ByteOrder.nativeOrder(), VALUES);
+
+			double[] doubles = new double[4];
+			BufferUtil.getDoubles(buffer, type, 1, 3, doubles, 1, 3);
+			assertArrayEquals(type.name(), new double[] { 0, 1, 127, 9 }, doubles, 0);
+
+			float[] floats = new float[3];
+			BufferUtil.getFloats(buffer, type, 2, 2, floats, 0, 3);
+			assertArrayEquals(type.name(), new float[] { 2, 127, 42 }, floats, 0);
+
+			assertEquals(0, buffer.position());
+		}
+	}
+
+	@Test
+	public void testConvertBetweenAllTypes()
+	{
+		for (BufferType sourceType : BufferType.values())
+		{
+			ByteBuffer source = createBuffer(sourceType, ByteOrder.nativeOrder(), VALUES);
+			for (BufferType targetType : BufferType.values())
+			{
+				ByteBuffer target = ByteBuffer.allocate((VALUES.length + 1) * targetType.getNumberOfBytes());
+				BufferUtil.convert(source, sourceType, 0, target, targetType, 1, VALUES.length);
+
+				double[] result = new double[VALUES.length];
+				BufferUtil.getDoubles(target, targetType, 1, 1, result, 0, VALUES.length);
+				assertArrayEquals(sourceType + "->" + targetType, VALUES, result, 0);
+			}
+		}
+	}
+
+	private static ByteBuffer createBuffer(BufferType type, ByteOrder order, double[] values)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(values.length * type.getNumberOfBytes()).order(order);
+		for (int i = 0; i < values.length; i++)
+		{
+			BufferUtil.putDouble(buffer, i, type, values[i]);
+		}
+		return buffer;
+	}
+}
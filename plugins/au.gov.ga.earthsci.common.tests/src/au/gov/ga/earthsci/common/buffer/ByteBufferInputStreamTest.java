@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.common.buffer;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ByteBufferInputStream} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ByteBufferInputStreamTest
+{
+	@Test
+	public void testReadHeapBuffer() throws IOException
+	{
+		assertReadsBytes(ByteBuffer.wrap(new byte[] { 1, 2, 3, (byte) 0xff }));
+	}
+
+	@Test
+	public void testReadDirectBuffer() throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocateDirect(4);
+		buffer.put(new byte[] { 1, 2, 3, (byte) 0xff });
+		buffer.flip();
+		assertReadsBytes(buffer);
+	}
+
+	@Test
+	public void testReadDoesNotModifyBuffer() throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 });
+		buffer.position(1);
+		ByteBufferInputStream is = new ByteBufferInputStream(buffer);
+		assertEquals(2, is.read());
+		assertEquals(2, is.available());
+		assertEquals(1, buffer.position());
+		is.close();
+	}
+
+	@Test
+	public void testSkipAndReset() throws IOException
+	{
+		ByteBufferInputStream is = new ByteBufferInputStream(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 }));
+		assertEquals(2, is.skip(2));
+		assertEquals(3, is.read());
+		is.reset();
+		assertEquals(1, is.read());
+		is.mark(0);
+		assertEquals(3, is.skip(10));
+		assertEquals(-1, is.read());
+		is.reset();
+		assertEquals(2, is.read());
+		is.close();
+	}
+
+	private static void assertReadsBytes(ByteBuffer buffer) throws IOException
+	{
+		ByteBufferInputStream is = new ByteBufferInputStream(buffer);
+		assertEquals(1, is.read());
+		byte[] b = new byte[10];
+		assertEquals(3, is.read(b, 1, 9));
+		assertEquals(2, b[1]);
+		assertEquals(3, b[2]);
+		assertEquals((byte) 0xff, b[3]);
+		assertEquals(-1, is.read());
+		assertEquals(-1, is.read(b, 0, 1));
+		assertEquals(0, is.read(b, 0, 0));
+		is.close();
+	}
+}
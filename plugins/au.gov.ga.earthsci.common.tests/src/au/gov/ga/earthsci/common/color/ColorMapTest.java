@@ -13,6 +13,7 @@ import java.util.Map;
 import org.junit.Test;
 
 import au.gov.ga.earthsci.common.color.ColorMap.InterpolationMode;
+import au.gov.ga.earthsci.worldwind.common.util.ColorLookupTable;
 
 /**
  * Unit tests for the {@link ColorMap} class
@@ -349,6 +350,41 @@ public class ColorMapTest
 		assertEquals(1.0, classUnderTest.getNearestEntry(value).getKey(), 0.001);
 	}
 
+	@Test
+	public void testLookupTableMatchesInterpolatedColours()
+	{
+		ColorMap classUnderTest =
+				new ColorMap(null, null, PERCENTAGE_ENTRIES, null, InterpolationMode.INTERPOLATE_RGB, true);
+
+		// 91 samples over [10,100] puts a sample on each whole value
+		ColorLookupTable lookupTable = classUnderTest.getLookupTable(91, 10, 100);
+		for (int value = 10; value <= 100; value++)
+		{
+			assertEquals(classUnderTest.getColor(value, 10, 100).getRGB(), lookupTable.getColor(value));
+		}
+		assertEquals(lookupTable.getColor(10), lookupTable.getColor(-50));
+		assertEquals(lookupTable.getColor(100), lookupTable.getColor(500));
+		assertEquals(0, lookupTable.getColor(Double.NaN));
+	}
+
+	@Test
+	public void testLookupTableExactMatch()
+	{
+		ColorMap classUnderTest =
+				new ColorMap(null, null, PERCENTAGE_ENTRIES, new Color(1, 1, 1, 1), InterpolationMode.EXACT_MATCH,
+						true);
+
+		ColorLookupTable lookupTable = classUnderTest.getLookupTable(ColorLookupTable.DEFAULT_SIZE, 10, 100);
+		assertEquals(new Color(1.0f, 0.0f, 0.0f, 0.0f).getRGB(), lookupTable.getColor(10));
+		assertEquals(new Color(0.0f, 0.0f, 0.0f, 1.0f).getRGB(), lookupTable.getColor(100));
+		assertEquals(new Color(1, 1, 1, 1).getRGB(), lookupTable.getColor(55));
+
+		int[] colours = lookupTable.map(new float[] { 10, 55, -9999 }, -9999f);
+		assertEquals(new Color(1.0f, 0.0f, 0.0f, 0.0f).getRGB(), colours[0]);
+		assertEquals(new Color(1, 1, 1, 1).getRGB(), colours[1]);
+		assertEquals(new Color(1, 1, 1, 1).getRGB(), colours[2]);
+	}
+
 	private static void assertColorsEqual(Color expected, Color actual)
 	{
 		if (expected == null)
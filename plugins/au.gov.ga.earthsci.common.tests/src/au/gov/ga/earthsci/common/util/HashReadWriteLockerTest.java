@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.common.util;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link HashReadWriteLocker} class
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class HashReadWriteLockerTest
+{
+	private final HashReadWriteLocker classUnderTest = new HashReadWriteLocker();
+
+	@Test(expected = IllegalStateException.class)
+	public void testUnlockWithoutLock()
+	{
+		classUnderTest.unlockRead("key"); //$NON-NLS-1$
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testUnlockAfterRelease()
+	{
+		classUnderTest.lockWrite("key"); //$NON-NLS-1$
+		classUnderTest.unlockWrite("key"); //$NON-NLS-1$
+		classUnderTest.unlockWrite("key"); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testReentrantLocks()
+	{
+		classUnderTest.lockWrite("key"); //$NON-NLS-1$
+		classUnderTest.lockRead("key"); //$NON-NLS-1$
+		classUnderTest.lockWrite("key"); //$NON-NLS-1$
+		classUnderTest.unlockWrite("key"); //$NON-NLS-1$
+		classUnderTest.unlockRead("key"); //$NON-NLS-1$
+		classUnderTest.unlockWrite("key"); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testWriteLockIsExclusive() throws InterruptedException
+	{
+		final int threadCount = 16;
+		final int iterations = 2000;
+		final AtomicInteger writers = new AtomicInteger();
+		final AtomicBoolean failed = new AtomicBoolean();
+		final CountDownLatch latch = new CountDownLatch(threadCount);
+
+		for (int i = 0; i < threadCount; i++)
+		{
+			new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						for (int j = 0; j < iterations; j++)
+						{
+							//use equal but not identical keys
+							String key = new String("key" + (j % 4)); //$NON-NLS-1$
+							classUnderTest.lockWrite(key);
+							try
+							{
+								if (key.equals("key0") && writers.incrementAndGet() != 1) //$NON-NLS-1$
+								{
+									failed.set(true);
+								}
+								if (key.equals("key0")) //$NON-NLS-1$
+								{
+									writers.decrementAndGet();
+								}
+							}
+							finally
+							{
+								classUnderTest.unlockWrite(key);
+							}
+						}
+					}
+					finally
+					{
+						latch.countDown();
+					}
+				}
+			}.start();
+		}
+
+		latch.await();
+		assertFalse(failed.get());
+	}
+}
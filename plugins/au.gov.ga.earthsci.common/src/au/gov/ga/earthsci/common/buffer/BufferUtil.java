@@ -16,7 +16,6 @@
 package au.gov.ga.earthsci.common.buffer;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 import au.gov.ga.earthsci.common.util.Validate;
 
@@ -33,6 +32,8 @@ import au.gov.ga.earthsci.common.util.Validate;
 public class BufferUtil
 {
 
+	private static final int CONVERSION_BATCH_SIZE = 1024;
+
 	/**
 	 * Return the next value from the buffer of the provided type.
 	 * <p/>
@@ -55,11 +56,11 @@ public class BufferUtil
 		case BYTE:
 			return buffer.get() & 0xff;
 		case UNSIGNED_SHORT:
-			return getUInt16(buffer);
+			return buffer.getShort() & 0xffff;
 		case SHORT:
 			return buffer.getShort();
 		case UNSIGNED_INT:
-			return getUInt32(buffer);
+			return buffer.getInt() & 0xffffffffL;
 		case INT:
 			return buffer.getInt();
 		case LONG:
@@ -143,33 +144,317 @@ public class BufferUtil
 		throw new UnsupportedOperationException("Unsupported buffer type " + targetType.name()); //$NON-NLS-1$
 	}
 
-	private static int getUInt16(ByteBuffer buffer)
+	/**
+	 * Return the next value from the buffer of the provided type as a
+	 * primitive double.
+	 * <p/>
+	 * Unlike {@link #getValue(ByteBuffer, BufferType)}, this does not box the
+	 * value, and so is suitable for use in tight loops. Note that
+	 * {@link BufferType#LONG} values beyond 2<sup>53</sup> will lose
+	 * precision.
+	 * 
+	 * @return The next value from the provided buffer of the provided type
+	 */
+	public static double getDouble(ByteBuffer buffer, BufferType bufferType)
+	{
+		double value = getDoubleAt(buffer, buffer.position(), bufferType);
+		buffer.position(buffer.position() + bufferType.getNumberOfBytes());
+		return value;
+	}
+
+	/**
+	 * Return the value at the given index (in values, not bytes) of a buffer
+	 * of the provided type as a primitive double. The buffer's position is not
+	 * changed.
+	 * 
+	 * @see #getDouble(ByteBuffer, BufferType)
+	 */
+	public static double getDouble(ByteBuffer buffer, int index, BufferType bufferType)
+	{
+		return getDoubleAt(buffer, index * bufferType.getNumberOfBytes(), bufferType);
+	}
+
+	private static double getDoubleAt(ByteBuffer buffer, int byteIndex, BufferType bufferType)
+	{
+		switch (bufferType)
+		{
+		case BYTE:
+			return buffer.get(byteIndex) & 0xff;
+		case UNSIGNED_SHORT:
+			return buffer.getShort(byteIndex) & 0xffff;
+		case SHORT:
+			return buffer.getShort(byteIndex);
+		case UNSIGNED_INT:
+			return buffer.getInt(byteIndex) & 0xffffffffL;
+		case INT:
+			return buffer.getInt(byteIndex);
+		case LONG:
+			return buffer.getLong(byteIndex);
+		case FLOAT:
+			return buffer.getFloat(byteIndex);
+		case DOUBLE:
+			return buffer.getDouble(byteIndex);
+		}
+
+		throw new UnsupportedOperationException("Unsupported buffer type " + bufferType.name()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Return the next value from the buffer of the provided type as a
+	 * primitive float.
+	 * 
+	 * @see #getDouble(ByteBuffer, BufferType)
+	 */
+	public static float getFloat(ByteBuffer buffer, BufferType bufferType)
+	{
+		float value = (float) getDoubleAt(buffer, buffer.position(), bufferType);
+		buffer.position(buffer.position() + bufferType.getNumberOfBytes());
+		return value;
+	}
+
+	/**
+	 * Return the value at the given index (in values, not bytes) of a buffer
+	 * of the provided type as a primitive float. The buffer's position is not
+	 * changed.
+	 * 
+	 * @see #getDouble(ByteBuffer, int, BufferType)
+	 */
+	public static float getFloat(ByteBuffer buffer, int index, BufferType bufferType)
+	{
+		if (bufferType == BufferType.FLOAT)
+		{
+			return buffer.getFloat(index * 4);
+		}
+		return (float) getDouble(buffer, index, bufferType);
+	}
+
+	/**
+	 * Read a strided run of values from a buffer of the provided type into a
+	 * double array. The buffer's position is not changed.
+	 * 
+	 * @param buffer
+	 *            The buffer to read from
+	 * @param bufferType
+	 *            The type of value contained in the buffer
+	 * @param first
+	 *            The index (in values, not bytes) of the first value to read
+	 * @param stride
+	 *            The number of values between successive values to read; 1
+	 *            reads consecutive values
+	 * @param values
+	 *            The array to read values into
+	 * @param offset
+	 *            The index in the array of the first value
+	 * @param count
+	 *            The number of values to read
+	 */
+	public static void getDoubles(ByteBuffer buffer, BufferType bufferType, int first, int stride,
+			double[] values, int offset, int count)
 	{
-		int first = 0xff & buffer.get();
-		int second = 0xff & buffer.get();
-		if (buffer.order() == ByteOrder.LITTLE_ENDIAN)
+		Validate.notNull(bufferType, "A valid buffer type is required"); //$NON-NLS-1$
+
+		int size = bufferType.getNumberOfBytes();
+		int step = stride * size;
+		int end = offset + count;
+		int b = first * size;
+		switch (bufferType)
 		{
-			return (first << 8 | second);
+		case BYTE:
+			for (int i = offset; i < end; i++, b += step)
+			{
+				values[i] = buffer.get(b) & 0xff;
+			}
+			return;
+		case UNSIGNED_SHORT:
+			for (int i = offset; i < end; i++, b += step)
+			{
+				values[i] = buffer.getShort(b) & 0xffff;
+			}
+			return;
+		case SHORT:
+			for (int i = offset; i < end; i++, b += step)
+			{
+				values[i] = buffer.getShort(b);
+			}
+			return;
+		case UNSIGNED_INT:
+			for (int i = offset; i < end; i++, b += step)
+			{
+				values[i] = buffer.getInt(b) & 0xffffffffL;
+			}
+			return;
+		case INT:
+			for (int i = offset; i < end; i++, b += step)
+			{
+				values[i] = buffer.getInt(b);
+			}
+			return;
+		case LONG:
+			for (int i = offset; i < end; i++, b += step)
+			{
+				values[i] = buffer.getLong(b);
+			}
+			return;
+		case FLOAT:
+			for (int i = offset; i < end; i++, b += step)
+			{
+				values[i] = buffer.getFloat(b);
+			}
+			return;
+		case DOUBLE:
+			for (int i = offset; i < end; i++, b += step)
+			{
+				values[i] = buffer.getDouble(b);
+			}
+			return;
 		}
-		else
+
+		throw new UnsupportedOperationException("Unsupported buffer type " + bufferType.name()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Read a strided run of values from a buffer of the provided type into a
+	 * float array. The buffer's position is not changed.
+	 * 
+	 * @see #getDoubles(ByteBuffer, BufferType, int, int, double[], int, int)
+	 */
+	public static void getFloats(ByteBuffer buffer, BufferType bufferType, int first, int stride,
+			float[] values, int offset, int count)
+	{
+		Validate.notNull(bufferType, "A valid buffer type is required"); //$NON-NLS-1$
+
+		int size = bufferType.getNumberOfBytes();
+		int step = stride * size;
+		int end = offset + count;
+		int b = first * size;
+		switch (bufferType)
 		{
-			return (first | second << 8);
+		case BYTE:
+			for (int i = offset; i < end; i++, b += step)
+			{
+				values[i] = buffer.get(b) & 0xff;
+			}
+			return;
+		case UNSIGNED_SHORT:
+			for (int i = offset; i < end; i++, b += step)
+			{
+				values[i] = buffer.getShort(b) & 0xffff;
+			}
+			return;
+		case SHORT:
+			for (int i = offset; i < end; i++, b += step)
+			{
+				values[i] = buffer.getShort(b);
+			}
+			return;
+		case UNSIGNED_INT:
+			for (int i = offset; i < end; i++, b += step)
+			{
+				values[i] = buffer.getInt(b) & 0xffffffffL;
+			}
+			return;
+		case INT:
+			for (int i = offset; i < end; i++, b += step)
+			{
+				values[i] = buffer.getInt(b);
+			}
+			return;
+		case LONG:
+			for (int i = offset; i < end; i++, b += step)
+			{
+				values[i] = buffer.getLong(b);
+			}
+			return;
+		case FLOAT:
+			for (int i = offset; i < end; i++, b += step)
+			{
+				values[i] = buffer.getFloat(b);
+			}
+			return;
+		case DOUBLE:
+			for (int i = offset; i < end; i++, b += step)
+			{
+				values[i] = (float) buffer.getDouble(b);
+			}
+			return;
 		}
+
+		throw new UnsupportedOperationException("Unsupported buffer type " + bufferType.name()); //$NON-NLS-1$
 	}
 
-	private static long getUInt32(ByteBuffer buffer)
+	/**
+	 * Write a value into the given index (in values, not bytes) of a buffer of
+	 * the provided type, converting it to the buffer type. The buffer's
+	 * position is not changed.
+	 * <p/>
+	 * As with {@link #convertTo(Number, BufferType)}, conversion to integer
+	 * types truncates.
+	 */
+	public static void putDouble(ByteBuffer buffer, int index, BufferType bufferType, double value)
 	{
-		long first = 0xff & buffer.get();
-		long second = 0xff & buffer.get();
-		long third = 0xff & buffer.get();
-		long fourth = 0xff & buffer.get();
-		if (buffer.order() == ByteOrder.LITTLE_ENDIAN)
+		int byteIndex = index * bufferType.getNumberOfBytes();
+		switch (bufferType)
 		{
-			return (first << 24l | second << 16l | third << 8l | fourth);
+		case BYTE:
+			buffer.put(byteIndex, (byte) (int) value);
+			return;
+		case UNSIGNED_SHORT:
+		case SHORT:
+			buffer.putShort(byteIndex, (short) (int) value);
+			return;
+		case UNSIGNED_INT:
+		case INT:
+			buffer.putInt(byteIndex, (int) (long) value);
+			return;
+		case LONG:
+			buffer.putLong(byteIndex, (long) value);
+			return;
+		case FLOAT:
+			buffer.putFloat(byteIndex, (float) value);
+			return;
+		case DOUBLE:
+			buffer.putDouble(byteIndex, value);
+			return;
 		}
-		else
+
+		throw new UnsupportedOperationException("Unsupported buffer type " + bufferType.name()); //$NON-NLS-1$
+	}
+
+	/**
+	 * Convert a run of values from a buffer of one type into a buffer of
+	 * another type, using a small reusable array rather than boxing each
+	 * value. The positions of the buffers are not changed.
+	 * 
+	 * @param source
+	 *            The buffer to read values from
+	 * @param sourceType
+	 *            The type of values in the source buffer
+	 * @param sourceFirst
+	 *            The index (in values) of the first source value
+	 * @param target
+	 *            The buffer to write converted values to
+	 * @param targetType
+	 *            The type of values in the target buffer
+	 * @param targetFirst
+	 *            The index (in values) of the first target value
+	 * @param count
+	 *            The number of values to convert
+	 */
+	public static void convert(ByteBuffer source, BufferType sourceType, int sourceFirst,
+			ByteBuffer target, BufferType targetType, int targetFirst, int count)
+	{
+		Validate.notNull(sourceType, "A valid buffer type is required"); //$NON-NLS-1$
+		Validate.notNull(targetType, "A valid buffer type is required"); //$NON-NLS-1$
+
+		double[] values = new double[Math.min(count, CONVERSION_BATCH_SIZE)];
+		for (int done = 0; done < count; done += values.length)
 		{
-			return (first | second << 8l | third << 16l | fourth << 24l);
+			int n = Math.min(values.length, count - done);
+			getDoubles(source, sourceType, sourceFirst + done, 1, values, 0, n);
+			for (int i = 0; i < n; i++)
+			{
+				putDouble(target, targetFirst + done + i, targetType, values[i]);
+			}
 		}
 	}
 
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.common.buffer;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link InputStream} that reads directly from a {@link ByteBuffer}, without
+ * copying the buffer's contents. The stream reads from a duplicate of the
+ * buffer, so the original buffer's position and limit are not modified.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ByteBufferInputStream extends InputStream
+{
+	private final ByteBuffer buffer;
+	private int mark;
+
+	/**
+	 * Create a stream that reads the bytes between the buffer's current
+	 * position and limit.
+	 * 
+	 * @param buffer
+	 *            Buffer to read from
+	 */
+	public ByteBufferInputStream(ByteBuffer buffer)
+	{
+		this.buffer = buffer.duplicate();
+		this.mark = this.buffer.position();
+	}
+
+	@Override
+	public int read()
+	{
+		if (!buffer.hasRemaining())
+		{
+			return -1;
+		}
+		return buffer.get() & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len)
+	{
+		if (off < 0 || len < 0 || len > b.length - off)
+		{
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0)
+		{
+			return 0;
+		}
+		if (!buffer.hasRemaining())
+		{
+			return -1;
+		}
+		len = Math.min(len, buffer.remaining());
+		buffer.get(b, off, len);
+		return len;
+	}
+
+	@Override
+	public long skip(long n)
+	{
+		if (n <= 0)
+		{
+			return 0;
+		}
+		int skip = (int) Math.min(n, buffer.remaining());
+		buffer.position(buffer.position() + skip);
+		return skip;
+	}
+
+	@Override
+	public int available()
+	{
+		return buffer.remaining();
+	}
+
+	@Override
+	public boolean markSupported()
+	{
+		return true;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit)
+	{
+		mark = buffer.position();
+	}
+
+	@Override
+	public synchronized void reset()
+	{
+		buffer.position(mark);
+	}
+}
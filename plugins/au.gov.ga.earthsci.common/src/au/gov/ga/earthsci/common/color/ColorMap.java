@@ -25,6 +25,7 @@ import java.util.UUID;
 
 import au.gov.ga.earthsci.common.util.IDescribed;
 import au.gov.ga.earthsci.common.util.INamed;
+import au.gov.ga.earthsci.worldwind.common.util.ColorLookupTable;
 import au.gov.ga.earthsci.worldwind.common.util.Util;
 
 import com.jhlabs.image.Colormap;
@@ -329,6 +330,65 @@ public class ColorMap implements INamed, IDescribed, Colormap
 		return getColor(absoluteValue);
 	}
 
+	/**
+	 * Compile this colour map into a lookup table for mapping many absolute
+	 * values at once, as per {@link #getColor(double, double, double)}.
+	 * <p/>
+	 * {@link InterpolationMode#EXACT_MATCH} maps are compiled into a table of
+	 * their exact entry values. Other maps are sampled evenly over the range
+	 * of the map's entries (or {@code [min,max]} if {@link #isPercentageBased()}
+	 * ), and values outside that range are clamped to it.
+	 * <p/>
+	 * The table is a snapshot; it does not reflect later changes to this map.
+	 * 
+	 * @param size
+	 *            The number of colours to sample for non-exact maps
+	 * @param min
+	 *            The minimum absolute value in the source data
+	 * @param max
+	 *            The maximum absolute value in the source data
+	 * 
+	 * @return A lookup table for this colour map
+	 */
+	public ColorLookupTable getLookupTable(int size, double min, double max)
+	{
+		double lower = Math.min(min, max);
+		double upper = Math.max(min, max);
+		int nodata = getRGB(nodataColour);
+
+		if (mode == InterpolationMode.EXACT_MATCH)
+		{
+			double[] values = new double[entries.size()];
+			int[] colours = new int[entries.size()];
+			int i = 0;
+			for (Entry<Double, Color> entry : entries.entrySet())
+			{
+				values[i] = valuesArePercentages ? lower + entry.getKey() * (upper - lower) : entry.getKey();
+				colours[i] = getRGB(entry.getValue());
+				i++;
+			}
+			return new ColorLookupTable(values, colours, nodata);
+		}
+
+		if (!valuesArePercentages)
+		{
+			lower = entries.isEmpty() ? 0 : entries.firstKey();
+			upper = entries.isEmpty() ? 0 : entries.lastKey();
+		}
+		int[] colours = new int[size];
+		for (int i = 0; i < size; i++)
+		{
+			double value = size > 1 ? lower + (upper - lower) * i / (size - 1) : lower;
+			colours[i] = getRGB(getColor(value, lower, upper));
+		}
+		return new ColorLookupTable(colours, lower, upper, nodata);
+	}
+
+	private static int getRGB(Color colour)
+	{
+		return colour == null ? 0 : colour.getRGB();
+	}
+
 	/**
 	 * @return the NODATA colour for this colour map
 	 */
@@ -15,6 +15,11 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.common.util;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.regex.Pattern;
 
 /**
@@ -68,4 +73,36 @@ public class FileUtil
 		String[] components = path.split("\\\\|/"); //$NON-NLS-1$
 		return components[components.length - 1];
 	}
+
+	/**
+	 * Map the provided file into memory, read-only. The file's contents are
+	 * not copied onto the heap, and the mapping remains valid after this
+	 * method returns, until the returned buffer is garbage collected.
+	 * 
+	 * @param file
+	 *            The file to map
+	 * 
+	 * @return A read-only buffer containing the file's contents
+	 * @throws IOException
+	 *             If the file cannot be opened, or is too large to be mapped
+	 *             into a single buffer
+	 */
+	public static MappedByteBuffer mapReadOnly(File file) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+		try
+		{
+			long length = raf.length();
+			if (length > Integer.MAX_VALUE)
+			{
+				throw new IOException("File too large to map: " + file); //$NON-NLS-1$
+			}
+			//closing the channel doesn't invalidate the mapping
+			return raf.getChannel().map(MapMode.READ_ONLY, 0, length);
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
 }
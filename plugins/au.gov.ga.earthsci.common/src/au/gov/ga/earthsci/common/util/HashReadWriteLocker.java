@@ -15,8 +15,9 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.common.util;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -24,61 +25,104 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * Provides a ReadWriteLock for objects via their hash. Allows you to lock an
  * object for reading/writing, and any other objects with the same hash will
  * share the lock.
+ * <p/>
+ * Locks are reference counted, and removed once no thread holds or is waiting
+ * for them. Acquiring and releasing a lock doesn't block threads using other
+ * keys.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class HashReadWriteLocker
 {
-	private final Map<Object, ReadWriteLock> locks = new HashMap<Object, ReadWriteLock>();
-	private final Map<Object, Integer> lockCount = new HashMap<Object, Integer>();
+	private final ConcurrentMap<Object, CountedLock> locks = new ConcurrentHashMap<Object, CountedLock>();
 
 	public void lockRead(Object key)
 	{
-		getLock(key, true).readLock().lock();
+		acquire(key).readLock().lock();
 	}
 
 	public void lockWrite(Object key)
 	{
-		getLock(key, true).writeLock().lock();
+		acquire(key).writeLock().lock();
 	}
 
 	public void unlockRead(Object key)
 	{
-		getLock(key, false).readLock().unlock();
+		release(key).readLock().unlock();
 	}
 
 	public void unlockWrite(Object key)
 	{
-		getLock(key, false).writeLock().unlock();
+		release(key).writeLock().unlock();
 	}
 
-	private ReadWriteLock getLock(Object key, boolean forAquire)
+	private ReadWriteLock acquire(Object key)
 	{
-		synchronized (locks)
+		while (true)
 		{
-			ReadWriteLock lock = locks.get(key);
-			Integer count = lockCount.get(key);
+			CountedLock lock = locks.get(key);
 			if (lock == null)
 			{
-				if (!forAquire)
+				lock = new CountedLock();
+				if (locks.putIfAbsent(key, lock) == null)
 				{
-					throw new IllegalStateException("Attempting to unlock a non-existant lock"); //$NON-NLS-1$
+					return lock.lock;
 				}
-				lock = new ReentrantReadWriteLock();
-				count = 0;
-				locks.put(key, lock);
 			}
-			count = count + (forAquire ? 1 : -1);
-			if (count == 0)
+			else if (lock.increment())
 			{
-				locks.remove(key);
-				lockCount.remove(key);
+				return lock.lock;
 			}
 			else
 			{
-				lockCount.put(key, count);
+				//lock has been released by all threads, help remove it and try again
+				locks.remove(key, lock);
 			}
-			return lock;
+		}
+	}
+
+	private ReadWriteLock release(Object key)
+	{
+		CountedLock lock = locks.get(key);
+		if (lock == null)
+		{
+			throw new IllegalStateException("Attempting to unlock a non-existant lock"); //$NON-NLS-1$
+		}
+		if (lock.decrement())
+		{
+			locks.remove(key, lock);
+		}
+		return lock.lock;
+	}
+
+	/**
+	 * {@link ReadWriteLock} with a count of the threads using it. Once the
+	 * count reaches 0, the lock is dead and cannot be reacquired.
+	 */
+	private static class CountedLock
+	{
+		private final ReadWriteLock lock = new ReentrantReadWriteLock();
+		private final AtomicInteger count = new AtomicInteger(1);
+
+		private boolean increment()
+		{
+			while (true)
+			{
+				int c = count.get();
+				if (c <= 0)
+				{
+					return false;
+				}
+				if (count.compareAndSet(c, c + 1))
+				{
+					return true;
+				}
+			}
+		}
+
+		private boolean decrement()
+		{
+			return count.decrementAndGet() == 0;
 		}
 	}
 }
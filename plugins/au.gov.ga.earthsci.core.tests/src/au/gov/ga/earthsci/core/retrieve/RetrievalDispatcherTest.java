@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve;
+
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.earthsci.core.retrieve.result.BasicRetrievalResult;
+import au.gov.ga.earthsci.core.retrieve.result.ErrorRetrievalResult;
+
+/**
+ * Unit tests for the {@link RetrievalDispatcher} class
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class RetrievalDispatcherTest
+{
+	private final List<URL> started = Collections.synchronizedList(new ArrayList<URL>());
+	private final CountDownLatch release = new CountDownLatch(1);
+	private IRetriever retriever;
+	private RetrievalDispatcher classUnderTest;
+
+	@Before
+	public void setup()
+	{
+		retriever = new IRetriever()
+		{
+			@Override
+			public boolean supports(URL url)
+			{
+				return true;
+			}
+
+			@Override
+			public IRetrievalData checkCache(URL url)
+			{
+				return null;
+			}
+
+			@Override
+			public RetrieverResult retrieve(URL url, IRetrieverMonitor monitor,
+					IRetrievalProperties retrievalProperties, IRetrievalData cachedData) throws Exception
+			{
+				started.add(url);
+				release.await();
+				return new RetrieverResult(new BasicRetrievalResult(null, false), RetrieverResultStatus.COMPLETE);
+			}
+		};
+		classUnderTest = new RetrievalDispatcher();
+	}
+
+	@After
+	public void tearDown()
+	{
+		release.countDown();
+	}
+
+	@Test
+	public void testSaturatedHostDoesNotBlockOtherHosts() throws InterruptedException
+	{
+		classUnderTest.setLimits(10, 2);
+		List<Retrieval> retrievals = new ArrayList<Retrieval>();
+		for (int i = 0; i < 5; i++)
+		{
+			retrievals.add(start(createURL("host1", i), 0)); //$NON-NLS-1$
+		}
+		retrievals.add(start(createURL("host2", 0), 0)); //$NON-NLS-1$
+
+		assertEquals(3, classUnderTest.getActiveCount());
+		assertEquals(3, classUnderTest.getQueuedCount());
+
+		release.countDown();
+		for (Retrieval retrieval : retrievals)
+		{
+			assertNotNull(retrieval.waitAndGetResult());
+		}
+		waitUntilIdle();
+		assertEquals(6, started.size());
+	}
+
+	@Test
+	public void testTotalLimit() throws InterruptedException
+	{
+		classUnderTest.setLimits(2, 0);
+		for (int i = 0; i < 4; i++)
+		{
+			start(createURL("host" + i, 0), 0); //$NON-NLS-1$
+		}
+
+		assertEquals(2, classUnderTest.getActiveCount());
+		assertEquals(2, classUnderTest.getQueuedCount());
+
+		release.countDown();
+		waitUntilIdle();
+		assertEquals(4, started.size());
+	}
+
+	@Test
+	public void testQueuedJobsAreScheduledInPriorityOrder() throws InterruptedException
+	{
+		classUnderTest.setLimits(1, 0);
+		Retrieval blocker = start(createURL("host0", 0), 0); //$NON-NLS-1$
+		waitUntilStarted(1);
+
+		URL low = createURL("host1", 0); //$NON-NLS-1$
+		URL high = createURL("host2", 0); //$NON-NLS-1$
+		URL raised = createURL("host1", 1); //$NON-NLS-1$
+		start(low, 1);
+		start(high, 5);
+		Retrieval raisedRetrieval = start(raised, 0);
+		raisedRetrieval.reprioritize(10);
+
+		release.countDown();
+		assertNotNull(blocker.waitAndGetResult());
+		waitUntilIdle();
+
+		assertEquals(4, started.size());
+		assertEquals(raised, started.get(1));
+		assertEquals(high, started.get(2));
+		assertEquals(low, started.get(3));
+	}
+
+	@Test
+	public void testCancelRemovesQueuedJob() throws InterruptedException
+	{
+		classUnderTest.setLimits(1, 0);
+		start(createURL("host0", 0), 0); //$NON-NLS-1$
+		Retrieval queued = start(createURL("host1", 0), 0); //$NON-NLS-1$
+		assertEquals(1, classUnderTest.getQueuedCount());
+
+		queued.cancel();
+		assertEquals(0, classUnderTest.getQueuedCount());
+		assertNull(queued.waitAndGetResult());
+
+		release.countDown();
+		waitUntilIdle();
+		assertEquals(1, started.size());
+	}
+
+	@Test
+	public void testJobsThatCannotBeScheduledFailAndFreeTheirSlot() throws InterruptedException
+	{
+		classUnderTest = new RetrievalDispatcher()
+		{
+			@Override
+			void schedule(RetrievalJob job)
+			{
+				throw new IllegalStateException("Job manager has been shut down"); //$NON-NLS-1$
+			}
+		};
+		classUnderTest.setLimits(1, 1);
+		Retrieval retrieval1 = start(createURL("host0", 0), 0); //$NON-NLS-1$
+		Retrieval retrieval2 = start(createURL("host0", 1), 0); //$NON-NLS-1$
+
+		//would block forever if the failed jobs didn't complete their retrievals
+		IRetrievalResult result1 = retrieval1.waitAndGetResult();
+		IRetrievalResult result2 = retrieval2.waitAndGetResult();
+		assertTrue(result1 instanceof ErrorRetrievalResult);
+		assertTrue(result2 instanceof ErrorRetrievalResult);
+		assertFalse(result1.isSuccessful());
+		assertEquals(0, classUnderTest.getActiveCount());
+		assertEquals(0, classUnderTest.getQueuedCount());
+		assertEquals(0, started.size());
+	}
+
+	private Retrieval start(URL url, int priority)
+	{
+		RetrievalProperties properties = new RetrievalProperties();
+		properties.setUseCache(false);
+		properties.setPriority(priority);
+		Retrieval retrieval = new Retrieval(this, url, properties, retriever, classUnderTest);
+		retrieval.start();
+		return retrieval;
+	}
+
+	private void waitUntilStarted(int count) throws InterruptedException
+	{
+		long timeout = System.currentTimeMillis() + 5000;
+		while (started.size() < count && System.currentTimeMillis() < timeout)
+		{
+			Thread.sleep(10);
+		}
+		assertEquals(count, started.size());
+	}
+
+	private void waitUntilIdle() throws InterruptedException
+	{
+		//the dispatcher is notified of finished jobs after waiting callers are released
+		long timeout = System.currentTimeMillis() + 5000;
+		while ((classUnderTest.getActiveCount() > 0 || classUnderTest.getQueuedCount() > 0)
+				&& System.currentTimeMillis() < timeout)
+		{
+			Thread.sleep(10);
+		}
+		assertEquals(0, classUnderTest.getActiveCount());
+		assertEquals(0, classUnderTest.getQueuedCount());
+	}
+
+	private static URL createURL(String host, int index)
+	{
+		try
+		{
+			return new URL("http://" + host + "/resource" + index); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		catch (Exception e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve;
+
+import static org.junit.Assert.*;
+
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.earthsci.core.retrieve.result.BasicRetrievalResult;
+import au.gov.ga.earthsci.core.retrieve.result.ByteBufferRetrievalData;
+
+/**
+ * Unit tests for the {@link RetrievalService} class
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class RetrievalServiceTest
+{
+	private final static int THREAD_COUNT = 32;
+	private final static int RETRIEVALS_PER_THREAD = 100;
+	private final static int URL_COUNT = 50;
+
+	private final AtomicInteger retrieveCount = new AtomicInteger();
+	private volatile CountDownLatch gate;
+	private RetrievalService classUnderTest;
+
+	@Before
+	public void setup()
+	{
+		final IRetriever retriever = new IRetriever()
+		{
+			@Override
+			public boolean supports(URL url)
+			{
+				return true;
+			}
+
+			@Override
+			public IRetrievalData checkCache(URL url)
+			{
+				return null;
+			}
+
+			@Override
+			public RetrieverResult retrieve(URL url, IRetrieverMonitor monitor,
+					IRetrievalProperties retrievalProperties, IRetrievalData cachedData) throws Exception
+			{
+				retrieveCount.incrementAndGet();
+				CountDownLatch gate = RetrievalServiceTest.this.gate;
+				if (gate != null)
+				{
+					gate.await();
+				}
+				Thread.sleep(1);
+				ByteBuffer buffer = ByteBuffer.wrap(url.toString().getBytes("UTF-8")); //$NON-NLS-1$
+				IRetrievalData data = new ByteBufferRetrievalData(url, buffer, "text/plain"); //$NON-NLS-1$
+				return new RetrieverResult(new BasicRetrievalResult(data, false), RetrieverResultStatus.COMPLETE);
+			}
+		};
+		classUnderTest = new RetrievalService(new IRetrieverFactory()
+		{
+			@Override
+			public IRetriever getRetriever(URL url)
+			{
+				return retriever;
+			}
+
+			@Override
+			public void registerRetriever(IRetriever retriever)
+			{
+			}
+
+			@Override
+			public IRetriever[] getRetrievers()
+			{
+				return new IRetriever[] { retriever };
+			}
+		});
+	}
+
+	@Test
+	public void testDuplicateRetrievalsShareRetrieval()
+	{
+		URL url = createURL(0);
+		IRetrieval retrieval1 = classUnderTest.retrieve("caller1", url); //$NON-NLS-1$
+		IRetrieval retrieval2 = classUnderTest.retrieve("caller2", url); //$NON-NLS-1$
+		IRetrieval retrieval3 = classUnderTest.retrieve("caller2", url, new RetrievalProperties(), true); //$NON-NLS-1$
+
+		assertSame(retrieval1, retrieval2);
+		assertNotSame(retrieval1, retrieval3);
+		assertSame(retrieval1, classUnderTest.getRetrieval(url));
+		assertEquals(2, classUnderTest.getRetrievals("caller2").length); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testRetrievalIsRemovedOnCompletion() throws InterruptedException
+	{
+		URL url = createURL(0);
+		IRetrieval retrieval = classUnderTest.retrieve("caller", url); //$NON-NLS-1$
+		retrieval.start();
+		assertNotNull(retrieval.waitAndGetResult());
+		assertNull(classUnderTest.getRetrieval(url));
+		assertEquals(0, classUnderTest.getRetrievals("caller").length); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testListenerCanWaitForResult() throws InterruptedException
+	{
+		URL url = createURL(0);
+		IRetrieval retrieval = classUnderTest.retrieve("caller", url); //$NON-NLS-1$
+		final List<IRetrievalResult> results = Collections.synchronizedList(new ArrayList<IRetrievalResult>());
+		final CountDownLatch completed = new CountDownLatch(1);
+		retrieval.addListener(new RetrievalAdapter()
+		{
+			@Override
+			public void complete(IRetrieval retrieval)
+			{
+				try
+				{
+					//called on the completing thread, so must not wait for itself
+					results.add(retrieval.waitAndGetResult());
+				}
+				catch (InterruptedException e)
+				{
+				}
+				finally
+				{
+					completed.countDown();
+				}
+			}
+		});
+		retrieval.start();
+		assertTrue(completed.await(10, TimeUnit.SECONDS));
+		assertEquals(1, results.size());
+		assertNotNull(results.get(0));
+	}
+
+	@Test
+	public void testManySimultaneousRetrievals() throws InterruptedException
+	{
+		final AtomicInteger added = new AtomicInteger();
+		final AtomicInteger removed = new AtomicInteger();
+		final AtomicInteger failures = new AtomicInteger();
+		classUnderTest.addListener(new IRetrievalServiceListener()
+		{
+			@Override
+			public void retrievalAdded(IRetrieval retrieval)
+			{
+				added.incrementAndGet();
+			}
+
+			@Override
+			public void retrievalRemoved(IRetrieval retrieval)
+			{
+				removed.incrementAndGet();
+			}
+		});
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(THREAD_COUNT);
+		for (int i = 0; i < THREAD_COUNT; i++)
+		{
+			final Object caller = "caller" + i; //$NON-NLS-1$
+			new Thread()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						start.await();
+						for (int j = 0; j < RETRIEVALS_PER_THREAD; j++)
+						{
+							IRetrieval retrieval = classUnderTest.retrieve(caller, createURL(j % URL_COUNT));
+							retrieval.start();
+							if (retrieval.waitAndGetResult() == null)
+							{
+								failures.incrementAndGet();
+							}
+						}
+					}
+					catch (Exception e)
+					{
+						failures.incrementAndGet();
+					}
+					finally
+					{
+						finished.countDown();
+					}
+				}
+			}.start();
+		}
+
+		start.countDown();
+		finished.await();
+
+		assertEquals(0, failures.get());
+		assertEquals(added.get(), removed.get());
+		//each retrieval added to the service is retrieved exactly once, however many callers share it
+		assertEquals(added.get(), retrieveCount.get());
+		for (int i = 0; i < URL_COUNT; i++)
+		{
+			assertNull(classUnderTest.getRetrieval(createURL(i)));
+		}
+		for (int i = 0; i < THREAD_COUNT; i++)
+		{
+			assertEquals(0, classUnderTest.getRetrievals("caller" + i).length); //$NON-NLS-1$
+		}
+
+		//the dispatcher is notified of finished jobs after waiting callers are released
+		long timeout = System.currentTimeMillis() + 5000;
+		while (classUnderTest.getActiveCount() > 0 && System.currentTimeMillis() < timeout)
+		{
+			Thread.sleep(10);
+		}
+		assertEquals(0, classUnderTest.getActiveCount());
+		assertEquals(0, classUnderTest.getQueuedCount());
+	}
+
+	@Test
+	public void testConcurrentRetrievalsAreDeduplicated() throws InterruptedException
+	{
+		//hold every retrieval open until all callers have requested every URL
+		gate = new CountDownLatch(1);
+
+		final List<IRetrieval> retrievals = Collections.synchronizedList(new ArrayList<IRetrieval>());
+		final CountDownLatch requested = new CountDownLatch(THREAD_COUNT);
+		for (int i = 0; i < THREAD_COUNT; i++)
+		{
+			final Object caller = "caller" + i; //$NON-NLS-1$
+			new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int j = 0; j < URL_COUNT; j++)
+					{
+						IRetrieval retrieval = classUnderTest.retrieve(caller, createURL(j));
+						retrieval.start();
+						retrievals.add(retrieval);
+					}
+					requested.countDown();
+				}
+			}.start();
+		}
+
+		requested.await();
+		gate.countDown();
+		for (IRetrieval retrieval : retrievals)
+		{
+			assertNotNull(retrieval.waitAndGetResult());
+		}
+
+		assertEquals(THREAD_COUNT * URL_COUNT, retrievals.size());
+		assertEquals(URL_COUNT, new HashSet<IRetrieval>(retrievals).size());
+		assertEquals(URL_COUNT, retrieveCount.get());
+	}
+
+	private static URL createURL(int index)
+	{
+		try
+		{
+			return new URL("http://localhost/resource" + index); //$NON-NLS-1$
+		}
+		catch (Exception e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link URLCacheIndex} class
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class URLCacheIndexTest
+{
+	private File directory;
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = File.createTempFile("urlcacheindex", ""); //$NON-NLS-1$ //$NON-NLS-2$
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void tearDown()
+	{
+		delete(directory);
+	}
+
+	@Test
+	public void testGetUnknownURL()
+	{
+		URLCacheIndex index = new URLCacheIndex(directory);
+		assertNull(index.get("http://host/a.png", "bucket")); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	public void testGetOrCreateAllocatesSequentialFilenames()
+	{
+		URLCacheIndex index = new URLCacheIndex(directory);
+		URLCacheIndex.Entry a = index.getOrCreate("http://host/a.png", "bucket", ".png"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		URLCacheIndex.Entry b = index.getOrCreate("http://host/b", "bucket", ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals("0.png", a.filename); //$NON-NLS-1$
+		assertEquals("1", b.filename); //$NON-NLS-1$
+		assertSame(a, index.getOrCreate("http://host/a.png", "bucket", ".png")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		index.close();
+	}
+
+	@Test
+	public void testJournalIsReloaded()
+	{
+		URLCacheIndex index = new URLCacheIndex(directory);
+		index.getOrCreate("http://host/a.png", "bucket", ".png"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		index.getOrCreate("http://host/tab\there", "bucket", ""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		index.close();
+
+		index = new URLCacheIndex(directory);
+		assertEquals(2, index.size());
+		assertEquals("1", index.get("http://host/tab\there", "bucket").filename); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals("2.png", index.getOrCreate("http://host/c.png", "bucket", ".png").filename); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		index.close();
+	}
+
+	@Test
+	public void testAccessTimesAreReloaded() throws InterruptedException
+	{
+		URLCacheIndex index = new URLCacheIndex(directory);
+		URLCacheIndex.Entry a = index.getOrCreate("http://host/a.png", "bucket", ".png"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		Thread.sleep(10);
+		URLCacheIndex.Entry b = index.getOrCreate("http://host/b.png", "bucket", ".png"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		Thread.sleep(10);
+		//accessing a after b was created makes b the least recently used
+		a.touch();
+		long lastAccess = a.getLastAccess();
+		assertTrue(lastAccess > b.getLastAccess());
+		index.close();
+
+		index = new URLCacheIndex(directory);
+		List<URLCacheIndex.Entry> entries = index.getEntries();
+		Collections.sort(entries, new Comparator<URLCacheIndex.Entry>()
+		{
+			@Override
+			public int compare(URLCacheIndex.Entry o1, URLCacheIndex.Entry o2)
+			{
+				long a1 = o1.getLastAccess(), a2 = o2.getLastAccess();
+				return a1 < a2 ? -1 : a1 == a2 ? 0 : 1;
+			}
+		});
+		assertEquals("http://host/b.png", entries.get(0).url); //$NON-NLS-1$
+		assertEquals("http://host/a.png", entries.get(1).url); //$NON-NLS-1$
+		assertEquals(lastAccess, index.get("http://host/a.png", "bucket").getLastAccess()); //$NON-NLS-1$ //$NON-NLS-2$
+		index.close();
+	}
+
+	@Test
+	public void testFlushOnlyJournalsChangedAccessTimes()
+	{
+		URLCacheIndex index = new URLCacheIndex(directory);
+		index.getOrCreate("http://host/a.png", "bucket", ".png"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		index.getOrCreate("http://host/b.png", "bucket", ".png"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		File journal = new File(directory, URLCacheIndex.JOURNAL_FILENAME);
+		long length = journal.length();
+		index.flushAccessTimes();
+		assertEquals(length, journal.length());
+		index.close();
+	}
+
+	@Test
+	public void testLegacyPropertiesAreMigrated() throws IOException
+	{
+		File bucket = new File(directory, "bucket"); //$NON-NLS-1$
+		bucket.mkdirs();
+		File propertiesFile = new File(bucket, URLCacheIndex.LEGACY_PROPERTIES_FILENAME);
+		Properties properties = new Properties();
+		properties.setProperty("http://host/a.png", "0.png"); //$NON-NLS-1$ //$NON-NLS-2$
+		properties.setProperty("http://host/b.png", "1.png"); //$NON-NLS-1$ //$NON-NLS-2$
+		FileOutputStream fos = new FileOutputStream(propertiesFile);
+		properties.store(fos, null);
+		fos.close();
+
+		URLCacheIndex index = new URLCacheIndex(directory);
+		assertEquals("1.png", index.get("http://host/b.png", "bucket").filename); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		assertEquals("2.png", index.getOrCreate("http://host/c.png", "bucket", ".png").filename); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		assertFalse(propertiesFile.exists());
+		index.close();
+
+		index = new URLCacheIndex(directory);
+		assertEquals(3, index.size());
+		index.close();
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
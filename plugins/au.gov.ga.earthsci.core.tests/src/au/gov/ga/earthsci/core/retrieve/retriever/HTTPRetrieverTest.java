@@ -26,6 +26,9 @@ import java.lang.reflect.Proxy;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.URL;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.jmock.Expectations;
 import org.jmock.Mockery;
@@ -182,6 +185,47 @@ public class HTTPRetrieverTest
 		classUnderTest.retrieve(url, monitor, createRetrievalProperties(), null);
 	}
 
+	@Test
+	public void testPersistentTransportReusesConnections() throws Exception
+	{
+		Assume.assumeTrue(httpServerIsAvailable());
+
+		setServerResponse("/reuse", 200, "reused", false);
+		classUnderTest.setTransport(new PersistentHttpTransport());
+
+		int connections = countConnections(createHttpURL("/reuse"), 10);
+		assertEquals(1, connections);
+	}
+
+	@Test
+	public void testPersistentTransportReusesConnectionsAfterError() throws Exception
+	{
+		Assume.assumeTrue(httpServerIsAvailable());
+
+		setServerResponse("/reuseerror", 403, "forbidden", false);
+		classUnderTest.setTransport(new PersistentHttpTransport());
+
+		int connections = countConnections(createHttpURL("/reuseerror"), 10);
+		assertEquals(1, connections);
+	}
+
+	private int countConnections(URL url, int requests) throws Exception
+	{
+		clientPorts.clear();
+		for (int i = 0; i < requests; i++)
+		{
+			try
+			{
+				classUnderTest.retrieve(url, monitor, createRetrievalProperties(), null);
+			}
+			catch (IOException e)
+			{
+				//expected for error responses
+			}
+		}
+		return clientPorts.size();
+	}
+
 	private static IRetrievalProperties createRetrievalProperties()
 	{
 		RetrievalProperties retrievalProperties = new RetrievalProperties();
@@ -194,6 +238,7 @@ public class HTTPRetrieverTest
 	private static InetSocketAddress serverAddress;
 	private static Class<?> serverClass;
 	private static Object serverInstance;
+	private static final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
 
 	private static URL createHttpURL(String relativePath) throws Exception
 	{
@@ -314,6 +359,12 @@ public class HTTPRetrieverTest
 
 										Object httpExchange = args[0];
 
+										// Record the client port, to count distinct connections
+										InetSocketAddress remoteAddress =
+												(InetSocketAddress) exchangeClass.getMethod("getRemoteAddress").invoke(
+														httpExchange);
+										clientPorts.add(remoteAddress.getPort());
+
 										// Send headers
 										long responseLength =
 												unknownContentLength ? 0 : response == null ? -1
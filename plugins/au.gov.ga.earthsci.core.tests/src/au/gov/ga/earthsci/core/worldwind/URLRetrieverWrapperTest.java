@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.worldwind;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import au.gov.ga.earthsci.core.retrieve.IRetrievalData;
+import au.gov.ga.earthsci.core.retrieve.result.ByteBufferRetrievalData;
+import au.gov.ga.earthsci.core.retrieve.result.FileRetrievalData;
+
+/**
+ * Unit tests for the {@link URLRetrieverWrapper} class
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class URLRetrieverWrapperTest
+{
+	private File file;
+
+	@After
+	public void tearDown()
+	{
+		if (file != null)
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testLargeFileIsMapped() throws Exception
+	{
+		IRetrievalData data = new FileRetrievalData(createFile((int) URLRetrieverWrapper.MIN_MAPPED_LENGTH), null);
+
+		ByteBuffer buffer = URLRetrieverWrapper.readBuffer(data);
+
+		assertTrue(buffer instanceof MappedByteBuffer);
+		assertEquals(URLRetrieverWrapper.MIN_MAPPED_LENGTH, buffer.remaining());
+		assertEquals(7, buffer.get(7));
+	}
+
+	@Test
+	public void testSmallFileIsCopied() throws Exception
+	{
+		IRetrievalData data = new FileRetrievalData(createFile(1000), null);
+
+		ByteBuffer buffer = URLRetrieverWrapper.readBuffer(data);
+
+		assertFalse(buffer instanceof MappedByteBuffer);
+		assertEquals(1000, buffer.remaining());
+		assertEquals(7, buffer.get(7));
+	}
+
+	@Test
+	public void testInMemoryDataIsNotMapped() throws Exception
+	{
+		ByteBuffer original = ByteBuffer.allocate((int) URLRetrieverWrapper.MIN_MAPPED_LENGTH);
+		IRetrievalData data = new ByteBufferRetrievalData(new URL("http://localhost/large"), original, null); //$NON-NLS-1$
+
+		ByteBuffer buffer = URLRetrieverWrapper.readBuffer(data);
+
+		assertFalse(buffer instanceof MappedByteBuffer);
+		assertEquals(original.capacity(), buffer.remaining());
+	}
+
+	private File createFile(int length) throws Exception
+	{
+		file = File.createTempFile("retrieved", ".dat"); //$NON-NLS-1$ //$NON-NLS-2$
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+		{
+			bytes[i] = (byte) (i % 100);
+		}
+		FileOutputStream os = new FileOutputStream(file);
+		try
+		{
+			os.write(bytes);
+		}
+		finally
+		{
+			os.close();
+		}
+		return file;
+	}
+}
@@ -0,0 +1,439 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.worldwind;
+
+import static org.junit.Assert.*;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.retrieve.HTTPRetriever;
+import gov.nasa.worldwind.retrieve.RetrievalFuture;
+import gov.nasa.worldwind.retrieve.RetrievalPostProcessor;
+import gov.nasa.worldwind.retrieve.Retriever;
+
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.earthsci.core.retrieve.IRetrieval;
+import au.gov.ga.earthsci.core.retrieve.IRetrievalData;
+import au.gov.ga.earthsci.core.retrieve.IRetrievalProperties;
+import au.gov.ga.earthsci.core.retrieve.IRetrievalResult;
+import au.gov.ga.earthsci.core.retrieve.IRetriever;
+import au.gov.ga.earthsci.core.retrieve.IRetrieverFactory;
+import au.gov.ga.earthsci.core.retrieve.IRetrieverMonitor;
+import au.gov.ga.earthsci.core.retrieve.RetrievalProperties;
+import au.gov.ga.earthsci.core.retrieve.RetrievalService;
+import au.gov.ga.earthsci.core.retrieve.RetrievalServiceFactory;
+import au.gov.ga.earthsci.core.retrieve.RetrieverResult;
+import au.gov.ga.earthsci.core.retrieve.RetrieverResultStatus;
+import au.gov.ga.earthsci.core.retrieve.result.BasicRetrievalResult;
+import au.gov.ga.earthsci.core.retrieve.result.ByteBufferRetrievalData;
+import au.gov.ga.earthsci.worldwind.common.retrieve.RetrievalPrioritizer;
+import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
+
+/**
+ * Unit tests for the {@link WorldWindRetrievalService} class, using a
+ * retriever that simulates a tile server's latency.
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class WorldWindRetrievalServiceTest
+{
+	private final static int TILE_COUNT = 60;
+	private final static long TILE_LATENCY = 20;
+	private final static int MAX_CONCURRENT = 12;
+
+	private final Map<String, Thread> retrievalThreads = new ConcurrentHashMap<String, Thread>();
+	private final List<String> retrievalOrder = Collections.synchronizedList(new ArrayList<String>());
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+	private volatile CountDownLatch blockRetrievals;
+	private volatile boolean unsupportedURLs;
+
+	private WorldWindRetrievalService classUnderTest;
+	private RetrievalService retrievalService;
+
+	@Before
+	public void setup()
+	{
+		final IRetriever tileServer = new IRetriever()
+		{
+			@Override
+			public boolean supports(URL url)
+			{
+				return true;
+			}
+
+			@Override
+			public IRetrievalData checkCache(URL url)
+			{
+				return null;
+			}
+
+			@Override
+			public RetrieverResult retrieve(URL url, IRetrieverMonitor monitor,
+					IRetrievalProperties retrievalProperties, IRetrievalData cachedData) throws Exception
+			{
+				retrievalThreads.put(url.toString(), Thread.currentThread());
+				retrievalOrder.add(url.toString());
+				int count = inFlight.incrementAndGet();
+				try
+				{
+					int max;
+					while ((max = maxInFlight.get()) < count && !maxInFlight.compareAndSet(max, count))
+					{
+					}
+					CountDownLatch block = blockRetrievals;
+					if (block != null)
+					{
+						block.await(5, TimeUnit.SECONDS);
+					}
+					Thread.sleep(TILE_LATENCY);
+				}
+				finally
+				{
+					inFlight.decrementAndGet();
+				}
+				ByteBuffer buffer = ByteBuffer.wrap(url.toString().getBytes("UTF-8")); //$NON-NLS-1$
+				IRetrievalData data = new ByteBufferRetrievalData(url, buffer, "image/png"); //$NON-NLS-1$
+				return new RetrieverResult(new BasicRetrievalResult(data, false), RetrieverResultStatus.COMPLETE);
+			}
+		};
+		retrievalService = new RetrievalService(new IRetrieverFactory()
+		{
+			@Override
+			public IRetriever getRetriever(URL url)
+			{
+				if (unsupportedURLs)
+				{
+					throw new IllegalStateException("Unsupported url: " + url); //$NON-NLS-1$
+				}
+				return tileServer;
+			}
+
+			@Override
+			public void registerRetriever(IRetriever retriever)
+			{
+			}
+
+			@Override
+			public IRetriever[] getRetrievers()
+			{
+				return new IRetriever[] { tileServer };
+			}
+		});
+		retrievalService.setRetrievalLimits(MAX_CONCURRENT, MAX_CONCURRENT);
+		new RetrievalServiceFactory().setup(retrievalService);
+
+		classUnderTest = new WorldWindRetrievalService();
+		//url retrievals shouldn't depend on the World Wind thread pool
+		classUnderTest.setRetrieverPoolSize(1);
+	}
+
+	@After
+	public void tearDown()
+	{
+		blockRetrievals = null;
+		classUnderTest.shutdown(true);
+		retrievalService.cancelAll();
+	}
+
+	@Test
+	public void testPostProcessorRunsOnRetrievalThread() throws Exception
+	{
+		final Map<String, Thread> postProcessThreads = new ConcurrentHashMap<String, Thread>();
+		final Map<String, String> contents = new ConcurrentHashMap<String, String>();
+		RetrievalPostProcessor postProcessor = new RetrievalPostProcessor()
+		{
+			@Override
+			public ByteBuffer run(Retriever retriever)
+			{
+				String url = retriever.getName();
+				postProcessThreads.put(url, Thread.currentThread());
+				ByteBuffer buffer = retriever.getBuffer();
+				byte[] bytes = new byte[buffer.remaining()];
+				buffer.get(bytes);
+				contents.put(url, new String(bytes));
+				return buffer;
+			}
+		};
+
+		List<RetrievalFuture> futures = runRetrievers(postProcessor);
+		for (RetrievalFuture future : futures)
+		{
+			assertNotNull(future.get(10, TimeUnit.SECONDS));
+			assertTrue(future.isDone());
+		}
+
+		assertEquals(TILE_COUNT, contents.size());
+		for (int i = 0; i < TILE_COUNT; i++)
+		{
+			String url = createURL(i).toString();
+			assertEquals(url, contents.get(url));
+			//the tile is downloaded and post processed by the same thread
+			assertSame(retrievalThreads.get(url), postProcessThreads.get(url));
+		}
+		assertEquals(0, classUnderTest.getNumRetrieversPending());
+		assertFalse(classUnderTest.hasActiveTasks());
+	}
+
+	@Test
+	public void testThroughputIsNotLimitedByThreadPool() throws Exception
+	{
+		final CountDownLatch postProcessed = new CountDownLatch(TILE_COUNT);
+		RetrievalPostProcessor postProcessor = new RetrievalPostProcessor()
+		{
+			@Override
+			public ByteBuffer run(Retriever retriever)
+			{
+				postProcessed.countDown();
+				return retriever.getBuffer();
+			}
+		};
+
+		long start = System.currentTimeMillis();
+		runRetrievers(postProcessor);
+		assertTrue(postProcessed.await(10, TimeUnit.SECONDS));
+		long elapsed = System.currentTimeMillis() - start;
+
+		//with a single pool thread, the previous implementation downloaded one tile at a time
+		assertTrue(maxInFlight.get() > 1);
+		assertTrue(maxInFlight.get() <= MAX_CONCURRENT);
+		assertTrue("Retrieving " + TILE_COUNT + " tiles took " + elapsed + "ms", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				elapsed < TILE_COUNT * TILE_LATENCY);
+	}
+
+	@Test
+	public void testDuplicateRetrieversAreNotRun() throws Exception
+	{
+		blockRetrievals = new CountDownLatch(1);
+		final AtomicInteger postProcessCount = new AtomicInteger();
+		RetrievalPostProcessor postProcessor = new RetrievalPostProcessor()
+		{
+			@Override
+			public ByteBuffer run(Retriever retriever)
+			{
+				postProcessCount.incrementAndGet();
+				return retriever.getBuffer();
+			}
+		};
+
+		HTTPRetriever retriever = new HTTPRetriever(createURL(0), postProcessor);
+		RetrievalFuture future = classUnderTest.runRetriever(retriever, 0);
+		assertNotNull(future);
+		assertTrue(classUnderTest.contains(retriever));
+		assertNull(classUnderTest.runRetriever(new HTTPRetriever(createURL(0), postProcessor), 0));
+		assertEquals(1, classUnderTest.getNumRetrieversPending());
+
+		blockRetrievals.countDown();
+		future.get(10, TimeUnit.SECONDS);
+		assertEquals(1, postProcessCount.get());
+		assertFalse(classUnderTest.contains(retriever));
+	}
+
+	@Test
+	public void testReprioritizeCancelsAndReordersQueuedRetrievals() throws Exception
+	{
+		//retrieve one tile at a time, and block the first so that the rest stay queued
+		retrievalService.setRetrievalLimits(1, 1);
+		blockRetrievals = new CountDownLatch(1);
+		final Map<String, Boolean> postProcessed = new ConcurrentHashMap<String, Boolean>();
+		RetrievalPostProcessor postProcessor = new RetrievalPostProcessor()
+		{
+			@Override
+			public ByteBuffer run(Retriever retriever)
+			{
+				postProcessed.put(retriever.getName(), Boolean.TRUE);
+				return retriever.getBuffer();
+			}
+		};
+
+		List<RetrievalFuture> futures = new ArrayList<RetrievalFuture>();
+		for (int i = 0; i < TILE_COUNT; i++)
+		{
+			final int index = i;
+			HTTPRetriever retriever = new HTTPRetriever(createURL(i), postProcessor);
+			retriever.setValue(AVKeyMore.RETRIEVAL_PRIORITIZER, new RetrievalPrioritizer()
+			{
+				@Override
+				public double getRetrievalPriority(DrawContext dc)
+				{
+					//odd tiles have left the view, and the view has moved towards the last tiles
+					return index % 2 == 1 ? Double.NaN : TILE_COUNT - index;
+				}
+			});
+			futures.add(classUnderTest.runRetriever(retriever, index));
+		}
+		long timeout = System.currentTimeMillis() + 5000;
+		while (inFlight.get() == 0 && System.currentTimeMillis() < timeout)
+		{
+			Thread.sleep(5);
+		}
+		assertEquals(1, inFlight.get());
+
+		classUnderTest.reprioritize(null);
+		assertEquals(TILE_COUNT / 2, classUnderTest.getCancelledCount());
+
+		blockRetrievals.countDown();
+		for (RetrievalFuture future : futures)
+		{
+			future.get(10, TimeUnit.SECONDS);
+		}
+
+		assertEquals(TILE_COUNT / 2, classUnderTest.getCompletedCount());
+		assertEquals(TILE_COUNT / 2, postProcessed.size());
+		List<String> expectedOrder = new ArrayList<String>();
+		expectedOrder.add(createURL(0).toString());
+		for (int i = TILE_COUNT - 2; i > 0; i -= 2)
+		{
+			expectedOrder.add(createURL(i).toString());
+		}
+		assertEquals(expectedOrder, retrievalOrder);
+		for (String url : expectedOrder)
+		{
+			assertTrue(postProcessed.containsKey(url));
+		}
+		assertEquals(0, classUnderTest.getNumRetrieversPending());
+	}
+
+	@Test
+	public void testCancelOnlyCancelsRetrievalWithNoOtherCallers() throws Exception
+	{
+		blockRetrievals = new CountDownLatch(1);
+		final AtomicInteger postProcessCount = new AtomicInteger();
+		RetrievalPostProcessor postProcessor = new RetrievalPostProcessor()
+		{
+			@Override
+			public ByteBuffer run(Retriever retriever)
+			{
+				postProcessCount.incrementAndGet();
+				return retriever.getBuffer();
+			}
+		};
+
+		HTTPRetriever retriever = new HTTPRetriever(createURL(0), postProcessor);
+		RetrievalFuture future = classUnderTest.runRetriever(retriever, 0);
+		IRetrieval shared = retrievalService.retrieve(this, createURL(0), new RetrievalProperties());
+
+		assertTrue(future.cancel(true));
+		assertNotNull(future.get(10, TimeUnit.SECONDS));
+		assertTrue(future.isCancelled());
+		assertFalse(classUnderTest.contains(retriever));
+
+		//the other caller still receives the result
+		assertFalse(shared.isCanceled());
+		blockRetrievals.countDown();
+		IRetrievalResult result = shared.waitAndGetResult();
+		assertNotNull(result);
+		assertNotNull(result.getData());
+		assertEquals(0, postProcessCount.get());
+		assertEquals(0, classUnderTest.getCompletedCount());
+	}
+
+	@Test
+	public void testFailureToStartCompletesFuture() throws Exception
+	{
+		RetrievalPostProcessor postProcessor = new RetrievalPostProcessor()
+		{
+			@Override
+			public ByteBuffer run(Retriever retriever)
+			{
+				return retriever.getBuffer();
+			}
+		};
+
+		unsupportedURLs = true;
+		HTTPRetriever retriever = new HTTPRetriever(createURL(0), postProcessor);
+		RetrievalFuture future = classUnderTest.runRetriever(retriever, 0);
+		assertNotNull(future);
+		assertTrue(future.isDone());
+		assertFalse(classUnderTest.contains(retriever));
+		assertEquals(0, classUnderTest.getNumRetrieversPending());
+
+		//the url can be requested again
+		unsupportedURLs = false;
+		future = classUnderTest.runRetriever(new HTTPRetriever(createURL(0), postProcessor), 0);
+		assertNotNull(future);
+		future.get(10, TimeUnit.SECONDS);
+		assertEquals(1, classUnderTest.getCompletedCount());
+	}
+
+	@Test
+	public void testElevationPrioritiesStayAheadOfImagery()
+	{
+		//elevation tiles use -1/(1+distance), imagery the distance, and prefetched tiles a large constant
+		int nearElevation = WorldWindRetrievalService.toRetrievalPriority(-1d / (1d + 10));
+		int farElevation = WorldWindRetrievalService.toRetrievalPriority(-1d / (1d + 1e6));
+		int nearImagery = WorldWindRetrievalService.toRetrievalPriority(0);
+		int farImagery = WorldWindRetrievalService.toRetrievalPriority(1e6);
+		int prefetch = WorldWindRetrievalService.toRetrievalPriority(1e12);
+
+		assertTrue(nearElevation > farElevation);
+		assertTrue(farElevation > nearImagery);
+		assertTrue(nearImagery > farImagery);
+		assertTrue(farImagery > prefetch);
+	}
+
+	@Test
+	public void testFarAwayTilesKeepTheirOrder()
+	{
+		//beyond the range where a linear mapping saturates
+		int farElevation = WorldWindRetrievalService.toRetrievalPriority(-1e4);
+		int fartherElevation = WorldWindRetrievalService.toRetrievalPriority(-5e3);
+		int farImagery = WorldWindRetrievalService.toRetrievalPriority(3e9);
+		int fartherImagery = WorldWindRetrievalService.toRetrievalPriority(6e9);
+
+		assertTrue(farElevation > fartherElevation);
+		assertTrue(fartherElevation > farImagery);
+		assertTrue(farImagery > fartherImagery);
+		assertTrue(WorldWindRetrievalService.toRetrievalPriority(-Double.MAX_VALUE) > farElevation);
+		assertTrue(WorldWindRetrievalService.toRetrievalPriority(Double.MAX_VALUE) < fartherImagery);
+	}
+
+	private List<RetrievalFuture> runRetrievers(RetrievalPostProcessor postProcessor)
+	{
+		List<RetrievalFuture> futures = new ArrayList<RetrievalFuture>();
+		for (int i = 0; i < TILE_COUNT; i++)
+		{
+			RetrievalFuture future = classUnderTest.runRetriever(new HTTPRetriever(createURL(i), postProcessor), 0);
+			assertNotNull(future);
+			futures.add(future);
+		}
+		return futures;
+	}
+
+	private static URL createURL(int index)
+	{
+		try
+		{
+			return new URL("http://localhost/tiles/" + index + ".png"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		catch (Exception e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+}
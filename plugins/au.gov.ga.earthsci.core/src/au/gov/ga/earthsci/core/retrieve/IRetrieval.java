@@ -107,6 +107,16 @@ public interface IRetrieval extends IPropertyChangeBean
 	 */
 	void cancel();
 
+	/**
+	 * Change the priority of this retrieval. Only has an effect if this
+	 * retrieval has been started and is still waiting to be scheduled.
+	 * 
+	 * @param priority
+	 *            New priority; higher priority retrievals are scheduled first
+	 * @see IRetrievalProperties#getPriority()
+	 */
+	void reprioritize(int priority);
+
 	/**
 	 * @return Is or was this retrieval canceled?
 	 */
@@ -19,6 +19,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 
 /**
  * Provides access to a retrieved result's data.
@@ -53,8 +54,9 @@ public interface IRetrievalData
 	 * Return a ByteBuffer containing the retrieved resource. Some
 	 * implementations create this buffer lazily when this method is called.
 	 * <p/>
-	 * For large resources, using {@link #getInputStream()} is preferred as the
-	 * resource is not first loaded into memory.
+	 * For large resources, using {@link #getInputStream()} or
+	 * {@link #getMappedByteBuffer()} is preferred as the resource is not first
+	 * loaded into memory.
 	 * 
 	 * @return A ByteBuffer containing the retrieved resource.
 	 * @throws IOException
@@ -62,6 +64,19 @@ public interface IRetrievalData
 	 */
 	ByteBuffer getByteBuffer() throws IOException;
 
+	/**
+	 * Return a read-only buffer that maps the retrieved resource into memory
+	 * directly from a local file (such as a complete cache entry), without
+	 * copying it onto the heap. Cached resources are not evicted from the
+	 * cache while the returned buffer is reachable.
+	 * 
+	 * @return A read-only mapped buffer containing the retrieved resource, or
+	 *         null if the resource is not stored in a local file
+	 * @throws IOException
+	 *             If an IO error occurs when mapping the resource.
+	 */
+	MappedByteBuffer getMappedByteBuffer() throws IOException;
+
 	/**
 	 * Create a File object pointing at the retrieved resource.
 	 * <p/>
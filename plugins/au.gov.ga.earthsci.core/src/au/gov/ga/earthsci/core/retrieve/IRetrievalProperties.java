@@ -66,4 +66,14 @@ public interface IRetrievalProperties
 	 * @return Should the retriever save the result to a file?
 	 */
 	boolean isFileRequired();
+
+	/**
+	 * The priority of the retrieval. When the number of simultaneous
+	 * retrievals is limited, retrievals with a higher priority are started
+	 * before those with a lower priority; for example, resources that are
+	 * currently visible should have a higher priority than prefetched ones.
+	 * 
+	 * @return Priority of the retrieval
+	 */
+	int getPriority();
 }
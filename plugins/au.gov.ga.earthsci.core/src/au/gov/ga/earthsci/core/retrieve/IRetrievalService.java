@@ -17,6 +17,8 @@ package au.gov.ga.earthsci.core.retrieve;
 
 import java.net.URL;
 
+import au.gov.ga.earthsci.core.retrieve.cache.URLCacheStatistics;
+
 /**
  * A service for retrieving resources.
  * 
@@ -141,4 +143,23 @@ public interface IRetrievalService
 	 *            Caller that was being listened for
 	 */
 	void removeListener(IRetrievalServiceListener listener, Object caller);
+
+	/**
+	 * @return Number of started retrievals that are waiting for a free
+	 *         connection
+	 */
+	int getQueuedCount();
+
+	/**
+	 * @return Number of retrievals that are currently running
+	 */
+	int getActiveCount();
+
+	/**
+	 * Get the combined usage statistics of the caches used by the registered
+	 * {@link IRetriever}s.
+	 * 
+	 * @return Cache usage statistics
+	 */
+	URLCacheStatistics getCacheStatistics();
 }
@@ -42,4 +42,10 @@ public interface IRetrieverFactory
 	 *            {@link IRetriever} to register
 	 */
 	void registerRetriever(IRetriever retriever);
+
+	/**
+	 * @return All registered {@link IRetriever}s, not including the default
+	 *         retriever
+	 */
+	IRetriever[] getRetrievers();
 }
@@ -36,6 +36,7 @@ public class Retrieval extends AbstractPropertyChangeBean implements IRetrieval,
 	private final URL url;
 	private final IRetrievalProperties retrievalProperties;
 	private final IRetriever retriever;
+	private final RetrievalDispatcher dispatcher;
 
 	private RetrievalStatus status = RetrievalStatus.NOT_STARTED;
 	private long position = 0;
@@ -45,6 +46,8 @@ public class Retrieval extends AbstractPropertyChangeBean implements IRetrieval,
 
 	private final Object jobSemaphore = new Object();
 	private RetrievalJob job;
+	private boolean completing = false;
+	private Thread completingThread;
 	private boolean canceled = false;
 	private boolean paused = false;
 	private final Object pausedSemaphore = new Object();
@@ -53,11 +56,33 @@ public class Retrieval extends AbstractPropertyChangeBean implements IRetrieval,
 	private IRetrievalResult result;
 
 	public Retrieval(Object caller, URL url, IRetrievalProperties retrievalProperties, IRetriever retriever)
+	{
+		this(caller, url, retrievalProperties, retriever, null);
+	}
+
+	/**
+	 * Create a new retrieval.
+	 * 
+	 * @param caller
+	 *            Object requesting the retrieval
+	 * @param url
+	 *            URL to retrieve
+	 * @param retrievalProperties
+	 *            Properties to use when retrieving the URL
+	 * @param retriever
+	 *            Retriever used to retrieve the URL
+	 * @param dispatcher
+	 *            Dispatcher that schedules this retrieval's job; if null, the
+	 *            job is scheduled immediately when the retrieval is started
+	 */
+	public Retrieval(Object caller, URL url, IRetrievalProperties retrievalProperties, IRetriever retriever,
+			RetrievalDispatcher dispatcher)
 	{
 		addCaller(caller);
 		this.url = url;
 		this.retrievalProperties = retrievalProperties;
 		this.retriever = retriever;
+		this.dispatcher = dispatcher;
 	}
 
 	void addCaller(Object caller)
@@ -155,56 +180,99 @@ public class Retrieval extends AbstractPropertyChangeBean implements IRetrieval,
 	@Override
 	public void start()
 	{
+		RetrievalJob startedJob;
 		synchronized (jobSemaphore)
 		{
-			if (job == null)
+			if (job != null)
+			{
+				return;
+			}
+			job = new RetrievalJob(this);
+			setPaused(false);
+			setCanceled(false);
+			job.addJobChangeListener(new JobChangeAdapter()
 			{
-				job = new RetrievalJob(this);
-				setPaused(false);
-				setCanceled(false);
-				job.addJobChangeListener(new JobChangeAdapter()
+				@Override
+				public void done(IJobChangeEvent event)
 				{
-					@Override
-					public void done(IJobChangeEvent event)
-					{
-						RetrieverResult rr = job.getRetrievalResult();
-
-						//ensure the retriever's paused/canceled state matches the result:
-						boolean wasPaused = rr == null ? false : rr.status == RetrieverResultStatus.PAUSED;
-						boolean wasCanceled = rr == null ? true : rr.status == RetrieverResultStatus.CANCELED;
-						setPaused(wasPaused);
-						setCanceled(wasCanceled);
-
-						synchronized (jobSemaphore)
-						{
-							job.removeJobChangeListener(this);
-							job = null;
-						}
-
-						synchronized (listenersMutex)
-						{
-							result = rr == null ? null : rr.result;
-							if (wasPaused)
-							{
-								listeners.paused(Retrieval.this);
-							}
-							else
-							{
-								listeners.complete(Retrieval.this);
-							}
-						}
-					}
-				});
-				try
+					RetrievalJob job = (RetrievalJob) event.getJob();
+					job.removeJobChangeListener(this);
+					jobDone(job, job.getRetrievalResult());
+				}
+			});
+			startedJob = job;
+			if (dispatcher != null)
+			{
+				updateStatus(RetrievalStatus.QUEUED);
+			}
+		}
+
+		//schedule outside the lock, as a job that can't be scheduled completes immediately
+		if (dispatcher != null)
+		{
+			dispatcher.submit(startedJob, url, retrievalProperties.getPriority());
+		}
+		else
+		{
+			try
+			{
+				startedJob.schedule();
+			}
+			catch (IllegalStateException e)
+			{
+				//job manager shutdown, so the job will never run
+				startedJob.notScheduled(e);
+			}
+		}
+	}
+
+	void jobDone(RetrievalJob doneJob, RetrieverResult rr)
+	{
+		synchronized (jobSemaphore)
+		{
+			if (job != doneJob)
+			{
+				return;
+			}
+		}
+
+		//ensure the retriever's paused/canceled state matches the result:
+		boolean wasPaused = rr == null ? false : rr.status == RetrieverResultStatus.PAUSED;
+		boolean wasCanceled = rr == null ? true : rr.status == RetrieverResultStatus.CANCELED;
+		setPaused(wasPaused);
+		setCanceled(wasCanceled);
+
+		synchronized (jobSemaphore)
+		{
+			job = null;
+			completing = true;
+			completingThread = Thread.currentThread();
+		}
+
+		try
+		{
+			synchronized (listenersMutex)
+			{
+				result = rr == null ? null : rr.result;
+				if (wasPaused)
 				{
-					job.schedule();
+					listeners.paused(Retrieval.this);
 				}
-				catch (IllegalStateException e)
+				else
 				{
-					//job manager shutdown, ignore
+					listeners.complete(Retrieval.this);
 				}
 			}
 		}
+		finally
+		{
+			synchronized (jobSemaphore)
+			{
+				completing = false;
+				completingThread = null;
+				jobSemaphore.notifyAll();
+			}
+		}
 	}
 
 	@Override
@@ -241,13 +309,35 @@ public class Retrieval extends AbstractPropertyChangeBean implements IRetrieval,
 	@Override
 	public void cancel()
 	{
+		RetrievalJob queuedJob;
 		synchronized (jobSemaphore)
 		{
 			//can only cancel a currently running job
-			if (job != null)
+			if (job == null)
+			{
+				return;
+			}
+			setCanceled(true);
+			if (dispatcher == null || !dispatcher.remove(job))
 			{
-				setCanceled(true);
 				job.cancel();
+				return;
+			}
+			queuedJob = job;
+		}
+
+		//job was still queued in the dispatcher, so it will never run
+		jobDone(queuedJob, null);
+	}
+
+	@Override
+	public void reprioritize(int priority)
+	{
+		synchronized (jobSemaphore)
+		{
+			if (job != null && dispatcher != null)
+			{
+				dispatcher.reprioritize(job, priority);
 			}
 		}
 	}
@@ -305,15 +395,15 @@ public class Retrieval extends AbstractPropertyChangeBean implements IRetrieval,
 
 	private boolean joinJob() throws InterruptedException
 	{
-		RetrievalJob job;
 		synchronized (jobSemaphore)
 		{
-			job = this.job;
-		}
-		if (job != null)
-		{
-			job.join();
-			return true;
+			//listeners calling this method while being informed of completion already have the result
+			if (job != null || (completing && completingThread != Thread.currentThread()))
+			{
+				//notified by jobDone once the result has been set and listeners informed
+				jobSemaphore.wait();
+				return true;
+			}
 		}
 		return false;
 	}
@@ -0,0 +1,377 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+
+/**
+ * Limits the number of {@link RetrievalJob}s that are scheduled at once, both
+ * in total and per host. Jobs submitted while the limits are reached are
+ * queued, and are scheduled in order of their retrieval's
+ * {@link IRetrievalProperties#getPriority() priority} (and then in submission
+ * order) as running jobs finish.
+ * <p/>
+ * Queued jobs are kept in a queue per host. Hosts that have queued jobs and
+ * are below the per-host limit are kept in a ready set ordered by their
+ * highest priority job, so hosts that are at their limit are never visited
+ * when scheduling.
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class RetrievalDispatcher
+{
+	public final static int DEFAULT_MAX_CONCURRENT = 16;
+	public final static int DEFAULT_MAX_PER_HOST = 6;
+
+	private final Map<String, HostQueue> hosts = new HashMap<String, HostQueue>();
+	private final TreeSet<HostQueue> ready = new TreeSet<HostQueue>();
+	private final Map<RetrievalJob, QueuedJob> queuedJobs = new HashMap<RetrievalJob, QueuedJob>();
+	private int maxConcurrent = DEFAULT_MAX_CONCURRENT;
+	private int maxPerHost = DEFAULT_MAX_PER_HOST;
+	private int activeCount = 0;
+	private long sequence = 0;
+
+	/**
+	 * Set the scheduling limits. Values less than or equal to 0 remove the
+	 * corresponding limit.
+	 *
+	 * @param maxConcurrent
+	 *            Maximum number of jobs scheduled at once
+	 * @param maxPerHost
+	 *            Maximum number of jobs scheduled at once for a single host
+	 */
+	public void setLimits(int maxConcurrent, int maxPerHost)
+	{
+		synchronized (hosts)
+		{
+			this.maxConcurrent = maxConcurrent;
+			this.maxPerHost = maxPerHost;
+
+			//the per-host limit decides which hosts are ready
+			ready.clear();
+			for (HostQueue host : hosts.values())
+			{
+				if (isReady(host))
+				{
+					ready.add(host);
+				}
+			}
+		}
+		dispatch();
+	}
+
+	/**
+	 * Submit a job for scheduling. The job is scheduled immediately if the
+	 * limits allow, otherwise it is queued. If the job can't be scheduled
+	 * because the job manager has been shut down, the job's retrieval is
+	 * completed with an error.
+	 *
+	 * @param job
+	 *            Job to schedule
+	 * @param url
+	 *            URL retrieved by the job, used for the per-host limit
+	 * @param priority
+	 *            Priority of the job; higher priority jobs are scheduled first
+	 */
+	public void submit(RetrievalJob job, URL url, int priority)
+	{
+		synchronized (hosts)
+		{
+			String key = hostKey(url);
+			HostQueue host = hosts.get(key);
+			if (host == null)
+			{
+				host = new HostQueue(key);
+				hosts.put(key, host);
+			}
+			final QueuedJob queued = new QueuedJob(job, host, priority, sequence++);
+			job.addJobChangeListener(new JobChangeAdapter()
+			{
+				@Override
+				public void done(IJobChangeEvent event)
+				{
+					event.getJob().removeJobChangeListener(this);
+					finished(queued);
+				}
+			});
+			unready(host);
+			host.jobs.add(queued);
+			queuedJobs.put(job, queued);
+			update(host);
+		}
+		dispatch();
+	}
+
+	/**
+	 * Remove a job that hasn't been scheduled yet from the queue.
+	 *
+	 * @param job
+	 *            Job to remove
+	 * @return True if the job was queued and has been removed, false if it has
+	 *         already been scheduled (or was never submitted)
+	 */
+	public boolean remove(RetrievalJob job)
+	{
+		synchronized (hosts)
+		{
+			QueuedJob queued = queuedJobs.remove(job);
+			if (queued == null)
+			{
+				return false;
+			}
+			HostQueue host = queued.host;
+			unready(host);
+			host.jobs.remove(queued);
+			update(host);
+			return true;
+		}
+	}
+
+	/**
+	 * Change the priority of a job that hasn't been scheduled yet.
+	 *
+	 * @param job
+	 *            Job to reprioritize
+	 * @param priority
+	 *            New priority of the job; higher priority jobs are scheduled
+	 *            first
+	 * @return True if the job was queued and has been reprioritized, false if
+	 *         it has already been scheduled (or was never submitted)
+	 */
+	public boolean reprioritize(RetrievalJob job, int priority)
+	{
+		synchronized (hosts)
+		{
+			QueuedJob queued = queuedJobs.get(job);
+			if (queued == null || queued.priority == priority)
+			{
+				return queued != null;
+			}
+			//the queues are sorted by priority, so the job must be removed before changing it
+			HostQueue host = queued.host;
+			unready(host);
+			host.jobs.remove(queued);
+			queued.priority = priority;
+			host.jobs.add(queued);
+			update(host);
+			return true;
+		}
+	}
+
+	/**
+	 * @return Number of jobs waiting to be scheduled
+	 */
+	public int getQueuedCount()
+	{
+		synchronized (hosts)
+		{
+			return queuedJobs.size();
+		}
+	}
+
+	/**
+	 * @return Number of jobs that have been scheduled and haven't finished
+	 */
+	public int getActiveCount()
+	{
+		synchronized (hosts)
+		{
+			return activeCount;
+		}
+	}
+
+	/**
+	 * Schedule the given job with the job manager. Called outside the
+	 * dispatcher's lock.
+	 *
+	 * @throws IllegalStateException
+	 *             If the job manager has been shut down
+	 */
+	void schedule(RetrievalJob job)
+	{
+		job.schedule();
+	}
+
+	private void finished(QueuedJob queued)
+	{
+		if (release(queued))
+		{
+			dispatch();
+		}
+	}
+
+	/**
+	 * Free the slot used by a scheduled job.
+	 *
+	 * @return True if the job was scheduled
+	 */
+	private boolean release(QueuedJob queued)
+	{
+		synchronized (hosts)
+		{
+			if (!queued.scheduled)
+			{
+				return false;
+			}
+			queued.scheduled = false;
+			activeCount--;
+			HostQueue host = queued.host;
+			unready(host);
+			host.active--;
+			update(host);
+			return true;
+		}
+	}
+
+	private void dispatch()
+	{
+		//jobs that fail to schedule free their slot, so keep going until every queued job that fits is handled
+		boolean failed = true;
+		while (failed)
+		{
+			failed = false;
+			//schedule outside the lock, as scheduling can synchronously call job listeners
+			for (QueuedJob queued : takeSchedulable())
+			{
+				try
+				{
+					schedule(queued.job);
+				}
+				catch (IllegalStateException e)
+				{
+					//job manager shutdown, so the job will never run
+					release(queued);
+					queued.job.notScheduled(e);
+					failed = true;
+				}
+			}
+		}
+	}
+
+	private List<QueuedJob> takeSchedulable()
+	{
+		List<QueuedJob> toSchedule = new ArrayList<QueuedJob>();
+		synchronized (hosts)
+		{
+			while (!ready.isEmpty() && (maxConcurrent <= 0 || activeCount < maxConcurrent))
+			{
+				HostQueue host = ready.pollFirst();
+				QueuedJob queued = host.jobs.pollFirst();
+				queuedJobs.remove(queued.job);
+				queued.scheduled = true;
+				activeCount++;
+				host.active++;
+				update(host);
+				toSchedule.add(queued);
+			}
+		}
+		return toSchedule;
+	}
+
+	private boolean isReady(HostQueue host)
+	{
+		return !host.jobs.isEmpty() && (maxPerHost <= 0 || host.active < maxPerHost);
+	}
+
+	/**
+	 * Remove the host from the ready set; must be called before the host's
+	 * queue or active count is changed, as the ready set is sorted by the
+	 * host's queue.
+	 */
+	private void unready(HostQueue host)
+	{
+		if (!host.jobs.isEmpty())
+		{
+			ready.remove(host);
+		}
+	}
+
+	/**
+	 * Add the host back into the ready set if it is ready, or forget it if
+	 * it has no jobs.
+	 */
+	private void update(HostQueue host)
+	{
+		if (isReady(host))
+		{
+			ready.add(host);
+		}
+		else if (host.jobs.isEmpty() && host.active <= 0)
+		{
+			hosts.remove(host.key);
+		}
+	}
+
+	private static String hostKey(URL url)
+	{
+		String host = url.getHost();
+		return host == null ? "" : host.toLowerCase(); //$NON-NLS-1$
+	}
+
+	private static class HostQueue implements Comparable<HostQueue>
+	{
+		private final String key;
+		private final TreeSet<QueuedJob> jobs = new TreeSet<QueuedJob>();
+		private int active = 0;
+
+		private HostQueue(String key)
+		{
+			this.key = key;
+		}
+
+		@Override
+		public int compareTo(HostQueue o)
+		{
+			//only hosts with queued jobs are compared
+			return jobs.first().compareTo(o.jobs.first());
+		}
+	}
+
+	private static class QueuedJob implements Comparable<QueuedJob>
+	{
+		private final RetrievalJob job;
+		private final HostQueue host;
+		private final long sequence;
+		private int priority;
+		private boolean scheduled = false;
+
+		private QueuedJob(RetrievalJob job, HostQueue host, int priority, long sequence)
+		{
+			this.job = job;
+			this.host = host;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(QueuedJob o)
+		{
+			if (priority != o.priority)
+			{
+				return priority > o.priority ? -1 : 1;
+			}
+			return sequence < o.sequence ? -1 : sequence == o.sequence ? 0 : 1;
+		}
+	}
+}
@@ -119,6 +119,20 @@ public class RetrievalJob extends Job
 		return JobStatus.OK_STATUS;
 	}
 
+	/**
+	 * Called instead of running the job if the job couldn't be scheduled (for
+	 * example if the job manager has been shut down). Completes the job's
+	 * retrieval with an error.
+	 * 
+	 * @param e
+	 *            Exception thrown when scheduling the job
+	 */
+	void notScheduled(Exception e)
+	{
+		result = new RetrieverResult(new ErrorRetrievalResult(e), RetrieverResultStatus.ERROR);
+		retrieval.jobDone(this, result);
+	}
+
 	public RetrieverResult getRetrievalResult()
 	{
 		return result;
@@ -17,28 +17,33 @@ package au.gov.ga.earthsci.core.retrieve;
 
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.eclipse.e4.core.di.annotations.Creatable;
+import org.eclipse.e4.core.di.extensions.Preference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import au.gov.ga.earthsci.common.collection.ArrayListHashMap;
-import au.gov.ga.earthsci.common.collection.HashSetAndArray;
-import au.gov.ga.earthsci.common.collection.HashSetAndArrayHashMap;
-import au.gov.ga.earthsci.common.collection.ListMap;
-import au.gov.ga.earthsci.common.collection.SetAndArray;
-import au.gov.ga.earthsci.common.collection.SetAndArrayMap;
+import au.gov.ga.earthsci.core.preferences.PreferenceConstants;
+import au.gov.ga.earthsci.core.retrieve.cache.IURLCache;
+import au.gov.ga.earthsci.core.retrieve.cache.URLCacheStatistics;
 
 /**
  * Basic implementation of {@link IRetrievalService}.
+ * <p/>
+ * The retrieval indexes are concurrent maps, so retrieving, completing and
+ * querying retrievals doesn't block on a global lock. Listeners are stored in
+ * copy-on-write lists and are always notified without any of this service's
+ * locks held.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -51,26 +56,111 @@ public class RetrievalService implements IRetrievalService
 	@Inject
 	private IRetrieverFactory retrieverFactory;
 
-	private final Map<URL, Retrieval> urlToRetrieval = new HashMap<URL, Retrieval>();
-	private final SetAndArrayMap<Object, IRetrieval> callerToRetrievals =
-			new HashSetAndArrayHashMap<Object, IRetrieval>();
-	private final SetAndArray<IRetrieval> EMPTY_RETRIEVAL_COLLECTION = new HashSetAndArray<IRetrieval>();
+	private final RetrievalDispatcher dispatcher = new RetrievalDispatcher();
+	//keyed by the URL's string form, as URL.equals/hashCode can perform DNS lookups
+	private final ConcurrentMap<String, Retrieval> urlToRetrieval = new ConcurrentHashMap<String, Retrieval>();
+	private final ConcurrentMap<Object, CallerRetrievals> callerToRetrievals =
+			new ConcurrentHashMap<Object, CallerRetrievals>();
 
-	private final List<IRetrievalServiceListener> listeners = new ArrayList<IRetrievalServiceListener>();
-	private final ListMap<Object, IRetrievalServiceListener> callerListeners =
-			new ArrayListHashMap<Object, IRetrievalServiceListener>();
+	private final List<IRetrievalServiceListener> listeners = new CopyOnWriteArrayList<IRetrievalServiceListener>();
+	private final ConcurrentMap<Object, List<IRetrievalServiceListener>> callerListeners =
+			new ConcurrentHashMap<Object, List<IRetrievalServiceListener>>();
+
+	public RetrievalService()
+	{
+	}
+
+	/**
+	 * Create a retrieval service that uses the given retriever factory, rather
+	 * than an injected one.
+	 * 
+	 * @param retrieverFactory
+	 *            Factory that provides retrievers for urls
+	 */
+	public RetrievalService(IRetrieverFactory retrieverFactory)
+	{
+		this.retrieverFactory = retrieverFactory;
+	}
 
 	@PreDestroy
+	public void dispose()
+	{
+		cancelAll();
+		for (IURLCache cache : getCaches())
+		{
+			cache.close();
+		}
+	}
+
 	public void cancelAll()
 	{
-		synchronized (urlToRetrieval)
+		for (Retrieval retrieval : urlToRetrieval.values())
+		{
+			retrieval.cancel();
+		}
+	}
+
+	@Inject
+	public void setCacheQuota(
+			@Preference(nodePath = PreferenceConstants.QUALIFIER_ID,
+					value = RetrievalServicePreferences.CACHE_MAX_SIZE) int maxMegabytes,
+			@Preference(nodePath = PreferenceConstants.QUALIFIER_ID,
+					value = RetrievalServicePreferences.CACHE_MAX_ENTRIES) int maxEntries)
+	{
+		for (IURLCache cache : getCaches())
 		{
-			Collection<Retrieval> retrievals = urlToRetrieval.values();
-			for (Retrieval retrieval : retrievals)
+			cache.setQuota(maxMegabytes * 1024L * 1024L, maxEntries);
+		}
+	}
+
+	@Inject
+	public void setRetrievalLimits(
+			@Preference(nodePath = PreferenceConstants.QUALIFIER_ID,
+					value = RetrievalServicePreferences.MAX_CONCURRENT) int maxConcurrent,
+			@Preference(nodePath = PreferenceConstants.QUALIFIER_ID,
+					value = RetrievalServicePreferences.MAX_PER_HOST) int maxPerHost)
+	{
+		dispatcher.setLimits(maxConcurrent, maxPerHost);
+	}
+
+	@Override
+	public int getQueuedCount()
+	{
+		return dispatcher.getQueuedCount();
+	}
+
+	@Override
+	public int getActiveCount()
+	{
+		return dispatcher.getActiveCount();
+	}
+
+	@Override
+	public URLCacheStatistics getCacheStatistics()
+	{
+		URLCacheStatistics statistics = new URLCacheStatistics();
+		for (IURLCache cache : getCaches())
+		{
+			statistics.add(cache.getStatistics());
+		}
+		return statistics;
+	}
+
+	private List<IURLCache> getCaches()
+	{
+		List<IURLCache> caches = new ArrayList<IURLCache>();
+		for (IRetriever retriever : retrieverFactory.getRetrievers())
+		{
+			if (retriever instanceof ICachingRetriever)
 			{
-				retrieval.cancel();
+				IURLCache cache = ((ICachingRetriever) retriever).getCache();
+				if (cache != null && !caches.contains(cache))
+				{
+					caches.add(cache);
+				}
 			}
 		}
+		return caches;
 	}
 
 	@Override
@@ -94,9 +184,10 @@ public class RetrievalService implements IRetrievalService
 			throw new NullPointerException("Retrieval URL is null"); //$NON-NLS-1$
 		}
 
-		synchronized (urlToRetrieval)
+		String key = url.toString();
+		while (true)
 		{
-			Retrieval retrieval = ignoreDuplicates ? null : urlToRetrieval.get(url);
+			Retrieval retrieval = ignoreDuplicates ? null : urlToRetrieval.get(key);
 			if (retrieval == null)
 			{
 				//create a retriever to retrieve the url
@@ -107,16 +198,10 @@ public class RetrievalService implements IRetrievalService
 					return null;
 				}
 
-				//create a retrieval object
-				retrieval = new Retrieval(caller, url, retrievalProperties, retriever);
-				if (!ignoreDuplicates)
-				{
-					urlToRetrieval.put(url, retrieval);
-				}
-				fireRetrievalAdded(retrieval);
-
-				//add a listener to remove the retrieval after it's complete
-				retrieval.addListener(new RetrievalAdapter()
+				//create a retrieval object, with a listener to remove it after it's complete; the listener
+				//is added before the retrieval is published, so that other threads can't complete it first
+				Retrieval created = new Retrieval(caller, url, retrievalProperties, retriever, dispatcher);
+				RetrievalAdapter remover = new RetrievalAdapter()
 				{
 					@Override
 					public void complete(IRetrieval retrieval)
@@ -124,13 +209,34 @@ public class RetrievalService implements IRetrievalService
 						retrieval.removeListener(this);
 						removeRetrieval(retrieval);
 					}
-				});
+				};
+				created.addListener(remover);
+				retrieval = ignoreDuplicates ? null : urlToRetrieval.putIfAbsent(key, created);
+				if (retrieval == null)
+				{
+					fireRetrievalAdded(created);
+					addCallerRetrieval(caller, created);
+					if (!ignoreDuplicates && urlToRetrieval.get(key) != created)
+					{
+						//completed and removed by another thread before the caller was recorded
+						removeCallerRetrieval(caller, created);
+						return created;
+					}
+					fireRetrievalAdded(caller, created);
+					return created;
+				}
+				created.removeListener(remover);
+				//another thread added a retrieval for this url first, so use that one
 			}
-			else
+
+			retrieval.addCaller(caller);
+			addCallerRetrieval(caller, retrieval);
+			if (urlToRetrieval.get(key) != retrieval)
 			{
-				retrieval.addCaller(caller);
+				//retrieval completed and was removed concurrently, so try again
+				removeCallerRetrieval(caller, retrieval);
+				continue;
 			}
-			callerToRetrievals.putSingle(caller, retrieval);
 			fireRetrievalAdded(caller, retrieval);
 			return retrieval;
 		}
@@ -138,57 +244,88 @@ public class RetrievalService implements IRetrievalService
 
 	private void removeRetrieval(IRetrieval retrieval)
 	{
-		synchronized (urlToRetrieval)
+		//only remove the mapping if it is for this retrieval; retrievals that ignore duplicates are not mapped
+		urlToRetrieval.remove(retrieval.getURL().toString(), retrieval);
+		fireRetrievalRemoved(retrieval);
+		Object[] callers = retrieval.getCallers();
+		for (Object caller : callers)
 		{
-			urlToRetrieval.remove(retrieval.getURL());
-			fireRetrievalRemoved(retrieval);
-			Object[] callers = retrieval.getCallers();
-			for (Object caller : callers)
+			if (removeCallerRetrieval(caller, retrieval))
 			{
-				callerToRetrievals.removeSingle(caller, retrieval);
 				fireRetrievalRemoved(caller, retrieval);
 			}
 		}
 	}
 
-	@Override
-	public IRetrieval getRetrieval(URL url)
+	private void addCallerRetrieval(Object caller, IRetrieval retrieval)
 	{
-		synchronized (urlToRetrieval)
+		while (true)
 		{
-			return urlToRetrieval.get(url);
+			CallerRetrievals retrievals = callerToRetrievals.get(caller);
+			if (retrievals == null)
+			{
+				retrievals = new CallerRetrievals();
+				CallerRetrievals existing = callerToRetrievals.putIfAbsent(caller, retrievals);
+				if (existing != null)
+				{
+					retrievals = existing;
+				}
+			}
+			if (retrievals.add(retrieval))
+			{
+				return;
+			}
+			//the set was emptied and removed concurrently
+			callerToRetrievals.remove(caller, retrievals);
 		}
 	}
 
-	@Override
-	public IRetrieval[] getRetrievals(Object caller)
+	private boolean removeCallerRetrieval(Object caller, IRetrieval retrieval)
 	{
-		synchronized (urlToRetrieval)
+		CallerRetrievals retrievals = callerToRetrievals.get(caller);
+		if (retrievals == null)
 		{
-			SetAndArray<IRetrieval> retrievals = callerToRetrievals.get(caller);
-			if (retrievals == null)
+			return false;
+		}
+		synchronized (retrievals)
+		{
+			boolean removed = retrievals.set.remove(retrieval);
+			if (retrievals.set.isEmpty())
 			{
-				retrievals = EMPTY_RETRIEVAL_COLLECTION;
+				retrievals.dead = true;
+				callerToRetrievals.remove(caller, retrievals);
 			}
-			return retrievals.getArray(IRetrieval.class);
+			return removed;
 		}
 	}
 
 	@Override
-	public void addListener(IRetrievalServiceListener listener)
+	public IRetrieval getRetrieval(URL url)
+	{
+		return urlToRetrieval.get(url.toString());
+	}
+
+	@Override
+	public IRetrieval[] getRetrievals(Object caller)
 	{
-		Collection<Retrieval> currentRetrievals;
-		synchronized (listeners)
+		CallerRetrievals retrievals = callerToRetrievals.get(caller);
+		if (retrievals == null)
 		{
-			synchronized (urlToRetrieval)
-			{
-				listeners.add(listener);
-				currentRetrievals = new ArrayList<Retrieval>(urlToRetrieval.values());
-			}
+			return new IRetrieval[0];
+		}
+		synchronized (retrievals)
+		{
+			return retrievals.set.toArray(new IRetrieval[retrievals.set.size()]);
 		}
+	}
+
+	@Override
+	public void addListener(IRetrievalServiceListener listener)
+	{
+		listeners.add(listener);
 
 		//notify the newly added listener of all current retrievals:
-		for (Retrieval retrieval : currentRetrievals)
+		for (Retrieval retrieval : new ArrayList<Retrieval>(urlToRetrieval.values()))
 		{
 			listener.retrievalAdded(retrieval);
 		}
@@ -199,33 +336,26 @@ public class RetrievalService implements IRetrievalService
 	{
 		synchronized (callerListeners)
 		{
-			synchronized (urlToRetrieval)
+			List<IRetrievalServiceListener> list = callerListeners.get(caller);
+			if (list == null)
 			{
-				callerListeners.putSingle(caller, listener);
-
-				//notify the newly added listener of all current retrievals for this caller:
-				for (Retrieval retrieval : urlToRetrieval.values())
-				{
-					for (Object retrievalCaller : retrieval.getCallers())
-					{
-						if (retrievalCaller.equals(caller))
-						{
-							listener.retrievalAdded(retrieval);
-							break;
-						}
-					}
-				}
+				list = new CopyOnWriteArrayList<IRetrievalServiceListener>();
+				callerListeners.put(caller, list);
 			}
+			list.add(listener);
+		}
+
+		//notify the newly added listener of all current retrievals for this caller:
+		for (IRetrieval retrieval : getRetrievals(caller))
+		{
+			listener.retrievalAdded(retrieval);
 		}
 	}
 
 	@Override
 	public void removeListener(IRetrievalServiceListener listener)
 	{
-		synchronized (listeners)
-		{
-			listeners.remove(listener);
-		}
+		listeners.remove(listener);
 	}
 
 	@Override
@@ -233,59 +363,81 @@ public class RetrievalService implements IRetrievalService
 	{
 		synchronized (callerListeners)
 		{
-			callerListeners.removeSingle(caller, listener);
+			List<IRetrievalServiceListener> list = callerListeners.get(caller);
+			if (list != null)
+			{
+				list.remove(listener);
+				if (list.isEmpty())
+				{
+					callerListeners.remove(caller);
+				}
+			}
 		}
 	}
 
 	private void fireRetrievalAdded(IRetrieval retrieval)
 	{
-		synchronized (listeners)
-		{
-			for (int i = listeners.size() - 1; i >= 0; i--)
-			{
-				listeners.get(i).retrievalAdded(retrieval);
-			}
-		}
+		fireRetrievalAdded(listeners, retrieval);
 	}
 
 	private void fireRetrievalAdded(Object caller, IRetrieval retrieval)
 	{
-		synchronized (callerListeners)
+		List<IRetrievalServiceListener> listeners = callerListeners.get(caller);
+		if (listeners != null)
 		{
-			List<IRetrievalServiceListener> listeners = callerListeners.get(caller);
-			if (listeners != null)
-			{
-				for (int i = listeners.size() - 1; i >= 0; i--)
-				{
-					listeners.get(i).retrievalAdded(retrieval);
-				}
-			}
+			fireRetrievalAdded(listeners, retrieval);
 		}
 	}
 
 	private void fireRetrievalRemoved(IRetrieval retrieval)
 	{
-		synchronized (listeners)
+		fireRetrievalRemoved(listeners, retrieval);
+	}
+
+	private void fireRetrievalRemoved(Object caller, IRetrieval retrieval)
+	{
+		List<IRetrievalServiceListener> listeners = callerListeners.get(caller);
+		if (listeners != null)
 		{
-			for (int i = listeners.size() - 1; i >= 0; i--)
-			{
-				listeners.get(i).retrievalRemoved(retrieval);
-			}
+			fireRetrievalRemoved(listeners, retrieval);
 		}
 	}
 
-	private void fireRetrievalRemoved(Object caller, IRetrieval retrieval)
+	private static void fireRetrievalAdded(List<IRetrievalServiceListener> listeners, IRetrieval retrieval)
 	{
-		synchronized (callerListeners)
+		IRetrievalServiceListener[] array = listeners.toArray(new IRetrievalServiceListener[0]);
+		for (int i = array.length - 1; i >= 0; i--)
+		{
+			array[i].retrievalAdded(retrieval);
+		}
+	}
+
+	private static void fireRetrievalRemoved(List<IRetrievalServiceListener> listeners, IRetrieval retrieval)
+	{
+		IRetrievalServiceListener[] array = listeners.toArray(new IRetrievalServiceListener[0]);
+		for (int i = array.length - 1; i >= 0; i--)
 		{
-			List<IRetrievalServiceListener> listeners = callerListeners.get(caller);
-			if (listeners != null)
+			array[i].retrievalRemoved(retrieval);
+		}
+	}
+
+	/**
+	 * Set of retrievals requested by a single caller. Once emptied, the set is
+	 * marked as dead and removed from the caller map, and cannot be added to.
+	 */
+	private static class CallerRetrievals
+	{
+		private final Set<IRetrieval> set = new LinkedHashSet<IRetrieval>();
+		private boolean dead = false;
+
+		private synchronized boolean add(IRetrieval retrieval)
+		{
+			if (dead)
 			{
-				for (int i = listeners.size() - 1; i >= 0; i--)
-				{
-					listeners.get(i).retrievalRemoved(retrieval);
-				}
+				return false;
 			}
+			set.add(retrieval);
+			return true;
 		}
 	}
 }
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.e4.core.di.annotations.Creatable;
+import org.eclipse.e4.core.di.extensions.Preference;
+import org.eclipse.jface.preference.IPreferenceStore;
+
+import au.gov.ga.earthsci.core.preferences.PreferenceConstants;
+import au.gov.ga.earthsci.core.preferences.ScopedPreferenceStore;
+import au.gov.ga.earthsci.core.retrieve.retriever.PersistentHttpTransport;
+
+/**
+ * Contains the preferences for the {@link RetrievalService}, and configures
+ * the JDK's HTTP connection pool from them at startup.
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+@Creatable
+@Singleton
+public class RetrievalServicePreferences extends AbstractPreferenceInitializer
+{
+	public static final String CACHE_MAX_SIZE = "retrievalServiceCacheMaxSize"; //$NON-NLS-1$
+	public static final String CACHE_MAX_ENTRIES = "retrievalServiceCacheMaxEntries"; //$NON-NLS-1$
+	public static final String MAX_CONCURRENT = "retrievalServiceMaxConcurrent"; //$NON-NLS-1$
+	public static final String MAX_PER_HOST = "retrievalServiceMaxPerHost"; //$NON-NLS-1$
+	public static final String HTTP_KEEP_ALIVE = "retrievalServiceHttpKeepAlive"; //$NON-NLS-1$
+
+	@Override
+	public void initializeDefaultPreferences()
+	{
+		IPreferenceStore store = new ScopedPreferenceStore(DefaultScope.INSTANCE, PreferenceConstants.QUALIFIER_ID);
+		store.setDefault(CACHE_MAX_SIZE, 4096);
+		store.setDefault(CACHE_MAX_ENTRIES, 0);
+		store.setDefault(MAX_CONCURRENT, RetrievalDispatcher.DEFAULT_MAX_CONCURRENT);
+		store.setDefault(MAX_PER_HOST, RetrievalDispatcher.DEFAULT_MAX_PER_HOST);
+		store.setDefault(HTTP_KEEP_ALIVE, true);
+	}
+
+	@Inject
+	public void preferencesChanged(
+			@Preference(nodePath = PreferenceConstants.QUALIFIER_ID, value = MAX_PER_HOST) int maxPerHost)
+	{
+		PersistentHttpTransport.configureMaxConnections(maxPerHost);
+	}
+}
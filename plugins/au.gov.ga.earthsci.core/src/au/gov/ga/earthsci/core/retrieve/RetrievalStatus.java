@@ -25,6 +25,9 @@ public enum RetrievalStatus
 	/** Resource retrieval has not yet started */
 	NOT_STARTED,
 
+	/** Resource retrieval is waiting for a free connection */
+	QUEUED,
+
 	/** Resource retrieval has begun */
 	STARTED,
 
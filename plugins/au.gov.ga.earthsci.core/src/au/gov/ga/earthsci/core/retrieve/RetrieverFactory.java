@@ -147,6 +147,20 @@ public class RetrieverFactory implements IRetrieverFactory
 		}
 	}
 
+	@Override
+	public IRetriever[] getRetrievers()
+	{
+		retrieversLock.readLock().lock();
+		try
+		{
+			return retrievers.toArray(new IRetriever[retrievers.size()]);
+		}
+		finally
+		{
+			retrieversLock.readLock().unlock();
+		}
+	}
+
 	public IRetriever getDefaultRetriever()
 	{
 		return defaultRetriever;
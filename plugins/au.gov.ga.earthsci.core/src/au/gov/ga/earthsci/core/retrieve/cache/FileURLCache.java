@@ -26,23 +26,42 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
 import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
 import java.security.MessageDigest;
-import java.util.Properties;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import au.gov.ga.earthsci.common.util.FileUtil;
 import au.gov.ga.earthsci.common.util.HashReadWriteLocker;
 import au.gov.ga.earthsci.worldwind.common.util.Util;
 
 /**
  * {@link IURLCache} implementation that uses a directory in a file system for
  * caching data.
+ * <p/>
+ * If a quota is set, the least recently used resources are evicted by a
+ * {@link URLCacheEvictionJob} whenever the cache grows beyond the quota.
+ * Resources that have been {@link #map(URL) mapped} into memory are not
+ * evicted until the mapped buffers are garbage collected.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -54,7 +73,25 @@ public class FileURLCache implements IURLCache
 	private final HashReadWriteLocker locker = new HashReadWriteLocker();
 	private final static String PARTIAL_SUFFIX = ".partial"; //$NON-NLS-1$
 	private final static String CONTENT_TYPE_SUFFIX = ".contenttype"; //$NON-NLS-1$
-	private final static String URLS_PROPERTIES_FILENAME = "urls.properties"; //$NON-NLS-1$
+	private final static long EVICTION_DELAY = 5000;
+	private final static long EVICTION_GRACE_PERIOD = 60000;
+	private final static long ACCESS_FLUSH_INTERVAL = 60000;
+	private final static double EVICTION_TARGET = 0.9;
+	private final static String DIGEST_ALGORITHM = "MD5"; //$NON-NLS-1$
+
+	private final URLCacheIndex index;
+	private final URLCacheStatistics statistics = new URLCacheStatistics();
+	private final URLCacheEvictionJob evictionJob = new URLCacheEvictionJob(this);
+	private final AtomicLong approximateSize = new AtomicLong();
+	private final AtomicLong approximateEntries = new AtomicLong();
+	private final AtomicLong lastAccessFlush = new AtomicLong(System.currentTimeMillis());
+	private volatile long maxBytes = 0;
+	private volatile int maxEntries = 0;
+
+	//weak references to mapped buffers, which keep their entries from being evicted
+	private final ReferenceQueue<MappedByteBuffer> mappingQueue = new ReferenceQueue<MappedByteBuffer>();
+	private final Set<MappingReference> mappings =
+			Collections.newSetFromMap(new ConcurrentHashMap<MappingReference, Boolean>());
 
 	public FileURLCache(File directory)
 	{
@@ -63,34 +100,37 @@ public class FileURLCache implements IURLCache
 			throw new NullPointerException("Directory cannot be null"); //$NON-NLS-1$
 		}
 		this.directory = directory;
+		this.index = new URLCacheIndex(directory);
 	}
 
 	@Override
 	public boolean isPartial(URL url)
 	{
-		return isFileLocked(getPartialFile(url));
+		return isFileLocked(findPartialFile(url));
 	}
 
 	@Override
 	public long getPartialLength(URL url)
 	{
-		return lengthLocked(getPartialFile(url));
+		return lengthLocked(findPartialFile(url));
 	}
 
 	@Override
 	public long getPartialLastModified(URL url)
 	{
-		return lastModifiedLocked(getPartialFile(url));
+		return lastModifiedLocked(findPartialFile(url));
 	}
 
 	@Override
 	public OutputStream writePartial(URL url, long offset) throws IOException
 	{
-		final File partialFile = getPartialFile(url);
+		final URLCacheIndex.Entry entry = entryForURL(url, true);
+		final File partialFile = fileForEntry(entry, PARTIAL_SUFFIX);
 		locker.lockWrite(partialFile);
 		RandomAccessFile raf = null;
 		try
 		{
+			entry.setPartialDigest(null);
 			partialFile.getParentFile().mkdirs();
 			raf = new RandomAccessFile(partialFile, "rw"); //$NON-NLS-1$
 			partialFile.setReadable(true, false);
@@ -98,17 +138,41 @@ public class FileURLCache implements IURLCache
 			FileChannel channel = raf.getChannel();
 			offset = Math.max(0l, offset);
 			channel.truncate(offset);
+
+			//calculate the digest while the file is written; if resuming, digest the existing data first
+			final MessageDigest digest = createDigest();
+			if (digest != null && offset > 0)
+			{
+				digestChannel(channel, offset, digest);
+			}
 			channel.position(offset);
-			return new FilterOutputStream(Channels.newOutputStream(channel))
+
+			OutputStream os = new BufferedOutputStream(Channels.newOutputStream(channel));
+			if (digest != null)
+			{
+				os = new DigestOutputStream(os, digest);
+			}
+			return new FilterOutputStream(os)
 			{
 				private boolean unlocked = false;
 
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException
+				{
+					//FilterOutputStream writes byte-by-byte by default
+					out.write(b, off, len);
+				}
+
 				@Override
 				public void close() throws IOException
 				{
 					try
 					{
 						super.close();
+						if (digest != null)
+						{
+							entry.setPartialDigest(digest.digest());
+						}
 					}
 					finally
 					{
@@ -132,19 +196,63 @@ public class FileURLCache implements IURLCache
 		}
 	}
 
+	private static MessageDigest createDigest()
+	{
+		try
+		{
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			return null;
+		}
+	}
+
+	private static void digestChannel(FileChannel channel, long length, MessageDigest digest) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long position = 0;
+		while (position < length)
+		{
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), length - position));
+			int read = channel.read(buffer, position);
+			if (read < 0)
+			{
+				break;
+			}
+			buffer.flip();
+			digest.update(buffer);
+			position += read;
+		}
+	}
+
 	@Override
 	public boolean writeComplete(URL url, long lastModified, String contentType)
 	{
-		File partialFile = getPartialFile(url);
-		File completeFile = getCompleteFile(url);
+		URLCacheIndex.Entry entry = entryForURL(url, true);
+		File partialFile = fileForEntry(entry, PARTIAL_SUFFIX);
+		File completeFile = fileForEntry(entry, ""); //$NON-NLS-1$
+		touch(entry);
 
 		locker.lockWrite(partialFile);
 		try
 		{
+			byte[] partialDigest = entry.getPartialDigest();
+			if (partialDigest == null)
+			{
+				//partial file wasn't written by this cache instance, so its digest is unknown
+				partialDigest = fileMD5(partialFile);
+			}
+			entry.setPartialDigest(null);
+
 			locker.lockRead(completeFile);
 			try
 			{
-				if (fileEquals(partialFile, completeFile))
+				//compare against the digest stored in the index, instead of rereading the complete file
+				byte[] completeDigest = entry.getDigest();
+				if (partialDigest != null && completeDigest != null && completeFile.isFile()
+						&& byteArrayEquals(partialDigest, completeDigest))
 				{
 					partialFile.delete();
 					return false;
@@ -158,17 +266,45 @@ public class FileURLCache implements IURLCache
 			locker.lockWrite(completeFile);
 			try
 			{
-				partialFile.renameTo(completeFile);
+				long oldLength = Math.max(0, entry.getLength());
+				if (!renameOver(partialFile, completeFile))
+				{
+					//the index must not record a digest for content that isn't on disk
+					logger.warn("Could not replace cached file: " + completeFile); //$NON-NLS-1$
+					partialFile.delete();
+					entry.setDigest(null);
+					if (!completeFile.isFile())
+					{
+						entry.setLength(0);
+						approximateSize.addAndGet(-oldLength);
+						if (oldLength > 0)
+						{
+							approximateEntries.decrementAndGet();
+						}
+					}
+					index.update(entry);
+					return false;
+				}
 				if (lastModified > 0)
 				{
 					completeFile.setLastModified(lastModified);
 				}
 				setContentType(url, contentType, completeFile);
+				long length = completeFile.length();
+				entry.setLength(length);
+				entry.setDigest(partialDigest);
+				index.update(entry);
+				approximateSize.addAndGet(length - oldLength);
+				if (oldLength == 0)
+				{
+					approximateEntries.incrementAndGet();
+				}
 			}
 			finally
 			{
 				locker.unlockWrite(completeFile);
 			}
+			checkQuota();
 		}
 		finally
 		{
@@ -177,6 +313,23 @@ public class FileURLCache implements IURLCache
 		return true;
 	}
 
+	/**
+	 * Rename the source file to the target file. If the first attempt fails
+	 * (for example if the platform doesn't allow renaming over an existing
+	 * file), the target is deleted and the rename is retried.
+	 * 
+	 * @return True if the source file was renamed
+	 */
+	private static boolean renameOver(File source, File target)
+	{
+		if (source.renameTo(target))
+		{
+			return true;
+		}
+		target.delete();
+		return source.renameTo(target);
+	}
+
 	public static boolean fileEquals(File file1, File file2)
 	{
 		byte[] md51 = fileMD5(file1);
@@ -212,7 +365,7 @@ public class FileURLCache implements IURLCache
 	{
 		try
 		{
-			MessageDigest md = MessageDigest.getInstance("MD5"); //$NON-NLS-1$
+			MessageDigest md = MessageDigest.getInstance(DIGEST_ALGORITHM);
 			InputStream is = null;
 			try
 			{
@@ -240,19 +393,27 @@ public class FileURLCache implements IURLCache
 	@Override
 	public boolean isComplete(URL url)
 	{
-		return isFileLocked(getCompleteFile(url));
+		URLCacheIndex.Entry entry = entryForURL(url, false);
+		if (entry != null && isFileLocked(fileForEntry(entry, ""))) //$NON-NLS-1$
+		{
+			touch(entry);
+			statistics.recordHit();
+			return true;
+		}
+		statistics.recordMiss();
+		return false;
 	}
 
 	@Override
 	public long getLength(URL url)
 	{
-		return lengthLocked(getCompleteFile(url));
+		return lengthLocked(findCompleteFile(url));
 	}
 
 	@Override
 	public long getLastModified(URL url)
 	{
-		return lastModifiedLocked(getCompleteFile(url));
+		return lastModifiedLocked(findCompleteFile(url));
 	}
 
 	@Override
@@ -316,6 +477,10 @@ public class FileURLCache implements IURLCache
 
 	protected boolean isFileLocked(File file)
 	{
+		if (file == null)
+		{
+			return false;
+		}
 		try
 		{
 			locker.lockRead(file);
@@ -329,6 +494,10 @@ public class FileURLCache implements IURLCache
 
 	protected long lengthLocked(File file)
 	{
+		if (file == null)
+		{
+			return 0;
+		}
 		try
 		{
 			locker.lockRead(file);
@@ -342,6 +511,10 @@ public class FileURLCache implements IURLCache
 
 	protected long lastModifiedLocked(File file)
 	{
+		if (file == null)
+		{
+			return 0;
+		}
 		try
 		{
 			locker.lockRead(file);
@@ -418,7 +591,9 @@ public class FileURLCache implements IURLCache
 	@Override
 	public InputStream read(URL url) throws IOException
 	{
-		final File completeFile = getCompleteFile(url);
+		URLCacheIndex.Entry entry = entryForURL(url, true);
+		touch(entry);
+		final File completeFile = fileForEntry(entry, ""); //$NON-NLS-1$
 		locker.lockRead(completeFile);
 		try
 		{
@@ -451,6 +626,44 @@ public class FileURLCache implements IURLCache
 		}
 	}
 
+	@Override
+	public MappedByteBuffer map(URL url) throws IOException
+	{
+		expungeMappings();
+		URLCacheIndex.Entry entry = entryForURL(url, true);
+		touch(entry);
+		File completeFile = fileForEntry(entry, ""); //$NON-NLS-1$
+		locker.lockRead(completeFile);
+		try
+		{
+			MappedByteBuffer buffer = FileUtil.mapReadOnly(completeFile);
+			entry.addMapping();
+			mappings.add(new MappingReference(buffer, entry, mappingQueue));
+			return buffer;
+		}
+		finally
+		{
+			locker.unlockRead(completeFile);
+		}
+	}
+
+	/**
+	 * Release the entries of mapped buffers that have been garbage collected,
+	 * allowing them to be evicted.
+	 */
+	private void expungeMappings()
+	{
+		Reference<? extends MappedByteBuffer> reference;
+		while ((reference = mappingQueue.poll()) != null)
+		{
+			MappingReference mapping = (MappingReference) reference;
+			if (mappings.remove(mapping))
+			{
+				mapping.entry.removeMapping();
+			}
+		}
+	}
+
 	@Override
 	public File getFile(URL url)
 	{
@@ -459,68 +672,235 @@ public class FileURLCache implements IURLCache
 
 	private File getCompleteFile(URL url)
 	{
-		return fileForURL(url, ""); //$NON-NLS-1$
+		return fileForURL(url, "", true); //$NON-NLS-1$
 	}
 
 	private File getPartialFile(URL url)
 	{
-		return fileForURL(url, PARTIAL_SUFFIX);
+		return fileForURL(url, PARTIAL_SUFFIX, true);
 	}
 
 	private File getContentTypeFile(URL url)
 	{
-		return fileForURL(url, CONTENT_TYPE_SUFFIX);
+		return fileForURL(url, CONTENT_TYPE_SUFFIX, true);
 	}
 
-	private File fileForURL(URL url, String suffix)
+	private File findCompleteFile(URL url)
 	{
-		String hashDirectory = !Util.isBlank(url.getHost()) ? url.getHost() + File.separator : ""; //$NON-NLS-1$
-		hashDirectory += getHashDirectory(url);
+		return fileForURL(url, "", false); //$NON-NLS-1$
+	}
+
+	private File findPartialFile(URL url)
+	{
+		return fileForURL(url, PARTIAL_SUFFIX, false);
+	}
 
-		String extension = au.gov.ga.earthsci.common.util.Util.getExtension(url.getPath());
-		if (extension == null || extension.length() > 30)
+	@Override
+	public void setQuota(long maxBytes, int maxEntries)
+	{
+		this.maxBytes = maxBytes;
+		this.maxEntries = maxEntries;
+		if (maxBytes > 0 || maxEntries > 0)
 		{
-			//probably not an extension
-			extension = ""; //$NON-NLS-1$
+			evictionJob.schedule();
 		}
+	}
 
-		File propertiesFile = new File(directory, hashDirectory + File.separator + URLS_PROPERTIES_FILENAME);
-		locker.lockWrite(propertiesFile);
-		try
+	@Override
+	public URLCacheStatistics getStatistics()
+	{
+		return statistics;
+	}
+
+	private void checkQuota()
+	{
+		long maxBytes = this.maxBytes;
+		int maxEntries = this.maxEntries;
+		if ((maxBytes > 0 && approximateSize.get() > maxBytes)
+				|| (maxEntries > 0 && approximateEntries.get() > maxEntries))
+		{
+			evictionJob.schedule(EVICTION_DELAY);
+		}
+	}
+
+	/**
+	 * Evict the least recently used resources from this cache until it is
+	 * within its quota. Resources accessed in the last minute are never
+	 * evicted. Index entries for URLs that have neither a complete nor a
+	 * partial file are removed.
+	 * <p/>
+	 * This is normally called by this cache's {@link URLCacheEvictionJob}.
+	 */
+	public void evict()
+	{
+		long maxBytes = this.maxBytes;
+		int maxEntries = this.maxEntries;
+		long now = System.currentTimeMillis();
+
+		expungeMappings();
+
+		List<URLCacheIndex.Entry> complete = new ArrayList<URLCacheIndex.Entry>();
+		long size = 0;
+		for (URLCacheIndex.Entry entry : index.getEntries())
+		{
+			long length = entry.getLength();
+			File completeFile = null;
+			if (length < 0)
+			{
+				completeFile = fileForEntry(entry, ""); //$NON-NLS-1$
+				length = lengthLocked(completeFile);
+				entry.setLength(length);
+			}
+			if (length > 0)
+			{
+				complete.add(entry);
+				size += length;
+			}
+			else if (now - entry.getLastAccess() > EVICTION_GRACE_PERIOD
+					&& !fileForEntry(entry, PARTIAL_SUFFIX).exists()
+					&& !(completeFile != null ? completeFile : fileForEntry(entry, "")).exists()) //$NON-NLS-1$
+			{
+				index.remove(entry);
+			}
+		}
+		long entries = complete.size();
+
+		boolean overQuota = (maxBytes > 0 && size > maxBytes) || (maxEntries > 0 && entries > maxEntries);
+		if (overQuota)
 		{
-			Properties properties = new Properties();
-			if (propertiesFile.exists())
+			long targetBytes = (long) (maxBytes * EVICTION_TARGET);
+			long targetEntries = (long) (maxEntries * EVICTION_TARGET);
+			Collections.sort(complete, new Comparator<URLCacheIndex.Entry>()
 			{
-				try
+				@Override
+				public int compare(URLCacheIndex.Entry o1, URLCacheIndex.Entry o2)
 				{
-					loadProperties(properties, propertiesFile);
+					long a1 = o1.getLastAccess(), a2 = o2.getLastAccess();
+					return a1 < a2 ? -1 : a1 == a2 ? 0 : 1;
 				}
-				catch (IOException e)
+			});
+			for (URLCacheIndex.Entry entry : complete)
+			{
+				if ((maxBytes <= 0 || size <= targetBytes) && (maxEntries <= 0 || entries <= targetEntries))
 				{
-					logger.error("Error reading url properties file", e); //$NON-NLS-1$
+					break;
+				}
+				if (now - entry.getLastAccess() <= EVICTION_GRACE_PERIOD)
+				{
+					//entries are sorted by access time, so all following entries are too recent
+					break;
+				}
+				if (entry.isMapped())
+				{
+					continue;
+				}
+				long length = evictEntry(entry);
+				if (length > 0)
+				{
+					size -= length;
+					entries--;
+					statistics.recordEviction(length);
 				}
 			}
-			String filename = properties.getProperty(url.toString());
-			if (filename == null)
-			{
-				filename = properties.size() + extension;
-			}
-			properties.setProperty(url.toString(), filename);
-			propertiesFile.getParentFile().mkdirs();
-			try
+		}
+
+		statistics.setUsage(size, entries);
+		approximateSize.set(size);
+		approximateEntries.set(entries);
+		lastAccessFlush.set(now);
+		index.flushAccessTimes();
+		index.compact(false);
+	}
+
+	@Override
+	public void close()
+	{
+		index.close();
+	}
+
+	/**
+	 * Mark the given entry as accessed, and journal changed access times if
+	 * they haven't been journaled recently.
+	 */
+	private void touch(URLCacheIndex.Entry entry)
+	{
+		entry.touch();
+		long now = System.currentTimeMillis();
+		long last = lastAccessFlush.get();
+		if (now - last > ACCESS_FLUSH_INTERVAL && lastAccessFlush.compareAndSet(last, now))
+		{
+			index.flushAccessTimes();
+		}
+	}
+
+	private long evictEntry(URLCacheIndex.Entry entry)
+	{
+		File completeFile = fileForEntry(entry, ""); //$NON-NLS-1$
+		File contentTypeFile = fileForEntry(entry, CONTENT_TYPE_SUFFIX);
+		long length;
+		locker.lockWrite(completeFile);
+		try
+		{
+			length = completeFile.length();
+			if (!completeFile.delete() && completeFile.exists())
 			{
-				saveProperties(properties, propertiesFile);
+				logger.warn("Could not evict cached file: " + completeFile); //$NON-NLS-1$
+				return 0;
 			}
-			catch (IOException e)
+			entry.setLength(0);
+		}
+		finally
+		{
+			locker.unlockWrite(completeFile);
+		}
+		locker.lockWrite(contentTypeFile);
+		try
+		{
+			contentTypeFile.delete();
+		}
+		finally
+		{
+			locker.unlockWrite(contentTypeFile);
+		}
+		if (!fileForEntry(entry, PARTIAL_SUFFIX).exists())
+		{
+			index.remove(entry);
+		}
+		return length;
+	}
+
+	private File fileForURL(URL url, String suffix, boolean create)
+	{
+		URLCacheIndex.Entry entry = entryForURL(url, create);
+		return entry == null ? null : fileForEntry(entry, suffix);
+	}
+
+	private File fileForEntry(URLCacheIndex.Entry entry, String suffix)
+	{
+		return new File(directory, entry.bucket + File.separator + entry.filename + suffix);
+	}
+
+	private URLCacheIndex.Entry entryForURL(URL url, boolean create)
+	{
+		String hashDirectory = !Util.isBlank(url.getHost()) ? url.getHost() + File.separator : ""; //$NON-NLS-1$
+		hashDirectory += getHashDirectory(url);
+
+		URLCacheIndex.Entry entry;
+		if (create)
+		{
+			String extension = au.gov.ga.earthsci.common.util.Util.getExtension(url.getPath());
+			if (extension == null || extension.length() > 30)
 			{
-				logger.error("Error writing url properties file", e); //$NON-NLS-1$
+				//probably not an extension
+				extension = ""; //$NON-NLS-1$
 			}
-			return new File(directory, hashDirectory + File.separator + filename + suffix);
+			entry = index.getOrCreate(url.toString(), hashDirectory, extension);
 		}
-		finally
+		else
 		{
-			locker.unlockWrite(propertiesFile);
+			entry = index.get(url.toString(), hashDirectory);
 		}
+		return entry;
 	}
 
 	private static String getHashDirectory(URL url)
@@ -544,37 +924,15 @@ public class FileURLCache implements IURLCache
 		return directory.toString();
 	}
 
-	private static void loadProperties(Properties properties, File file) throws IOException
+	private static class MappingReference extends WeakReference<MappedByteBuffer>
 	{
-		FileInputStream fis = null;
-		try
-		{
-			fis = new FileInputStream(file);
-			properties.load(fis);
-		}
-		finally
-		{
-			if (fis != null)
-			{
-				fis.close();
-			}
-		}
-	}
+		private final URLCacheIndex.Entry entry;
 
-	private static void saveProperties(Properties properties, File file) throws IOException
-	{
-		FileOutputStream fos = null;
-		try
+		private MappingReference(MappedByteBuffer buffer, URLCacheIndex.Entry entry,
+				ReferenceQueue<MappedByteBuffer> queue)
 		{
-			fos = new FileOutputStream(file);
-			properties.store(fos, null);
-		}
-		finally
-		{
-			if (fos != null)
-			{
-				fos.close();
-			}
+			super(buffer, queue);
+			this.entry = entry;
 		}
 	}
 }
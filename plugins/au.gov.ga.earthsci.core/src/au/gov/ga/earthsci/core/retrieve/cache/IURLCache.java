@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
+import java.nio.MappedByteBuffer;
 
 /**
  * Cache used by the retrieval system.
@@ -156,6 +157,21 @@ public interface IURLCache
 	 */
 	InputStream read(URL url) throws IOException;
 
+	/**
+	 * Map the completely retrieved resource into memory, read-only, without
+	 * copying it onto the heap.
+	 * <p/>
+	 * The resource won't be evicted from the cache while the returned buffer
+	 * is reachable.
+	 * 
+	 * @param url
+	 *            URL to map the resource for
+	 * @return Read-only buffer containing the resource
+	 * @throws IOException
+	 *             If the resource cannot be mapped
+	 */
+	MappedByteBuffer map(URL url) throws IOException;
+
 	/**
 	 * Create a File object that points to the completed retrieved resource.
 	 * <p/>
@@ -168,4 +184,28 @@ public interface IURLCache
 	 * @return File containing the retrieved resource
 	 */
 	File getFile(URL url);
+
+	/**
+	 * Set the maximum size of this cache. When the cache grows beyond either
+	 * limit, the least recently used resources are evicted in the background.
+	 * Values less than or equal to 0 disable the corresponding limit.
+	 * 
+	 * @param maxBytes
+	 *            Maximum total size (in bytes) of the cached resources
+	 * @param maxEntries
+	 *            Maximum number of cached resources
+	 */
+	void setQuota(long maxBytes, int maxEntries);
+
+	/**
+	 * @return Usage statistics for this cache
+	 */
+	URLCacheStatistics getStatistics();
+
+	/**
+	 * Write any state that is only kept in memory (such as the last access
+	 * times used for eviction) to disk. Should be called when the application
+	 * shuts down. The cache can still be used after it is closed.
+	 */
+	void close();
 }
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.cache;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * System {@link Job} that evicts least recently used resources from a
+ * {@link FileURLCache} that has grown beyond its quota.
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class URLCacheEvictionJob extends Job
+{
+	private final FileURLCache cache;
+
+	public URLCacheEvictionJob(FileURLCache cache)
+	{
+		super("Evicting cached resources"); //$NON-NLS-1$
+		this.cache = cache;
+		setSystem(true);
+		setPriority(Job.DECORATE);
+	}
+
+	@Override
+	protected IStatus run(IProgressMonitor monitor)
+	{
+		cache.evict();
+		return Status.OK_STATUS;
+	}
+}
@@ -0,0 +1,779 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.cache;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory index of URLs to cache files, backed by an append-only journal
+ * file in the cache directory.
+ * <p/>
+ * The journal is read once when the index is created; after that, lookups of
+ * known URLs are lock-free map reads, and only the first lookup of a new URL
+ * causes a record to be appended to the journal. URLs are grouped into
+ * buckets (directories) within the cache, and each bucket allocates its own
+ * filenames.
+ * <p/>
+ * Caches written before the journal existed stored a
+ * <code>urls.properties</code> file in each bucket. The first time a bucket
+ * that isn't in the journal is accessed, its legacy properties file (if any)
+ * is imported into the journal and then deleted.
+ * <p/>
+ * Entries also record the length, content digest and last access time of
+ * their complete file. The length and digest are journaled when an entry is
+ * updated using {@link #update(Entry)}. Access times are kept in memory while
+ * the cache is running, and changed access times are written to the journal
+ * in batches using {@link #flushAccessTimes()}, which is also called when the
+ * index is {@link #close() closed}.
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class URLCacheIndex
+{
+	private final static Logger logger = LoggerFactory.getLogger(URLCacheIndex.class);
+
+	public final static String JOURNAL_FILENAME = "urls.journal"; //$NON-NLS-1$
+	public final static String LEGACY_PROPERTIES_FILENAME = "urls.properties"; //$NON-NLS-1$
+
+	private final static String ENCODING = "UTF-8"; //$NON-NLS-1$
+	private final static char SEPARATOR = '\t';
+	private final static String PUT_RECORD = "P"; //$NON-NLS-1$
+	private final static String REMOVE_RECORD = "R"; //$NON-NLS-1$
+	private final static int LOCK_STRIPES = 64;
+
+	private final File directory;
+	private final File journalFile;
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<String, Bucket>();
+	private final Object[] stripes = new Object[LOCK_STRIPES];
+	private final Object journalLock = new Object();
+	private Writer journalWriter;
+	private int journalRecords = 0;
+
+	public URLCacheIndex(File directory)
+	{
+		this.directory = directory;
+		this.journalFile = new File(directory, JOURNAL_FILENAME);
+		for (int i = 0; i < stripes.length; i++)
+		{
+			stripes[i] = new Object();
+		}
+		load();
+	}
+
+	/**
+	 * Get the index entry for the given URL, creating (and journaling) a new
+	 * entry in the given bucket if the URL is unknown.
+	 *
+	 * @param url
+	 *            URL to find the entry for
+	 * @param bucket
+	 *            Bucket (relative directory path) to place a new entry in
+	 * @param extension
+	 *            Extension to append to a newly allocated filename
+	 * @return Index entry for the URL
+	 */
+	public Entry getOrCreate(String url, String bucket, String extension)
+	{
+		Entry entry = entries.get(url);
+		if (entry != null)
+		{
+			return entry;
+		}
+
+		synchronized (stripeFor(bucket))
+		{
+			Bucket b = getBucket(bucket);
+			entry = entries.get(url);
+			if (entry == null)
+			{
+				entry = new Entry(url, bucket, b.allocate(extension));
+				entry.touch();
+				entries.put(url, entry);
+				b.add(entry);
+				appendRecords(new String[][] { putRecord(entry) });
+			}
+			return entry;
+		}
+	}
+
+	/**
+	 * Get the index entry for the given URL, without creating one if it
+	 * doesn't exist.
+	 *
+	 * @param url
+	 *            URL to find the entry for
+	 * @param bucket
+	 *            Bucket the URL would be stored in, used to import legacy
+	 *            entries
+	 * @return Index entry for the URL, or null if the URL isn't indexed
+	 */
+	public Entry get(String url, String bucket)
+	{
+		Entry entry = entries.get(url);
+		if (entry == null && !buckets.containsKey(bucket))
+		{
+			synchronized (stripeFor(bucket))
+			{
+				getBucket(bucket);
+			}
+			entry = entries.get(url);
+		}
+		return entry;
+	}
+
+	/**
+	 * Append the current state of the given entry to the journal. Should be
+	 * called after changing an entry's length or digest.
+	 *
+	 * @param entry
+	 *            Entry that has changed
+	 */
+	public void update(Entry entry)
+	{
+		synchronized (stripeFor(entry.bucket))
+		{
+			if (entries.get(entry.url) == entry)
+			{
+				appendRecords(new String[][] { putRecord(entry) });
+			}
+		}
+	}
+
+	/**
+	 * Remove the given entry from this index. The entry's filename is not
+	 * reused by later entries in the same bucket.
+	 *
+	 * @param entry
+	 *            Entry to remove
+	 * @return True if the entry was removed
+	 */
+	public boolean remove(Entry entry)
+	{
+		synchronized (stripeFor(entry.bucket))
+		{
+			if (!entries.remove(entry.url, entry))
+			{
+				return false;
+			}
+			appendRecords(new String[][] { new String[] { REMOVE_RECORD, entry.url } });
+			return true;
+		}
+	}
+
+	/**
+	 * @return Number of URLs in this index
+	 */
+	public int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * @return A snapshot of the entries currently in this index
+	 */
+	public List<Entry> getEntries()
+	{
+		return new ArrayList<Entry>(entries.values());
+	}
+
+	/**
+	 * Rewrite the journal file so that it only contains the current entries,
+	 * including their lengths and last access times. Unless
+	 * <code>force</code> is true, this does nothing until at least half of the
+	 * journal's records are obsolete.
+	 *
+	 * @param force
+	 *            Compact the journal even if it contains no obsolete records
+	 */
+	public void compact(boolean force)
+	{
+		synchronized (journalLock)
+		{
+			List<Entry> snapshot = getEntries();
+			if (!force && journalRecords <= snapshot.size() * 2)
+			{
+				return;
+			}
+
+			File tempFile = new File(directory, JOURNAL_FILENAME + ".tmp"); //$NON-NLS-1$
+			Writer writer = null;
+			try
+			{
+				directory.mkdirs();
+				writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), ENCODING));
+				for (Entry entry : snapshot)
+				{
+					writer.write(encodeRecord(putRecord(entry)));
+					writer.write('\n');
+				}
+				writer.close();
+				writer = null;
+
+				closeJournalWriter();
+				if (!journalFile.delete() && journalFile.exists() || !tempFile.renameTo(journalFile))
+				{
+					throw new IOException("Could not replace url journal file with compacted journal"); //$NON-NLS-1$
+				}
+				journalRecords = snapshot.size();
+			}
+			catch (IOException e)
+			{
+				logger.error("Error compacting url journal file: " + journalFile, e); //$NON-NLS-1$
+			}
+			finally
+			{
+				if (writer != null)
+				{
+					try
+					{
+						writer.close();
+					}
+					catch (IOException e)
+					{
+					}
+				}
+				tempFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Append a record to the journal for each entry whose last access time
+	 * has changed since it was last journaled, so that the least recently
+	 * used entries can still be found after the cache is reopened.
+	 */
+	public void flushAccessTimes()
+	{
+		//group the changed entries by stripe, so each stripe is locked once
+		List<List<Entry>> changed = new ArrayList<List<Entry>>(stripes.length);
+		for (int i = 0; i < stripes.length; i++)
+		{
+			changed.add(new ArrayList<Entry>());
+		}
+		for (Entry entry : entries.values())
+		{
+			if (entry.lastAccess != entry.journaledAccess)
+			{
+				changed.get(stripeIndexFor(entry.bucket)).add(entry);
+			}
+		}
+
+		for (int i = 0; i < stripes.length; i++)
+		{
+			List<Entry> stripeEntries = changed.get(i);
+			if (stripeEntries.isEmpty())
+			{
+				continue;
+			}
+			synchronized (stripes[i])
+			{
+				List<String[]> records = new ArrayList<String[]>(stripeEntries.size());
+				for (Entry entry : stripeEntries)
+				{
+					//entries removed since the snapshot must not be journaled again
+					if (entries.get(entry.url) == entry)
+					{
+						records.add(putRecord(entry));
+					}
+				}
+				appendRecords(records.toArray(new String[records.size()][]));
+			}
+		}
+	}
+
+	/**
+	 * Journal any changed access times, and close the journal file.
+	 * Subsequent modifications will reopen it.
+	 */
+	public void close()
+	{
+		flushAccessTimes();
+		synchronized (journalLock)
+		{
+			closeJournalWriter();
+		}
+	}
+
+	private Object stripeFor(String bucket)
+	{
+		return stripes[stripeIndexFor(bucket)];
+	}
+
+	private int stripeIndexFor(String bucket)
+	{
+		return (bucket.hashCode() & 0x7fffffff) % stripes.length;
+	}
+
+	/**
+	 * Get the bucket with the given name, importing the bucket's legacy
+	 * properties file if the bucket hasn't been seen before. Must be called
+	 * with the bucket's stripe lock held.
+	 */
+	private Bucket getBucket(String name)
+	{
+		Bucket bucket = buckets.get(name);
+		if (bucket == null)
+		{
+			bucket = new Bucket();
+			importLegacyProperties(name, bucket);
+			buckets.put(name, bucket);
+		}
+		return bucket;
+	}
+
+	private void importLegacyProperties(String bucketName, Bucket bucket)
+	{
+		File propertiesFile = new File(new File(directory, bucketName), LEGACY_PROPERTIES_FILENAME);
+		if (!propertiesFile.isFile())
+		{
+			return;
+		}
+
+		Properties properties = new Properties();
+		FileInputStream fis = null;
+		try
+		{
+			fis = new FileInputStream(propertiesFile);
+			properties.load(fis);
+		}
+		catch (IOException e)
+		{
+			logger.error("Error reading legacy url properties file: " + propertiesFile, e); //$NON-NLS-1$
+			return;
+		}
+		finally
+		{
+			if (fis != null)
+			{
+				try
+				{
+					fis.close();
+				}
+				catch (IOException e)
+				{
+				}
+			}
+		}
+
+		List<String[]> records = new ArrayList<String[]>(properties.size());
+		for (Map.Entry<Object, Object> property : properties.entrySet())
+		{
+			String url = (String) property.getKey();
+			if (entries.containsKey(url))
+			{
+				continue;
+			}
+			Entry entry = new Entry(url, bucketName, (String) property.getValue());
+			entries.put(url, entry);
+			bucket.add(entry);
+			records.add(putRecord(entry));
+		}
+		if (appendRecords(records.toArray(new String[records.size()][])))
+		{
+			propertiesFile.delete();
+		}
+	}
+
+	private void load()
+	{
+		if (!journalFile.isFile())
+		{
+			return;
+		}
+
+		BufferedReader reader = null;
+		try
+		{
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), ENCODING));
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				String[] record = decodeRecord(line);
+				if (record.length >= 4 && PUT_RECORD.equals(record[0]))
+				{
+					Entry entry = new Entry(record[1], record[2], record[3]);
+					if (record.length >= 6)
+					{
+						entry.length = parseLong(record[4], -1);
+						entry.lastAccess = parseLong(record[5], 0);
+						entry.journaledAccess = entry.lastAccess;
+					}
+					if (record.length >= 7)
+					{
+						entry.digest = parseHex(record[6]);
+					}
+					entries.put(entry.url, entry);
+					Bucket bucket = buckets.get(entry.bucket);
+					if (bucket == null)
+					{
+						bucket = new Bucket();
+						buckets.put(entry.bucket, bucket);
+					}
+					bucket.add(entry);
+				}
+				else if (record.length == 2 && REMOVE_RECORD.equals(record[0]))
+				{
+					entries.remove(record[1]);
+				}
+				else if (line.length() > 0)
+				{
+					logger.warn("Ignoring invalid url journal record: " + line); //$NON-NLS-1$
+				}
+				journalRecords++;
+			}
+		}
+		catch (IOException e)
+		{
+			logger.error("Error reading url journal file: " + journalFile, e); //$NON-NLS-1$
+		}
+		finally
+		{
+			if (reader != null)
+			{
+				try
+				{
+					reader.close();
+				}
+				catch (IOException e)
+				{
+				}
+			}
+		}
+	}
+
+	private boolean appendRecords(String[][] records)
+	{
+		if (records.length == 0)
+		{
+			return true;
+		}
+		synchronized (journalLock)
+		{
+			try
+			{
+				if (journalWriter == null)
+				{
+					directory.mkdirs();
+					journalWriter =
+							new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journalFile, true), ENCODING));
+				}
+				for (String[] record : records)
+				{
+					journalWriter.write(encodeRecord(record));
+					journalWriter.write('\n');
+				}
+				journalWriter.flush();
+				journalRecords += records.length;
+				return true;
+			}
+			catch (IOException e)
+			{
+				logger.error("Error writing url journal file: " + journalFile, e); //$NON-NLS-1$
+				closeJournalWriter();
+				return false;
+			}
+		}
+	}
+
+	private void closeJournalWriter()
+	{
+		if (journalWriter != null)
+		{
+			try
+			{
+				journalWriter.close();
+			}
+			catch (IOException e)
+			{
+				logger.warn("Error closing url journal file: " + journalFile, e); //$NON-NLS-1$
+			}
+			journalWriter = null;
+		}
+	}
+
+	private static String[] putRecord(Entry entry)
+	{
+		entry.journaledAccess = entry.lastAccess;
+		return new String[] { PUT_RECORD, entry.url, entry.bucket, entry.filename, String.valueOf(entry.length),
+				String.valueOf(entry.lastAccess), toHex(entry.digest) };
+	}
+
+	private static String toHex(byte[] bytes)
+	{
+		if (bytes == null)
+		{
+			return ""; //$NON-NLS-1$
+		}
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+		{
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+
+	private static byte[] parseHex(String s)
+	{
+		if (s.length() == 0 || s.length() % 2 != 0)
+		{
+			return null;
+		}
+		byte[] bytes = new byte[s.length() / 2];
+		for (int i = 0; i < bytes.length; i++)
+		{
+			int high = Character.digit(s.charAt(i * 2), 16);
+			int low = Character.digit(s.charAt(i * 2 + 1), 16);
+			if (high < 0 || low < 0)
+			{
+				return null;
+			}
+			bytes[i] = (byte) ((high << 4) | low);
+		}
+		return bytes;
+	}
+
+	private static long parseLong(String s, long defaultValue)
+	{
+		try
+		{
+			return Long.parseLong(s);
+		}
+		catch (NumberFormatException e)
+		{
+			return defaultValue;
+		}
+	}
+
+	static String encodeRecord(String[] fields)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < fields.length; i++)
+		{
+			if (i > 0)
+			{
+				sb.append(SEPARATOR);
+			}
+			String field = fields[i];
+			for (int j = 0; j < field.length(); j++)
+			{
+				char c = field.charAt(j);
+				switch (c)
+				{
+				case '\\':
+					sb.append("\\\\"); //$NON-NLS-1$
+					break;
+				case '\t':
+					sb.append("\\t"); //$NON-NLS-1$
+					break;
+				case '\n':
+					sb.append("\\n"); //$NON-NLS-1$
+					break;
+				case '\r':
+					sb.append("\\r"); //$NON-NLS-1$
+					break;
+				default:
+					sb.append(c);
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	static String[] decodeRecord(String line)
+	{
+		List<String> fields = new ArrayList<String>();
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < line.length(); i++)
+		{
+			char c = line.charAt(i);
+			if (c == SEPARATOR)
+			{
+				fields.add(sb.toString());
+				sb.setLength(0);
+			}
+			else if (c == '\\' && i + 1 < line.length())
+			{
+				char n = line.charAt(++i);
+				sb.append(n == 't' ? '\t' : n == 'n' ? '\n' : n == 'r' ? '\r' : n);
+			}
+			else
+			{
+				sb.append(c);
+			}
+		}
+		fields.add(sb.toString());
+		return fields.toArray(new String[fields.size()]);
+	}
+
+	/**
+	 * An entry in the {@link URLCacheIndex}, mapping a URL to a filename within
+	 * a bucket directory.
+	 */
+	public static class Entry
+	{
+		public final String url;
+		public final String bucket;
+		public final String filename;
+		private volatile long length = -1;
+		private volatile long lastAccess = 0;
+		private volatile long journaledAccess = 0;
+		private volatile byte[] digest;
+		private volatile byte[] partialDigest;
+		private final AtomicInteger mappings = new AtomicInteger();
+
+		private Entry(String url, String bucket, String filename)
+		{
+			this.url = url;
+			this.bucket = bucket;
+			this.filename = filename;
+		}
+
+		/**
+		 * @return Length of this entry's complete file, or -1 if unknown
+		 */
+		public long getLength()
+		{
+			return length;
+		}
+
+		public void setLength(long length)
+		{
+			this.length = length;
+		}
+
+		/**
+		 * @return Time (in milliseconds) this entry was last accessed
+		 */
+		public long getLastAccess()
+		{
+			return lastAccess;
+		}
+
+		/**
+		 * @return Digest of this entry's complete file, or null if unknown
+		 */
+		public byte[] getDigest()
+		{
+			return digest;
+		}
+
+		public void setDigest(byte[] digest)
+		{
+			this.digest = digest;
+		}
+
+		/**
+		 * @return Digest of this entry's partial file, calculated while it was
+		 *         written, or null if unknown. This is not journaled.
+		 */
+		public byte[] getPartialDigest()
+		{
+			return partialDigest;
+		}
+
+		public void setPartialDigest(byte[] partialDigest)
+		{
+			this.partialDigest = partialDigest;
+		}
+
+		/**
+		 * Mark this entry as accessed now.
+		 */
+		public void touch()
+		{
+			lastAccess = System.currentTimeMillis();
+		}
+
+		/**
+		 * @return True if any memory mappings of this entry's complete file are
+		 *         still reachable. This is not journaled.
+		 */
+		public boolean isMapped()
+		{
+			return mappings.get() > 0;
+		}
+
+		public void addMapping()
+		{
+			mappings.incrementAndGet();
+		}
+
+		public void removeMapping()
+		{
+			mappings.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Allocates unique filenames within a bucket directory. Filenames are a
+	 * sequential number followed by the URL's extension, which matches the
+	 * legacy <code>urls.properties</code> naming scheme.
+	 */
+	private static class Bucket
+	{
+		private int next = 0;
+
+		private void add(Entry entry)
+		{
+			int number = leadingNumber(entry.filename);
+			if (number >= next)
+			{
+				next = number + 1;
+			}
+		}
+
+		private String allocate(String extension)
+		{
+			return (next++) + extension;
+		}
+
+		private static int leadingNumber(String filename)
+		{
+			int value = 0;
+			int i = 0;
+			for (; i < filename.length(); i++)
+			{
+				char c = filename.charAt(i);
+				if (c < '0' || c > '9' || value > (Integer.MAX_VALUE - 9) / 10)
+				{
+					break;
+				}
+				value = value * 10 + (c - '0');
+			}
+			return i == 0 ? -1 : value;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Usage counters for an {@link IURLCache}. All methods are thread safe.
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class URLCacheStatistics
+{
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong evictedBytes = new AtomicLong();
+	private final AtomicLong size = new AtomicLong();
+	private final AtomicLong entries = new AtomicLong();
+
+	public void recordHit()
+	{
+		hits.incrementAndGet();
+	}
+
+	public void recordMiss()
+	{
+		misses.incrementAndGet();
+	}
+
+	public void recordEviction(long bytes)
+	{
+		evictions.incrementAndGet();
+		evictedBytes.addAndGet(bytes);
+	}
+
+	/**
+	 * Set the current usage of the cache.
+	 *
+	 * @param size
+	 *            Total size (in bytes) of the complete resources in the cache
+	 * @param entries
+	 *            Number of complete resources in the cache
+	 */
+	public void setUsage(long size, long entries)
+	{
+		this.size.set(size);
+		this.entries.set(entries);
+	}
+
+	/**
+	 * Add the counters of the given statistics to this object's counters.
+	 *
+	 * @param statistics
+	 *            Statistics to add
+	 */
+	public void add(URLCacheStatistics statistics)
+	{
+		hits.addAndGet(statistics.getHits());
+		misses.addAndGet(statistics.getMisses());
+		evictions.addAndGet(statistics.getEvictions());
+		evictedBytes.addAndGet(statistics.getEvictedBytes());
+		size.addAndGet(statistics.getSize());
+		entries.addAndGet(statistics.getEntries());
+	}
+
+	/**
+	 * @return Number of cache lookups that found a complete resource
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return Number of cache lookups that didn't find a complete resource
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return Number of resources evicted from the cache
+	 */
+	public long getEvictions()
+	{
+		return evictions.get();
+	}
+
+	/**
+	 * @return Total size (in bytes) of resources evicted from the cache
+	 */
+	public long getEvictedBytes()
+	{
+		return evictedBytes.get();
+	}
+
+	/**
+	 * @return Total size (in bytes) of the complete resources in the cache,
+	 *         as of the last eviction check
+	 */
+	public long getSize()
+	{
+		return size.get();
+	}
+
+	/**
+	 * @return Number of complete resources in the cache, as of the last
+	 *         eviction check
+	 */
+	public long getEntries()
+	{
+		return entries.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ ", evictedBytes=" + getEvictedBytes() + ", size=" + getSize() + ", entries=" + getEntries(); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+}
@@ -16,14 +16,17 @@
 package au.gov.ga.earthsci.core.retrieve.result;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.MappedByteBuffer;
 
 import org.eclipse.core.runtime.FileLocator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import au.gov.ga.earthsci.common.util.FileUtil;
 import au.gov.ga.earthsci.common.util.Util;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalData;
 
@@ -59,6 +62,27 @@ public abstract class AbstractRetrievalData implements IRetrievalData
 		return contentType;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p/>
+	 * This implementation maps the resource if the URL is a file URL.
+	 */
+	@Override
+	public MappedByteBuffer getMappedByteBuffer() throws IOException
+	{
+		if ("file".equalsIgnoreCase(url.getProtocol())) //$NON-NLS-1$
+		{
+			try
+			{
+				return FileUtil.mapReadOnly(new File(url.toURI()));
+			}
+			catch (URISyntaxException e)
+			{
+			}
+		}
+		return null;
+	}
+
 	@Override
 	public File getFile()
 	{
@@ -15,11 +15,11 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.core.retrieve.result;
 
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.ByteBuffer;
 
+import au.gov.ga.earthsci.common.buffer.ByteBufferInputStream;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalData;
 
 /**
@@ -41,26 +41,15 @@ public class ByteBufferRetrievalData extends AbstractRetrievalData
 	@Override
 	public InputStream getInputStream()
 	{
-		if (buffer.hasArray())
-		{
-			return new ByteArrayInputStream(buffer.array(), 0, buffer.limit());
-		}
-		synchronized (buffer)
-		{
-			byte[] array = new byte[buffer.limit()];
-			buffer.rewind();
-			buffer.get(array);
-			return new ByteArrayInputStream(array);
-		}
+		return new ByteBufferInputStream(getByteBuffer());
 	}
 
 	@Override
 	public ByteBuffer getByteBuffer()
 	{
-		synchronized (buffer)
-		{
-			buffer.rewind();
-			return buffer.slice();
-		}
+		//duplicate so that concurrent callers don't modify the shared buffer's position
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.rewind();
+		return duplicate.slice();
 	}
 }
@@ -22,7 +22,9 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 
+import au.gov.ga.earthsci.common.util.FileUtil;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalData;
 
 /**
@@ -66,6 +68,12 @@ public class FileRetrievalData implements IRetrievalData
 		return WWIO.readFileToBuffer(file);
 	}
 
+	@Override
+	public MappedByteBuffer getMappedByteBuffer() throws IOException
+	{
+		return FileUtil.mapReadOnly(file);
+	}
+
 	@Override
 	public File getFile()
 	{
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 
 import au.gov.ga.earthsci.core.retrieve.IRetrievalData;
 import au.gov.ga.earthsci.core.retrieve.cache.IURLCache;
@@ -75,6 +76,12 @@ public class URLCacheRetrievalData implements IRetrievalData
 		}
 	}
 
+	@Override
+	public MappedByteBuffer getMappedByteBuffer() throws IOException
+	{
+		return cache.map(url);
+	}
+
 	@Override
 	public File getFile()
 	{
@@ -27,16 +27,22 @@ import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.ByteBuffer;
 
+import javax.inject.Inject;
+
+import org.eclipse.e4.core.di.extensions.Preference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import au.gov.ga.earthsci.common.util.ConfigurationUtil;
 import au.gov.ga.earthsci.common.util.Util;
+import au.gov.ga.earthsci.core.preferences.PreferenceConstants;
+import au.gov.ga.earthsci.core.retrieve.ICachingRetriever;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalData;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalProperties;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalResult;
 import au.gov.ga.earthsci.core.retrieve.IRetriever;
 import au.gov.ga.earthsci.core.retrieve.IRetrieverMonitor;
+import au.gov.ga.earthsci.core.retrieve.RetrievalServicePreferences;
 import au.gov.ga.earthsci.core.retrieve.RetrievalStatus;
 import au.gov.ga.earthsci.core.retrieve.RetrieverResult;
 import au.gov.ga.earthsci.core.retrieve.RetrieverResultStatus;
@@ -49,10 +55,13 @@ import au.gov.ga.earthsci.core.retrieve.result.URLCacheRetrievalData;
 
 /**
  * {@link IRetriever} implementation used for retrieving HTTP URLs.
+ * <p/>
+ * Connections are opened and released by an {@link IHttpTransport}; by default
+ * a {@link PersistentHttpTransport}, which reuses connections to the same host.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
-public class HttpRetriever implements IRetriever
+public class HttpRetriever implements ICachingRetriever
 {
 	private final static Logger logger = LoggerFactory.getLogger(HttpRetriever.class);
 	private final static IURLCache urlCache;
@@ -74,6 +83,47 @@ public class HttpRetriever implements IRetriever
 		urlCache = cacheDir == null ? null : new FileURLCache(cacheDir);
 	}
 
+	private volatile IHttpTransport transport = new PersistentHttpTransport();
+
+	/**
+	 * @return The transport used to open HTTP connections
+	 */
+	public IHttpTransport getTransport()
+	{
+		return transport;
+	}
+
+	/**
+	 * Set the transport used to open HTTP connections.
+	 * 
+	 * @param transport
+	 */
+	public void setTransport(IHttpTransport transport)
+	{
+		if (transport == null)
+		{
+			throw new NullPointerException("Transport cannot be null"); //$NON-NLS-1$
+		}
+		this.transport = transport;
+	}
+
+	@Inject
+	public void setKeepAlive(
+			@Preference(nodePath = PreferenceConstants.QUALIFIER_ID,
+					value = RetrievalServicePreferences.HTTP_KEEP_ALIVE) boolean keepAlive)
+	{
+		if (keepAlive != (transport instanceof PersistentHttpTransport))
+		{
+			setTransport(keepAlive ? new PersistentHttpTransport() : new SimpleHttpTransport());
+		}
+	}
+
+	@Override
+	public IURLCache getCache()
+	{
+		return urlCache;
+	}
+
 	@Override
 	public boolean supports(URL url)
 	{
@@ -96,10 +146,12 @@ public class HttpRetriever implements IRetriever
 	{
 		monitor.updateStatus(RetrievalStatus.STARTED);
 
+		IHttpTransport transport = this.transport;
 		HttpURLConnection connection = null;
+		boolean reusable = false;
 		try
 		{
-			connection = (HttpURLConnection) url.openConnection();
+			connection = transport.openConnection(url);
 			connection.setConnectTimeout(retrievalProperties.getConnectTimeout());
 			connection.setReadTimeout(retrievalProperties.getReadTimeout());
 
@@ -197,11 +249,15 @@ public class HttpRetriever implements IRetriever
 
 			if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED)
 			{
+				//a 304 has no body, so closing the stream allows the connection to be reused
+				connection.getInputStream().close();
+				reusable = true;
 				return new RetrieverResult(new BasicRetrievalResult(cachedData, true), RetrieverResultStatus.COMPLETE);
 			}
 			else if (responseCode != HttpURLConnection.HTTP_OK && responseCode != HttpURLConnection.HTTP_PARTIAL)
 			{
-				// response not ok
+				// response not ok; the transport handles the error body
+				reusable = true;
 				throw new IOException("Received " + responseCode + " " + connection.getResponseMessage() //$NON-NLS-1$ //$NON-NLS-2$
 						+ " when requesting url: " + url); //$NON-NLS-1$
 			}
@@ -239,6 +295,7 @@ public class HttpRetriever implements IRetriever
 					{
 						os = urlCache.writePartial(url, position);
 						Util.writeInputStreamToOutputStream(is, os);
+						reusable = true;
 					}
 					finally
 					{
@@ -264,11 +321,13 @@ public class HttpRetriever implements IRetriever
 					String suffix = Util.getExtension(url.getPath());
 					suffix = suffix != null ? suffix : ""; //$NON-NLS-1$
 					File file = Util.writeInputStreamToTemporaryFile(is, prefix, suffix);
+					reusable = true;
 					retrievedData = new FileRetrievalData(file, contentType);
 				}
 				else
 				{
 					ByteBuffer buffer = WWIO.readStreamToBuffer(is);
+					reusable = true;
 					retrievedData = new ByteBufferRetrievalData(url, buffer, contentType);
 				}
 				IRetrievalResult result = new BasicRetrievalResult(retrievedData, false);
@@ -289,7 +348,7 @@ public class HttpRetriever implements IRetriever
 		}
 		finally
 		{
-			connection.disconnect();
+			transport.releaseConnection(connection, reusable && !monitor.isCanceled() && !monitor.isPaused());
 		}
 	}
 
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.retriever;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Transport used by the {@link HttpRetriever} to open and release HTTP
+ * connections. Implementations control how (and whether) the underlying
+ * sockets are reused between retrievals.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public interface IHttpTransport
+{
+	/**
+	 * Open a connection to the given URL. The connection is not yet connected.
+	 * 
+	 * @param url
+	 *            HTTP/HTTPS URL to open
+	 * @return Unconnected connection to the URL
+	 * @throws IOException
+	 */
+	HttpURLConnection openConnection(URL url) throws IOException;
+
+	/**
+	 * Release a connection opened by this transport. Called once per
+	 * connection, after the retrieval has finished with it.
+	 * 
+	 * @param connection
+	 *            Connection to release
+	 * @param reusable
+	 *            True if the response was read (or doesn't need to be read),
+	 *            and the connection is in a state that allows the underlying
+	 *            socket to be reused; false if the retrieval failed or was
+	 *            canceled part way through
+	 */
+	void releaseConnection(HttpURLConnection connection, boolean reusable);
+}
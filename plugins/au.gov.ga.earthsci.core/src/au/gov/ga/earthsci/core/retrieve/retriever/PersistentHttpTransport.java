@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.retriever;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import au.gov.ga.earthsci.core.retrieve.RetrievalDispatcher;
+
+/**
+ * {@link IHttpTransport} that keeps connections alive between retrievals.
+ * <p/>
+ * {@link HttpURLConnection} pools idle sockets per host, but only returns a
+ * socket to the pool once its response body has been completely read and
+ * closed; calling {@link HttpURLConnection#disconnect()} closes the socket
+ * instead. This transport only disconnects connections that aren't reusable,
+ * and drains small unread response bodies (such as error pages) so that their
+ * sockets can be pooled.
+ * <p/>
+ * The number of concurrent connections per host is limited by the
+ * {@link RetrievalDispatcher}. The size of the JDK's idle pool is configured
+ * at startup by {@link #configureMaxConnections(int)}, so that it can hold as
+ * many connections per host as the dispatcher allows.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class PersistentHttpTransport implements IHttpTransport
+{
+	private final static String MAX_CONNECTIONS_PROPERTY = "http.maxConnections"; //$NON-NLS-1$
+	private final static int MAX_DRAIN_BYTES = 64 * 1024;
+
+	private static boolean maxConnectionsConfigured = false;
+
+	/**
+	 * Set the <code>http.maxConnections</code> system property, which is the
+	 * number of idle connections per host kept alive by the JDK. The JDK reads
+	 * this property once, when the first HTTP connection is opened, so this
+	 * should be called at application startup. Does nothing if the property
+	 * was set on the command line.
+	 * 
+	 * @param maxPerHost
+	 *            Maximum number of simultaneous retrievals per host; 0 or less
+	 *            for unlimited, which keeps the JDK default
+	 */
+	public static synchronized void configureMaxConnections(int maxPerHost)
+	{
+		try
+		{
+			if (!maxConnectionsConfigured && System.getProperty(MAX_CONNECTIONS_PROPERTY) != null)
+			{
+				return;
+			}
+			if (maxPerHost > 0)
+			{
+				System.setProperty(MAX_CONNECTIONS_PROPERTY, String.valueOf(maxPerHost));
+				maxConnectionsConfigured = true;
+			}
+		}
+		catch (SecurityException e)
+		{
+			//ignore, use the JDK default
+		}
+	}
+
+	@Override
+	public HttpURLConnection openConnection(URL url) throws IOException
+	{
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestProperty("Connection", "keep-alive"); //$NON-NLS-1$ //$NON-NLS-2$
+		return connection;
+	}
+
+	@Override
+	public void releaseConnection(HttpURLConnection connection, boolean reusable)
+	{
+		if (!reusable || !drain(connection.getErrorStream()))
+		{
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * Read and close the given stream, giving up if it contains more than
+	 * {@link #MAX_DRAIN_BYTES}.
+	 * 
+	 * @param is
+	 *            Stream to drain (can be null)
+	 * @return True if the stream was completely read
+	 */
+	private static boolean drain(InputStream is)
+	{
+		if (is == null)
+		{
+			return true;
+		}
+		try
+		{
+			byte[] buffer = new byte[4096];
+			int total = 0;
+			int read;
+			while ((read = is.read(buffer)) >= 0)
+			{
+				total += read;
+				if (total > MAX_DRAIN_BYTES)
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+		catch (IOException e)
+		{
+			return false;
+		}
+		finally
+		{
+			try
+			{
+				is.close();
+			}
+			catch (IOException e)
+			{
+				//ignore
+			}
+		}
+	}
+}
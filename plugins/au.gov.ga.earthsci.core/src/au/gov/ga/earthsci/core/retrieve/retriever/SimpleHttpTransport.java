@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.retrieve.retriever;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * {@link IHttpTransport} that disconnects each connection once it has been
+ * used, so no sockets are reused between retrievals. Useful for servers or
+ * proxies that don't handle persistent connections correctly.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class SimpleHttpTransport implements IHttpTransport
+{
+	@Override
+	public HttpURLConnection openConnection(URL url) throws IOException
+	{
+		return (HttpURLConnection) url.openConnection();
+	}
+
+	@Override
+	public void releaseConnection(HttpURLConnection connection, boolean reusable)
+	{
+		connection.disconnect();
+	}
+}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.core.worldwind;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.e4.core.di.annotations.Creatable;
+import org.eclipse.e4.core.di.extensions.Preference;
+import org.eclipse.jface.preference.IPreferenceStore;
+
+import au.gov.ga.earthsci.core.preferences.PreferenceConstants;
+import au.gov.ga.earthsci.core.preferences.ScopedPreferenceStore;
+import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.earthsci.worldwind.common.render.fastshape.SingleTaskRunner;
+import au.gov.ga.earthsci.worldwind.common.util.WorkerPool;
+
+/**
+ * Contains the preferences for background processing, such as the number of
+ * threads used by the {@link WorkerPool}s that load and process data, and by
+ * the {@link FastShape} vertex and index updaters.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+@Creatable
+@Singleton
+public class ProcessingPreferences extends AbstractPreferenceInitializer
+{
+	public static final String WORKER_THREADS = "processingWorkerThreads"; //$NON-NLS-1$
+
+	@Override
+	public void initializeDefaultPreferences()
+	{
+		IPreferenceStore store = new ScopedPreferenceStore(DefaultScope.INSTANCE, PreferenceConstants.QUALIFIER_ID);
+		store.setDefault(WORKER_THREADS, 0);
+	}
+
+	@Inject
+	public void preferencesChanged(
+			@Preference(nodePath = PreferenceConstants.QUALIFIER_ID, value = WORKER_THREADS) int workerThreads)
+	{
+		WorkerPool.setDefaultParallelism(Math.max(0, workerThreads));
+		//the updaters run alongside each other, so by default they share the processors
+		FastShape.setUpdaterThreadCount(workerThreads > 0 ? workerThreads : SingleTaskRunner.DEFAULT_THREAD_COUNT);
+	}
+}
@@ -16,12 +16,14 @@
 package au.gov.ga.earthsci.core.worldwind;
 
 import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.jface.preference.IntegerFieldEditor;
 
 import au.gov.ga.earthsci.common.ui.preferences.FieldEditorPreferencePage;
 import au.gov.ga.earthsci.core.preferences.PreferenceConstants;
 import au.gov.ga.earthsci.core.preferences.ScopedPreferenceStore;
+import au.gov.ga.earthsci.core.retrieve.RetrievalServicePreferences;
 
 /**
  * Preferences page for editing retrieval preferences.
@@ -43,5 +45,15 @@ public class RetrievePreferencePage extends FieldEditorPreferencePage
 	{
 		addField(new IntegerFieldEditor(WorldWindRetrievalServicePreferences.POOL_SIZE, "&Simultaneous connections",
 				getFieldEditorParent()));
+		addField(new IntegerFieldEditor(RetrievalServicePreferences.MAX_CONCURRENT,
+				"Simultaneous &resource retrievals (0 = unlimited)", getFieldEditorParent()));
+		addField(new IntegerFieldEditor(RetrievalServicePreferences.MAX_PER_HOST,
+				"Simultaneous retrievals per &host (0 = unlimited)", getFieldEditorParent()));
+		addField(new BooleanFieldEditor(RetrievalServicePreferences.HTTP_KEEP_ALIVE,
+				"Reuse HTTP &connections (keep-alive)", getFieldEditorParent()));
+		addField(new IntegerFieldEditor(RetrievalServicePreferences.CACHE_MAX_SIZE, "Maximum cache &size (MB, 0 = unlimited)",
+				getFieldEditorParent()));
+		addField(new IntegerFieldEditor(RetrievalServicePreferences.CACHE_MAX_ENTRIES,
+				"Maximum cached &files (0 = unlimited)", getFieldEditorParent()));
 	}
 }
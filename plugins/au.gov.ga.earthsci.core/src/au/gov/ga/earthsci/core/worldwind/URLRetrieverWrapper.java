@@ -16,6 +16,7 @@
 package au.gov.ga.earthsci.core.worldwind;
 
 import gov.nasa.worldwind.retrieve.JarRetriever;
+import gov.nasa.worldwind.retrieve.Retriever;
 import gov.nasa.worldwind.retrieve.URLRetriever;
 import gov.nasa.worldwind.util.WWUtil;
 
@@ -24,6 +25,7 @@ import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URLConnection;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,13 +34,22 @@ import au.gov.ga.earthsci.core.retrieve.IRetrieval;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalData;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalResult;
 import au.gov.ga.earthsci.core.retrieve.IRetrievalService;
+import au.gov.ga.earthsci.core.retrieve.RetrievalAdapter;
 import au.gov.ga.earthsci.core.retrieve.RetrievalProperties;
 import au.gov.ga.earthsci.core.retrieve.RetrievalServiceFactory;
+import au.gov.ga.earthsci.core.retrieve.RetrievalStatus;
 import au.gov.ga.earthsci.worldwind.common.retrieve.RetrievalListenerHelper;
+import au.gov.ga.earthsci.worldwind.common.util.WorkerPool;
 
 /**
  * {@link URLRetriever} that performs URL retrieval using the
  * {@link IRetrievalService} instead of performing its own retrieving.
+ * <p/>
+ * The wrapper can either be run synchronously like any other {@link Retriever}
+ * (in which case the calling thread waits for the retrieval to complete), or
+ * asynchronously using {@link #start(Runnable)}, in which case the wrapped
+ * retriever's post processor is run from the retrieval's completion callback,
+ * and no thread waits for the download.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -53,8 +64,20 @@ public class URLRetrieverWrapper extends JarRetriever
 	private int responseCode = -1;
 	private String responseMessage = "FAILED"; //$NON-NLS-1$
 
+	private volatile IRetrieval retrieval;
+	private volatile RetrievalCompletion completion;
+	private volatile Object caller;
+	private volatile boolean canceled = false;
+	private volatile int priority = 0;
+
 	private static final Logger logger = LoggerFactory.getLogger(URLRetrieverWrapper.class);
 
+	//mapping a file has a fixed cost, so small resources (such as most tiles) are faster to copy
+	static final long MIN_MAPPED_LENGTH = 1024 * 1024;
+
+	//runs the post processors of retrievals that had already completed when started
+	private static final WorkerPool postProcessors = new WorkerPool(URLRetrieverWrapper.class.getName());
+
 	public URLRetrieverWrapper(URLRetriever wrapped)
 	{
 		super(wrapped.getUrl(), wrapped.getPostProcessor());
@@ -67,8 +90,110 @@ public class URLRetrieverWrapper extends JarRetriever
 		return null;
 	}
 
-	@Override
-	protected ByteBuffer read() throws Exception
+	/**
+	 * Start retrieving this retriever's URL asynchronously. Once the retrieval
+	 * completes (or is cancelled), this retriever is run on the thread that
+	 * notifies the retrieval's completion, which passes the result to the post
+	 * processor, and then the given callback is run. If the retrieval has
+	 * already completed, this happens on a worker thread instead of the
+	 * calling thread.
+	 * 
+	 * @param callback
+	 *            Runnable to run after the post processor; may be null
+	 */
+	public void start(final Runnable callback)
+	{
+		IRetrieval retrieval = createRetrieval();
+		if (retrieval == null)
+		{
+			//unsupported url, already logged by the retrieval service
+			if (callback != null)
+			{
+				callback.run();
+			}
+			return;
+		}
+		RetrievalCompletion completion = new RetrievalCompletion(callback);
+		this.completion = completion;
+		this.retrieval = retrieval;
+		retrieval.addListener(completion);
+		completion.adding = false;
+		retrieval.start();
+	}
+
+	/**
+	 * Cancel a retrieval started by {@link #start(Runnable)}. The post
+	 * processor is not run if the retrieval hadn't completed, but the callback
+	 * still is.
+	 * <p/>
+	 * The retrieval itself is only cancelled if this retriever's caller is its
+	 * only caller; otherwise it continues for the other callers, and this
+	 * retriever stops waiting for it.
+	 */
+	public void cancel()
+	{
+		canceled = true;
+		IRetrieval retrieval = this.retrieval;
+		if (retrieval == null)
+		{
+			return;
+		}
+		Object[] callers = retrieval.getCallers();
+		if (callers.length == 1 && callers[0] == caller)
+		{
+			retrieval.cancel();
+		}
+		else
+		{
+			retrieval.removeListener(completion);
+			completion.finish(false);
+		}
+	}
+
+	/**
+	 * @return Is the retrieval started by {@link #start(Runnable)} waiting to
+	 *         be scheduled (ie it hasn't started downloading)?
+	 */
+	public boolean isQueued()
+	{
+		IRetrieval retrieval = this.retrieval;
+		return retrieval != null && retrieval.getStatus() == RetrievalStatus.QUEUED;
+	}
+
+	/**
+	 * Set the priority of this retriever's retrieval. Can be called before
+	 * starting, or while the retrieval started by {@link #start(Runnable)} is
+	 * waiting to be scheduled.
+	 * 
+	 * @param priority
+	 *            Retrieval priority; higher priority retrievals are scheduled
+	 *            first
+	 */
+	public void reprioritize(int priority)
+	{
+		this.priority = priority;
+		IRetrieval retrieval = this.retrieval;
+		if (retrieval != null)
+		{
+			retrieval.reprioritize(priority);
+		}
+	}
+
+	/**
+	 * @return Has the retrieval started by {@link #start(Runnable)} been
+	 *         cancelled?
+	 */
+	public boolean isCanceled()
+	{
+		if (canceled)
+		{
+			return true;
+		}
+		IRetrieval retrieval = this.retrieval;
+		return retrieval != null && retrieval.isCanceled();
+	}
+
+	private IRetrieval createRetrieval()
 	{
 		Object caller = RetrievalListenerHelper.getLayer(wrapped);
 		if (caller == null)
@@ -79,13 +204,25 @@ public class URLRetrieverWrapper extends JarRetriever
 				caller = wrapped;
 			}
 		}
+		this.caller = caller;
 		IRetrievalService service = RetrievalServiceFactory.getServiceInstance();
 		RetrievalProperties retrievalProperties = new RetrievalProperties();
 		retrievalProperties.setConnectTimeout(getConnectTimeout());
 		retrievalProperties.setReadTimeout(getReadTimeout());
 		retrievalProperties.setUseCache(false);
-		IRetrieval retrieval = service.retrieve(caller, getUrl(), retrievalProperties);
-		retrieval.start();
+		retrievalProperties.setPriority(priority);
+		return service.retrieve(caller, getUrl(), retrievalProperties);
+	}
+
+	@Override
+	protected ByteBuffer read() throws Exception
+	{
+		IRetrieval retrieval = this.retrieval;
+		if (retrieval == null)
+		{
+			retrieval = createRetrieval();
+			retrieval.start();
+		}
 		IRetrievalResult result = retrieval.waitAndGetResult();
 
 		//TODO handle case when result is null (job manager shut down? cancelled download?)
@@ -117,7 +254,7 @@ public class URLRetrieverWrapper extends JarRetriever
 					}
 				}
 
-				return data.getByteBuffer();
+				return readBuffer(data);
 			}
 			else if (result.getError() != null)
 			{
@@ -132,6 +269,91 @@ public class URLRetrieverWrapper extends JarRetriever
 		throw new IllegalStateException("Could not retrieve url: " + getUrl()); //$NON-NLS-1$
 	}
 
+	/**
+	 * Get a buffer containing the retrieved data. Large resources stored in a
+	 * local file (such as a cache entry) are mapped instead of being copied
+	 * onto the heap; the post processors only read the buffer.
+	 */
+	static ByteBuffer readBuffer(IRetrievalData data) throws IOException
+	{
+		if (data.getContentLength() >= MIN_MAPPED_LENGTH)
+		{
+			ByteBuffer mapped = data.getMappedByteBuffer();
+			if (mapped != null)
+			{
+				return mapped;
+			}
+		}
+		return data.getByteBuffer();
+	}
+
+	/**
+	 * Listener that runs the post processor and then the callback once the
+	 * retrieval started by {@link #start(Runnable)} completes, at most once.
+	 */
+	private class RetrievalCompletion extends RetrievalAdapter
+	{
+		private final Runnable callback;
+		private final AtomicBoolean finished = new AtomicBoolean(false);
+		private volatile boolean adding = true;
+
+		public RetrievalCompletion(Runnable callback)
+		{
+			this.callback = callback;
+		}
+
+		@Override
+		public void complete(final IRetrieval retrieval)
+		{
+			retrieval.removeListener(this);
+			//don't post process retrievals cancelled before completing, otherwise
+			//World Wind marks the resource as absent, and won't request it again
+			final boolean postProcess = !retrieval.isCanceled() || retrieval.hasResult();
+			if (!adding)
+			{
+				finish(postProcess);
+				return;
+			}
+
+			//already complete when the listener was added, so this is called from addListener, on
+			//the thread starting the retrieval while holding the retrieval's listener lock
+			postProcessors.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					finish(postProcess);
+				}
+			});
+		}
+
+		public void finish(boolean postProcess)
+		{
+			if (!finished.compareAndSet(false, true))
+			{
+				return;
+			}
+			try
+			{
+				if (postProcess)
+				{
+					call();
+				}
+			}
+			catch (Exception e)
+			{
+				logger.debug("Error retrieving url: " + getUrl(), e); //$NON-NLS-1$
+			}
+			finally
+			{
+				if (callback != null)
+				{
+					callback.run();
+				}
+			}
+		}
+	}
+
 	@Override
 	public int getResponseCode()
 	{
@@ -15,27 +15,287 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.core.worldwind;
 
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.retrieve.RetrievalFuture;
 import gov.nasa.worldwind.retrieve.Retriever;
 import gov.nasa.worldwind.retrieve.URLRetriever;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import au.gov.ga.earthsci.core.retrieve.IRetrievalService;
 import au.gov.ga.earthsci.core.retrieve.RetrievalService;
 import au.gov.ga.earthsci.worldwind.common.retrieve.ExtendedRetrievalService;
+import au.gov.ga.earthsci.worldwind.common.retrieve.RetrievalPrioritizer;
+import au.gov.ga.earthsci.worldwind.common.retrieve.RetrievalPriorityVotes;
 
 /**
  * {@link RetrievalService} that redirects url retrievals through our retrieval
  * system.
+ * <p/>
+ * Url retrievals don't use this service's thread pool: they are started
+ * asynchronously in the {@link IRetrievalService}, and the World Wind
+ * retriever's post processor is run from the retrieval's completion callback.
+ * This means each in-flight download only occupies the retrieval service's
+ * thread, rather than also a thread from this service's pool waiting for it.
+ * <p/>
+ * When {@link #reprioritize(DrawContext) reprioritized}, url retrievals that
+ * are still waiting for a connection are reordered in the retrieval service
+ * using their {@link RetrievalPrioritizer}, or cancelled once no view
+ * requires them (see {@link RetrievalPriorityVotes}).
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class WorldWindRetrievalService extends ExtendedRetrievalService
 {
+	private static final Logger logger = LoggerFactory.getLogger(WorldWindRetrievalService.class);
+	private static final int DEFAULT_QUEUE_SIZE = 100;
+	//priorities are mapped on a log scale; this is the smallest magnitude that is distinguished from 0
+	private static final double PRIORITY_RESOLUTION = 1e-9;
+	//steps per decade of priority magnitude; the largest double maps to about 3.2e8
+	private static final double PRIORITY_LOG_SCALE = 1e6;
+
+	//keyed by the retriever name (the url string), like the thread pool's duplicate detection
+	private final ConcurrentMap<String, URLRetrievalFuture> urlRetrievals =
+			new ConcurrentHashMap<String, URLRetrievalFuture>();
+	private final int queueSize;
+
+	public WorldWindRetrievalService()
+	{
+		queueSize = Configuration.getIntegerValue(AVKey.RETRIEVAL_QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+	}
+
+	@Override
+	public RetrievalFuture runRetriever(Retriever retriever, double priority)
+	{
+		if (!(retriever instanceof URLRetriever) || retriever.getName() == null)
+		{
+			return super.runRetriever(retriever, priority);
+		}
+
+		final String name = retriever.getName();
+		final URLRetrieverWrapper wrapper = new URLRetrieverWrapper((URLRetriever) retriever);
+		final URLRetrievalFuture future = new URLRetrievalFuture(wrapper, getPrioritizer(retriever));
+		if (future.prioritizer != null)
+		{
+			wrapper.reprioritize(toRetrievalPriority(priority));
+		}
+		if (urlRetrievals.putIfAbsent(name, future) != null)
+		{
+			//do not run duplicates
+			return null;
+		}
+
+		long now = System.currentTimeMillis();
+		wrapper.setSubmitTime(now);
+		wrapper.setBeginTime(now);
+		beforeDownload(wrapper);
+		Runnable callback = new Runnable()
+		{
+			private final AtomicBoolean run = new AtomicBoolean(false);
+
+			@Override
+			public void run()
+			{
+				if (!run.compareAndSet(false, true))
+				{
+					return;
+				}
+				wrapper.setEndTime(System.currentTimeMillis());
+				urlRetrievals.remove(name, future);
+				if (!wrapper.isCanceled())
+				{
+					completedCount.incrementAndGet();
+				}
+				try
+				{
+					afterDownload(wrapper);
+				}
+				finally
+				{
+					future.done();
+				}
+			}
+		};
+		try
+		{
+			wrapper.start(callback);
+		}
+		catch (RuntimeException e)
+		{
+			//otherwise the url would be treated as in progress forever, and never requested again
+			logger.error("Error starting retrieval of url: " + name, e); //$NON-NLS-1$
+			wrapper.cancel();
+			callback.run();
+		}
+		return future;
+	}
+
+	@Override
+	public void reprioritize(DrawContext dc)
+	{
+		super.reprioritize(dc);
+
+		View view = dc != null ? dc.getView() : null;
+		for (URLRetrievalFuture future : urlRetrievals.values())
+		{
+			URLRetrieverWrapper wrapper = future.retriever;
+			if (future.prioritizer == null || !wrapper.isQueued())
+			{
+				continue;
+			}
+
+			//only cancelled once no view requires it
+			double priority = priorityVotes.vote(view, wrapper, future.prioritizer.getRetrievalPriority(dc));
+			if (Double.isNaN(priority))
+			{
+				cancelledCount.incrementAndGet();
+				wrapper.cancel();
+			}
+			else
+			{
+				wrapper.reprioritize(toRetrievalPriority(priority));
+			}
+		}
+	}
+
+	/**
+	 * Convert a World Wind retrieval priority (smaller values first) to an
+	 * {@link IRetrievalService} priority (larger values first).
+	 * <p/>
+	 * Negative priorities (such as those of elevation tiles) are mapped into
+	 * their own band above all non-negative priorities, so that they stay
+	 * ahead of imagery. The magnitude of the priority is mapped on a log scale,
+	 * so that the order is kept across the whole range of priorities, from
+	 * fractions to distances beyond the range of an int.
+	 */
+	static int toRetrievalPriority(double priority)
+	{
+		double magnitude = Math.abs(priority);
+		double scaled =
+				(Math.log10(magnitude + PRIORITY_RESOLUTION) - Math.log10(PRIORITY_RESOLUTION)) * PRIORITY_LOG_SCALE;
+		int rank = (int) Math.min(Math.round(scaled), Integer.MAX_VALUE - 1);
+		return priority < 0 ? 1 + rank : -rank;
+	}
+
+	@Override
+	public boolean isAvailable()
+	{
+		return super.isAvailable() && urlRetrievals.size() < queueSize;
+	}
+
 	@Override
-	public synchronized RetrievalFuture runRetriever(Retriever retriever, double priority)
+	public boolean hasActiveTasks()
 	{
-		if (retriever instanceof URLRetriever)
+		return !urlRetrievals.isEmpty() || super.hasActiveTasks();
+	}
+
+	@Override
+	public int getNumRetrieversPending()
+	{
+		return urlRetrievals.size() + super.getNumRetrieversPending();
+	}
+
+	@Override
+	public boolean contains(Retriever retriever)
+	{
+		if (retriever != null && retriever.getName() != null && urlRetrievals.containsKey(retriever.getName()))
+		{
+			return true;
+		}
+		return super.contains(retriever);
+	}
+
+	@Override
+	public void shutdown(boolean immediately)
+	{
+		if (immediately)
+		{
+			for (URLRetrievalFuture future : urlRetrievals.values())
+			{
+				future.cancel(true);
+			}
+		}
+		super.shutdown(immediately);
+	}
+
+	/**
+	 * {@link RetrievalFuture} for an asynchronous {@link URLRetrieverWrapper}
+	 * retrieval, which is done once the post processor has run.
+	 */
+	private static class URLRetrievalFuture implements RetrievalFuture
+	{
+		private final URLRetrieverWrapper retriever;
+		private final RetrievalPrioritizer prioritizer;
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		public URLRetrievalFuture(URLRetrieverWrapper retriever, RetrievalPrioritizer prioritizer)
+		{
+			this.retriever = retriever;
+			this.prioritizer = prioritizer;
+		}
+
+		private void done()
+		{
+			done.countDown();
+		}
+
+		@Override
+		public Retriever getRetriever()
+		{
+			return retriever;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning)
+		{
+			if (isDone())
+			{
+				return false;
+			}
+			retriever.cancel();
+			return true;
+		}
+
+		@Override
+		public boolean isCancelled()
+		{
+			return retriever.isCanceled();
+		}
+
+		@Override
+		public boolean isDone()
+		{
+			return done.getCount() == 0;
+		}
+
+		@Override
+		public Retriever get() throws InterruptedException, ExecutionException
+		{
+			done.await();
+			return retriever;
+		}
+
+		@Override
+		public Retriever get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+				TimeoutException
 		{
-			retriever = new URLRetrieverWrapper((URLRetriever) retriever);
+			if (!done.await(timeout, unit))
+			{
+				throw new TimeoutException();
+			}
+			return retriever;
 		}
-		return super.runRetriever(retriever, priority);
 	}
 }
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright 2012 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.layer.tree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import gov.nasa.worldwind.layers.Layer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import au.gov.ga.earthsci.layer.DrawOrder;
+
+/**
+ * Unit tests for the {@link AbstractLayerTreeNode} class, checking that the
+ * incrementally updated layer lists match a full sort of the tree's layers.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class AbstractLayerTreeNodeTest
+{
+	private FolderNode root;
+	private FolderNode folder;
+	private LayerNode a;
+	private LayerNode b;
+	private LayerNode c;
+	private LayerNode d;
+
+	@Before
+	public void setup()
+	{
+		root = new FolderNode();
+		folder = new FolderNode();
+		a = createLayerNode("a", 10); //$NON-NLS-1$
+		b = createLayerNode("b", 20); //$NON-NLS-1$
+		c = createLayerNode("c", 10); //$NON-NLS-1$
+		d = createLayerNode("d", 5); //$NON-NLS-1$
+
+		root.addChild(a);
+		root.addChild(folder);
+		folder.addChild(b);
+		folder.addChild(c);
+		root.addChild(d);
+
+		//create the layer lists, so that later changes are applied incrementally
+		root.getLayers();
+		folder.getLayers();
+		assertLayersSorted(root);
+		assertLayersSorted(folder);
+	}
+
+	@Test
+	public void testAddChild()
+	{
+		LayerNode e = createLayerNode("e", 10); //$NON-NLS-1$
+		root.addChild(0, e);
+		assertLayersSorted(root);
+
+		LayerNode f = createLayerNode("f", 20); //$NON-NLS-1$
+		folder.addChild(1, f);
+		assertLayersSorted(root);
+		assertLayersSorted(folder);
+	}
+
+	@Test
+	public void testRemoveChild()
+	{
+		root.removeChild(a);
+		assertLayersSorted(root);
+
+		folder.removeChild(c);
+		assertLayersSorted(root);
+		assertLayersSorted(folder);
+
+		root.removeChild(folder);
+		assertLayersSorted(root);
+		assertEquals(1, root.getLayers().size());
+	}
+
+	@Test
+	public void testMoveChild()
+	{
+		root.moveChild(folder, 0);
+		assertLayersSorted(root);
+
+		folder.moveChild(c, 0);
+		assertLayersSorted(root);
+		assertLayersSorted(folder);
+
+		root.moveChild(a, 2);
+		assertLayersSorted(root);
+	}
+
+	@Test
+	public void testDrawOrderChange()
+	{
+		b.setDrawOrder(1);
+		assertLayersSorted(root);
+		assertLayersSorted(folder);
+
+		a.setDrawOrder(100);
+		assertLayersSorted(root);
+
+		c.setDrawOrder(5);
+		assertLayersSorted(root);
+		assertLayersSorted(folder);
+	}
+
+	@Test
+	public void testNestedFolders()
+	{
+		FolderNode nested = new FolderNode();
+		LayerNode e = createLayerNode("e", 10); //$NON-NLS-1$
+		nested.addChild(e);
+		folder.addChild(0, nested);
+		assertLayersSorted(root);
+		assertLayersSorted(folder);
+
+		LayerNode f = createLayerNode("f", 10); //$NON-NLS-1$
+		nested.addChild(f);
+		nested.getLayers();
+		assertLayersSorted(root);
+		assertLayersSorted(folder);
+		assertLayersSorted(nested);
+
+		root.moveChild(folder, 2);
+		assertLayersSorted(root);
+
+		folder.removeChild(nested);
+		assertLayersSorted(root);
+		assertLayersSorted(folder);
+	}
+
+	@Test
+	public void testLargeChangeIsRebuilt()
+	{
+		FolderNode large = new FolderNode();
+		for (int i = 0; i < 50; i++)
+		{
+			large.addChild(createLayerNode("layer" + i, i % 3 * 10)); //$NON-NLS-1$
+		}
+		folder.addChild(1, large);
+		assertLayersSorted(root);
+		assertLayersSorted(folder);
+		assertEquals(54, root.getLayers().size());
+	}
+
+	private static LayerNode createLayerNode(String name, int drawOrder)
+	{
+		LayerNode node = new LayerNode();
+		node.setName(name);
+		node.setDrawOrder(drawOrder);
+		return node;
+	}
+
+	/**
+	 * Assert that the node's layer list is the same as sorting the layers in
+	 * the tree below it by {@link DrawOrder#sortLayers(List, List)}.
+	 */
+	private static void assertLayersSorted(ILayerTreeNode node)
+	{
+		List<Layer> unsorted = new ArrayList<Layer>();
+		addLayers(node, unsorted);
+		List<Layer> expected = new ArrayList<Layer>();
+		DrawOrder.sortLayers(unsorted, expected);
+
+		List<Layer> actual = new ArrayList<Layer>(node.getLayers());
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++)
+		{
+			assertSame(expected.get(i), actual.get(i));
+		}
+	}
+
+	private static void addLayers(ILayerTreeNode node, List<Layer> layers)
+	{
+		if (node instanceof Layer)
+		{
+			layers.add((Layer) node);
+		}
+		for (ILayerTreeNode child : node.getChildren())
+		{
+			addLayers(child, layers);
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.layer.worldwind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.layers.AbstractLayer;
+import gov.nasa.worldwind.render.DrawContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import au.gov.ga.earthsci.layer.IPersistentLayer;
+import au.gov.ga.earthsci.layer.tree.FolderNode;
+import au.gov.ga.earthsci.layer.tree.ILayerNode;
+import au.gov.ga.earthsci.layer.tree.LayerNode;
+import au.gov.ga.earthsci.worldwind.common.util.WorkerPool;
+
+/**
+ * Unit tests for the {@link LayerInitializer} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class LayerInitializerTest
+{
+	private WorkerPool pool;
+	private LayerInitializer initializer;
+	private List<ILayerNode> initialized;
+
+	@Before
+	public void setup()
+	{
+		//a single thread initializes the layers in the order they are submitted
+		pool = new WorkerPool(LayerInitializerTest.class.getName(), 1);
+		initializer = new LayerInitializer(null, pool);
+		initialized = Collections.synchronizedList(new ArrayList<ILayerNode>());
+	}
+
+	@Test
+	public void testEnabledLayersAreInitializedInTreeOrder() throws Exception
+	{
+		FolderNode root = new FolderNode();
+		FolderNode folder = new FolderNode();
+		LayerNode a = createLayerNode(new TestLayer(false));
+		LayerNode b = createLayerNode(new TestLayer(false));
+		LayerNode c = createLayerNode(new TestLayer(false));
+		root.addChild(a);
+		root.addChild(folder);
+		folder.addChild(b);
+		root.addChild(c);
+
+		initializer.initialize(root);
+		waitForPool();
+
+		assertEquals(Arrays.<ILayerNode> asList(a, b, c), initialized);
+		assertFalse(a.isLoading());
+		assertFalse(b.isLoading());
+		assertFalse(c.isLoading());
+	}
+
+	@Test
+	public void testDisabledLayerIsInitializedWhenEnabled() throws Exception
+	{
+		FolderNode root = new FolderNode();
+		LayerNode node = createLayerNode(new TestLayer(false));
+		node.setEnabled(false);
+		root.addChild(node);
+
+		initializer.initialize(root);
+		waitForPool();
+		assertTrue(initialized.isEmpty());
+		assertFalse(node.isLoading());
+
+		node.setEnabled(true);
+		waitForPool();
+		assertEquals(Arrays.<ILayerNode> asList(node), initialized);
+		assertFalse(node.isLoading());
+	}
+
+	@Test
+	public void testAsynchronousLoadingIsNotCleared() throws Exception
+	{
+		FolderNode root = new FolderNode();
+		LayerNode node = createLayerNode(new TestLayer(true));
+		root.addChild(node);
+
+		initializer.initialize(root);
+		waitForPool();
+		assertEquals(Arrays.<ILayerNode> asList(node), initialized);
+		assertTrue(node.isLoading());
+
+		//simulate the asynchronous load completing
+		node.setLoading(false);
+		assertFalse(node.isLoading());
+	}
+
+	@Test
+	public void testFailedInitializationIsNotLoading() throws Exception
+	{
+		FolderNode root = new FolderNode();
+		LayerNode node = createLayerNode(new TestLayer(false)
+		{
+			@Override
+			public void initialize(ILayerNode layerNode, IEclipseContext context)
+			{
+				throw new IllegalStateException("Test failure"); //$NON-NLS-1$
+			}
+		});
+		root.addChild(node);
+
+		initializer.initialize(root);
+		waitForPool();
+		assertFalse(node.isLoading());
+	}
+
+	private static LayerNode createLayerNode(IPersistentLayer layer)
+	{
+		LayerNode node = new LayerNode();
+		node.setLayer(layer);
+		return node;
+	}
+
+	private void waitForPool() throws Exception
+	{
+		pool.submit(new Callable<Object>()
+		{
+			@Override
+			public Object call() throws Exception
+			{
+				return null;
+			}
+		}).get(10, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Layer that records when it is initialized, and optionally marks its node
+	 * as loading as if it had started an asynchronous load.
+	 */
+	private class TestLayer extends AbstractLayer implements IPersistentLayer
+	{
+		private final boolean asynchronous;
+
+		public TestLayer(boolean asynchronous)
+		{
+			this.asynchronous = asynchronous;
+		}
+
+		@Override
+		public boolean isLoading()
+		{
+			return false;
+		}
+
+		@Override
+		public void save(Element parent)
+		{
+		}
+
+		@Override
+		public void load(Element parent)
+		{
+		}
+
+		@Override
+		public void initialize(ILayerNode node, IEclipseContext context)
+		{
+			initialized.add(node);
+			if (asynchronous)
+			{
+				node.setLoading(true);
+			}
+		}
+
+		@Override
+		protected void doRender(DrawContext dc)
+		{
+		}
+	}
+}
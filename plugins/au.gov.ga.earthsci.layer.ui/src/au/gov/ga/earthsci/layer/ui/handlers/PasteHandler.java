@@ -29,15 +29,14 @@ import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.swt.dnd.Clipboard;
 import org.eclipse.swt.dnd.FileTransfer;
 
-import au.gov.ga.earthsci.layer.IPersistentLayer;
 import au.gov.ga.earthsci.layer.intent.IntentLayerLoader;
-import au.gov.ga.earthsci.layer.tree.ILayerNode;
 import au.gov.ga.earthsci.layer.tree.ILayerTreeNode;
 import au.gov.ga.earthsci.layer.tree.LayerNode;
 import au.gov.ga.earthsci.layer.ui.dnd.LayerTransfer;
 import au.gov.ga.earthsci.layer.ui.dnd.LayerTransferData;
 import au.gov.ga.earthsci.layer.ui.dnd.LayerTransferData.TransferredLayer;
 import au.gov.ga.earthsci.layer.worldwind.ITreeModel;
+import au.gov.ga.earthsci.layer.worldwind.WorldWindModel;
 
 /**
  * Handles paste commands for the layer tree.
@@ -71,7 +70,7 @@ public class PasteHandler
 				viewer.add(target, node);
 				viewer.reveal(node);
 
-				initializeAllLayers(node, context);
+				WorldWindModel.initializeAllLayers(node, context);
 			}
 		}
 
@@ -96,20 +95,6 @@ public class PasteHandler
 		}
 	}
 
-	public static void initializeAllLayers(ILayerTreeNode node, IEclipseContext context)
-	{
-		if (node instanceof ILayerNode)
-		{
-			final ILayerNode layerNode = (ILayerNode) node;
-			IPersistentLayer layer = layerNode.getLayer();
-			layer.initialize(layerNode, context);
-		}
-		for (ILayerTreeNode child : node.getChildren())
-		{
-			initializeAllLayers(child, context);
-		}
-	}
-
 	@CanExecute
 	public boolean canExecute(Clipboard clipboard)
 	{
@@ -26,7 +26,11 @@ import java.net.URI;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import au.gov.ga.earthsci.common.collection.ArrayListHashMap;
@@ -50,6 +54,13 @@ import au.gov.ga.earthsci.worldwind.common.layers.Bounds;
 @Exportable
 public abstract class AbstractLayerTreeNode extends AbstractTreeNode<ILayerTreeNode> implements ILayerTreeNode
 {
+	/**
+	 * Number of layers inserted/removed by a single change to the tree above
+	 * which the layer list is rebuilt in one pass, rather than updated a layer
+	 * at a time
+	 */
+	private static final int INCREMENTAL_LAYER_UPDATE_LIMIT = 32;
+
 	private String id;
 	private String name;
 	private LayerList layerList;
@@ -311,12 +322,7 @@ public abstract class AbstractLayerTreeNode extends AbstractTreeNode<ILayerTreeN
 		{
 			if (layerList != null)
 			{
-				layerList.removeAll();
-				unsortedLayers.clear();
-				sortedLayers.clear();
-				addLayerNodesToList(this, unsortedLayers);
-				DrawOrder.sortLayers(unsortedLayers, sortedLayers);
-				layerList.addAll(sortedLayers);
+				rebuildLayers();
 				firePropertyChange("layers", null, layerList); //$NON-NLS-1$
 			}
 		}
@@ -326,6 +332,161 @@ public abstract class AbstractLayerTreeNode extends AbstractTreeNode<ILayerTreeN
 		}
 	}
 
+	private void rebuildLayers()
+	{
+		layerList.removeAll();
+		unsortedLayers.clear();
+		sortedLayers.clear();
+		addLayerNodesToList(this, unsortedLayers);
+		DrawOrder.sortLayers(unsortedLayers, sortedLayers);
+		layerList.addAll(sortedLayers);
+	}
+
+	/**
+	 * Update the layer list (if it exists) after the given subtrees have been
+	 * removed from/added to the tree below this node. Small changes are
+	 * applied by removing and inserting the affected layers in the sorted
+	 * list; large changes rebuild the list in one pass.
+	 */
+	private void updateLayers(List<ILayerTreeNode> removedNodes, List<ILayerTreeNode> addedNodes)
+	{
+		if (layerList == null)
+		{
+			return;
+		}
+
+		List<Layer> removed = new ArrayList<Layer>();
+		for (ILayerTreeNode node : removedNodes)
+		{
+			addLayerNodesToList(node, removed);
+		}
+		List<Layer> added = new ArrayList<Layer>();
+		for (ILayerTreeNode node : addedNodes)
+		{
+			addLayerNodesToList(node, added);
+		}
+		if (removed.isEmpty() && added.isEmpty())
+		{
+			return;
+		}
+
+		if (removed.size() + added.size() > INCREMENTAL_LAYER_UPDATE_LIMIT)
+		{
+			rebuildLayers();
+		}
+		else
+		{
+			for (Layer layer : removed)
+			{
+				layerList.remove(layer);
+			}
+			Map<ILayerTreeNode, Integer> treeOrder = computeTreeOrder(this);
+			for (Layer layer : added)
+			{
+				insertLayer(layer, treeOrder);
+			}
+		}
+		firePropertyChange("layers", null, layerList); //$NON-NLS-1$
+	}
+
+	@Override
+	public void drawOrderChanged(ILayerNode node)
+	{
+		synchronized (semaphore)
+		{
+			if (layerList != null)
+			{
+				layerList.remove(node);
+				insertLayer(node, computeTreeOrder(this));
+				firePropertyChange("layers", null, layerList); //$NON-NLS-1$
+			}
+		}
+		if (!isRoot())
+		{
+			getParent().drawOrderChanged(node);
+		}
+	}
+
+	/**
+	 * Insert a layer into the sorted layer list, at the position given by
+	 * {@link #compareLayers(Layer, Layer, Map)}, using a binary search.
+	 */
+	private void insertLayer(Layer layer, Map<ILayerTreeNode, Integer> treeOrder)
+	{
+		int low = 0;
+		int high = layerList.size();
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (compareLayers(layerList.get(mid), layer, treeOrder) <= 0)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		layerList.add(low, layer);
+	}
+
+	/**
+	 * Compare two layer nodes by draw order, and then by their position in the
+	 * tree (looked up in the given tree order calculated by
+	 * {@link #computeTreeOrder(ILayerTreeNode)}). This is the same order
+	 * produced by {@link DrawOrder#sortLayers(List, List)} for a list of
+	 * layers in tree order.
+	 */
+	private static int compareLayers(Layer l1, Layer l2, Map<ILayerTreeNode, Integer> treeOrder)
+	{
+		boolean hasDrawOrder1 = l1 instanceof ILayerNode;
+		boolean hasDrawOrder2 = l2 instanceof ILayerNode;
+		if (hasDrawOrder1 != hasDrawOrder2)
+		{
+			//layers without draw orders are at the end
+			return hasDrawOrder1 ? -1 : 1;
+		}
+		if (hasDrawOrder1)
+		{
+			int drawOrder1 = ((ILayerNode) l1).getDrawOrder();
+			int drawOrder2 = ((ILayerNode) l2).getDrawOrder();
+			if (drawOrder1 != drawOrder2)
+			{
+				return drawOrder1 < drawOrder2 ? -1 : 1;
+			}
+		}
+		Integer order1 = treeOrder.get(l1);
+		Integer order2 = treeOrder.get(l2);
+		if (order1 == null || order2 == null)
+		{
+			return 0;
+		}
+		return order1.compareTo(order2);
+	}
+
+	/**
+	 * Calculate the position of each node in a depth-first (parents before
+	 * children) traversal of the tree below the given node, so that layers
+	 * can be compared by tree position in constant time while inserting them.
+	 * This is linear in the size of the subtree, like the copy made by each
+	 * change to the copy-on-write {@link LayerList}.
+	 */
+	private static Map<ILayerTreeNode, Integer> computeTreeOrder(ILayerTreeNode node)
+	{
+		Map<ILayerTreeNode, Integer> treeOrder = new IdentityHashMap<ILayerTreeNode, Integer>();
+		addNodesToTreeOrder(node, treeOrder);
+		return treeOrder;
+	}
+
+	private static void addNodesToTreeOrder(ILayerTreeNode node, Map<ILayerTreeNode, Integer> treeOrder)
+	{
+		treeOrder.put(node, treeOrder.size());
+		for (ILayerTreeNode child : node.getChildren())
+		{
+			addNodesToTreeOrder(child, treeOrder);
+		}
+	}
+
 	private static void addLayerNodesToList(ILayerTreeNode node, List<Layer> list)
 	{
 		if (node instanceof Layer)
@@ -388,6 +549,25 @@ public abstract class AbstractLayerTreeNode extends AbstractTreeNode<ILayerTreeN
 		}
 	}
 
+	/**
+	 * Update the compound elevation model (if it exists) after the given
+	 * subtrees have been removed from/added to the tree below this node.
+	 */
+	private void updateElevationModels(List<ILayerTreeNode> removedNodes, List<ILayerTreeNode> addedNodes)
+	{
+		if (elevationModels != null)
+		{
+			for (ILayerTreeNode node : removedNodes)
+			{
+				removeElevationModelNodesFromCompoundElevationModel(node, elevationModels);
+			}
+			for (ILayerTreeNode node : addedNodes)
+			{
+				addElevationModelNodesToCompoundElevationModel(node, elevationModels);
+			}
+		}
+	}
+
 	private static void addElevationModelNodesToCompoundElevationModel(ILayerTreeNode node,
 			CompoundElevationModel compound)
 	{
@@ -406,6 +586,24 @@ public abstract class AbstractLayerTreeNode extends AbstractTreeNode<ILayerTreeN
 		}
 	}
 
+	private static void removeElevationModelNodesFromCompoundElevationModel(ILayerTreeNode node,
+			CompoundElevationModel compound)
+	{
+		if (node instanceof ILayerNode)
+		{
+			ILayerNode layerNode = (ILayerNode) node;
+			ElevationModel elevationModel = layerNode.getElevationModel();
+			if (elevationModel != null)
+			{
+				compound.removeElevationModel(elevationModel);
+			}
+		}
+		for (ILayerTreeNode child : node.getChildren())
+		{
+			removeElevationModelNodesFromCompoundElevationModel(child, compound);
+		}
+	}
+
 	private void updateCatalogURIMap()
 	{
 		synchronized (semaphore)
@@ -431,6 +629,38 @@ public abstract class AbstractLayerTreeNode extends AbstractTreeNode<ILayerTreeN
 		}
 	}
 
+	/**
+	 * Update the catalog URI map (if it exists) after the given subtrees have
+	 * been removed from/added to the tree below this node.
+	 */
+	private void updateCatalogURIMap(List<ILayerTreeNode> removedNodes, List<ILayerTreeNode> addedNodes)
+	{
+		if (catalogUriMap != null)
+		{
+			for (ILayerTreeNode node : removedNodes)
+			{
+				removeNodesFromCatalogURIMap(node);
+			}
+			for (ILayerTreeNode node : addedNodes)
+			{
+				addNodesToCatalogURIMap(node);
+			}
+		}
+	}
+
+	private void removeNodesFromCatalogURIMap(ILayerTreeNode node)
+	{
+		URI catalogUri = node.getCatalogURI();
+		if (catalogUri != null)
+		{
+			catalogUriMap.removeSingle(catalogUri, node);
+		}
+		for (ILayerTreeNode child : node.getChildren())
+		{
+			removeNodesFromCatalogURIMap(child);
+		}
+	}
+
 	@Override
 	protected void fireChildrenPropertyChange(List<ILayerTreeNode> oldChildren, List<ILayerTreeNode> newChildren)
 	{
@@ -441,11 +671,17 @@ public abstract class AbstractLayerTreeNode extends AbstractTreeNode<ILayerTreeN
 	@Override
 	public void childrenChanged(List<ILayerTreeNode> oldChildren, List<ILayerTreeNode> newChildren)
 	{
-		//TODO should we implement a (more efficient?) modification of these collections according to changed children?
-		//update the collections if they exist
-		updateLayers();
-		updateElevationModels();
-		updateCatalogURIMap();
+		List<ILayerTreeNode> removed = new ArrayList<ILayerTreeNode>();
+		List<ILayerTreeNode> added = new ArrayList<ILayerTreeNode>();
+		diffChildren(oldChildren, newChildren, removed, added);
+
+		//update the collections if they exist (the parents update their own as this recurses up)
+		synchronized (semaphore)
+		{
+			updateLayers(removed, added);
+			updateElevationModels(removed, added);
+			updateCatalogURIMap(removed, added);
+		}
 
 		//fire property changes
 		fireAnyAllChildrenEnabledChanged();
@@ -457,6 +693,72 @@ public abstract class AbstractLayerTreeNode extends AbstractTreeNode<ILayerTreeN
 		}
 	}
 
+	/**
+	 * Calculate the children that were removed and added between the old and
+	 * new children lists. Children whose position relative to the other
+	 * remaining children has changed are included in both lists, so that they
+	 * are reinserted at their new position.
+	 */
+	private static void diffChildren(List<ILayerTreeNode> oldChildren, List<ILayerTreeNode> newChildren,
+			List<ILayerTreeNode> removed, List<ILayerTreeNode> added)
+	{
+		if (oldChildren == null)
+		{
+			oldChildren = Collections.emptyList();
+		}
+		if (newChildren == null)
+		{
+			newChildren = Collections.emptyList();
+		}
+
+		Set<ILayerTreeNode> oldSet = Collections.newSetFromMap(new IdentityHashMap<ILayerTreeNode, Boolean>());
+		oldSet.addAll(oldChildren);
+		Set<ILayerTreeNode> newSet = Collections.newSetFromMap(new IdentityHashMap<ILayerTreeNode, Boolean>());
+		newSet.addAll(newChildren);
+
+		List<ILayerTreeNode> oldRemaining = new ArrayList<ILayerTreeNode>();
+		for (ILayerTreeNode child : oldChildren)
+		{
+			if (newSet.contains(child))
+			{
+				oldRemaining.add(child);
+			}
+			else
+			{
+				removed.add(child);
+			}
+		}
+		List<ILayerTreeNode> newRemaining = new ArrayList<ILayerTreeNode>();
+		for (ILayerTreeNode child : newChildren)
+		{
+			if (oldSet.contains(child))
+			{
+				newRemaining.add(child);
+			}
+			else
+			{
+				added.add(child);
+			}
+		}
+
+		//find the range of remaining children that have been reordered (eg by moveChild)
+		int start = 0;
+		int end = newRemaining.size();
+		while (start < end && oldRemaining.get(start) == newRemaining.get(start))
+		{
+			start++;
+		}
+		while (end > start && oldRemaining.get(end - 1) == newRemaining.get(end - 1))
+		{
+			end--;
+		}
+		for (int i = start; i < end; i++)
+		{
+			removed.add(newRemaining.get(i));
+			added.add(newRemaining.get(i));
+		}
+	}
+
 	@Override
 	public void enabledChanged()
 	{
@@ -72,6 +72,18 @@ public interface ILayerTreeNode extends ITreeNode<ILayerTreeNode>, IPropertyChan
 	 */
 	void updateLayers();
 
+	/**
+	 * Notify this node that the draw order of the given layer node (at or
+	 * below this node) has changed, so that the layer is moved to its new
+	 * position in the list returned by {@link #getLayers()}, if it has been
+	 * called previously. Called recursively up parents to root. Should only be
+	 * called internally.
+	 * 
+	 * @param node
+	 *            Layer node whose draw order changed
+	 */
+	void drawOrderChanged(ILayerNode node);
+
 	/**
 	 * @return A {@link CompoundElevationModel} that contains all elevation
 	 *         models in the tree at and below this node.
@@ -18,7 +18,9 @@ package au.gov.ga.earthsci.layer.tree;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.event.Message;
+import gov.nasa.worldwind.geom.Sector;
 import gov.nasa.worldwind.globes.ElevationModel;
+import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.layers.Layer;
 import gov.nasa.worldwind.render.DrawContext;
 
@@ -47,6 +49,8 @@ import au.gov.ga.earthsci.layer.delegator.PersistentLayerDelegator;
 import au.gov.ga.earthsci.layer.elevation.IElevationModelLayer;
 import au.gov.ga.earthsci.worldwind.common.layers.Bounded;
 import au.gov.ga.earthsci.worldwind.common.layers.Bounds;
+import au.gov.ga.earthsci.worldwind.common.retrieve.PrefetchBudget;
+import au.gov.ga.earthsci.worldwind.common.retrieve.Prefetchable;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
 
 /**
@@ -59,7 +63,7 @@ import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
-public class LayerNode extends AbstractLayerTreeNode implements ILayerNode
+public class LayerNode extends AbstractLayerTreeNode implements ILayerNode, Prefetchable
 {
 	protected PersistentLayerDelegator delegator = new PersistentLayerDelegator();
 	private boolean loading = false;
@@ -99,7 +103,7 @@ public class LayerNode extends AbstractLayerTreeNode implements ILayerNode
 					}
 
 					//update layer list (draw order may have changed), and elevation models if required
-					updateLayers();
+					drawOrderChanged(LayerNode.this);
 					if (getElevationModel() != null)
 					{
 						updateElevationModels();
@@ -260,6 +264,16 @@ public class LayerNode extends AbstractLayerTreeNode implements ILayerNode
 		return false;
 	}
 
+	@Override
+	public void prefetch(Globe globe, Sector sector, double texelSize, PrefetchBudget budget)
+	{
+		Prefetchable prefetchable = getDelegateImplementing(Prefetchable.class);
+		if (prefetchable != null)
+		{
+			prefetchable.prefetch(globe, sector, texelSize, budget);
+		}
+	}
+
 	@Override
 	public void propertyChange(PropertyChangeEvent evt)
 	{
@@ -312,7 +326,7 @@ public class LayerNode extends AbstractLayerTreeNode implements ILayerNode
 	public void setDrawOrder(int drawOrder)
 	{
 		firePropertyChange("drawOrder", getDrawOrder(), this.drawOrder = drawOrder); //$NON-NLS-1$
-		updateLayers(); //need to update the layer list, as it is sorted by draw order
+		drawOrderChanged(this); //need to update the layer list, as it is sorted by draw order
 	}
 
 	@Persistent(name = "drawOrder", attribute = true)
@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.layer.worldwind;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.e4.core.contexts.IEclipseContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import au.gov.ga.earthsci.layer.IPersistentLayer;
+import au.gov.ga.earthsci.layer.tree.ILayerNode;
+import au.gov.ga.earthsci.layer.tree.ILayerTreeNode;
+import au.gov.ga.earthsci.worldwind.common.util.WorkerPool;
+
+/**
+ * Initializes the layers of a layer tree loaded from a persisted state (see
+ * {@link IPersistentLayer#initialize(ILayerNode, IEclipseContext)}) on a
+ * bounded background thread pool, so that the globe is usable while the layers
+ * are loading.
+ * <p/>
+ * Enabled layers are submitted in tree order. Disabled layers are not
+ * initialized until they are first enabled.
+ * <p/>
+ * Each node is marked as loading, and keeps its placeholder layer, while it
+ * is waiting for a thread. The loading flag is cleared just before the layer
+ * is initialized, so that layers that load asynchronously (such as those
+ * loaded by an Intent) can manage the flag themselves. A layer is considered
+ * initialized once its initialization returns and the node is no longer
+ * loading, or once a new layer is set on the node. The time taken to
+ * initialize each layer is logged at debug level, and the total when all
+ * layers enabled at startup have been initialized.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class LayerInitializer
+{
+	private static final Logger logger = LoggerFactory.getLogger(LayerInitializer.class);
+	private static final int MAX_THREADS = 4;
+
+	private final IEclipseContext context;
+	private final WorkerPool executor;
+	private final AtomicInteger remaining = new AtomicInteger();
+	private final AtomicLong layerTime = new AtomicLong();
+	private long startTime;
+
+	public LayerInitializer(IEclipseContext context)
+	{
+		this(context, new WorkerPool(LayerInitializer.class.getName(), Math.min(MAX_THREADS, Runtime.getRuntime()
+				.availableProcessors())));
+	}
+
+	LayerInitializer(IEclipseContext context, WorkerPool executor)
+	{
+		this.context = context;
+		this.executor = executor;
+	}
+
+	/**
+	 * Start initializing the layers in the tree at and below the given node.
+	 * Returns immediately; enabled layers are initialized in the background,
+	 * and disabled layers when they are enabled.
+	 * 
+	 * @param node
+	 *            Root of the tree to initialize
+	 */
+	public void initialize(ILayerTreeNode node)
+	{
+		List<ILayerNode> enabled = new ArrayList<ILayerNode>();
+		List<ILayerNode> disabled = new ArrayList<ILayerNode>();
+		addLayerNodes(node, enabled, disabled);
+
+		for (ILayerNode layerNode : disabled)
+		{
+			deferUntilEnabled(layerNode);
+		}
+
+		startTime = System.currentTimeMillis();
+		remaining.set(enabled.size());
+		for (ILayerNode layerNode : enabled)
+		{
+			submit(layerNode, true);
+		}
+	}
+
+	private static void addLayerNodes(ILayerTreeNode node, List<ILayerNode> enabled, List<ILayerNode> disabled)
+	{
+		if (node instanceof ILayerNode)
+		{
+			ILayerNode layerNode = (ILayerNode) node;
+			if (layerNode.isEnabled())
+			{
+				enabled.add(layerNode);
+			}
+			else
+			{
+				disabled.add(layerNode);
+			}
+		}
+		for (ILayerTreeNode child : node.getChildren())
+		{
+			addLayerNodes(child, enabled, disabled);
+		}
+	}
+
+	private void deferUntilEnabled(final ILayerNode layerNode)
+	{
+		layerNode.addPropertyChangeListener("enabled", new PropertyChangeListener() //$NON-NLS-1$
+				{
+					private boolean initialized = false;
+
+					@Override
+					public synchronized void propertyChange(PropertyChangeEvent evt)
+					{
+						if (initialized || !layerNode.isEnabled())
+						{
+							return;
+						}
+						initialized = true;
+						layerNode.removePropertyChangeListener("enabled", this); //$NON-NLS-1$
+						submit(layerNode, false);
+					}
+				});
+	}
+
+	private void submit(final ILayerNode layerNode, final boolean startup)
+	{
+		layerNode.setLoading(true);
+		executor.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				layerNode.setLoading(false);
+				initializeLayer(layerNode, startup);
+			}
+		});
+	}
+
+	/**
+	 * Initialize the given node's layer, and track its completion.
+	 */
+	private void initializeLayer(ILayerNode layerNode, boolean startup)
+	{
+		InitializationTracker tracker = new InitializationTracker(layerNode, startup);
+		layerNode.addPropertyChangeListener(tracker);
+		try
+		{
+			IPersistentLayer layer = layerNode.getLayer();
+			layer.initialize(layerNode, context);
+		}
+		catch (Exception e)
+		{
+			logger.error("Error initializing layer: " + layerNode.getName(), e); //$NON-NLS-1$
+			tracker.complete();
+		}
+		if (!layerNode.isLoading())
+		{
+			tracker.complete();
+		}
+	}
+
+	private void startupLayerInitialized(long layerInitializationTime)
+	{
+		layerTime.addAndGet(layerInitializationTime);
+		if (remaining.decrementAndGet() == 0)
+		{
+			long time = System.currentTimeMillis() - startTime;
+			logger.info("Initialized enabled layers in " + time + "ms (" + layerTime.get() + "ms total layer time)"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	/**
+	 * Listens to a node whose layer is being initialized, and records the time
+	 * taken once the node has finished loading or has had a new layer set.
+	 */
+	private class InitializationTracker implements PropertyChangeListener
+	{
+		private final ILayerNode layerNode;
+		private final boolean startup;
+		private final long start = System.currentTimeMillis();
+		private boolean completed = false;
+
+		public InitializationTracker(ILayerNode layerNode, boolean startup)
+		{
+			this.layerNode = layerNode;
+			this.startup = startup;
+		}
+
+		@Override
+		public void propertyChange(PropertyChangeEvent evt)
+		{
+			if ("layer".equals(evt.getPropertyName()) //$NON-NLS-1$
+					|| ("loading".equals(evt.getPropertyName()) && !layerNode.isLoading())) //$NON-NLS-1$
+			{
+				complete();
+			}
+		}
+
+		public void complete()
+		{
+			synchronized (this)
+			{
+				if (completed)
+				{
+					return;
+				}
+				completed = true;
+			}
+			layerNode.removePropertyChangeListener(this);
+			long time = System.currentTimeMillis() - start;
+			logger.debug("Initialized layer '" + layerNode.getName() + "' in " + time + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			if (startup)
+			{
+				startupLayerInitialized(time);
+			}
+		}
+	}
+}
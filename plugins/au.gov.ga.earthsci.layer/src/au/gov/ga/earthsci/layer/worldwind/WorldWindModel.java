@@ -115,7 +115,7 @@ public class WorldWindModel extends BasicModel implements ITreeModel
 				child.removeFromParent();
 				rootNode.addChild(child);
 			}
-			initializeAllLayers(rootNode, context);
+			new LayerInitializer(context).initialize(rootNode);
 		}
 	}
 
@@ -138,6 +138,14 @@ public class WorldWindModel extends BasicModel implements ITreeModel
 		return false;
 	}
 
+	/**
+	 * Initialize the layers at and below the given node on the calling thread,
+	 * such as layers pasted into the tree. Layers loaded at startup are instead
+	 * initialized in the background by a {@link LayerInitializer}.
+	 * 
+	 * @param node
+	 * @param context
+	 */
 	public static void initializeAllLayers(ILayerTreeNode node, IEclipseContext context)
 	{
 		if (node instanceof ILayerNode)
@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.model.core.raster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.gdal.gdal.Dataset;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import au.gov.ga.earthsci.model.geometry.IMeshChunk;
+import au.gov.ga.earthsci.model.geometry.IMeshGeometry;
+
+/**
+ * Unit tests for the {@link GDALRasterMeshChunk} class
+ * 
+ * @author James Navin (james.navin@ga.gov.au)
+ */
+public class GDALRasterMeshChunkTest
+{
+
+	@BeforeClass
+	public static void init()
+	{
+		GDALTestUtils.initGDAL();
+	}
+
+	@AfterClass
+	public static void destroy()
+	{
+		GDALTestUtils.destroyGDAL();
+	}
+
+	@Test
+	public void testQuadtreeCoversRaster() throws Exception
+	{
+		Dataset ds = GDALTestUtils.openRaster("testgrid.asc"); //$NON-NLS-1$
+		GDALRasterModelParameters parameters = new GDALRasterModelParameters(ds);
+
+		// 4x6 raster with 2x2 cell chunks: strides of 4, 2 and 1 pixels
+		GDALRasterMeshChunkBuilder builder = new GDALRasterMeshChunkBuilder(ds, parameters, 2);
+		assertEquals(2, builder.getDepth());
+
+		GDALRasterMeshChunk root = builder.createRootChunk();
+		assertNull(root.getGeometry());
+		assertTrue(root.hasChildren());
+
+		List<IMeshChunk> level1 = root.getChildren();
+		assertEquals(2, level1.size());
+		assertEquals(4, level1.get(0).getChildren().size());
+		assertEquals(2, level1.get(1).getChildren().size());
+
+		IMeshChunk leaf = level1.get(1).getChildren().get(0);
+		assertFalse(leaf.hasChildren());
+		assertTrue(leaf.getChildren().isEmpty());
+	}
+
+	@Test
+	public void testRootChunkIncludesLastRowAndColumn() throws Exception
+	{
+		Dataset ds = GDALTestUtils.openRaster("testgrid.asc"); //$NON-NLS-1$
+		GDALRasterModelParameters parameters = new GDALRasterModelParameters(ds);
+
+		GDALRasterMeshChunkBuilder builder = new GDALRasterMeshChunkBuilder(ds, parameters, 2);
+		GDALRasterMeshChunk root = builder.createRootChunk();
+		builder.build(root);
+
+		// Columns 0 and 3, rows 0, 4 and 5, plus a skirt vertex for each of the 6 border vertices
+		IMeshGeometry geometry = root.getGeometry();
+		assertEquals(12, geometry.getVertices().getNumberOfGroups());
+		assertTrue(root.getGeometricError() > 0);
+
+		ByteBuffer full = getFullResolutionVertices(ds);
+		ByteBuffer vertices = geometry.getVertices().getSource();
+		int[] pixels = { 0, 3, 16, 19, 20, 23 };
+		for (int i = 0; i < pixels.length; i++)
+		{
+			assertVertexEquals(full, pixels[i], vertices, i);
+		}
+	}
+
+	@Test
+	public void testFinestChunkMatchesFullResolutionModel() throws Exception
+	{
+		Dataset ds = GDALTestUtils.openRaster("testgrid.asc"); //$NON-NLS-1$
+		GDALRasterModelParameters parameters = new GDALRasterModelParameters(ds);
+
+		GDALRasterMeshChunkBuilder builder = new GDALRasterMeshChunkBuilder(ds, parameters, 2);
+		GDALRasterMeshChunk root = builder.createRootChunk();
+		builder.build(root);
+
+		// Columns 2-3, rows 4-5
+		GDALRasterMeshChunk leaf = (GDALRasterMeshChunk) root.getChildren().get(1).getChildren().get(1);
+		builder.build(leaf);
+		assertEquals(0, leaf.getGeometricError(), 0.0001);
+
+		IMeshGeometry geometry = leaf.getGeometry();
+		assertEquals(8, geometry.getVertices().getNumberOfGroups());
+
+		ByteBuffer full = getFullResolutionVertices(ds);
+		ByteBuffer vertices = geometry.getVertices().getSource();
+		int[] pixels = { 18, 19, 22, 23 };
+		for (int i = 0; i < pixels.length; i++)
+		{
+			assertVertexEquals(full, pixels[i], vertices, i);
+		}
+
+		// Skirts hang below valid border vertices; NODATA border vertices remain NODATA
+		assertEquals(vertices.getFloat(0), vertices.getFloat(4 * 12), 0.0001);
+		assertEquals(vertices.getFloat(4), vertices.getFloat(4 * 12 + 4), 0.0001);
+		assertTrue(vertices.getFloat(4 * 12 + 8) < vertices.getFloat(8));
+		assertEquals(-9999f, vertices.getFloat(6 * 12 + 8), 0.0001);
+	}
+
+	@Test
+	public void testUnloadClearsGeometry() throws Exception
+	{
+		Dataset ds = GDALTestUtils.openRaster("testgrid.asc"); //$NON-NLS-1$
+		GDALRasterModelParameters parameters = new GDALRasterModelParameters(ds);
+
+		GDALRasterMeshChunkBuilder builder = new GDALRasterMeshChunkBuilder(ds, parameters, 2);
+		GDALRasterMeshChunk root = builder.createRootChunk();
+		builder.build(root);
+		assertNotNull(root.getGeometry());
+
+		root.unload();
+		assertNull(root.getGeometry());
+		assertFalse(root.isLoadFailed());
+
+		builder.build(root);
+		assertNotNull(root.getGeometry());
+	}
+
+	@Test
+	public void testFailedBuildIsNotRetriedUntilDelayHasPassed() throws Exception
+	{
+		Dataset ds = GDALTestUtils.openRaster("testgrid.asc"); //$NON-NLS-1$
+		GDALRasterModelParameters parameters = new GDALRasterModelParameters(ds);
+
+		GDALRasterMeshChunkBuilder builder = new GDALRasterMeshChunkBuilder(ds, parameters, 2);
+		GDALRasterMeshChunk root = builder.createRootChunk();
+		assertFalse(root.isLoadFailed());
+
+		root.buildFailed();
+		assertTrue(root.isLoadFailed());
+
+		// Within the retry delay, so no build is started
+		root.load();
+		assertTrue(root.isLoadFailed());
+		assertNull(root.getGeometry());
+
+		// A successful build clears the failure
+		builder.build(root);
+		assertFalse(root.isLoadFailed());
+		assertNotNull(root.getGeometry());
+	}
+
+	private static ByteBuffer getFullResolutionVertices(Dataset ds) throws Exception
+	{
+		GDALRasterModelParameters parameters = new GDALRasterModelParameters(ds);
+		GDALRasterModel model = GDALRasterModelFactory.createModel(ds, parameters);
+		return ((IMeshGeometry) model.getGeometries().get(0)).getVertices().getSource();
+	}
+
+	private static void assertVertexEquals(ByteBuffer expected, int expectedIndex, ByteBuffer actual, int actualIndex)
+	{
+		for (int i = 0; i < 3; i++)
+		{
+			assertEquals(expected.getFloat((expectedIndex * 3 + i) * 4), actual.getFloat((actualIndex * 3 + i) * 4),
+					0.0001);
+		}
+	}
+}
@@ -18,9 +18,13 @@ package au.gov.ga.earthsci.model.core.raster;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.awt.Color;
 import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.gdal.gdal.Dataset;
 import org.junit.AfterClass;
@@ -28,10 +32,15 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import au.gov.ga.earthsci.common.buffer.BufferType;
+import au.gov.ga.earthsci.common.color.ColorMap;
+import au.gov.ga.earthsci.common.color.ColorMap.InterpolationMode;
+import au.gov.ga.earthsci.common.color.ColorMaps;
+import au.gov.ga.earthsci.common.color.MutableColorMap;
 import au.gov.ga.earthsci.common.math.vector.Vector3;
 import au.gov.ga.earthsci.common.util.Util;
 import au.gov.ga.earthsci.model.bounds.BoundingBox;
 import au.gov.ga.earthsci.model.data.IModelData;
+import au.gov.ga.earthsci.model.geometry.BasicColouredMeshGeometry;
 import au.gov.ga.earthsci.model.geometry.IMeshGeometry;
 
 /**
@@ -106,6 +115,124 @@ public class GDALRasterModelFactoryTest
 				new int[] { 0, 2, 1, 3 });
 	}
 
+	@Test
+	public void testCreateSplitsLargeGridsIntoChunks() throws Exception
+	{
+		Dataset ds = GDALTestUtils.openRaster("testgrid.asc"); //$NON-NLS-1$
+		GDALRasterModelParameters parameters = new GDALRasterModelParameters(ds);
+		parameters.setMemoryBudget(1L);
+
+		int maxBufferSize = GDALRasterModelFactory.maxBufferSize;
+		GDALRasterModelFactory.maxBufferSize = 3 * (4 + 1) * 4 * BufferType.FLOAT.getNumberOfBytes();
+		GDALRasterModel result;
+		try
+		{
+			result = GDALRasterModelFactory.createModel(ds, parameters);
+		}
+		finally
+		{
+			GDALRasterModelFactory.maxBufferSize = maxBufferSize;
+		}
+
+		// 6 rows split into chunks of 3 rows, with neighbouring chunks sharing a row
+		assertEquals(3, result.getGeometries().size());
+		int[] expectedRows = { 3, 3, 2 };
+		ByteBuffer previousLastRow = null;
+		for (int i = 0; i < expectedRows.length; i++)
+		{
+			IMeshGeometry geometry = (IMeshGeometry) result.getGeometries().get(i);
+			ByteBuffer vertices = geometry.getVertices().getSource();
+			int rowBytes = 4 * 3 * BufferType.FLOAT.getNumberOfBytes();
+			assertEquals(expectedRows[i] * rowBytes, vertices.limit());
+
+			if (previousLastRow != null)
+			{
+				vertices.limit(rowBytes);
+				assertEquals(previousLastRow, vertices);
+			}
+			previousLastRow = geometry.getVertices().getSource();
+			previousLastRow.position(previousLastRow.limit() - rowBytes);
+
+			int numIndices = (2 * 4 * (expectedRows[i] - 1)) + 4 * (expectedRows[i] - 2);
+			assertEquals(numIndices * BufferType.INT.getNumberOfBytes(), geometry.getEdgeIndices().getSource().limit());
+			assertNotNull(geometry.getRenderer());
+		}
+	}
+
+	@Test
+	public void testCreateAttachesAbsoluteColourMapForRenderer() throws Exception
+	{
+		Dataset ds = GDALTestUtils.openRaster("testgrid.asc"); //$NON-NLS-1$
+		GDALRasterModelParameters parameters = new GDALRasterModelParameters(ds);
+		parameters.setColorMap(ColorMaps.getRGBRainbowMap());
+
+		GDALRasterModel result = GDALRasterModelFactory.createModel(ds, parameters);
+
+		// Percentages are converted to absolute elevations; no vertex colours are created
+		BasicColouredMeshGeometry geometry = (BasicColouredMeshGeometry) result.getGeometries().get(0);
+		assertFalse(geometry.hasVertexColour());
+		assertTrue(geometry.isZColoured());
+		ColorMap map = geometry.getColorMap();
+		assertFalse(map.isPercentageBased());
+		assertEquals(3, map.getSize());
+		assertEquals(Color.RED, map.getEntries().get(1.0));
+		assertEquals(Color.GREEN, map.getEntries().get(50.5));
+		assertEquals(Color.BLUE, map.getEntries().get(100.0));
+	}
+
+	@Test
+	public void testAbsoluteColourMapFollowsChangesToMutableColourMap() throws Exception
+	{
+		Dataset ds = GDALTestUtils.openRaster("testgrid.asc"); //$NON-NLS-1$
+		GDALRasterModelParameters parameters = new GDALRasterModelParameters(ds);
+		MutableColorMap original = new MutableColorMap(ColorMaps.getRGBRainbowMap());
+		parameters.setColorMap(original);
+
+		GDALRasterModel result = GDALRasterModelFactory.createModel(ds, parameters);
+
+		BasicColouredMeshGeometry geometry = (BasicColouredMeshGeometry) result.getGeometries().get(0);
+		ColorMap map = geometry.getColorMap();
+		assertEquals(Color.GREEN, map.getEntries().get(50.5));
+
+		// The original map is still percentage based; the geometry's map is recalculated in absolute values
+		original.changeColor(0.5, Color.YELLOW);
+		assertSame(map, geometry.getColorMap());
+		assertFalse(map.isPercentageBased());
+		assertEquals(Color.YELLOW, map.getEntries().get(50.5));
+
+		original.addEntry(0.25, Color.CYAN);
+		assertEquals(4, map.getSize());
+		assertEquals(Color.CYAN, map.getEntries().get(25.75));
+	}
+
+	@Test
+	public void testCreateWithExactMatchColourMapCreatesVertexColours() throws Exception
+	{
+		Dataset ds = GDALTestUtils.openRaster("testgrid.asc"); //$NON-NLS-1$
+		GDALRasterModelParameters parameters = new GDALRasterModelParameters(ds);
+		Map<Double, Color> entries = new HashMap<Double, Color>();
+		entries.put(100.0, Color.RED);
+		parameters.setColorMap(new ColorMap(null, null, entries, Color.BLUE, InterpolationMode.EXACT_MATCH, false));
+
+		GDALRasterModel result = GDALRasterModelFactory.createModel(ds, parameters);
+
+		BasicColouredMeshGeometry geometry = (BasicColouredMeshGeometry) result.getGeometries().get(0);
+		assertTrue(geometry.hasVertexColour());
+		ByteBuffer colours = geometry.getVertexColour().getSource();
+		assertEquals(24 * 4 * BufferType.FLOAT.getNumberOfBytes(), colours.limit());
+
+		ByteBuffer vertices = geometry.getVertices().getSource();
+		for (int i = 0; i < 24; i++)
+		{
+			Color expected = vertices.getFloat((i * 3 + 2) * 4) == 100f ? Color.RED : Color.BLUE;
+			float[] rgba = expected.getRGBComponents(null);
+			for (int j = 0; j < 4; j++)
+			{
+				assertEquals(rgba[j], colours.getFloat((i * 4 + j) * 4), 0.0001);
+			}
+		}
+	}
+
 	private void assertLoadedModelCorrect(GDALRasterModel result,
 			String name, String description,
 			int expectedNumVertices, int xSize, int ySize,
@@ -16,6 +16,7 @@
 package au.gov.ga.earthsci.model.core.raster;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -162,6 +163,19 @@ public class GDALRasterModelParametersTest
 		new GDALRasterModelParameters(params);
 	}
 
+	@Test
+	public void testMemoryBudgetRoundTripsThroughParamMap() throws Exception
+	{
+		GDALRasterModelParameters classUnderTest = new GDALRasterModelParameters();
+		assertEquals(GDALRasterModelParameters.DEFAULT_MEMORY_BUDGET, classUnderTest.getNormalisedMemoryBudget());
+		assertFalse(classUnderTest.asParameterMap().containsKey(GDALRasterModelParameters.MEMORY_BUDGET));
+
+		classUnderTest.setMemoryBudget(1024L);
+		GDALRasterModelParameters result = new GDALRasterModelParameters(classUnderTest.asParameterMap());
+		assertEquals(Long.valueOf(1024), result.getMemoryBudget());
+		assertEquals(1024, result.getNormalisedMemoryBudget());
+	}
+
 	@Test
 	public void testToParamMapWithMinimal() throws Exception
 	{
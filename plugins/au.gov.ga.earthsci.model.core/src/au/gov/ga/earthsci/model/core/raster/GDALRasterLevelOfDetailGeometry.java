@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.model.core.raster;
+
+import au.gov.ga.earthsci.common.util.Validate;
+import au.gov.ga.earthsci.model.geometry.BasicColouredMeshGeometry;
+import au.gov.ga.earthsci.model.geometry.ILevelOfDetailGeometry;
+import au.gov.ga.earthsci.model.geometry.IMeshChunk;
+
+/**
+ * A mesh geometry for GDAL rasters that is backed by a quadtree of
+ * {@link GDALRasterMeshChunk}s.
+ * <p/>
+ * The geometry itself holds the mesh of the (always loaded) root chunk, so
+ * that consumers that are unaware of levels of detail can treat it as a
+ * normal mesh geometry.
+ * 
+ * @author James Navin (james.navin@ga.gov.au)
+ */
+public class GDALRasterLevelOfDetailGeometry extends BasicColouredMeshGeometry implements ILevelOfDetailGeometry
+{
+
+	private final GDALRasterMeshChunk rootChunk;
+
+	public GDALRasterLevelOfDetailGeometry(String id, String name, String description, GDALRasterMeshChunk rootChunk)
+	{
+		super(id, name, description);
+		Validate.notNull(rootChunk, "A root chunk is required"); //$NON-NLS-1$
+		Validate.notNull(rootChunk.getGeometry(), "The root chunk must be loaded"); //$NON-NLS-1$
+		this.rootChunk = rootChunk;
+
+		BasicColouredMeshGeometry root = rootChunk.getGeometry();
+		setVertices(root.getVertices());
+		setEdgeIndices(root.getEdgeIndices());
+		setFaceType(root.getFaceType());
+		setVertexColour(root.getVertexColour());
+		setColourType(root.getColourType());
+		setColorMap(root.getColorMap());
+		setColouredAxis(root.getColouredAxis());
+		setUseZMasking(root.useZMasking());
+		setBoundingVolume(root.getBoundingVolume());
+	}
+
+	@Override
+	public IMeshChunk getRootChunk()
+	{
+		return rootChunk;
+	}
+}
@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.model.core.raster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import au.gov.ga.earthsci.model.geometry.BasicColouredMeshGeometry;
+import au.gov.ga.earthsci.model.geometry.IMeshChunk;
+
+/**
+ * An {@link IMeshChunk} that covers a rectangular region of a GDAL raster at
+ * a single level of detail.
+ * <p/>
+ * Chunks are addressed by their level in the quadtree (0 being the coarsest)
+ * and their column and row within that level. Meshes are built by a
+ * {@link GDALRasterMeshChunkBuilder}. If a build fails, the chunk is retried
+ * after a delay that doubles with each consecutive failure.
+ * 
+ * @author James Navin (james.navin@ga.gov.au)
+ */
+public class GDALRasterMeshChunk implements IMeshChunk
+{
+
+	private final GDALRasterMeshChunkBuilder builder;
+	private final int level;
+	private final int x;
+	private final int y;
+
+	/** The delay before retrying a failed build, doubled for each consecutive failure */
+	static final long RETRY_DELAY = 1000;
+	static final long MAX_RETRY_DELAY = 60000;
+
+	private volatile BasicColouredMeshGeometry geometry;
+	private volatile double geometricError;
+
+	private final Object loadLock = new Object();
+	private boolean loading = false;
+	private boolean discardBuild = false;
+	private int failures = 0;
+	private long retryTime;
+
+	private List<IMeshChunk> children;
+
+	GDALRasterMeshChunk(GDALRasterMeshChunkBuilder builder, int level, int x, int y)
+	{
+		this.builder = builder;
+		this.level = level;
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * @return The level of this chunk in the quadtree; 0 is the coarsest
+	 */
+	public int getLevel()
+	{
+		return level;
+	}
+
+	/**
+	 * @return The column of this chunk within its level
+	 */
+	public int getX()
+	{
+		return x;
+	}
+
+	/**
+	 * @return The row of this chunk within its level
+	 */
+	public int getY()
+	{
+		return y;
+	}
+
+	@Override
+	public BasicColouredMeshGeometry getGeometry()
+	{
+		return geometry;
+	}
+
+	@Override
+	public void load()
+	{
+		synchronized (loadLock)
+		{
+			if (loading)
+			{
+				// Keep the result of a build started before this chunk was unloaded
+				discardBuild = false;
+				return;
+			}
+			if (geometry != null || (failures > 0 && System.currentTimeMillis() < retryTime))
+			{
+				return;
+			}
+			loading = true;
+		}
+		builder.buildInBackground(this);
+	}
+
+	@Override
+	public void unload()
+	{
+		synchronized (loadLock)
+		{
+			geometry = null;
+			discardBuild = loading;
+		}
+	}
+
+	@Override
+	public boolean isLoadFailed()
+	{
+		synchronized (loadLock)
+		{
+			return !loading && failures > 0;
+		}
+	}
+
+	/**
+	 * Called by the builder before building this chunk in the background.
+	 * 
+	 * @return Whether the chunk still needs to be built; false if it was
+	 *         unloaded since the build was requested
+	 */
+	boolean startBuild()
+	{
+		synchronized (loadLock)
+		{
+			if (discardBuild)
+			{
+				discardBuild = false;
+				loading = false;
+				return false;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Called by the builder if building this chunk failed.
+	 */
+	void buildFailed()
+	{
+		synchronized (loadLock)
+		{
+			loading = false;
+			discardBuild = false;
+			failures++;
+			long delay = RETRY_DELAY << Math.min(failures - 1, 16);
+			retryTime = System.currentTimeMillis() + Math.min(delay, MAX_RETRY_DELAY);
+		}
+	}
+
+	@Override
+	public double getGeometricError()
+	{
+		return geometricError;
+	}
+
+	@Override
+	public boolean hasChildren()
+	{
+		return level < builder.getDepth();
+	}
+
+	@Override
+	public synchronized List<IMeshChunk> getChildren()
+	{
+		if (children == null)
+		{
+			List<IMeshChunk> result = new ArrayList<IMeshChunk>(4);
+			if (hasChildren())
+			{
+				for (int childY = y * 2; childY <= y * 2 + 1; childY++)
+				{
+					for (int childX = x * 2; childX <= x * 2 + 1; childX++)
+					{
+						if (builder.hasChunk(level + 1, childX, childY))
+						{
+							result.add(new GDALRasterMeshChunk(builder, level + 1, childX, childY));
+						}
+					}
+				}
+			}
+			children = Collections.unmodifiableList(result);
+		}
+		return children;
+	}
+
+	/**
+	 * Set the mesh for this chunk once it has been built.
+	 */
+	void setGeometry(BasicColouredMeshGeometry geometry, double geometricError)
+	{
+		synchronized (loadLock)
+		{
+			boolean discard = discardBuild;
+			loading = false;
+			discardBuild = false;
+			failures = 0;
+			if (discard)
+			{
+				return;
+			}
+			this.geometricError = geometricError;
+			this.geometry = geometry;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "GDALRasterMeshChunk[" + level + ": " + x + ", " + y + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+}
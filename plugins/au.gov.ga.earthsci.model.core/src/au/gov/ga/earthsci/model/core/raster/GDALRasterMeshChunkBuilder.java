@@ -0,0 +1,384 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.model.core.raster;
+
+import static au.gov.ga.earthsci.model.core.raster.GDALRasterModelFactory.*;
+import gov.nasa.worldwind.globes.Earth;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import org.gdal.gdal.Band;
+import org.gdal.gdal.Dataset;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconstConstants;
+import org.gdal.osr.CoordinateTransformation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import au.gov.ga.earthsci.common.buffer.BufferType;
+import au.gov.ga.earthsci.common.color.ColorMap;
+import au.gov.ga.earthsci.model.bounds.BoundingBox;
+import au.gov.ga.earthsci.model.data.IModelData;
+import au.gov.ga.earthsci.model.data.ModelDataBuilder;
+import au.gov.ga.earthsci.model.geometry.BasicColouredMeshGeometry;
+import au.gov.ga.earthsci.model.geometry.FaceType;
+import au.gov.ga.earthsci.model.geometry.ModelGeometryStatistics;
+import au.gov.ga.earthsci.worldwind.common.util.CoordinateTransformationUtil;
+import au.gov.ga.earthsci.worldwind.common.util.WorkerPool;
+
+/**
+ * Builds the meshes of a quadtree of {@link GDALRasterMeshChunk}s from a GDAL
+ * raster band.
+ * <p/>
+ * The finest level of the quadtree samples the raster at the subsample stride
+ * in the model parameters, and each coarser level doubles the stride. Every
+ * level also samples the last row and column of the raster, so that all
+ * levels cover the same area. Chunks are bordered by skirts hanging below
+ * their edges, which hide the cracks between neighbouring chunks at
+ * different levels of detail.
+ * <p/>
+ * GDAL datasets are not thread safe, so chunks are built one at a time on a
+ * single background thread.
+ * 
+ * @author James Navin (james.navin@ga.gov.au)
+ */
+class GDALRasterMeshChunkBuilder
+{
+
+	/** The default number of cells along each side of a chunk */
+	static final int DEFAULT_CHUNK_SIZE = 64;
+
+	private static final int VERTEX_GROUP_SIZE = 3;
+
+	private static final Logger logger = LoggerFactory.getLogger(GDALRasterMeshChunkBuilder.class);
+
+	private final Dataset ds;
+	private final Band band;
+	private final GDALRasterModelParameters parameters;
+	private final int chunkSize;
+	private final int rasterXSize;
+	private final int rasterYSize;
+	private final int depth;
+
+	private final double[] geoTransform;
+	private final CoordinateTransformation coordinateTransformation;
+	private final double elevationOffset;
+	private final double elevationScale;
+	private final Double nodata;
+	private final Double scaledNodata;
+
+	/** The statistics and colour map used for colouring all chunks; from the root chunk */
+	private ModelGeometryStatistics colourStats;
+	private ColorMap colorMap;
+
+	//the dataset isn't thread safe, so chunks are built one at a time
+	private final WorkerPool worker = new WorkerPool(GDALRasterMeshChunkBuilder.class.getName(), 1);
+
+	/**
+	 * Create a new builder for the given dataset.
+	 * 
+	 * @param ds
+	 *            The dataset to build chunks from
+	 * @param parameters
+	 *            The parameters to build chunks with
+	 * @param chunkSize
+	 *            The number of cells along each side of a chunk
+	 */
+	GDALRasterMeshChunkBuilder(Dataset ds, GDALRasterModelParameters parameters, int chunkSize)
+	{
+		this.ds = ds;
+		this.band = ds.GetRasterBand(parameters.getElevationBandIndex());
+		this.parameters = parameters;
+		this.chunkSize = chunkSize;
+		this.rasterXSize = band.getXSize();
+		this.rasterYSize = band.getYSize();
+
+		int depth = 0;
+		while (getNumCells(rasterXSize, getStride(0, depth)) > chunkSize
+				|| getNumCells(rasterYSize, getStride(0, depth)) > chunkSize)
+		{
+			depth++;
+		}
+		this.depth = depth;
+
+		this.geoTransform = ds.GetGeoTransform();
+		this.coordinateTransformation = getCoordinateTransform(parameters);
+		this.elevationOffset = getOffset(band, parameters);
+		this.elevationScale = getScale(band, parameters);
+		this.nodata = getNodata(band);
+		this.scaledNodata = nodata == null ? null : toElevation(elevationOffset, elevationScale, nodata, nodata);
+	}
+
+	/**
+	 * @return A new, unloaded root chunk covering the entire raster
+	 */
+	GDALRasterMeshChunk createRootChunk()
+	{
+		return new GDALRasterMeshChunk(this, 0, 0, 0);
+	}
+
+	/**
+	 * @return The level of the finest chunks in the quadtree
+	 */
+	int getDepth()
+	{
+		return depth;
+	}
+
+	/**
+	 * @return Whether a chunk exists at the given position in the quadtree
+	 */
+	boolean hasChunk(int level, int x, int y)
+	{
+		int stride = getStride(level, depth);
+		return level <= depth && x >= 0 && y >= 0
+				&& x * chunkSize < getNumCells(rasterXSize, stride)
+				&& y * chunkSize < getNumCells(rasterYSize, stride);
+	}
+
+	/**
+	 * Build the mesh for the given chunk on the background thread. If the
+	 * build fails, the chunk is marked as failed.
+	 */
+	void buildInBackground(final GDALRasterMeshChunk chunk)
+	{
+		worker.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (!chunk.startBuild())
+				{
+					return;
+				}
+				try
+				{
+					build(chunk);
+				}
+				catch (Exception e)
+				{
+					logger.error("Failed to build " + chunk, e); //$NON-NLS-1$
+					chunk.buildFailed();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Build the mesh for the given chunk on the calling thread.
+	 */
+	synchronized void build(GDALRasterMeshChunk chunk) throws Exception
+	{
+		int stride = getStride(chunk.getLevel(), depth);
+		int firstColumn = chunk.getX() * chunkSize;
+		int firstRow = chunk.getY() * chunkSize;
+		int numColumns = Math.min(chunkSize, getNumCells(rasterXSize, stride) - firstColumn) + 1;
+		int numRows = Math.min(chunkSize, getNumCells(rasterYSize, stride) - firstRow) + 1;
+		int numVertices = numColumns * numRows;
+
+		int xStart = getPixel(firstColumn, stride, rasterXSize);
+		int xEnd = getPixel(firstColumn + numColumns - 1, stride, rasterXSize);
+		double[] row = new double[xEnd - xStart + 1];
+
+		double[] coords = new double[numVertices * VERTEX_GROUP_SIZE];
+		boolean[] isNodata = new boolean[numVertices];
+		double[] transformedCoords = new double[2];
+		for (int r = 0, i = 0; r < numRows; r++)
+		{
+			int y = getPixel(firstRow + r, stride, rasterYSize);
+			int result = band.ReadRaster(xStart, y, row.length, 1, gdalconstConstants.GDT_Float64, row);
+			if (result != gdalconstConstants.CE_None)
+			{
+				throw new IllegalStateException("Failed to read raster row " + y + ": " + gdal.GetLastErrorMsg()); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+
+			for (int c = 0; c < numColumns; c++, i++)
+			{
+				int x = getPixel(firstColumn + c, stride, rasterXSize);
+				double elevation = toElevation(elevationOffset, elevationScale, row[x - xStart], nodata);
+
+				transformCoordinates(geoTransform, x, y, transformedCoords);
+				coords[i * VERTEX_GROUP_SIZE] = transformedCoords[0];
+				coords[i * VERTEX_GROUP_SIZE + 1] = transformedCoords[1];
+				coords[i * VERTEX_GROUP_SIZE + 2] = elevation;
+				isNodata[i] = isNoData(scaledNodata, elevation);
+			}
+		}
+
+		CoordinateTransformationUtil.transformPoints(coordinateTransformation, coords);
+
+		// Lat/lon extents include NODATA vertices, so that chunks are never empty
+		ModelGeometryStatistics stats = new ModelGeometryStatistics();
+		ModelGeometryStatistics extents = new ModelGeometryStatistics();
+		for (int i = 0, j = 0; i < numVertices; i++, j += VERTEX_GROUP_SIZE)
+		{
+			extents.updateStats(coords[j + 1], coords[j], null);
+			if (!isNodata[i])
+			{
+				stats.updateStats(coords[j + 1], coords[j], coords[j + 2]);
+			}
+		}
+		if (colourStats == null)
+		{
+			colourStats = stats;
+			colorMap = toAbsoluteColorMap(parameters.getColorMap(), colourStats);
+		}
+
+		double spacing = getVertexSpacing(extents, numColumns, numRows);
+		double skirtDepth = 2 * spacing;
+
+		int[] border = getBorderIndices(numColumns, numRows);
+		ByteBuffer vertexBuffer = allocateBuffer((numVertices + border.length) * VERTEX_GROUP_SIZE
+				* BufferType.FLOAT.getNumberOfBytes());
+		for (int j = 0; j < coords.length; j++)
+		{
+			vertexBuffer.putFloat((float) coords[j]);
+		}
+		for (int index : border)
+		{
+			// Skirts hang below the border vertices
+			int j = index * VERTEX_GROUP_SIZE;
+			double elevation = isNodata[index] ? scaledNodata : coords[j + 2] - skirtDepth;
+			vertexBuffer.putFloat((float) coords[j])
+					.putFloat((float) coords[j + 1])
+					.putFloat((float) elevation);
+		}
+
+		BasicColouredMeshGeometry geometry =
+				new BasicColouredMeshGeometry(UUID.randomUUID().toString(), ds.GetDescription(), ds.GetDescription());
+
+		IModelData vertices = ModelDataBuilder.createFromBuffer(vertexBuffer)
+				.ofType(BufferType.FLOAT)
+				.withNodata(scaledNodata == null ? null : scaledNodata.floatValue())
+				.named("Vertices")
+				.describedAs("Vertices")
+				.withGroupSize(3)
+				.build();
+		geometry.setVertices(vertices);
+		geometry.setUseZMasking(nodata != null);
+
+		geometry.setEdgeIndices(createEdges(numColumns, numRows, border));
+		geometry.setFaceType(FaceType.TRIANGLE_STRIP);
+
+		addVertexColours(geometry, colorMap, colourStats);
+
+		double minElevation = stats.getMinElevation() == null ? 0 : stats.getMinElevation();
+		double maxElevation = stats.getMaxElevation() == null ? 0 : stats.getMaxElevation();
+		geometry.setBoundingVolume(new BoundingBox(extents.getMinLon(), extents.getMaxLon(),
+				extents.getMinLat(), extents.getMaxLat(),
+				minElevation - skirtDepth, maxElevation));
+
+		chunk.setGeometry(geometry, chunk.hasChildren() ? spacing : 0);
+		logger.debug("Built {}", chunk); //$NON-NLS-1$
+	}
+
+	/**
+	 * Create the edge indices for a chunk: a triangle strip covering the grid
+	 * of vertices, joined to a strip around the border that forms the skirt.
+	 */
+	private static IModelData createEdges(int numColumns, int numRows, int[] border)
+	{
+		int numVertices = numColumns * numRows;
+		int numIndices = getNumGridEdges(numColumns, numRows) + 2 + 2 * (border.length + 1);
+		ByteBuffer edgesBuffer = allocateBuffer(numIndices * BufferType.INT.getNumberOfBytes());
+
+		putGridEdges(edgesBuffer, numColumns, numRows);
+
+		// Put two empty triangles to join the grid to the skirt
+		edgesBuffer.putInt(numVertices - 1);
+		edgesBuffer.putInt(border[0]);
+		for (int i = 0; i <= border.length; i++)
+		{
+			int k = i % border.length;
+			edgesBuffer.putInt(border[k]);
+			edgesBuffer.putInt(numVertices + k);
+		}
+
+		// TODO Move name/description to constant somewhere for reuse as standard name
+		return ModelDataBuilder.createFromBuffer(edgesBuffer)
+				.ofType(BufferType.INT)
+				.named("Edges")
+				.describedAs("Edges")
+				.withGroupSize(1)
+				.build();
+	}
+
+	/**
+	 * @return The indices of the vertices around the border of a grid, in
+	 *         order around the grid
+	 */
+	private static int[] getBorderIndices(int numColumns, int numRows)
+	{
+		int[] border = new int[2 * (numColumns - 1) + 2 * (numRows - 1)];
+		int i = 0;
+		for (int c = 0; c < numColumns - 1; c++)
+		{
+			border[i++] = c;
+		}
+		for (int r = 0; r < numRows - 1; r++)
+		{
+			border[i++] = r * numColumns + numColumns - 1;
+		}
+		for (int c = numColumns - 1; c > 0; c--)
+		{
+			border[i++] = (numRows - 1) * numColumns + c;
+		}
+		for (int r = numRows - 1; r > 0; r--)
+		{
+			border[i++] = r * numColumns;
+		}
+		return border;
+	}
+
+	/**
+	 * @return The approximate distance in metres between neighbouring
+	 *         vertices of a chunk with the given extents
+	 */
+	private static double getVertexSpacing(ModelGeometryStatistics extents, int numColumns, int numRows)
+	{
+		double latSpacing = (extents.getMaxLat() - extents.getMinLat()) / (numRows - 1);
+		double lonSpacing = (extents.getMaxLon() - extents.getMinLon()) / (numColumns - 1)
+				* Math.cos(Math.toRadians((extents.getMaxLat() + extents.getMinLat()) / 2));
+		return Math.toRadians(Math.max(latSpacing, lonSpacing)) * Earth.WGS84_EQUATORIAL_RADIUS;
+	}
+
+	/**
+	 * @return The raster pixel stride of the given level
+	 */
+	private int getStride(int level, int depth)
+	{
+		return parameters.getNormalisedSubsample() << (depth - level);
+	}
+
+	/**
+	 * @return The number of cells between samples at the given stride along
+	 *         a raster dimension, including a final sample at the last pixel
+	 */
+	private static int getNumCells(int size, int stride)
+	{
+		return (size - 1 + stride - 1) / stride;
+	}
+
+	/**
+	 * @return The pixel of the given sample at the given stride along a raster
+	 *         dimension
+	 */
+	private static int getPixel(int sample, int stride, int size)
+	{
+		return (int) Math.min((long) sample * stride, size - 1);
+	}
+}
@@ -15,6 +15,7 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.model.core.raster;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
@@ -47,8 +48,11 @@ public class GDALRasterModel extends AbstractPropertyChangeBean implements IMode
 	/** The parameters used to create the model */
 	private GDALRasterModelParameters parameters;
 
-	/** The geometry for the model */
-	private IVertexBasedGeometry geometry;
+	/**
+	 * The geometry for the model; large rasters are split into multiple
+	 * geometries that share their boundary vertices
+	 */
+	private final List<IVertexBasedGeometry> geometries;
 
 	private String name;
 	private String description;
@@ -70,11 +74,18 @@ public class GDALRasterModel extends AbstractPropertyChangeBean implements IMode
 	public GDALRasterModel(String id, IVertexBasedGeometry geometry,
 			Dataset dataset, GDALRasterModelParameters parameters,
 			String name, String description)
+	{
+		this(id, Collections.singletonList(geometry), dataset, parameters, name, description);
+	}
+
+	public GDALRasterModel(String id, List<? extends IVertexBasedGeometry> geometries,
+			Dataset dataset, GDALRasterModelParameters parameters,
+			String name, String description)
 	{
 		this.id = Util.isBlank(id) ? UUID.randomUUID().toString() : id;
 		this.rasterDataset = dataset;
 		this.parameters = parameters;
-		this.geometry = geometry;
+		this.geometries = new ArrayList<IVertexBasedGeometry>(geometries);
 		this.name = name;
 		this.description = description;
 	}
@@ -100,15 +111,18 @@ public class GDALRasterModel extends AbstractPropertyChangeBean implements IMode
 	@Override
 	public List<IModelGeometry> getGeometries()
 	{
-		return Collections.singletonList((IModelGeometry) geometry);
+		return Collections.<IModelGeometry> unmodifiableList(geometries);
 	}
 
 	@Override
 	public IModelGeometry getGeometry(String id)
 	{
-		if (geometry.getId().equals(id))
+		for (IVertexBasedGeometry geometry : geometries)
 		{
-			return geometry;
+			if (geometry.getId().equals(id))
+			{
+				return geometry;
+			}
 		}
 		return null;
 	}
@@ -151,13 +165,16 @@ public class GDALRasterModel extends AbstractPropertyChangeBean implements IMode
 	@Override
 	public void setOpacity(double opacity)
 	{
-		firePropertyChange(OPACITY_EVENT_NAME, geometry.getOpacity(), opacity);
-		geometry.setOpacity(opacity);
+		firePropertyChange(OPACITY_EVENT_NAME, getOpacity(), opacity);
+		for (IVertexBasedGeometry geometry : geometries)
+		{
+			geometry.setOpacity(opacity);
+		}
 	}
 
 	@Override
 	public double getOpacity()
 	{
-		return geometry.getOpacity();
+		return geometries.get(0).getOpacity();
 	}
 }
@@ -15,17 +15,24 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.model.core.raster;
 
-import static au.gov.ga.earthsci.common.buffer.BufferUtil.getValue;
-import static au.gov.ga.earthsci.common.buffer.BufferUtil.skipValues;
-import static au.gov.ga.earthsci.core.raster.GDALRasterUtil.getBufferType;
-
-import java.awt.Color;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.gdal.gdal.Band;
 import org.gdal.gdal.Dataset;
+import org.gdal.gdal.gdal;
+import org.gdal.gdalconst.gdalconstConstants;
 import org.gdal.osr.CoordinateTransformation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,6 +42,7 @@ import au.gov.ga.earthsci.common.buffer.BufferUtil;
 import au.gov.ga.earthsci.common.color.ColorMap;
 import au.gov.ga.earthsci.common.color.ColorMap.InterpolationMode;
 import au.gov.ga.earthsci.common.color.ColorType;
+import au.gov.ga.earthsci.common.color.MutableColorMap;
 import au.gov.ga.earthsci.common.spatial.SpatialReferences;
 import au.gov.ga.earthsci.common.util.Validate;
 import au.gov.ga.earthsci.model.IModel;
@@ -45,12 +53,28 @@ import au.gov.ga.earthsci.model.geometry.BasicColouredMeshGeometry;
 import au.gov.ga.earthsci.model.geometry.FaceType;
 import au.gov.ga.earthsci.model.geometry.ModelGeometryStatistics;
 import au.gov.ga.earthsci.model.render.RendererCreatorRegistry;
+import au.gov.ga.earthsci.worldwind.common.util.ColorLookupTable;
 import au.gov.ga.earthsci.worldwind.common.util.CoordinateTransformationUtil;
 import au.gov.ga.earthsci.worldwind.common.util.Util;
+import au.gov.ga.earthsci.worldwind.common.util.WorkerPool;
 
 /**
  * A factory class used to create {@link IModel} instances from GDAL raster
  * datasets according to a set of parameters.
+ * <p/>
+ * The raster band is read in windows of whole GDAL blocks, sized so that the
+ * working memory used while reading stays within the
+ * {@link GDALRasterModelParameters#getNormalisedMemoryBudget() memory budget}.
+ * Each window is projected and written to the vertex buffer on a separate
+ * thread while the next window is read. Grids with too many vertices to index
+ * from a single buffer are split into multiple geometries.
+ * <p/>
+ * The budget only limits the windows. The vertex buffer of each geometry
+ * (and its edge and colour buffers) are allocated in full before reading, as
+ * the geometry's data is a single buffer, so the memory used by a model grows
+ * with the number of vertices regardless of the budget. Use the level of
+ * detail option (or subsampling) for grids whose full mesh doesn't fit in
+ * memory.
  * 
  * @author James Navin (james.navin@ga.gov.au)
  */
@@ -60,10 +84,19 @@ public class GDALRasterModelFactory
 	private static final int VERTEX_GROUP_SIZE = 3;
 	private static final int RGBA_GROUP_SIZE = 4;
 
-	private static final Color DEFAULT_NODATA_COLOR = new Color(0, 0, 0, 0);
+	/** The number of bytes of working memory needed per vertex in a window */
+	private static final int WINDOW_BYTES_PER_VERTEX = VERTEX_GROUP_SIZE * 8 + 1;
+
+	/** The number of vertices coloured by each colouring task */
+	private static final int COLOUR_BATCH_SIZE = 1 << 16;
 
 	private static final Logger logger = LoggerFactory.getLogger(GDALRasterModelFactory.class);
 
+	/** The maximum size of a single geometry buffer; can be reduced for testing */
+	static int maxBufferSize = Integer.MAX_VALUE;
+
+	private static final WorkerPool workers = new WorkerPool(GDALRasterModelFactory.class.getName());
+
 	/**
 	 * Create a new {@link GDALRasterModel} from the provided GDAL dataset and
 	 * parameters
@@ -73,20 +106,84 @@ public class GDALRasterModelFactory
 		Validate.notNull(ds, "A GDAL dataset is required"); //$NON-NLS-1$
 		Validate.notNull(parameters, "Model parameters are required"); //$NON-NLS-1$
 
+		Band band = ds.GetRasterBand(parameters.getElevationBandIndex());
+		if (parameters.isLevelOfDetail() && band.getXSize() > 1 && band.getYSize() > 1)
+		{
+			return createLevelOfDetailModel(ds, parameters);
+		}
+
+		int stride = parameters.getNormalisedSubsample();
+		int numColumns = subsample(band.getXSize(), stride);
+		int numRows = subsample(band.getYSize(), stride);
+
+		// Split the grid into chunks of rows that fit in the geometry buffers,
+		// with neighbouring chunks sharing a row of vertices so the mesh is continuous
+		int maxBytesPerRow = (numColumns + 1) * RGBA_GROUP_SIZE * BufferType.FLOAT.getNumberOfBytes();
+		int rowsPerChunk = Math.max(2, maxBufferSize / maxBytesPerRow);
+
 		ModelGeometryStatistics stats = new ModelGeometryStatistics();
+		List<BasicColouredMeshGeometry> geometries = new ArrayList<BasicColouredMeshGeometry>();
+		List<ModelGeometryStatistics> geometryStats = new ArrayList<ModelGeometryStatistics>();
+		for (int firstRow = 0; firstRow == 0 || firstRow < numRows - 1; firstRow += rowsPerChunk - 1)
+		{
+			int chunkRows = Math.min(rowsPerChunk, numRows - firstRow);
 
-		BasicColouredMeshGeometry geometry =
-				new BasicColouredMeshGeometry(UUID.randomUUID().toString(),
-						ds.GetDescription(), ds.GetDescription());
+			BasicColouredMeshGeometry geometry =
+					new BasicColouredMeshGeometry(UUID.randomUUID().toString(),
+							ds.GetDescription(), ds.GetDescription());
+			ModelGeometryStatistics chunkStats = new ModelGeometryStatistics();
 
-		addVerticesAndNodata(geometry, ds, parameters, stats);
-		addVertexColours(geometry, ds, parameters, stats);
-		addEdges(geometry, ds, parameters, stats);
+			long firstRowPoints = addVerticesAndNodata(geometry, ds, parameters, firstRow, chunkRows, chunkStats);
+			addEdges(geometry, numColumns, chunkRows);
+
+			stats.updateStats(chunkStats);
+			if (firstRow > 0)
+			{
+				// The first row is shared with the previous chunk, so has already been counted
+				stats.setNumPoints(stats.getNumPoints() - firstRowPoints);
+			}
+			geometries.add(geometry);
+			geometryStats.add(chunkStats);
+		}
+
+		// Colours are calculated once all vertices are loaded, as they depend on the full elevation range
+		ColorMap colorMap = toAbsoluteColorMap(parameters.getColorMap(), stats);
+		for (int i = 0; i < geometries.size(); i++)
+		{
+			BasicColouredMeshGeometry geometry = geometries.get(i);
+			addVertexColours(geometry, colorMap, stats);
+
+			ModelGeometryStatistics chunkStats = geometryStats.get(i);
+			geometry.setBoundingVolume(new BoundingBox(chunkStats.getMinLon(), chunkStats.getMaxLon(),
+					chunkStats.getMinLat(), chunkStats.getMaxLat(),
+					chunkStats.getMinElevation(), chunkStats.getMaxElevation()));
+
+			geometry.setRenderer(RendererCreatorRegistry.getDefaultCreator(geometry).createRenderer(geometry));
+		}
+
+		logger.debug("Vertex stats: {}", stats); //$NON-NLS-1$
 
-		geometry.setBoundingVolume(new BoundingBox(stats.getMinLon(), stats.getMaxLon(),
-				stats.getMinLat(), stats.getMaxLat(),
-				stats.getMinElevation(), stats.getMaxElevation()));
+		return new GDALRasterModel(null, geometries, ds, parameters,
+				parameters.getModelName(),
+				parameters.getModelDescription());
+	}
 
+	/**
+	 * Create a model containing a quadtree of mesh chunks at multiple levels
+	 * of detail. Only the coarsest chunk is loaded; finer chunks are loaded
+	 * in the background as they are required by the renderer.
+	 */
+	private static GDALRasterModel createLevelOfDetailModel(Dataset ds, GDALRasterModelParameters parameters)
+			throws Exception
+	{
+		GDALRasterMeshChunkBuilder builder =
+				new GDALRasterMeshChunkBuilder(ds, parameters, GDALRasterMeshChunkBuilder.DEFAULT_CHUNK_SIZE);
+		GDALRasterMeshChunk rootChunk = builder.createRootChunk();
+		builder.build(rootChunk);
+
+		GDALRasterLevelOfDetailGeometry geometry =
+				new GDALRasterLevelOfDetailGeometry(UUID.randomUUID().toString(),
+						ds.GetDescription(), ds.GetDescription(), rootChunk);
 		geometry.setRenderer(RendererCreatorRegistry.getDefaultCreator(geometry).createRenderer(geometry));
 
 		return new GDALRasterModel(null, geometry, ds, parameters,
@@ -99,146 +196,219 @@ public class GDALRasterModelFactory
 	};
 
 	/**
-	 * Read vertice data from the given raster dataset using the provided
-	 * parameters, and store calculated statistics about the mesh in the
-	 * provided object for later use.
+	 * Read vertice data for a range of (subsampled) rows from the given raster
+	 * dataset using the provided parameters, and store calculated statistics
+	 * about the mesh in the provided object for later use.
+	 * <p/>
+	 * Rows are read in windows; while each window is projected on a separate
+	 * thread the next window is read from the dataset, which is not thread
+	 * safe.
+	 * 
+	 * @return The number of valid (non-NODATA) points in the first row
 	 */
-	private static void addVerticesAndNodata(BasicColouredMeshGeometry geometry, Dataset ds,
-			GDALRasterModelParameters parameters,
-			ModelGeometryStatistics stats)
+	private static long addVerticesAndNodata(BasicColouredMeshGeometry geometry, Dataset ds,
+			GDALRasterModelParameters parameters, int firstRow, int numRows,
+			ModelGeometryStatistics stats) throws Exception
 	{
 		Band band = ds.GetRasterBand(parameters.getElevationBandIndex());
 
 		int rasterXSize = band.getXSize();
 		int rasterYSize = band.getYSize();
 
-		ByteBuffer buffer = readRasterBuffer(band, rasterXSize, rasterYSize);
-
-		// Transform pixel coords -> source coordinate system coords
-		double[] geoTransform = ds.GetGeoTransform();
-
-		// Transform source coordinate system -> WGS84
-		CoordinateTransformation coordinateTransformation = getCoordinateTransform(parameters);
-
-		BufferType sourceBufferType = getBufferType(band);
-
-		double elevationOffset = getOffset(band, parameters);
-		double elevationScale = getScale(band, parameters);
-
-		double[] transformedCoords = new double[2];
-		double[] projectedCoords = new double[VERTEX_GROUP_SIZE];
-
 		int stride = parameters.getNormalisedSubsample();
-		ByteBuffer vertexBuffer = allocateVerticesBuffer(rasterXSize, rasterYSize, stride);
+		int numColumns = subsample(rasterXSize, stride);
+
+		WindowProjector projector = new WindowProjector();
+		projector.geoTransform = ds.GetGeoTransform();
+		projector.coordinateTransformation = getCoordinateTransform(parameters);
+		projector.elevationOffset = getOffset(band, parameters);
+		projector.elevationScale = getScale(band, parameters);
+		projector.stride = stride;
+		projector.numColumns = numColumns;
+		projector.vertexBuffer = allocateBuffer(numColumns * numRows * VERTEX_GROUP_SIZE
+				* BufferType.FLOAT.getNumberOfBytes());
 
 		Double nodata = getNodata(band);
-		Double scaledNodata = nodata;
+		projector.nodata = nodata;
 		if (nodata != null)
 		{
-			scaledNodata = toElevation(elevationOffset, elevationScale, nodata, nodata);
+			projector.scaledNodata = toElevation(projector.elevationOffset, projector.elevationScale, nodata, nodata);
 		}
 
-		for (int y = 0; y < rasterYSize; y += stride)
+		int inFlight = workers.getParallelism();
+		int windowRows = getWindowRows(band, parameters, numColumns, inFlight);
+		int windowSourceRows = (windowRows - 1) * stride + 1;
+		double[] window = new double[rasterXSize * Math.min(windowSourceRows, rasterYSize)];
+
+		Queue<Future<ModelGeometryStatistics>> pending = new LinkedList<Future<ModelGeometryStatistics>>();
+		try
 		{
-			for (int x = 0; x < rasterXSize; x += stride)
+			for (int row = 0; row < numRows; row += windowRows)
 			{
-				double datasetValue = getValue(buffer, sourceBufferType).doubleValue();
-				double elevation = toElevation(elevationOffset, elevationScale, datasetValue, nodata);
+				int rows = Math.min(windowRows, numRows - row);
+				int y = (firstRow + row) * stride;
+				int sourceRows = Math.min((rows - 1) * stride + 1, rasterYSize - y);
 
-				transformCoordinates(geoTransform, x, y, transformedCoords);
-				projectCoordinates(coordinateTransformation,
-						transformedCoords[0],
-						transformedCoords[1],
-						elevation,
-						projectedCoords);
-
-				vertexBuffer.putFloat((float) projectedCoords[0])
-						.putFloat((float) projectedCoords[1])
-						.putFloat((float) projectedCoords[2]);
+				int result = band.ReadRaster(0, y, rasterXSize, sourceRows, gdalconstConstants.GDT_Float64, window);
+				if (result != gdalconstConstants.CE_None)
+				{
+					throw new IllegalStateException("Failed to read raster rows " + y + " to " //$NON-NLS-1$ //$NON-NLS-2$
+							+ (y + sourceRows - 1) + ": " + gdal.GetLastErrorMsg()); //$NON-NLS-1$
+				}
 
-				if (!isNoData(scaledNodata, elevation))
+				// Copy the sampled values so the window can be reused for the next read
+				double[] coords = new double[rows * numColumns * VERTEX_GROUP_SIZE];
+				for (int r = 0, i = 2; r < rows; r++)
 				{
-					stats.updateStats(projectedCoords[1], projectedCoords[0], projectedCoords[2]);
+					int index = r * stride * rasterXSize;
+					for (int x = 0; x < rasterXSize; x += stride, i += VERTEX_GROUP_SIZE)
+					{
+						coords[i] = window[index + x];
+					}
 				}
 
-				int step = Math.min(stride, rasterXSize - x) - 1; // Skip stride values, or move to the end of the column
-				skipValues(step, buffer, sourceBufferType);
+				if (pending.size() >= inFlight)
+				{
+					stats.updateStats(getResult(pending.remove()));
+				}
+				pending.add(workers.submit(projector.newTask(coords, row, firstRow + row)));
+			}
+			while (!pending.isEmpty())
+			{
+				stats.updateStats(getResult(pending.remove()));
+			}
+		}
+		finally
+		{
+			for (Future<ModelGeometryStatistics> future : pending)
+			{
+				future.cancel(true);
 			}
-			int step = Math.min(stride, rasterYSize - y) - 1;
-			skipValues(rasterXSize * step, buffer, sourceBufferType);
 		}
 
 		// TODO Move name/description to constant somewhere for reuse as standard name
-		IModelData vertices = ModelDataBuilder.createFromBuffer(vertexBuffer)
+		IModelData vertices = ModelDataBuilder.createFromBuffer(projector.vertexBuffer)
 				.ofType(BufferType.FLOAT)
-				.withNodata(scaledNodata == null ? null : scaledNodata.floatValue())
+				.withNodata(projector.scaledNodata == null ? null : projector.scaledNodata.floatValue())
 				.named("Vertices")
 				.describedAs("Vertices")
 				.withGroupSize(3)
 				.build();
 
 		logger.debug("Loaded vertices: {}", vertices); //$NON-NLS-1$
-		logger.debug("Vertex stats: {}", stats); //$NON-NLS-1$
 
 		geometry.setVertices(vertices);
 		geometry.setUseZMasking(nodata != null);
+
+		return projector.firstRowPoints;
 	}
 
 	/**
-	 * Create and return a vertex colour data object containing RGBA values for
-	 * each vertex based on a color map contained in the provided parameters.
+	 * Calculate the number of (subsampled) rows to read in each window, such
+	 * that the window and the vertices being projected fit in the memory
+	 * budget. Where possible, windows span whole GDAL blocks so that each
+	 * block is only read once.
+	 */
+	private static int getWindowRows(Band band, GDALRasterModelParameters parameters, int numColumns, int inFlight)
+	{
+		int stride = parameters.getNormalisedSubsample();
+		long bytesPerRow = 8L * band.getXSize() * stride + (long) WINDOW_BYTES_PER_VERTEX * numColumns * inFlight;
+		long rows = parameters.getNormalisedMemoryBudget() / bytesPerRow;
+
+		int blockHeight = Math.max(1, band.GetBlockYSize());
+		long sourceRows = rows * stride;
+		if (sourceRows >= blockHeight)
+		{
+			rows = (sourceRows / blockHeight * blockHeight) / stride;
+		}
+
+		int numRows = subsample(band.getYSize(), stride);
+		if (rows < 1)
+		{
+			logger.debug("Raster rows exceed the memory budget; reading one row at a time"); //$NON-NLS-1$
+		}
+		return (int) Math.max(1, Math.min(rows, numRows));
+	}
+
+	/**
+	 * Colour the given geometry using the provided (absolute) color map,
+	 * created by {@link #toAbsoluteColorMap(ColorMap, ModelGeometryStatistics)}
+	 * and shared by all geometries of a model.
+	 * <p/>
+	 * Colour maps that can be sampled into a texture are attached to the
+	 * geometry to be applied by the renderer, so no per-vertex colours are
+	 * stored and the map can be changed without rebuilding the geometry.
+	 * Exact-match colour maps are applied here, creating a vertex colour data
+	 * object containing RGBA values for each vertex.
 	 * <p/>
-	 * If no colour map is found, will return <code>null</code>.
+	 * If there is no colour map, the geometry is left uncoloured.
 	 */
-	private static void addVertexColours(BasicColouredMeshGeometry geometry, Dataset ds,
-			GDALRasterModelParameters parameters,
-			ModelGeometryStatistics stats)
+	static void addVertexColours(BasicColouredMeshGeometry geometry,
+			final ColorMap map,
+			final ModelGeometryStatistics stats) throws Exception
 	{
-		ColorMap map = parameters.getColorMap();
 		if (map == null)
 		{
 			return;
 		}
 
-		// TODO: Generalise this to support all map types
-		if (map.isPercentageBased() && map.getMode() != InterpolationMode.EXACT_MATCH)
+		double minElevation = stats.getMinElevation() == null ? 0 : stats.getMinElevation();
+		double maxElevation = stats.getMaxElevation() == null ? 0 : stats.getMaxElevation();
+
+		if (map.getMode() != InterpolationMode.EXACT_MATCH)
 		{
 			geometry.setColorMap(map);
+			geometry.setZColoured();
 			return;
 		}
 
-		IModelData vertices = geometry.getVertices();
+		final IModelData vertices = geometry.getVertices();
 		int numVertices = vertices.getNumberOfGroups();
 
-		ByteBuffer coloursBuffer = allocateVertexColourBuffer(numVertices);
-		ByteBuffer verticesBuffer = vertices.getSource();
+		final ByteBuffer coloursBuffer = allocateVertexColourBuffer(numVertices);
+		final ByteBuffer verticesBuffer = vertices.getSource();
+		final BufferType verticesType = vertices.getBufferType();
+		final Float nodata = (Float) vertices.getNoDataValue();
+		final ColorLookupTable lookupTable =
+				map.getLookupTable(ColorLookupTable.DEFAULT_SIZE, minElevation, maxElevation);
 
-		float[] rgba = new float[4];
-		for (int i = 0; i < numVertices; i++)
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int start = 0; start < numVertices; start += COLOUR_BATCH_SIZE)
 		{
-			BufferUtil.skipValues(2, verticesBuffer, vertices.getBufferType());
-			float elevation = BufferUtil.getValue(verticesBuffer, vertices.getBufferType()).floatValue();
-
-			Color color;
-
-			if (vertices.getNoDataValue() != null && isNoData((Float) vertices.getNoDataValue(), elevation))
+			final int first = start;
+			final int last = Math.min(numVertices, start + COLOUR_BATCH_SIZE);
+			tasks.add(new Callable<Object>()
 			{
-				color = map.getNodataColour();
-				if (color == null)
+				@Override
+				public Object call()
 				{
-					color = DEFAULT_NODATA_COLOR;
+					for (int i = first; i < last; i++)
+					{
+						float elevation = BufferUtil.getFloat(verticesBuffer, i * VERTEX_GROUP_SIZE + 2, verticesType);
+
+						int argb;
+						if (nodata != null && isNoData(nodata, elevation))
+						{
+							argb = lookupTable.getNodataColor();
+						}
+						else
+						{
+							argb = lookupTable.getColor(elevation);
+						}
+
+						int index = i * RGBA_GROUP_SIZE * 4;
+						coloursBuffer.putFloat(index, ((argb >> 16) & 0xff) / 255f);
+						coloursBuffer.putFloat(index + 4, ((argb >> 8) & 0xff) / 255f);
+						coloursBuffer.putFloat(index + 8, (argb & 0xff) / 255f);
+						coloursBuffer.putFloat(index + 12, ((argb >>> 24) & 0xff) / 255f);
+					}
+					return null;
 				}
-			}
-			else
-			{
-				color = map.getColor(elevation, stats.getMinElevation(), stats.getMaxElevation());
-			}
-
-			color.getRGBComponents(rgba);
-			coloursBuffer.putFloat(rgba[0]);
-			coloursBuffer.putFloat(rgba[1]);
-			coloursBuffer.putFloat(rgba[2]);
-			coloursBuffer.putFloat(rgba[3]);
+			});
+		}
+		for (Future<Object> future : workers.getExecutor().invokeAll(tasks))
+		{
+			getResult(future);
 		}
 
 		IModelData vertexColours = ModelDataBuilder.createFromBuffer(coloursBuffer)
@@ -253,48 +423,94 @@ public class GDALRasterModelFactory
 	}
 
 	/**
-	 * Create and return edge indices data from the provided dataset parameters
-	 * and vertices.
+	 * Return a colour map equivalent to the given map for the elevation range
+	 * of the given statistics, with entries keyed by absolute value rather
+	 * than percentage, so that all geometries of a model (which may each have
+	 * a smaller range) are coloured consistently.
 	 * <p/>
-	 * The returned edges are intended for use with the
-	 * {@link FaceType#TRIANGLE_STRIP} type.
+	 * If the given map is a {@link MutableColorMap}, the returned map is a
+	 * {@link MutableColorMap} that is recalculated whenever the given map
+	 * changes, so that edits to the original map are shown by the renderer.
+	 * 
+	 * @return The absolute colour map, or <code>null</code> if the given map
+	 *         is <code>null</code>
 	 */
-	private static void addEdges(BasicColouredMeshGeometry geometry, Dataset ds,
-			GDALRasterModelParameters parameters,
-			ModelGeometryStatistics stats)
+	static ColorMap toAbsoluteColorMap(ColorMap map, ModelGeometryStatistics stats)
 	{
-		Band band = ds.GetRasterBand(parameters.getElevationBandIndex());
-		int rasterXSize = band.getXSize();
-		int rasterYSize = band.getYSize();
+		if (map == null)
+		{
+			return null;
+		}
 
-		int subsample = parameters.getNormalisedSubsample();
+		double minElevation = stats.getMinElevation() == null ? 0 : stats.getMinElevation();
+		double maxElevation = stats.getMaxElevation() == null ? 0 : stats.getMaxElevation();
+		if (map instanceof MutableColorMap)
+		{
+			MutableColorMap original = (MutableColorMap) map;
+			MutableColorMap absolute = toAbsoluteMutableColorMap(original.snapshot(), minElevation, maxElevation);
+			original.addPropertyChangeListener(new AbsoluteColorMapUpdater(original, absolute, minElevation,
+					maxElevation));
+			return absolute;
+		}
+		if (!map.isPercentageBased())
+		{
+			return map;
+		}
+		return toAbsoluteMutableColorMap(map, minElevation, maxElevation).snapshot();
+	}
 
-		int numColumns = subsample(rasterXSize, subsample);
-		int numRows = subsample(rasterYSize, subsample);
+	private static MutableColorMap toAbsoluteMutableColorMap(ColorMap map, double min, double max)
+	{
+		MutableColorMap absolute = new MutableColorMap(map);
+		absolute.setValuesArePercentages(false, min, max);
+		return absolute;
+	}
+
+	/**
+	 * Recalculates an absolute colour map when the map it was created from
+	 * changes. Only weakly references the absolute map, and stops listening
+	 * once it is no longer used.
+	 */
+	private static class AbsoluteColorMapUpdater implements PropertyChangeListener
+	{
+		private final MutableColorMap original;
+		private final WeakReference<MutableColorMap> absolute;
+		private final double min;
+		private final double max;
 
-		ByteBuffer edgesBuffer = allocateEdgesBuffer(rasterXSize, rasterYSize, subsample);
+		public AbsoluteColorMapUpdater(MutableColorMap original, MutableColorMap absolute, double min, double max)
+		{
+			this.original = original;
+			this.absolute = new WeakReference<MutableColorMap>(absolute);
+			this.min = min;
+			this.max = max;
+		}
 
-		for (int y = 0; y < numRows - 1; y++)
+		@Override
+		public void propertyChange(PropertyChangeEvent evt)
 		{
-			for (int x = 0; x < numColumns; x++)
+			MutableColorMap map = absolute.get();
+			if (map == null)
 			{
-				int top = y * numColumns + x;
-				int bottom = top + numColumns;
-
-				edgesBuffer.putInt(top);
-				edgesBuffer.putInt(bottom);
-				if (x == numColumns - 1 && y < numRows - 2)
-				{
-					// Put two empty triangles to reset back to the next strip
-					edgesBuffer.putInt(bottom);
-					edgesBuffer.putInt(bottom);
-
-					int nextTop = (y + 1) * numColumns;
-					edgesBuffer.putInt(nextTop);
-					edgesBuffer.putInt(nextTop);
-				}
+				original.removePropertyChangeListener(this);
+				return;
 			}
+			map.updateTo(toAbsoluteMutableColorMap(original.snapshot(), min, max));
 		}
+	}
+
+	/**
+	 * Create and return edge indices data for a grid of vertices with the
+	 * given dimensions.
+	 * <p/>
+	 * The returned edges are intended for use with the
+	 * {@link FaceType#TRIANGLE_STRIP} type.
+	 */
+	private static void addEdges(BasicColouredMeshGeometry geometry, int numColumns, int numRows)
+	{
+		ByteBuffer edgesBuffer = allocateEdgesBuffer(numColumns, numRows);
+
+		putGridEdges(edgesBuffer, numColumns, numRows);
 
 		// Edges are full, so make sure limit is set appropriately
 		edgesBuffer.limit(edgesBuffer.position());
@@ -311,15 +527,34 @@ public class GDALRasterModelFactory
 		geometry.setFaceType(FaceType.TRIANGLE_STRIP);
 	}
 
-	private static ByteBuffer allocateVerticesBuffer(int rasterXSize, int rasterYSize, int subsample)
+	/**
+	 * Put the {@link FaceType#TRIANGLE_STRIP} indices for a grid of vertices
+	 * with the given dimensions into the given buffer. Rows are joined with
+	 * empty triangles.
+	 */
+	static void putGridEdges(ByteBuffer edgesBuffer, int numColumns, int numRows)
 	{
-		int numColumns = subsample(rasterXSize, subsample);
-		int numRows = subsample(rasterYSize, subsample);
+		for (int y = 0; y < numRows - 1; y++)
+		{
+			for (int x = 0; x < numColumns; x++)
+			{
+				int top = y * numColumns + x;
+				int bottom = top + numColumns;
 
-		int numVerts = numColumns * numRows;
+				edgesBuffer.putInt(top);
+				edgesBuffer.putInt(bottom);
+				if (x == numColumns - 1 && y < numRows - 2)
+				{
+					// Put two empty triangles to reset back to the next strip
+					edgesBuffer.putInt(bottom);
+					edgesBuffer.putInt(bottom);
 
-		ByteBuffer vertices = allocateBuffer(numVerts * VERTEX_GROUP_SIZE * BufferType.FLOAT.getNumberOfBytes());
-		return vertices;
+					int nextTop = (y + 1) * numColumns;
+					edgesBuffer.putInt(nextTop);
+					edgesBuffer.putInt(nextTop);
+				}
+			}
+		}
 	}
 
 	private static ByteBuffer allocateVertexColourBuffer(int numVertices)
@@ -328,26 +563,30 @@ public class GDALRasterModelFactory
 		return colours;
 	}
 
-	private static ByteBuffer allocateEdgesBuffer(int rasterXSize, int rasterYSize, int subsample)
+	private static ByteBuffer allocateEdgesBuffer(int numColumns, int numRows)
 	{
-		int numColumns = subsample(rasterXSize, subsample);
-		int numRows = subsample(rasterYSize, subsample);
+		ByteBuffer edges = allocateBuffer(getNumGridEdges(numColumns, numRows) * BufferType.INT.getNumberOfBytes());
+		return edges;
+	}
 
+	/**
+	 * @return The number of indices put by
+	 *         {@link #putGridEdges(ByteBuffer, int, int)}
+	 */
+	static int getNumGridEdges(int numColumns, int numRows)
+	{
 		// Each row has 2 indices for each vertex, plus 4 terminating indices (2 @ start and end)
 		// The exception is first and last row, which have only 1 index per vertex and no terminating indices
-		int numIndices = (2 * numColumns * (numRows - 1)) + 4 * (numRows - 2);
-
-		ByteBuffer edges = allocateBuffer(numIndices * BufferType.INT.getNumberOfBytes());
-		return edges;
+		return (2 * numColumns * (numRows - 1)) + 4 * (numRows - 2);
 	}
 
-	private static CoordinateTransformation getCoordinateTransform(GDALRasterModelParameters parameters)
+	static CoordinateTransformation getCoordinateTransform(GDALRasterModelParameters parameters)
 	{
 		String sourceProjection = parameters.getSourceProjection();
 		if (Util.isBlank(sourceProjection))
 		{
 			logger.info("No source projection found. Assuming WGS84."); //$NON-NLS-1$
-			return new CoordinateTransformation(SpatialReferences.WGS84, SpatialReferences.WGS84);
+			return CoordinateTransformationUtil.getTransformation(SpatialReferences.WGS84, SpatialReferences.WGS84);
 		}
 
 		CoordinateTransformation coordinateTransformation =
@@ -355,15 +594,7 @@ public class GDALRasterModelFactory
 		return coordinateTransformation;
 	}
 
-	private static ByteBuffer readRasterBuffer(Band band, int columns, int rows)
-	{
-		ByteBuffer buffer = band.ReadRaster_Direct(0, 0, columns, rows, band.getDataType());
-		buffer.order(ByteOrder.nativeOrder()); // @see Band.ReadRaster_Direct
-		buffer.rewind();
-		return buffer;
-	}
-
-	private static Double getNodata(Band band)
+	static Double getNodata(Band band)
 	{
 		Double[] nodatas = new Double[1];
 		band.GetNoDataValue(nodatas);
@@ -371,7 +602,7 @@ public class GDALRasterModelFactory
 		return nodata;
 	}
 
-	private static double toElevation(double elevationOffset, double elevationScale, double datasetValue, Double nodata)
+	static double toElevation(double elevationOffset, double elevationScale, double datasetValue, Double nodata)
 	{
 		//		if (isNoData(nodata, datasetValue))
 		//		{
@@ -383,7 +614,7 @@ public class GDALRasterModelFactory
 	/**
 	 * @return The data scale for the provided band
 	 */
-	private static double getScale(Band band, GDALRasterModelParameters parameters)
+	static double getScale(Band band, GDALRasterModelParameters parameters)
 	{
 		if (parameters.getScaleFactor() != null)
 		{
@@ -398,7 +629,7 @@ public class GDALRasterModelFactory
 	/**
 	 * @return The data offset for the provided band
 	 */
-	private static double getOffset(Band band, GDALRasterModelParameters parameters)
+	static double getOffset(Band band, GDALRasterModelParameters parameters)
 	{
 		if (parameters.getOffset() != null)
 		{
@@ -426,7 +657,7 @@ public class GDALRasterModelFactory
 	 * 
 	 * @see Dataset#GetGeoTransform()
 	 */
-	private static double[] transformCoordinates(double[] geoTransform, double x, double y, double[] out)
+	static double[] transformCoordinates(double[] geoTransform, double x, double y, double[] out)
 	{
 		double Xp = geoTransform[0] + x * geoTransform[1] + y * geoTransform[2];
 		double Yp = geoTransform[3] + x * geoTransform[4] + y * geoTransform[5];
@@ -442,81 +673,120 @@ public class GDALRasterModelFactory
 	}
 
 	/**
-	 * Project the provided x,y,z coordinates from the source SRS using the
-	 * provided coordinate transformation
-	 * 
-	 * @param ct
-	 *            The coordinate transformation to use for transforming the
-	 *            coordinates
-	 * @param x
-	 *            The x coordinate in source SRS
-	 * @param y
-	 *            The y coordinate in source SRS
-	 * @param elevation
-	 *            The elevation in source SRS
-	 * @param out
-	 *            A 3-element array to hold the projected coordinates
-	 * 
-	 * @return The projected coordinates contained in {@code out}
+	 * Wait for the given task to complete, and return its result.
 	 */
-	private static double[] projectCoordinates(CoordinateTransformation ct, double x, double y, double elevation,
-			double[] out)
+	private static <T> T getResult(Future<T> future) throws InterruptedException
 	{
-		if (out == null)
+		try
 		{
-			out = new double[3];
+			return future.get();
 		}
-
-		if (ct == null)
+		catch (ExecutionException e)
 		{
-			out[0] = x;
-			out[1] = y;
-			out[2] = elevation;
+			throw new IllegalStateException(e.getCause());
 		}
-
-		ct.TransformPoint(out, x, y, elevation);
-
-		return out;
 	}
 
 	/**
-	 * @return <code>true</code> if any value in the provided values is NODATA
+	 * Projects windows of raster values into a shared vertex buffer.
 	 */
-	private static boolean isNoData(Double nodata, double... values)
+	private static class WindowProjector
 	{
-		if (nodata == null)
-		{
-			return false;
-		}
-
-		for (double f : values)
+		private double[] geoTransform;
+		private CoordinateTransformation coordinateTransformation;
+		private double elevationOffset;
+		private double elevationScale;
+		private Double nodata;
+		private Double scaledNodata;
+		private int stride;
+		private int numColumns;
+		private ByteBuffer vertexBuffer;
+		private volatile long firstRowPoints;
+
+		/**
+		 * Create a task that projects a window of rows into the vertex
+		 * buffer, returning statistics for the window.
+		 * 
+		 * @param coords
+		 *            Packed x,y,z coordinates, with the raw dataset value in
+		 *            z; projected in place
+		 * @param row
+		 *            The index of the first row of the window in the vertex
+		 *            buffer
+		 * @param rasterRow
+		 *            The index of the first (subsampled) row of the window in
+		 *            the raster
+		 */
+		public Callable<ModelGeometryStatistics> newTask(final double[] coords, final int row, final int rasterRow)
 		{
-			if (f == nodata)
+			return new Callable<ModelGeometryStatistics>()
 			{
-				return true;
-			}
+				@Override
+				public ModelGeometryStatistics call()
+				{
+					int count = coords.length / VERTEX_GROUP_SIZE;
+					boolean[] isNodata = new boolean[count];
+					double[] transformedCoords = new double[2];
+					for (int i = 0, j = 0; i < count; i++, j += VERTEX_GROUP_SIZE)
+					{
+						int x = (i % numColumns) * stride;
+						int y = (rasterRow + i / numColumns) * stride;
+						double elevation = toElevation(elevationOffset, elevationScale, coords[j + 2], nodata);
+
+						transformCoordinates(geoTransform, x, y, transformedCoords);
+						coords[j] = transformedCoords[0];
+						coords[j + 1] = transformedCoords[1];
+						coords[j + 2] = elevation;
+						isNodata[i] = isNoData(scaledNodata, elevation);
+					}
+
+					// Windows are already projected in parallel, so each is projected serially
+					CoordinateTransformationUtil.transformPoints(coordinateTransformation, coords, 0, count, false);
+
+					ModelGeometryStatistics stats = new ModelGeometryStatistics();
+					long rowPoints = 0;
+					ByteBuffer buffer = vertexBuffer.duplicate();
+					buffer.order(vertexBuffer.order());
+					buffer.position(row * numColumns * VERTEX_GROUP_SIZE * BufferType.FLOAT.getNumberOfBytes());
+					for (int i = 0, j = 0; i < count; i++, j += VERTEX_GROUP_SIZE)
+					{
+						buffer.putFloat((float) coords[j])
+								.putFloat((float) coords[j + 1])
+								.putFloat((float) coords[j + 2]);
+
+						if (!isNodata[i])
+						{
+							stats.updateStats(coords[j + 1], coords[j], coords[j + 2]);
+							if (i < numColumns)
+							{
+								rowPoints++;
+							}
+						}
+					}
+					if (row == 0)
+					{
+						firstRowPoints = rowPoints;
+					}
+					return stats;
+				}
+			};
 		}
-		return false;
 	}
 
 	/**
-	 * @return <code>true</code> if any value in the provided values is NODATA
+	 * @return <code>true</code> if the provided value is NODATA
 	 */
-	private static boolean isNoData(Float nodata, float... values)
+	static boolean isNoData(Double nodata, double value)
 	{
-		if (nodata == null)
-		{
-			return false;
-		}
+		return nodata != null && value == nodata.doubleValue();
+	}
 
-		for (float f : values)
-		{
-			if (f == nodata)
-			{
-				return true;
-			}
-		}
-		return false;
+	/**
+	 * @return <code>true</code> if the provided value is NODATA
+	 */
+	static boolean isNoData(Float nodata, float value)
+	{
+		return nodata != null && value == nodata.floatValue();
 	}
 
 	/**
@@ -539,7 +809,7 @@ public class GDALRasterModelFactory
 		return (original + subsample - 1) / subsample;
 	}
 
-	private static ByteBuffer allocateBuffer(int size)
+	static ByteBuffer allocateBuffer(int size)
 	{
 		ByteBuffer result = ByteBuffer.allocate(size);
 		result.order(ByteOrder.nativeOrder());
@@ -49,6 +49,11 @@ public class GDALRasterModelParameters
 	public static final String MODEL_DESCRIPTION = "description"; //$NON-NLS-1$
 	public static final String ELEVATION_SUBSAMPLE = "subsample"; //$NON-NLS-1$
 	public static final String COLOR_MAP = "colormap"; //$NON-NLS-1$
+	public static final String MEMORY_BUDGET = "memoryBudget"; //$NON-NLS-1$
+	public static final String LEVEL_OF_DETAIL = "levelOfDetail"; //$NON-NLS-1$
+
+	/** The default working memory budget used when creating a model */
+	public static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
 
 	/** The raster band to use for elevation values */
 	private int elevationBandIndex = 1;
@@ -75,6 +80,20 @@ public class GDALRasterModelParameters
 	/** A colour map used to apply colouring to the loaded model */
 	private ColorMap colorMap = ColorMaps.getRGBRainbowMap();
 
+	/**
+	 * An (optional) limit in bytes on the working memory used while reading
+	 * the raster. This doesn't include the created model itself: a single
+	 * mesh's vertex, edge and colour buffers are always allocated in full, so
+	 * large grids should be subsampled or use {@link #levelOfDetail}.
+	 */
+	private Long memoryBudget;
+
+	/**
+	 * Whether to create a quadtree of mesh chunks at multiple levels of
+	 * detail, rather than a single mesh
+	 */
+	private boolean levelOfDetail;
+
 	/**
 	 * Create a new parameters object, populated with any sensible defaults
 	 * obtainable from the provided dataset
@@ -156,6 +175,14 @@ public class GDALRasterModelParameters
 		{
 			colorMap = ColorMaps.readFrom(params.get(COLOR_MAP));
 		}
+		if (params.containsKey(MEMORY_BUDGET))
+		{
+			memoryBudget = Long.parseLong(params.get(MEMORY_BUDGET));
+		}
+		if (params.containsKey(LEVEL_OF_DETAIL))
+		{
+			levelOfDetail = Boolean.parseBoolean(params.get(LEVEL_OF_DETAIL));
+		}
 	}
 
 	public int getElevationBandIndex()
@@ -247,6 +274,35 @@ public class GDALRasterModelParameters
 		this.colorMap = colorMap;
 	}
 
+	public Long getMemoryBudget()
+	{
+		return memoryBudget;
+	}
+
+	public void setMemoryBudget(Long memoryBudget)
+	{
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * @return A normalised memory budget to use that will never return a null
+	 *         or non-positive number.
+	 */
+	public long getNormalisedMemoryBudget()
+	{
+		return memoryBudget == null || memoryBudget <= 0 ? DEFAULT_MEMORY_BUDGET : memoryBudget;
+	}
+
+	public boolean isLevelOfDetail()
+	{
+		return levelOfDetail;
+	}
+
+	public void setLevelOfDetail(boolean levelOfDetail)
+	{
+		this.levelOfDetail = levelOfDetail;
+	}
+
 	/**
 	 * Return a map containing these parameters. The map will contain keys that
 	 * can be used in the constructor {@link #GDALRasterModelParameters(Map)}
@@ -284,6 +340,14 @@ public class GDALRasterModelParameters
 		{
 			result.put(COLOR_MAP, new CompactStringColorMapWriter().writeToString(colorMap));
 		}
+		if (memoryBudget != null)
+		{
+			result.put(MEMORY_BUDGET, Long.toString(memoryBudget));
+		}
+		if (levelOfDetail)
+		{
+			result.put(LEVEL_OF_DETAIL, Boolean.toString(levelOfDetail));
+		}
 
 		return result;
 	}
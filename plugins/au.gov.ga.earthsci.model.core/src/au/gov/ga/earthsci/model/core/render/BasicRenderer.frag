@@ -13,7 +13,21 @@ precision highp float;
 
 varying float mask;
 
+#ifdef USE_COLOUR_MAP
+uniform sampler1D colourMap; // colour map texture
+uniform float colourMapSize; // number of colours in the colour map texture
+
+varying float colourMapValue;
+#endif
+
 void main(void)
 {
-	gl_FragColor = vec4(gl_Color.rgb, gl_Color.a * step(1.0, mask));
+#ifdef USE_COLOUR_MAP
+	// Sample between the centres of the first and last texels
+	float s = (clamp(colourMapValue, 0.0, 1.0) * (colourMapSize - 1.0) + 0.5) / colourMapSize;
+	vec4 colour = gl_Color * texture1D(colourMap, s);
+#else
+	vec4 colour = gl_Color;
+#endif
+	gl_FragColor = vec4(colour.rgb, colour.a * step(1.0, mask));
 }
\ No newline at end of file
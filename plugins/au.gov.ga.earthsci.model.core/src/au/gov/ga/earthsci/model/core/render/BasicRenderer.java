@@ -1,8 +1,19 @@
 package au.gov.ga.earthsci.model.core.render;
 
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.geom.Extent;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.util.OGLStackHandler;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.media.opengl.GL2;
 import javax.media.opengl.GL2GL3;
@@ -12,7 +23,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import au.gov.ga.earthsci.common.color.ColorType;
+import au.gov.ga.earthsci.common.util.Range;
 import au.gov.ga.earthsci.common.util.Validate;
+import au.gov.ga.earthsci.model.bounds.BoundingBox;
+import au.gov.ga.earthsci.model.geometry.ILevelOfDetailGeometry;
+import au.gov.ga.earthsci.model.geometry.IMeshChunk;
 import au.gov.ga.earthsci.model.geometry.IMeshGeometry;
 import au.gov.ga.earthsci.model.geometry.IModelGeometry;
 import au.gov.ga.earthsci.model.geometry.IVertexBasedGeometry;
@@ -26,6 +41,18 @@ import au.gov.ga.earthsci.worldwind.common.render.fastshape.AbstractVBO;
 /**
  * A basic {@link IModelGeometryRenderer} that supports
  * {@link IVertexBasedGeometry} and {@link IVertexColouredGeometry} instances
+ * <p/>
+ * {@link ILevelOfDetailGeometry} instances are rendered by selecting, each
+ * frame, the coarsest chunks whose screen-space error is within
+ * {@link #getMaxScreenSpaceError()}. Chunks outside the view frustum are
+ * culled, and finer chunks are loaded in the background as they are needed.
+ * Once more than {@link #getMaxCachedChunks()} chunks are loaded, the least
+ * recently needed chunks are unloaded and their VBOs deleted. Chunks that
+ * failed to load are drawn as their parent without waiting for them.
+ * <p/>
+ * {@link IVertexColourMappedGeometry} instances without vertex colours are
+ * coloured in the shader, by looking up the coloured axis of each vertex in a
+ * {@link ColorMapTexture}; colour map changes are picked up on the next frame.
  * 
  * @author James Navin (james.navin@ga.gov.au)
  * 
@@ -33,21 +60,30 @@ import au.gov.ga.earthsci.worldwind.common.render.fastshape.AbstractVBO;
 public class BasicRenderer implements IModelGeometryRenderer
 {
 
+	/** The default maximum screen-space error (in pixels) of rendered chunks */
+	public static final double DEFAULT_MAX_SCREEN_SPACE_ERROR = 8;
+
+	/** The default maximum number of chunks kept loaded */
+	public static final int DEFAULT_MAX_CACHED_CHUNKS = 256;
+
 	private static final Logger logger = LoggerFactory.getLogger(BasicRenderer.class);
 
 	private VerticalExaggerationService veService = VerticalExaggerationService.INSTANCE;
 	private WorldWindowRegistry wwRegistry;
 	private IVertexBasedGeometry geometry;
 
-	private AtomicBoolean isInitialised = new AtomicBoolean(false);
+	private final Map<IVertexBasedGeometry, GeometryBuffers> buffers =
+			new HashMap<IVertexBasedGeometry, GeometryBuffers>();
 
-	private AbstractVBO<?> vertexVBO;
-	private AbstractVBO<?> vertexColourVBO;
-	private AbstractVBO<?> edgesVBO;
+	private double maxScreenSpaceError = DEFAULT_MAX_SCREEN_SPACE_ERROR;
+	private int maxCachedChunks = DEFAULT_MAX_CACHED_CHUNKS;
 
-	private Integer renderMode;
+	/** The frame in which each loaded (or loading) chunk was last needed, in least recently needed order */
+	private final LinkedHashMap<IMeshChunk, Long> chunkFrames = new LinkedHashMap<IMeshChunk, Long>(16, 0.75f, true);
+	private long frame = 0;
 
 	private BasicRendererShader shader = new BasicRendererShader();
+	private ColorMapTexture colourMapTexture = new ColorMapTexture();
 
 	/**
 	 * Create a new instance of the renderer for the given geometry
@@ -79,18 +115,43 @@ public class BasicRenderer implements IModelGeometryRenderer
 		}
 		GL2 gl = (GL2) context.getGL();
 
-		init();
+		View view = wwRegistry.getRenderingView();
+		List<IVertexBasedGeometry> toRender = new ArrayList<IVertexBasedGeometry>();
+		if (geometry instanceof ILevelOfDetailGeometry)
+		{
+			frame++;
+			boolean loading = selectChunks(((ILevelOfDetailGeometry) geometry).getRootChunk(), view, toRender);
+			unloadChunks(gl);
+			if (loading)
+			{
+				// Keep redrawing until the chunks being loaded are available
+				wwRegistry.redraw();
+			}
+		}
+		else
+		{
+			toRender.add(geometry);
+		}
 
 		OGLStackHandler stack = new OGLStackHandler();
-		stack.pushAttrib(gl, GL2.GL_CURRENT_BIT | GL2.GL_POINT_BIT | GL2.GL_POLYGON_BIT | GL2.GL_ALPHA_BITS);
+		stack.pushAttrib(gl, GL2.GL_CURRENT_BIT | GL2.GL_POINT_BIT | GL2.GL_POLYGON_BIT | GL2.GL_ALPHA_BITS
+				| GL2.GL_TEXTURE_BIT);
 		stack.pushClientAttrib(gl, GL2.GL_CLIENT_VERTEX_ARRAY_BIT);
 		try
 		{
-			shader.setGlobe(wwRegistry.getRenderingView().getGlobe());
+			shader.setGlobe(view.getGlobe());
 			shader.setVerticalExaggeration((float) veService.get());
 			shader.setNodata((Float) geometry.getVertices().getNoDataValue());
 			shader.setOpacity((float) geometry.getOpacity());
 
+			boolean useColourMap = !geometryHasVertexColours(geometry) && geometryHasColourMap(geometry)
+					&& ColorMapTexture.isSupported(((IVertexColourMappedGeometry) geometry).getColorMap());
+			shader.setUseVertexColouring(!useColourMap);
+			if (useColourMap)
+			{
+				bindColourMap(gl, (IVertexColourMappedGeometry) geometry);
+			}
+
 			boolean bound = shader.bind(gl);
 			if (!bound)
 			{
@@ -100,26 +161,10 @@ public class BasicRenderer implements IModelGeometryRenderer
 
 			gl.glEnable(GL2.GL_BLEND);
 			gl.glBlendFunc(GL2.GL_SRC_ALPHA, GL2.GL_ONE_MINUS_SRC_ALPHA);
-			if (vertexColourVBO != null)
-			{
-				gl.glEnableClientState(GL2.GL_COLOR_ARRAY);
-				vertexColourVBO.bind(gl);
-				gl.glColorPointer(getColourTypeForGeometry().getNumComponents(), GL2.GL_FLOAT, 0, 0);
-			}
-
-			gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
-			vertexVBO.bind(gl);
-			gl.glVertexPointer(geometry.getVertices().getGroupSize(), GL2.GL_FLOAT, 0, 0);
 
-			if (edgesVBO != null)
-			{
-				edgesVBO.bind(gl);
-				gl.glDrawElements(renderMode, ((IMeshGeometry) geometry).getEdgeIndices().getNumberOfValues(),
-						GL2.GL_UNSIGNED_INT, 0);
-			}
-			else
+			for (IVertexBasedGeometry g : toRender)
 			{
-				gl.glDrawArrays(renderMode, 0, geometry.getVertices().getNumberOfGroups());
+				draw(gl, g, getBuffers(g));
 			}
 
 			checkForError(gl);
@@ -134,46 +179,199 @@ public class BasicRenderer implements IModelGeometryRenderer
 		}
 	}
 
-	private void init()
+	private void draw(GL2 gl, IVertexBasedGeometry geometry, GeometryBuffers geometryBuffers)
 	{
-		if (isInitialised.get())
+		if (geometryBuffers.vertexColourVBO != null)
 		{
-			return;
+			gl.glEnableClientState(GL2.GL_COLOR_ARRAY);
+			geometryBuffers.vertexColourVBO.bind(gl);
+			gl.glColorPointer(getColourTypeForGeometry(geometry).getNumComponents(), GL2.GL_FLOAT, 0, 0);
 		}
 
-		if (vertexVBO == null)
+		gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+		geometryBuffers.vertexVBO.bind(gl);
+		gl.glVertexPointer(geometry.getVertices().getGroupSize(), GL2.GL_FLOAT, 0, 0);
+
+		if (geometryBuffers.edgesVBO != null)
 		{
-			vertexVBO = ModelDataVBO.createDataVBO(geometry.getVertices());
+			geometryBuffers.edgesVBO.bind(gl);
+			gl.glDrawElements(geometryBuffers.renderMode, ((IMeshGeometry) geometry).getEdgeIndices()
+					.getNumberOfValues(), GL2.GL_UNSIGNED_INT, 0);
 		}
-		if (edgesVBO == null && geometryHasEdges())
+		else
 		{
-			edgesVBO = ModelDataVBO.createIndexVBO(((IMeshGeometry) geometry).getEdgeIndices());
+			gl.glDrawArrays(geometryBuffers.renderMode, 0, geometry.getVertices().getNumberOfGroups());
 		}
-		if (vertexColourVBO == null && geometryHasVertexColours())
+	}
+
+	/**
+	 * Update the colour map texture from the given geometry's colour map, and
+	 * bind it for use by the shader
+	 */
+	private void bindColourMap(GL2 gl, IVertexColourMappedGeometry geometry)
+	{
+		// Percentage-based colour maps are applied over the range of the coloured axis
+		double min = 0;
+		double max = 0;
+		if (geometry.getBoundingVolume() instanceof BoundingBox)
 		{
-			vertexColourVBO = ModelDataVBO.createDataVBO(((IVertexColouredGeometry) geometry).getVertexColour());
+			BoundingBox bounds = (BoundingBox) geometry.getBoundingVolume();
+			Range<Double> range = geometry.isXColoured() ? bounds.getXRange()
+					: geometry.isYColoured() ? bounds.getYRange() : bounds.getZRange();
+			min = range.getMinValue();
+			max = range.getMaxValue();
 		}
-		if (renderMode == null)
+
+		colourMapTexture.update(gl, geometry.getColorMap(), min, max);
+		colourMapTexture.bind(gl, BasicRendererShader.COLOUR_MAP_TEXTURE_UNIT);
+		shader.setColourMapTexture(colourMapTexture);
+		shader.setColouredAxis(geometry.getColouredAxis());
+	}
+
+	/**
+	 * Select the chunks to render from the quadtree below the given (loaded)
+	 * chunk, requesting that any finer chunks that are needed are loaded.
+	 * 
+	 * @return Whether any of the chunks required for this view are still
+	 *         loading
+	 */
+	private boolean selectChunks(IMeshChunk chunk, View view, List<IVertexBasedGeometry> toRender)
+	{
+		IMeshGeometry chunkGeometry = chunk.getGeometry();
+		Extent extent = getExtent(chunkGeometry, view.getGlobe());
+		if (extent != null && !view.getFrustumInModelCoordinates().intersects(extent))
+		{
+			return false;
+		}
+
+		if (chunk.hasChildren() && extent != null && getScreenSpaceError(chunk, extent, view) > maxScreenSpaceError)
 		{
-			renderMode = getModeForGeometry();
+			List<IMeshChunk> children = chunk.getChildren();
+			boolean childrenLoaded = true;
+			boolean childrenLoading = false;
+			for (IMeshChunk child : children)
+			{
+				// All the children are needed to refine this chunk, even those outside the view
+				chunkFrames.put(child, frame);
+				if (child.getGeometry() == null)
+				{
+					child.load();
+					childrenLoaded = false;
+					childrenLoading |= !child.isLoadFailed();
+				}
+			}
+
+			if (childrenLoaded)
+			{
+				boolean loading = false;
+				for (IMeshChunk child : children)
+				{
+					loading |= selectChunks(child, view, toRender);
+				}
+				return loading;
+			}
+
+			// Render this chunk in place of its children until they are all loaded
+			toRender.add(chunkGeometry);
+			return childrenLoading;
 		}
 
-		shader.setUseVertexColouring(geometryHasVertexColours());
+		toRender.add(chunkGeometry);
+		return false;
+	}
+
+	/**
+	 * Unload the least recently needed chunks that weren't needed in this
+	 * frame, until no more than {@link #getMaxCachedChunks()} are loaded, and
+	 * delete their VBOs. The root chunk is never unloaded.
+	 */
+	private void unloadChunks(GL2 gl)
+	{
+		Iterator<Entry<IMeshChunk, Long>> iterator = chunkFrames.entrySet().iterator();
+		while (chunkFrames.size() > maxCachedChunks && iterator.hasNext())
+		{
+			Entry<IMeshChunk, Long> entry = iterator.next();
+			if (entry.getValue() == frame)
+			{
+				// The remaining chunks were all needed in this frame
+				break;
+			}
+			iterator.remove();
 
-		isInitialised.set(true);
+			IMeshChunk chunk = entry.getKey();
+			IMeshGeometry chunkGeometry = chunk.getGeometry();
+			chunk.unload();
+			if (chunkGeometry != null)
+			{
+				GeometryBuffers geometryBuffers = buffers.remove(chunkGeometry);
+				if (geometryBuffers != null)
+				{
+					geometryBuffers.delete(gl);
+				}
+			}
+		}
 	}
 
-	private boolean geometryHasEdges()
+	/**
+	 * @return The approximate error (in pixels) on screen of rendering the
+	 *         given chunk instead of the finest level of detail
+	 */
+	private static double getScreenSpaceError(IMeshChunk chunk, Extent extent, View view)
+	{
+		Vec4 eye = view.getEyePoint();
+		double distance = Math.max(1, extent.getCenter().distanceTo3(eye) - extent.getRadius());
+		return chunk.getGeometricError() / view.computePixelSizeAtDistance(distance);
+	}
+
+	/**
+	 * @return The extent in model coordinates of the given geometry, or
+	 *         <code>null</code> if the geometry has no bounding box
+	 */
+	private Extent getExtent(IVertexBasedGeometry geometry, Globe globe)
+	{
+		if (!(geometry.getBoundingVolume() instanceof BoundingBox))
+		{
+			return null;
+		}
+
+		GeometryBuffers geometryBuffers = getBuffers(geometry);
+		double verticalExaggeration = veService.get();
+		if (geometryBuffers.extent == null || geometryBuffers.extentGlobe != globe
+				|| geometryBuffers.extentVerticalExaggeration != verticalExaggeration)
+		{
+			BoundingBox bounds = (BoundingBox) geometry.getBoundingVolume();
+			Sector sector = Sector.fromDegrees(bounds.getYRange().getMinValue(), bounds.getYRange().getMaxValue(),
+					bounds.getXRange().getMinValue(), bounds.getXRange().getMaxValue());
+			geometryBuffers.extent = Sector.computeBoundingBox(globe, verticalExaggeration, sector,
+					bounds.getZRange().getMinValue(), bounds.getZRange().getMaxValue());
+			geometryBuffers.extentGlobe = globe;
+			geometryBuffers.extentVerticalExaggeration = verticalExaggeration;
+		}
+		return geometryBuffers.extent;
+	}
+
+	private GeometryBuffers getBuffers(IVertexBasedGeometry geometry)
+	{
+		GeometryBuffers geometryBuffers = buffers.get(geometry);
+		if (geometryBuffers == null)
+		{
+			geometryBuffers = new GeometryBuffers(geometry);
+			buffers.put(geometry, geometryBuffers);
+		}
+		return geometryBuffers;
+	}
+
+	private static boolean geometryHasEdges(IVertexBasedGeometry geometry)
 	{
 		return geometry instanceof IMeshGeometry && ((IMeshGeometry) geometry).hasEdgeIndices();
 	}
 
-	private boolean geometryHasVertexColours()
+	private static boolean geometryHasVertexColours(IVertexBasedGeometry geometry)
 	{
 		return geometry instanceof IVertexColouredGeometry && ((IVertexColouredGeometry) geometry).hasVertexColour();
 	}
 
-	private boolean geometryHasColourMap()
+	private static boolean geometryHasColourMap(IVertexBasedGeometry geometry)
 	{
 		return geometry instanceof IVertexColourMappedGeometry
 				&& ((IVertexColourMappedGeometry) geometry).hasColorMap();
@@ -213,7 +411,7 @@ public class BasicRenderer implements IModelGeometryRenderer
 		}
 	}
 
-	private int getModeForGeometry()
+	private static int getModeForGeometry(IVertexBasedGeometry geometry)
 	{
 		int mode = GL2.GL_POINTS;
 
@@ -252,7 +450,7 @@ public class BasicRenderer implements IModelGeometryRenderer
 		return mode;
 	}
 
-	private ColorType getColourTypeForGeometry()
+	private static ColorType getColourTypeForGeometry(IVertexBasedGeometry geometry)
 	{
 		if (geometry instanceof IVertexColouredGeometry)
 		{
@@ -266,4 +464,83 @@ public class BasicRenderer implements IModelGeometryRenderer
 	{
 		return geometry;
 	}
+
+	/**
+	 * @return The maximum screen-space error (in pixels) allowed when
+	 *         selecting chunks of {@link ILevelOfDetailGeometry} instances
+	 */
+	public double getMaxScreenSpaceError()
+	{
+		return maxScreenSpaceError;
+	}
+
+	/**
+	 * Set the maximum screen-space error (in pixels) allowed when selecting
+	 * chunks of {@link ILevelOfDetailGeometry} instances. Lower values render
+	 * finer chunks.
+	 */
+	public void setMaxScreenSpaceError(double maxScreenSpaceError)
+	{
+		this.maxScreenSpaceError = maxScreenSpaceError;
+	}
+
+	/**
+	 * @return The maximum number of chunks of {@link ILevelOfDetailGeometry}
+	 *         instances kept loaded
+	 */
+	public int getMaxCachedChunks()
+	{
+		return maxCachedChunks;
+	}
+
+	/**
+	 * Set the maximum number of chunks of {@link ILevelOfDetailGeometry}
+	 * instances kept loaded. Chunks needed by the current frame are never
+	 * unloaded, so more may be loaded while the view requires them.
+	 */
+	public void setMaxCachedChunks(int maxCachedChunks)
+	{
+		this.maxCachedChunks = maxCachedChunks;
+	}
+
+	/**
+	 * The VBOs and cached extent for a single geometry rendered by this
+	 * renderer
+	 */
+	private static class GeometryBuffers
+	{
+		private final AbstractVBO<?> vertexVBO;
+		private final AbstractVBO<?> vertexColourVBO;
+		private final AbstractVBO<?> edgesVBO;
+		private final int renderMode;
+
+		private Extent extent;
+		private Globe extentGlobe;
+		private double extentVerticalExaggeration;
+
+		public GeometryBuffers(IVertexBasedGeometry geometry)
+		{
+			vertexVBO = ModelDataVBO.createDataVBO(geometry.getVertices());
+			edgesVBO = geometryHasEdges(geometry)
+					? ModelDataVBO.createIndexVBO(((IMeshGeometry) geometry).getEdgeIndices())
+					: null;
+			vertexColourVBO = geometryHasVertexColours(geometry)
+					? ModelDataVBO.createDataVBO(((IVertexColouredGeometry) geometry).getVertexColour())
+					: null;
+			renderMode = getModeForGeometry(geometry);
+		}
+
+		public void delete(GL2 gl)
+		{
+			vertexVBO.delete(gl);
+			if (edgesVBO != null)
+			{
+				edgesVBO.delete(gl);
+			}
+			if (vertexColourVBO != null)
+			{
+				vertexColourVBO.delete(gl);
+			}
+		}
+	}
 }
@@ -15,6 +15,14 @@ uniform float zNodata; //nodata mask encoded in Z values
 
 varying float mask;
 
+#ifdef USE_COLOUR_MAP
+uniform int colouredAxis; // index of the vertex coordinate to colour by ([x,y,z]->[0,1,2])
+uniform float colourMapMin; // value mapped to the start of the colour map
+uniform float colourMapScale; // 1 / (value range of the colour map)
+
+varying float colourMapValue; // colour map value in range [0,1]
+#endif
+
 #include /au/gov/ga/earthsci/model/core/shader/common/GeodeticToCartesianProjection.glsl
  
 void main(void)
@@ -26,7 +34,13 @@ void main(void)
 	vec3 geodetic = vec3(radians(gl_Vertex.xy), ve * gl_Vertex.z);
 	vec3 cartesian = geodeticToCartesian(geodetic);
 
+#ifdef USE_COLOUR_MAP
+	float value = colouredAxis == 0 ? gl_Vertex.x : colouredAxis == 1 ? gl_Vertex.y : gl_Vertex.z;
+	colourMapValue = (value - colourMapMin) * colourMapScale;
+	gl_FrontColor = vec4(1.0, 1.0, 1.0, opacity);
+#else
 	gl_FrontColor = vec4(gl_Color.rgb, gl_Color.a * opacity);
+#endif
 
 	//output the vertex position
 	gl_Position = gl_ModelViewProjectionMatrix * vec4(cartesian, 1.0);
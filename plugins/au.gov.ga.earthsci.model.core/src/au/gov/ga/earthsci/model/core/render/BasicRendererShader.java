@@ -40,6 +40,7 @@ import com.jogamp.opengl.util.glsl.ShaderState;
  * <li>Z-encoded NODATA values;
  * <li>Dynamic vertical exaggeration
  * <li>Color buffers
+ * <li>Colour maps, looked up in a 1D texture from a single vertex coordinate
  * </ul>
  * <p/>
  * Parameters can be set using provided setters. Values set will then be used
@@ -59,6 +60,16 @@ public class BasicRendererShader extends Shader
 	private static final String ES = "es"; //$NON-NLS-1$
 	private static final String RADIUS = "radius"; //$NON-NLS-1$
 	private static final String ZNODATA = "zNodata"; //$NON-NLS-1$
+	private static final String COLOURED_AXIS = "colouredAxis"; //$NON-NLS-1$
+	private static final String COLOUR_MAP = "colourMap"; //$NON-NLS-1$
+	private static final String COLOUR_MAP_MIN = "colourMapMin"; //$NON-NLS-1$
+	private static final String COLOUR_MAP_SCALE = "colourMapScale"; //$NON-NLS-1$
+	private static final String COLOUR_MAP_SIZE = "colourMapSize"; //$NON-NLS-1$
+
+	private static final String COLOUR_MAP_DEFINE = "#define USE_COLOUR_MAP\n"; //$NON-NLS-1$
+
+	/** The texture unit the colour map texture is expected to be bound to */
+	public static final int COLOUR_MAP_TEXTURE_UNIT = 0;
 
 	private ShaderIncludeProcessor processor = new ShaderIncludeProcessor();
 
@@ -76,12 +87,15 @@ public class BasicRendererShader extends Shader
 
 	private boolean useVertexColours = true;
 
+	private transient ColorMapTexture colourMapTexture;
+	private int colouredAxis = 2;
+
 	@Override
 	protected String getVertexShaderSource()
 	{
 		try
 		{
-			return processor.processResource(getClass(), VERTEX_SHADER);
+			return insertDefines(processor.processResource(getClass(), VERTEX_SHADER));
 		}
 		catch (IOException e)
 		{
@@ -95,7 +109,7 @@ public class BasicRendererShader extends Shader
 	{
 		try
 		{
-			return processor.processResource(getClass(), FRAGMENT_SHADER);
+			return insertDefines(processor.processResource(getClass(), FRAGMENT_SHADER));
 		}
 		catch (IOException e)
 		{
@@ -104,6 +118,20 @@ public class BasicRendererShader extends Shader
 		}
 	}
 
+	/**
+	 * Insert the preprocessor definitions for the current configuration after
+	 * the <code>#version</code> directive on the first line of the source
+	 */
+	private String insertDefines(String source)
+	{
+		if (source == null || useVertexColours)
+		{
+			return source;
+		}
+		int index = source.indexOf('\n') + 1;
+		return source.substring(0, index) + COLOUR_MAP_DEFINE + source.substring(index);
+	}
+
 	@Override
 	protected boolean bindShaderState(GL2 gl, ShaderState shaderState)
 	{
@@ -129,6 +157,22 @@ public class BasicRendererShader extends Shader
 		{
 			uniformsSet &= shaderState.uniform(gl, new GLUniformData(ZNODATA, nodata));
 		}
+		if (!useVertexColours)
+		{
+			if (colourMapTexture == null)
+			{
+				throw new IllegalStateException("A colour map texture must be set when not using vertex colours"); //$NON-NLS-1$
+			}
+			double range = colourMapTexture.getMaxValue() - colourMapTexture.getMinValue();
+			float scale = range > 0 ? (float) (1 / range) : 0;
+			uniformsSet &= shaderState.uniform(gl, new GLUniformData(COLOURED_AXIS, colouredAxis));
+			uniformsSet &= shaderState.uniform(gl, new GLUniformData(COLOUR_MAP, COLOUR_MAP_TEXTURE_UNIT));
+			uniformsSet &= shaderState.uniform(gl,
+					new GLUniformData(COLOUR_MAP_MIN, (float) colourMapTexture.getMinValue()));
+			uniformsSet &= shaderState.uniform(gl, new GLUniformData(COLOUR_MAP_SCALE, scale));
+			uniformsSet &= shaderState.uniform(gl,
+					new GLUniformData(COLOUR_MAP_SIZE, (float) colourMapTexture.getSize()));
+		}
 		return uniformsSet;
 	}
 
@@ -180,6 +224,24 @@ public class BasicRendererShader extends Shader
 		}
 	}
 
+	/**
+	 * Set the colour map texture to use when not using vertex colouring. The
+	 * texture should be bound to {@link #COLOUR_MAP_TEXTURE_UNIT}.
+	 */
+	public void setColourMapTexture(ColorMapTexture texture)
+	{
+		this.colourMapTexture = texture;
+	}
+
+	/**
+	 * Set the index of the vertex coordinate used to look up the colour map
+	 * ([x,y,z]->[0,1,2])
+	 */
+	public void setColouredAxis(int axis)
+	{
+		this.colouredAxis = axis;
+	}
+
 	/**
 	 * Sets whether vertex colouring is to be used. If false, will attempt to
 	 * use a provided colour map.
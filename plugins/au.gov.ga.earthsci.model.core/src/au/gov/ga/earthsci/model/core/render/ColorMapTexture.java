@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.model.core.render;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import javax.media.opengl.GL2;
+
+import au.gov.ga.earthsci.common.color.ColorMap;
+import au.gov.ga.earthsci.common.color.ColorMap.InterpolationMode;
+import au.gov.ga.earthsci.common.color.MutableColorMap;
+import au.gov.ga.earthsci.worldwind.common.util.ColorLookupTable;
+
+/**
+ * A 1D OpenGL texture containing a {@link ColorMap} sampled evenly over a
+ * value range, used to colour geometry in a shader from a single scalar value
+ * per vertex rather than from a per-vertex colour buffer.
+ * <p/>
+ * The texture is re-uploaded only when the colour map or value range changes.
+ * {@link MutableColorMap}s are listened to for changes, so in-place edits are
+ * reflected on the next frame without touching the geometry.
+ * <p/>
+ * {@link InterpolationMode#EXACT_MATCH} colour maps cannot be represented by
+ * a sampled texture, and are not supported.
+ * 
+ * @author James Navin (james.navin@ga.gov.au)
+ */
+public class ColorMapTexture
+{
+	/** The default number of colours in the texture */
+	public static final int DEFAULT_SIZE = 1024;
+
+	private final int size;
+
+	private int textureId = 0;
+
+	private ColorMap colorMap;
+	private volatile boolean colorMapChanged;
+	private double requestedMin;
+	private double requestedMax;
+
+	private double minValue;
+	private double maxValue;
+
+	private final PropertyChangeListener colorMapListener = new PropertyChangeListener()
+	{
+		@Override
+		public void propertyChange(PropertyChangeEvent evt)
+		{
+			colorMapChanged = true;
+		}
+	};
+
+	public ColorMapTexture()
+	{
+		this(DEFAULT_SIZE);
+	}
+
+	public ColorMapTexture(int size)
+	{
+		this.size = size;
+	}
+
+	/**
+	 * @return Whether the given colour map can be rendered using a colour map
+	 *         texture
+	 */
+	public static boolean isSupported(ColorMap map)
+	{
+		return map != null && map.getMode() != InterpolationMode.EXACT_MATCH;
+	}
+
+	/**
+	 * Ensure this texture contains the given colour map, re-uploading it if
+	 * the map or value range has changed since the last call.
+	 * 
+	 * @param gl
+	 *            The current GL context
+	 * @param map
+	 *            The colour map to upload
+	 * @param min
+	 *            The minimum absolute value to map (used for percentage-based
+	 *            maps)
+	 * @param max
+	 *            The maximum absolute value to map (used for percentage-based
+	 *            maps)
+	 */
+	public void update(GL2 gl, ColorMap map, double min, double max)
+	{
+		if (map != colorMap)
+		{
+			setColorMap(map);
+		}
+		if (textureId != 0 && !colorMapChanged && min == requestedMin && max == requestedMax)
+		{
+			return;
+		}
+
+		// Clear the flag before sampling, so that edits made while uploading are picked up next frame
+		colorMapChanged = false;
+		ColorMap current = map instanceof MutableColorMap ? ((MutableColorMap) map).snapshot() : map;
+		ColorLookupTable lookupTable = current.getLookupTable(size, min, max);
+		ByteBuffer texels = ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder());
+		for (int i = 0; i < size; i++)
+		{
+			int argb = lookupTable.getColorAt(i);
+			texels.put((byte) (argb >> 16)).put((byte) (argb >> 8)).put((byte) argb).put((byte) (argb >>> 24));
+		}
+		texels.rewind();
+
+		if (textureId == 0)
+		{
+			int[] ids = new int[1];
+			gl.glGenTextures(1, ids, 0);
+			textureId = ids[0];
+		}
+
+		int filter = current.getMode() == InterpolationMode.NEAREST_MATCH ? GL2.GL_NEAREST : GL2.GL_LINEAR;
+		gl.glBindTexture(GL2.GL_TEXTURE_1D, textureId);
+		gl.glTexParameteri(GL2.GL_TEXTURE_1D, GL2.GL_TEXTURE_MIN_FILTER, filter);
+		gl.glTexParameteri(GL2.GL_TEXTURE_1D, GL2.GL_TEXTURE_MAG_FILTER, filter);
+		gl.glTexParameteri(GL2.GL_TEXTURE_1D, GL2.GL_TEXTURE_WRAP_S, GL2.GL_CLAMP_TO_EDGE);
+		gl.glTexImage1D(GL2.GL_TEXTURE_1D, 0, GL2.GL_RGBA8, size, 0, GL2.GL_RGBA, GL2.GL_UNSIGNED_BYTE, texels);
+
+		requestedMin = min;
+		requestedMax = max;
+		minValue = lookupTable.getMinValue();
+		maxValue = lookupTable.getMaxValue();
+	}
+
+	/**
+	 * Change the colour map listened to for changes
+	 */
+	private void setColorMap(ColorMap map)
+	{
+		if (colorMap instanceof MutableColorMap)
+		{
+			((MutableColorMap) colorMap).removePropertyChangeListener(colorMapListener);
+		}
+		colorMap = map;
+		colorMapChanged = true;
+		if (colorMap instanceof MutableColorMap)
+		{
+			((MutableColorMap) colorMap).addPropertyChangeListener(colorMapListener);
+		}
+	}
+
+	/**
+	 * Bind this texture to the given texture unit
+	 */
+	public void bind(GL2 gl, int unit)
+	{
+		gl.glActiveTexture(GL2.GL_TEXTURE0 + unit);
+		gl.glBindTexture(GL2.GL_TEXTURE_1D, textureId);
+	}
+
+	/**
+	 * Release the GL resources held by this texture
+	 */
+	public void dispose(GL2 gl)
+	{
+		if (textureId != 0)
+		{
+			gl.glDeleteTextures(1, new int[] { textureId }, 0);
+			textureId = 0;
+		}
+		setColorMap(null);
+	}
+
+	/**
+	 * @return The number of colours in this texture
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * @return The absolute value mapped to the first colour in this texture
+	 */
+	public double getMinValue()
+	{
+		return minValue;
+	}
+
+	/**
+	 * @return The absolute value mapped to the last colour in this texture
+	 */
+	public double getMaxValue()
+	{
+		return maxValue;
+	}
+}
@@ -68,6 +68,20 @@ public class ModelGeometryStatisticsTest
 		assertStatsCorrect(0.9, 1.1, 1.5, 2.9, 3.0, 3.0);
 	}
 
+	@Test
+	public void testUpdateFromOtherStatistics()
+	{
+		classUnderTest = new ModelGeometryStatistics(1.0, 2.0, 3.0);
+
+		ModelGeometryStatistics other = new ModelGeometryStatistics(0.9, 2.5, 3.0);
+		other.updateStats(1.2, 2.1, 3.5);
+		classUnderTest.updateStats(other);
+		classUnderTest.updateStats(new ModelGeometryStatistics());
+
+		assertStatsCorrect(0.9, 1.2, 2.0, 2.5, 3.0, 3.5);
+		assertEquals(3, classUnderTest.getNumPoints());
+	}
+
 	private void assertStatsCorrect(Double minLat, Double maxLat,
 			Double minLon, Double maxLon,
 			Double minElevation, Double maxElevation)
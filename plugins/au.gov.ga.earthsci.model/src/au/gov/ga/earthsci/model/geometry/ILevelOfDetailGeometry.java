@@ -0,0 +1,16 @@
+package au.gov.ga.earthsci.model.geometry;
+
+/**
+ * An interface for geometry types that are made up of a quadtree of
+ * {@link IMeshChunk}s at multiple levels of detail, allowing renderers to
+ * choose an appropriate level of detail for each part of the geometry.
+ * 
+ * @author James Navin (james.navin@ga.gov.au)
+ */
+public interface ILevelOfDetailGeometry extends IModelGeometry
+{
+	/**
+	 * @return The coarsest chunk, covering the entire geometry; always loaded
+	 */
+	IMeshChunk getRootChunk();
+}
@@ -0,0 +1,61 @@
+package au.gov.ga.earthsci.model.geometry;
+
+import java.util.List;
+
+/**
+ * A node in a quadtree of mesh chunks. Each chunk covers the same area as its
+ * children, at a coarser level of detail.
+ * <p/>
+ * Chunk meshes are loaded on demand; a chunk's geometry is <code>null</code>
+ * until it has been loaded, and after it has been unloaded.
+ * 
+ * @author James Navin (james.navin@ga.gov.au)
+ */
+public interface IMeshChunk
+{
+	/**
+	 * @return The mesh for this chunk, or <code>null</code> if it has not yet
+	 *         been loaded
+	 */
+	IMeshGeometry getGeometry();
+
+	/**
+	 * Request that this chunk's mesh be loaded in the background, if it isn't
+	 * already loaded or loading.
+	 */
+	void load();
+
+	/**
+	 * Release this chunk's mesh, so that it can be garbage collected. The mesh
+	 * is loaded again by the next call to {@link #load()}.
+	 */
+	void unload();
+
+	/**
+	 * @return Whether the last attempt to load this chunk's mesh failed. Failed
+	 *         chunks are not loading, so shouldn't be waited for; they are
+	 *         retried by later calls to {@link #load()} after a delay.
+	 */
+	boolean isLoadFailed();
+
+	/**
+	 * Return the approximate maximum distance (in metres) between this
+	 * chunk's mesh and the finest level of detail available. Only valid once
+	 * the chunk has been loaded.
+	 * 
+	 * @return The geometric error of this chunk; 0 if this chunk has no
+	 *         children
+	 */
+	double getGeometricError();
+
+	/**
+	 * @return Whether this chunk has children at a finer level of detail
+	 */
+	boolean hasChildren();
+
+	/**
+	 * @return The children of this chunk, which may not be loaded yet, or an
+	 *         empty list if this chunk has no children
+	 */
+	List<IMeshChunk> getChildren();
+}
@@ -97,6 +97,21 @@ public class ModelGeometryStatistics
 		numPoints++;
 	}
 
+	/**
+	 * Update the statistics with the ranges and point count recorded in the
+	 * given statistics, as if its points had been added to this instance.
+	 */
+	public void updateStats(ModelGeometryStatistics other)
+	{
+		updateLatStats(other.minLat);
+		updateLatStats(other.maxLat);
+		updateLonStats(other.minLon);
+		updateLonStats(other.maxLon);
+		updateElevationStats(other.minElevation);
+		updateElevationStats(other.maxElevation);
+		numPoints += other.numPoints;
+	}
+
 	/**
 	 * Update the longitude statistics with the given value
 	 */
@@ -4,17 +4,21 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.awt.Color;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.media.opengl.GL;
 
 import org.junit.Test;
 
+import au.gov.ga.earthsci.worldwind.common.layers.model.gocad.GocadFactory.GocadReadListener;
 import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
 import au.gov.ga.earthsci.worldwind.common.util.ColorMap;
 
@@ -105,4 +109,55 @@ public class GocadFactoryTest
 		assertNotNull(shape.getColorBuffer());
 		assertEquals(20 * 4, shape.getColorBuffer().length);
 	}
+
+	@Test
+	public void testMultipleObjectsReadInFileOrder()
+	{
+		int objectCount = 20;
+		StringBuilder sb = new StringBuilder();
+		sb.append("GOCAD HomogeneousGroup 1\nHEADER {\n*solid*color:0 0 1 1\n}\nBEGIN_MEMBERS\n");
+		for (int i = 0; i < objectCount; i++)
+		{
+			sb.append("GOCAD VSet 1\nHEADER {\nname:vset").append(i).append("\n*atoms*size:2\n}\n");
+			for (int j = 0; j <= i; j++)
+			{
+				sb.append("VRTX ").append(j + 1).append(' ').append(j).append(" 0 0\n");
+			}
+			sb.append("END\n");
+		}
+		sb.append("END_MEMBERS\nEND\n");
+
+		final List<FastShape> notified = new ArrayList<FastShape>();
+		List<FastShape> shapes;
+		try
+		{
+			GocadFactory.workers.setParallelism(4);
+			shapes =
+					GocadFactory.read(new StringReader(sb.toString()), null, new GocadReaderParameters(),
+							new GocadReadListener()
+							{
+								@Override
+								public void shapeRead(FastShape shape)
+								{
+									notified.add(shape);
+								}
+							});
+		}
+		finally
+		{
+			GocadFactory.workers.setParallelism(0);
+		}
+
+		assertEquals(objectCount, shapes.size());
+		assertEquals(objectCount, notified.size());
+		for (int i = 0; i < objectCount; i++)
+		{
+			FastShape shape = shapes.get(i);
+			assertSame(shape, notified.get(i));
+			assertEquals("vset" + i, shape.getName());
+			assertEquals(i + 1, shape.getPositions().size());
+			//color from the group header
+			assertEquals(Color.BLUE, shape.getColor());
+		}
+	}
 }
@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link GocadLexer} class
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class GocadLexerTest
+{
+	private final GocadLexer classUnderTest = new GocadLexer();
+
+	@Test
+	public void testKeyword()
+	{
+		classUnderTest.setLine("VRTX 1 2.5 3.5 4.5");
+		assertFalse(classUnderTest.keyword("VRT"));
+		assertFalse(classUnderTest.keyword("PVRTX"));
+		assertTrue(classUnderTest.keyword("VRTX"));
+		assertEquals(1, classUnderTest.nextInt());
+		assertEquals(2.5, classUnderTest.nextDouble(), 0);
+		assertEquals(3.5, classUnderTest.nextDouble(), 0);
+		assertEquals(4.5, classUnderTest.nextDouble(), 0);
+		assertFalse(classUnderTest.hasMoreTokens());
+
+		classUnderTest.setLine("END");
+		assertTrue(classUnderTest.keyword("END"));
+	}
+
+	@Test
+	public void testStartsWith()
+	{
+		classUnderTest.setLine("*solid*color: 1 0.5 0 1");
+		assertTrue(classUnderTest.startsWith("*solid*color:"));
+		assertEquals("1 0.5 0 1", classUnderTest.rest());
+
+		classUnderTest.setLine("name: My Surface ");
+		assertFalse(classUnderTest.startsWith("names:"));
+		assertTrue(classUnderTest.startsWith("name:"));
+		assertEquals("My Surface ", classUnderTest.rest());
+	}
+
+	@Test
+	public void testTokens()
+	{
+		classUnderTest.setLine("  PROPERTIES\ta  b ");
+		assertEquals("PROPERTIES", classUnderTest.nextToken());
+		assertEquals("a", classUnderTest.nextToken());
+		assertEquals("b", classUnderTest.nextToken());
+		assertNull(classUnderTest.nextToken());
+
+		classUnderTest.rewind();
+		assertEquals("PROPERTIES", classUnderTest.nextToken());
+	}
+
+	@Test
+	public void testNextDoubleCommaSeparated()
+	{
+		classUnderTest.setLine("1.5,-2e3, 4");
+		assertEquals(1.5, classUnderTest.nextDouble(), 0);
+		assertEquals(-2000, classUnderTest.nextDouble(), 0);
+		assertEquals(4, classUnderTest.nextDouble(), 0);
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testNextIntInvalid()
+	{
+		classUnderTest.setLine("TRGL 1 2.0 3");
+		classUnderTest.keyword("TRGL");
+		classUnderTest.nextInt();
+		classUnderTest.nextInt();
+	}
+
+	@Test
+	public void testNthDoubleSkipsInvalidTokens()
+	{
+		classUnderTest.setLine("1 abc 2 3");
+		assertEquals(3, classUnderTest.nthDouble(3), 0);
+
+		classUnderTest.setLine("1 2");
+		assertTrue(Double.isNaN(classUnderTest.nthDouble(3)));
+	}
+
+	@Test
+	public void testCommentAndEnd()
+	{
+		classUnderTest.setLine("  # comment");
+		assertTrue(classUnderTest.isComment());
+		assertFalse(classUnderTest.isEnd());
+
+		classUnderTest.setLine("END  ");
+		assertTrue(classUnderTest.isEnd());
+		assertFalse(classUnderTest.isComment());
+
+		classUnderTest.setLine("END_ORIGINAL_COORDINATE_SYSTEM");
+		assertFalse(classUnderTest.isEnd());
+	}
+
+	@Test
+	public void testParseDoubleMatchesDoubleParseDouble()
+	{
+		String[] values =
+				{ "0", "-0", "1", "+1", "0.1", "-123.456", "1e10", "1.5E-7", "123456789012345678901234567890",
+						"0.30000000000000004", "9007199254740993", "1e-300", "4.9e-324", "1.7976931348623157e308",
+						".5", "5.", "NaN", "-Infinity" };
+		for (String value : values)
+		{
+			assertParseDouble(value);
+		}
+
+		Random random = new Random(0);
+		for (int i = 0; i < 10000; i++)
+		{
+			assertParseDouble(Double.toString((random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 10)));
+			assertParseDouble(random.nextInt(1000000) + "." + random.nextInt(1000));
+		}
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testParseDoubleInvalid()
+	{
+		char[] chars = "1.2.3".toCharArray();
+		GocadLexer.parseDouble(chars, 0, chars.length);
+	}
+
+	@Test
+	public void testNextLineEndings() throws IOException
+	{
+		GocadLexer lexer = new GocadLexer(new StringReader("a\nb\r\nc\rd"));
+		assertTrue(lexer.nextLine());
+		assertEquals("a", lexer.getLine());
+		assertTrue(lexer.nextLine());
+		assertEquals("b", lexer.getLine());
+		assertTrue(lexer.nextLine());
+		assertEquals("c", lexer.getLine());
+		assertTrue(lexer.nextLine());
+		assertEquals("d", lexer.getLine());
+		assertFalse(lexer.nextLine());
+	}
+
+	@Test
+	public void testNextLineLongerThanBuffer() throws IOException
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100000; i++)
+		{
+			sb.append(i % 10);
+		}
+		String longLine = sb.toString();
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 3; i++)
+		{
+			input.append("VRTX ").append(i).append(" 1 2 3\r\n").append(longLine).append("\r\n");
+		}
+
+		GocadLexer lexer = new GocadLexer(new StringReader(input.toString()));
+		for (int i = 0; i < 3; i++)
+		{
+			assertTrue(lexer.nextLine());
+			assertTrue(lexer.keyword("VRTX"));
+			assertEquals(i, lexer.nextInt());
+			assertEquals(3, lexer.nthDouble(3), 0);
+			assertTrue(lexer.nextLine());
+			assertEquals(longLine, lexer.getLine());
+		}
+		assertFalse(lexer.nextLine());
+	}
+
+	private static void assertParseDouble(String value)
+	{
+		char[] chars = ("  " + value + "  ").toCharArray();
+		double expected = Double.parseDouble(value);
+		double actual = GocadLexer.parseDouble(chars, 2, chars.length - 2);
+		assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+	}
+}
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.volume;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link VolumeSliceGenerator} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class VolumeSliceGeneratorTest
+{
+	private static final int WIDTH = 5;
+	private static final int HEIGHT = 40;
+
+	@Test
+	public void testSliceGeneratedInBackground() throws Exception
+	{
+		TestSource source = new TestSource();
+		VolumeSliceGenerator generator = new VolumeSliceGenerator(source);
+
+		assertNull(generator.getSlice(0, 1, 7, WIDTH, HEIGHT));
+		assertTrue(source.await(1, 7));
+
+		int[] pixels = generator.getSlice(0, 1, 7, WIDTH, HEIGHT);
+		assertNotNull(pixels);
+		assertEquals(WIDTH * HEIGHT, pixels.length);
+		for (int y = 0; y < HEIGHT; y++)
+		{
+			for (int x = 0; x < WIDTH; x++)
+			{
+				assertEquals(pixel(1, 7, x, y), pixels[y * WIDTH + x]);
+			}
+		}
+	}
+
+	@Test
+	public void testCachedSliceIsNotRegenerated() throws Exception
+	{
+		TestSource source = new TestSource();
+		VolumeSliceGenerator generator = new VolumeSliceGenerator(source);
+
+		generator.getSlice(0, 2, 3, WIDTH, HEIGHT);
+		assertTrue(source.await(2, 3));
+		generator.getSlice(0, 2, 4, WIDTH, HEIGHT);
+		assertTrue(source.await(2, 4));
+		assertEquals(2 * HEIGHT, source.rows.get());
+
+		//dragging the slice back should use the cached slice
+		assertNotNull(generator.getSlice(0, 2, 3, WIDTH, HEIGHT));
+		assertEquals(2 * HEIGHT, source.rows.get());
+
+		generator.clear();
+		assertNull(generator.getSlice(0, 2, 3, WIDTH, HEIGHT));
+	}
+
+	@Test
+	public void testStaleRequestIsCancelled() throws Exception
+	{
+		final Semaphore blocked = new Semaphore(0);
+		final CountDownLatch release = new CountDownLatch(1);
+		TestSource source = new TestSource()
+		{
+			@Override
+			public void generateRow(int axis, int position, int width, int height, int y, int[] pixels)
+			{
+				if (position == 1)
+				{
+					blocked.release();
+					try
+					{
+						release.await();
+					}
+					catch (InterruptedException e)
+					{
+					}
+				}
+				super.generateRow(axis, position, width, height, y, pixels);
+			}
+		};
+		VolumeSliceGenerator generator = new VolumeSliceGenerator(source);
+
+		assertNull(generator.getSlice(0, 0, 1, WIDTH, HEIGHT));
+		assertTrue(blocked.tryAcquire(5, TimeUnit.SECONDS));
+
+		//moving the slot to another slice cancels the slice still being generated
+		assertNull(generator.getSlice(0, 0, 2, WIDTH, HEIGHT));
+		release.countDown();
+		assertTrue(source.await(0, 2));
+		assertFalse(source.generated.contains(key(0, 1)));
+		assertTrue(source.rows.get() < 2 * HEIGHT);
+	}
+
+	@Test
+	public void testSliceRequestedByAnotherSlotIsNotCancelled() throws Exception
+	{
+		TestSource source = new TestSource();
+		VolumeSliceGenerator generator = new VolumeSliceGenerator(source);
+
+		generator.getSlice(0, 2, 5, WIDTH, HEIGHT);
+		generator.getSlice(1, 2, 5, WIDTH, HEIGHT);
+		generator.getSlice(0, 2, 6, WIDTH, HEIGHT);
+
+		assertTrue(source.await(2, 5));
+		assertTrue(source.await(2, 6));
+		assertNotNull(generator.getSlice(1, 2, 5, WIDTH, HEIGHT));
+	}
+
+	@Test
+	public void testFailedSliceIsRetriedAfterDelay() throws Exception
+	{
+		final AtomicInteger failures = new AtomicInteger();
+		final CountDownLatch failed = new CountDownLatch(1);
+		TestSource source = new TestSource()
+		{
+			@Override
+			public void generateRow(int axis, int position, int width, int height, int y, int[] pixels)
+			{
+				if (failures.get() == 0 && failures.compareAndSet(0, 1))
+				{
+					failed.countDown();
+					throw new IllegalStateException("Test failure"); //$NON-NLS-1$
+				}
+				super.generateRow(axis, position, width, height, y, pixels);
+			}
+		};
+		VolumeSliceGenerator generator = new VolumeSliceGenerator(source);
+		generator.setRetryDelay(500);
+
+		assertNull(generator.getSlice(0, 1, 3, WIDTH, HEIGHT));
+		assertTrue(failed.await(5, TimeUnit.SECONDS));
+		assertFalse(source.await(1, 3, 200));
+
+		//the failed slice is not pending forever, and is requested again once the delay has passed
+		Thread.sleep(500);
+		assertNull(generator.getSlice(0, 1, 3, WIDTH, HEIGHT));
+		assertTrue(source.await(1, 3));
+		assertNotNull(generator.getSlice(0, 1, 3, WIDTH, HEIGHT));
+		assertEquals(1, failures.get());
+	}
+
+	private static int pixel(int axis, int position, int x, int y)
+	{
+		return (axis << 24) | (position << 16) | (y << 8) | x;
+	}
+
+	private static String key(int axis, int position)
+	{
+		return axis + "," + position;
+	}
+
+	private static class TestSource implements VolumeSliceGenerator.SliceSource
+	{
+		public final AtomicInteger rows = new AtomicInteger();
+		public final Set<String> generated = Collections.synchronizedSet(new HashSet<String>());
+
+		@Override
+		public void generateRow(int axis, int position, int width, int height, int y, int[] pixels)
+		{
+			rows.incrementAndGet();
+			for (int x = 0; x < width; x++)
+			{
+				pixels[y * width + x] = pixel(axis, position, x, y);
+			}
+		}
+
+		@Override
+		public void sliceGenerated(int axis, int position)
+		{
+			synchronized (generated)
+			{
+				generated.add(key(axis, position));
+				generated.notifyAll();
+			}
+		}
+
+		public boolean await(int axis, int position) throws InterruptedException
+		{
+			return await(axis, position, 5000);
+		}
+
+		public boolean await(int axis, int position, long timeout) throws InterruptedException
+		{
+			long end = System.currentTimeMillis() + timeout;
+			synchronized (generated)
+			{
+				while (!generated.contains(key(axis, position)))
+				{
+					long remaining = end - System.currentTimeMillis();
+					if (remaining <= 0)
+					{
+						return false;
+					}
+					generated.wait(remaining);
+				}
+			}
+			return true;
+		}
+	}
+}
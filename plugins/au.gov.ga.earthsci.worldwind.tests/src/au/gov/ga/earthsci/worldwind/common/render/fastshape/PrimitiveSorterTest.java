@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.render.fastshape;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link PrimitiveSorter} class
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class PrimitiveSorterTest
+{
+	private final PrimitiveSorter classUnderTest = new PrimitiveSorter();
+
+	@Test
+	public void testSortSmall()
+	{
+		float[] keys = { 3f, 1f, 4f, 1f, 5f, 9f, 2f, 6f };
+		int[] values = { 0, 1, 2, 3, 4, 5, 6, 7 };
+		classUnderTest.sortDescending(keys, values, keys.length);
+
+		assertArrayEquals(new float[] { 9f, 6f, 5f, 4f, 3f, 2f, 1f, 1f }, keys, 0f);
+		//stable; equal keys retain their original order
+		assertArrayEquals(new int[] { 5, 7, 4, 2, 0, 6, 1, 3 }, values);
+	}
+
+	@Test
+	public void testSortOnlyFirstCount()
+	{
+		float[] keys = { 1f, 2f, 3f, 0f };
+		int[] values = { 0, 1, 2, 3 };
+		classUnderTest.sortDescending(keys, values, 3);
+
+		assertArrayEquals(new float[] { 3f, 2f, 1f, 0f }, keys, 0f);
+		assertArrayEquals(new int[] { 2, 1, 0, 3 }, values);
+	}
+
+	@Test
+	public void testSortSerial()
+	{
+		assertRandomSort(PrimitiveSorter.PARALLEL_THRESHOLD - 1);
+	}
+
+	@Test
+	public void testSortParallel()
+	{
+		try
+		{
+			PrimitiveSorter.workers.setParallelism(4);
+			assertRandomSort(PrimitiveSorter.PARALLEL_THRESHOLD * 3 + 7);
+		}
+		finally
+		{
+			PrimitiveSorter.workers.setParallelism(0);
+		}
+	}
+
+	@Test
+	public void testInsertionSortNearlySorted()
+	{
+		float[] keys = { 10f, 9f, 7f, 8f, 6f, 5f };
+		int[] values = { 0, 1, 2, 3, 4, 5 };
+		assertTrue(PrimitiveSorter.insertionSortDescending(keys, values, keys.length, keys.length));
+
+		assertArrayEquals(new float[] { 10f, 9f, 8f, 7f, 6f, 5f }, keys, 0f);
+		assertArrayEquals(new int[] { 0, 1, 3, 2, 4, 5 }, values);
+	}
+
+	@Test
+	public void testInsertionSortGivesUp()
+	{
+		float[] keys = { 1f, 2f, 3f, 4f, 5f, 6f };
+		int[] values = { 0, 1, 2, 3, 4, 5 };
+		assertFalse(PrimitiveSorter.insertionSortDescending(keys, values, keys.length, 2));
+
+		//keys and values must still correspond
+		for (int i = 0; i < keys.length; i++)
+		{
+			assertEquals(values[i] + 1f, keys[i], 0f);
+		}
+	}
+
+	private void assertRandomSort(int count)
+	{
+		Random random = new Random(count);
+		float[] keys = new float[count];
+		float[] original = new float[count];
+		int[] values = new int[count];
+		for (int i = 0; i < count; i++)
+		{
+			//include duplicate keys to check stability
+			keys[i] = original[i] = random.nextInt(count / 4) * 0.5f;
+			values[i] = i;
+		}
+
+		classUnderTest.sortDescending(keys, values, count);
+
+		boolean[] seen = new boolean[count];
+		for (int i = 0; i < count; i++)
+		{
+			assertFalse(seen[values[i]]);
+			seen[values[i]] = true;
+			assertEquals(original[values[i]], keys[i], 0f);
+			if (i > 0)
+			{
+				assertTrue(keys[i - 1] >= keys[i]);
+				if (keys[i - 1] == keys[i])
+				{
+					assertTrue(values[i - 1] < values[i]);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.retrieve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link PrefetchBudget} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class PrefetchBudgetTest
+{
+	private ExecutorService executor;
+
+	@Before
+	public void setup()
+	{
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void tearDown()
+	{
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testReserveUntilExhausted()
+	{
+		TestBudget budget = new TestBudget(2);
+		assertTrue(budget.reserve());
+		assertTrue(budget.reserve());
+		assertFalse(budget.reserve());
+		assertTrue(budget.isExhausted());
+		assertEquals(0, budget.getRemaining());
+	}
+
+	@Test
+	public void testReservePausesWhileServiceIsBusy() throws Exception
+	{
+		TestBudget budget = new TestBudget(1);
+		budget.busy = true;
+		Future<Boolean> reserved = reserveInBackground(budget);
+		assertPaused(reserved);
+		assertEquals(1, budget.getRemaining());
+
+		budget.busy = false;
+		assertTrue(reserved.get(5, TimeUnit.SECONDS));
+		assertEquals(0, budget.getRemaining());
+	}
+
+	@Test
+	public void testCancelStopsPausedReserve() throws Exception
+	{
+		TestBudget budget = new TestBudget(1);
+		budget.busy = true;
+		Future<Boolean> reserved = reserveInBackground(budget);
+		assertPaused(reserved);
+
+		budget.cancel();
+		assertFalse(reserved.get(5, TimeUnit.SECONDS));
+		assertEquals(1, budget.getRemaining());
+	}
+
+	private Future<Boolean> reserveInBackground(final PrefetchBudget budget)
+	{
+		return executor.submit(new Callable<Boolean>()
+		{
+			@Override
+			public Boolean call()
+			{
+				return budget.reserve();
+			}
+		});
+	}
+
+	private static void assertPaused(Future<Boolean> reserved) throws Exception
+	{
+		try
+		{
+			reserved.get(3 * PrefetchBudget.BUSY_WAIT_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e)
+		{
+			return;
+		}
+		throw new AssertionError("Reserve returned while the retrieval service was busy"); //$NON-NLS-1$
+	}
+
+	/**
+	 * {@link PrefetchBudget} with a simulated retrieval service
+	 */
+	private static class TestBudget extends PrefetchBudget
+	{
+		private volatile boolean busy = false;
+
+		public TestBudget(int maxTiles)
+		{
+			super(maxTiles, 0);
+		}
+
+		@Override
+		protected boolean isServiceBusy()
+		{
+			return busy;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.retrieve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.retrieve.Retriever;
+
+import org.jmock.Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link RetrievalPriorityVotes} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class RetrievalPriorityVotesTest
+{
+	private Mockery mockContext;
+	private View view1;
+	private View view2;
+	private Retriever retriever;
+
+	@Before
+	public void setup()
+	{
+		mockContext = new Mockery();
+		view1 = mockContext.mock(View.class, "view1"); //$NON-NLS-1$
+		view2 = mockContext.mock(View.class, "view2"); //$NON-NLS-1$
+		retriever = mockContext.mock(Retriever.class);
+	}
+
+	@Test
+	public void testSingleViewDecides()
+	{
+		RetrievalPriorityVotes votes = new RetrievalPriorityVotes();
+		votes.beginView(view1);
+		assertEquals(5, votes.vote(view1, retriever, 5), 0);
+		assertTrue(Double.isNaN(votes.vote(view1, retriever, Double.NaN)));
+	}
+
+	@Test
+	public void testRetrievalIsOnlyCancelledWhenAllViewsAgree()
+	{
+		RetrievalPriorityVotes votes = new RetrievalPriorityVotes();
+		votes.beginView(view1);
+		votes.beginView(view2);
+
+		//view2 hasn't scored the retrieval yet, so it isn't cancelled
+		assertEquals(Double.POSITIVE_INFINITY, votes.vote(view1, retriever, Double.NaN), 0);
+
+		assertEquals(5, votes.vote(view2, retriever, 5), 0);
+		assertEquals(5, votes.vote(view1, retriever, Double.NaN), 0);
+		assertTrue(Double.isNaN(votes.vote(view2, retriever, Double.NaN)));
+	}
+
+	@Test
+	public void testRetrievalIsOrderedByViewThatNeedsItMost()
+	{
+		RetrievalPriorityVotes votes = new RetrievalPriorityVotes();
+		votes.beginView(view1);
+		votes.beginView(view2);
+
+		assertEquals(5, votes.vote(view1, retriever, 5), 0);
+		assertEquals(-1, votes.vote(view2, retriever, -1), 0);
+		assertEquals(-1, votes.vote(view1, retriever, 10), 0);
+		assertEquals(10, votes.vote(view2, retriever, 20), 0);
+	}
+
+	@Test
+	public void testViewsThatStopReprioritizingAreIgnored() throws Exception
+	{
+		RetrievalPriorityVotes votes = new RetrievalPriorityVotes(50);
+		votes.beginView(view1);
+		votes.beginView(view2);
+		assertEquals(5, votes.vote(view2, retriever, 5), 0);
+
+		//view2's window has closed
+		Thread.sleep(100);
+		votes.beginView(view1);
+		assertTrue(Double.isNaN(votes.vote(view1, retriever, Double.NaN)));
+	}
+}
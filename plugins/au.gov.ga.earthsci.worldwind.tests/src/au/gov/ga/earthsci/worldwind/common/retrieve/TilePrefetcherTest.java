@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.retrieve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.avlist.AVListImpl;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.util.Level;
+import gov.nasa.worldwind.util.LevelSet;
+import gov.nasa.worldwind.util.TileKey;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link TilePrefetcher} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class TilePrefetcherTest
+{
+	private static final int TILE_SIZE = 512;
+	private static final double LEVEL_ZERO_DELTA = 36d;
+
+	@Test
+	public void testPrefetchLevelIsFirstLevelWithSmallEnoughTexels()
+	{
+		LevelSet levels = createLevels(0);
+		double level2TexelSize = levels.getLevel(2).getTexelSize();
+
+		assertEquals(2, TilePrefetcher.getPrefetchLevel(levels, level2TexelSize).getLevelNumber());
+		assertEquals(2, TilePrefetcher.getPrefetchLevel(levels, level2TexelSize * 1.5).getLevelNumber());
+		assertEquals(0, TilePrefetcher.getPrefetchLevel(levels, 1d).getLevelNumber());
+	}
+
+	@Test
+	public void testPrefetchLevelIsLastLevelIfNoneSmallEnough()
+	{
+		LevelSet levels = createLevels(0);
+		assertEquals(levels.getLastLevel().getLevelNumber(), TilePrefetcher.getPrefetchLevel(levels, 1e-12)
+				.getLevelNumber());
+	}
+
+	@Test
+	public void testPrefetchLevelSkipsEmptyLevels()
+	{
+		LevelSet levels = createLevels(2);
+		assertEquals(2, TilePrefetcher.getPrefetchLevel(levels, 1d).getLevelNumber());
+	}
+
+	@Test
+	public void testPrefetchLevelOfAllEmptyLevelsIsNull()
+	{
+		LevelSet levels = createLevels(4);
+		assertNull(TilePrefetcher.getPrefetchLevel(levels, 1d));
+	}
+
+	@Test
+	public void testTileKeysWithinSingleTile()
+	{
+		LevelSet levels = createLevels(0);
+		Level level = levels.getLevel(0);
+
+		List<TileKey> keys = TilePrefetcher.getTileKeys(levels, level, Sector.fromDegrees(1, 10, 1, 10));
+		assertEquals(1, keys.size());
+		assertEquals(2, keys.get(0).getRow());
+		assertEquals(5, keys.get(0).getColumn());
+		assertEquals(0, keys.get(0).getLevelNumber());
+	}
+
+	@Test
+	public void testTileKeysAcrossTileBoundaries()
+	{
+		LevelSet levels = createLevels(0);
+		Level level = levels.getLevel(1);
+
+		List<TileKey> keys = TilePrefetcher.getTileKeys(levels, level, Sector.fromDegrees(-1, 1, -1, 1));
+		assertEquals(4, keys.size());
+		for (TileKey key : keys)
+		{
+			assertEquals(1, key.getLevelNumber());
+			assertTrue(key.getRow() == 4 || key.getRow() == 5);
+			assertTrue(key.getColumn() == 9 || key.getColumn() == 10);
+		}
+	}
+
+	@Test
+	public void testTileKeysOutsideLevelSetSector()
+	{
+		AVList params = createParams(0);
+		params.setValue(AVKey.SECTOR, Sector.fromDegrees(-10, 0, 100, 120));
+		LevelSet levels = new LevelSet(params);
+
+		List<TileKey> keys =
+				TilePrefetcher.getTileKeys(levels, levels.getFirstLevel(), Sector.fromDegrees(10, 20, 10, 20));
+		assertTrue(keys.isEmpty());
+	}
+
+	private static LevelSet createLevels(int numEmptyLevels)
+	{
+		return new LevelSet(createParams(numEmptyLevels));
+	}
+
+	private static AVList createParams(int numEmptyLevels)
+	{
+		AVList params = new AVListImpl();
+		params.setValue(AVKey.TILE_WIDTH, TILE_SIZE);
+		params.setValue(AVKey.TILE_HEIGHT, TILE_SIZE);
+		params.setValue(AVKey.DATA_CACHE_NAME, "TilePrefetcherTest");
+		params.setValue(AVKey.SERVICE, "http://localhost/");
+		params.setValue(AVKey.DATASET_NAME, "test");
+		params.setValue(AVKey.FORMAT_SUFFIX, ".png");
+		params.setValue(AVKey.NUM_LEVELS, 4);
+		params.setValue(AVKey.NUM_EMPTY_LEVELS, numEmptyLevels);
+		params.setValue(AVKey.LEVEL_ZERO_TILE_DELTA,
+				new LatLon(Angle.fromDegrees(LEVEL_ZERO_DELTA), Angle.fromDegrees(LEVEL_ZERO_DELTA)));
+		params.setValue(AVKey.SECTOR, Sector.FULL_SPHERE);
+		return params;
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import static org.junit.Assert.*;
+
+import org.gdal.gdal.gdalJNI;
+import org.gdal.osr.CoordinateTransformation;
+import org.gdal.osr.SpatialReference;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link CoordinateTransformationUtil} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class CoordinateTransformationUtilTest
+{
+	private static final String PROJECTION = "EPSG:28355"; //MGA zone 55
+
+	@Before
+	public void setup()
+	{
+		//TODO fix GDAL loading within Eclipse plugin test
+		Assume.assumeTrue(gdalJNI.isAvailable());
+	}
+
+	@Test
+	public void testNullTransformationLeavesPointsUnchanged()
+	{
+		double[] points = createPoints(10);
+		double[] expected = points.clone();
+
+		CoordinateTransformationUtil.transformPoints(null, points);
+
+		assertArrayEquals(expected, points, 0);
+	}
+
+	@Test
+	public void testIdentityTransformationLeavesPointsUnchanged()
+	{
+		SpatialReference src = CoordinateTransformationUtil.stringToSpatialReference(PROJECTION);
+		SpatialReference dst = CoordinateTransformationUtil.stringToSpatialReference(PROJECTION);
+		CoordinateTransformation transformation = CoordinateTransformationUtil.getTransformation(src, dst);
+		assertTrue(CoordinateTransformationUtil.isIdentity(transformation));
+
+		double[] points = createPoints(10);
+		double[] expected = points.clone();
+
+		CoordinateTransformationUtil.transformPoints(transformation, points);
+
+		assertArrayEquals(expected, points, 0);
+	}
+
+	@Test
+	public void testRangeAcrossBatchBoundaries()
+	{
+		CoordinateTransformation transformation = CoordinateTransformationUtil.getTransformationToWGS84(PROJECTION);
+		assertFalse(CoordinateTransformationUtil.isIdentity(transformation));
+
+		int total = CoordinateTransformationUtil.BATCH_SIZE * 2 + 200;
+		int first = 37;
+		int count = CoordinateTransformationUtil.BATCH_SIZE * 2 + 123;
+		double[] points = createPoints(total);
+		double[] original = points.clone();
+
+		CoordinateTransformationUtil.transformPoints(transformation, points, first, count, false);
+
+		//compare with transforming each point individually
+		CoordinateTransformation reference =
+				new CoordinateTransformation(CoordinateTransformationUtil.stringToSpatialReference(PROJECTION),
+						CoordinateTransformationUtil.stringToSpatialReference("EPSG:4326"));
+		for (int i = 0; i < total; i++)
+		{
+			double[] expected = new double[] { original[i * 3], original[i * 3 + 1], original[i * 3 + 2] };
+			if (i >= first && i < first + count)
+			{
+				reference.TransformPoint(expected);
+			}
+			assertEquals("Point " + i, expected[0], points[i * 3], 1e-9);
+			assertEquals("Point " + i, expected[1], points[i * 3 + 1], 1e-9);
+			assertEquals("Point " + i, expected[2], points[i * 3 + 2], 1e-6);
+		}
+	}
+
+	@Test
+	public void testParallelMatchesSerial()
+	{
+		CoordinateTransformation transformation = CoordinateTransformationUtil.getTransformationToWGS84(PROJECTION);
+		int count = CoordinateTransformationUtil.PARALLEL_THRESHOLD + 1001;
+		double[] serial = createPoints(count + 2);
+		double[] parallel = serial.clone();
+
+		CoordinateTransformationUtil.workers.setParallelism(4);
+		try
+		{
+			CoordinateTransformationUtil.transformPoints(transformation, serial, 1, count, false);
+			CoordinateTransformationUtil.transformPoints(transformation, parallel, 1, count, true);
+		}
+		finally
+		{
+			CoordinateTransformationUtil.workers.setParallelism(0);
+		}
+
+		assertArrayEquals(serial, parallel, 0);
+	}
+
+	private static double[] createPoints(int count)
+	{
+		double[] points = new double[count * 3];
+		for (int i = 0; i < count; i++)
+		{
+			points[i * 3] = 500000 + (i % 1000) * 10.5;
+			points[i * 3 + 1] = 6000000 + (i / 1000) * 20.25;
+			points[i * 3 + 2] = i % 100;
+		}
+		return points;
+	}
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link WorkerPool} class
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class WorkerPoolTest
+{
+	@After
+	public void tearDown()
+	{
+		WorkerPool.setDefaultParallelism(0);
+	}
+
+	@Test
+	public void testInvokeAllReturnsResultsInOrder()
+	{
+		WorkerPool pool = new WorkerPool("test", 4);
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+		for (int i = 0; i < 100; i++)
+		{
+			final int value = i;
+			tasks.add(new Callable<Integer>()
+			{
+				@Override
+				public Integer call()
+				{
+					return value * 2;
+				}
+			});
+		}
+
+		List<Integer> results = pool.invokeAll(tasks);
+
+		assertEquals(100, results.size());
+		for (int i = 0; i < 100; i++)
+		{
+			assertEquals(i * 2, results.get(i).intValue());
+		}
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testInvokeAllRethrowsTaskExceptions()
+	{
+		WorkerPool pool = new WorkerPool("test", 2);
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		tasks.add(new Callable<Object>()
+		{
+			@Override
+			public Object call()
+			{
+				throw new UnsupportedOperationException();
+			}
+		});
+		pool.invokeAll(tasks);
+	}
+
+	@Test
+	public void testDefaultParallelism()
+	{
+		WorkerPool pool = new WorkerPool("test");
+
+		WorkerPool.setDefaultParallelism(3);
+		assertEquals(3, pool.getParallelism());
+
+		WorkerPool.setDefaultParallelism(0);
+		assertEquals(Runtime.getRuntime().availableProcessors(), pool.getParallelism());
+	}
+
+	@Test
+	public void testFixedParallelismIgnoresDefault()
+	{
+		WorkerPool pool = new WorkerPool("test", 1);
+		WorkerPool.setDefaultParallelism(5);
+		assertEquals(1, pool.getParallelism());
+
+		pool.setParallelism(0);
+		assertEquals(5, pool.getParallelism());
+	}
+
+	@Test
+	public void testExecutorIsResizedWhenParallelismChanges()
+	{
+		WorkerPool pool = new WorkerPool("test", 2);
+		ThreadPoolExecutor executor = (ThreadPoolExecutor) pool.getExecutor();
+		assertEquals(2, executor.getCorePoolSize());
+
+		pool.setParallelism(6);
+		assertEquals(executor, pool.getExecutor());
+		assertEquals(6, executor.getCorePoolSize());
+		assertEquals(6, executor.getMaximumPoolSize());
+
+		pool.setParallelism(1);
+		pool.getExecutor();
+		assertEquals(1, executor.getCorePoolSize());
+		assertEquals(1, executor.getMaximumPoolSize());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeParallelismIsRejected()
+	{
+		new WorkerPool("test", -1);
+	}
+}
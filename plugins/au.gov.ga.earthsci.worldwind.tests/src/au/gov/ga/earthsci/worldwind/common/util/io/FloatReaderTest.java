@@ -17,10 +17,17 @@ package au.gov.ga.earthsci.worldwind.common.util.io;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -163,6 +170,134 @@ public class FloatReaderTest
 		assertTrue(Float.isNaN(value[0]));
 	}
 	
+	@Test
+	public void testReadNextValuesWithCustomFormatFromBuffer() throws Exception
+	{
+		FloatReader classUnderTest = FloatReader.Builder.newFloatReaderForBuffer(readBytes())
+														.withOffset(4)
+														.withGroupSize(3)
+														.withGroupSeparation(8)
+														.withGroupValueGap(4)
+														.build();
+		float[][] expected = {{0.3f, 0.9f, 1.5f},{2.4f, 3.0f, 3.6f}};
+		float[] values = new float[3];
+		
+		classUnderTest.readNextValues(values);
+		assertArrayEquals(expected[0], values, 0.001f);
+		
+		classUnderTest.readNextValues(values);
+		assertArrayEquals(expected[1], values, 0.001f);
+	}
+	
+	@Test
+	public void testReadNextValuesFromBufferUsesNaNWhenNoMoreBytes() throws Exception
+	{
+		FloatReader classUnderTest = FloatReader.Builder.newFloatReaderForBuffer(readBytes()).build();
+		
+		classUnderTest.skip(440);
+		
+		float[] value = new float[1];
+		classUnderTest.readNextValues(value);
+		
+		assertTrue(Float.isNaN(value[0]));
+	}
+	
+	@Test
+	public void testReadValueRandomAccess() throws Exception
+	{
+		FloatReader classUnderTest = FloatReader.Builder.newFloatReaderForBuffer(readBytes())
+														.withOffset(4)
+														.build();
+		assertTrue(classUnderTest.isRandomAccess());
+		
+		assertEquals(3.0f, classUnderTest.readValue(9), 0.001);
+		assertEquals(0.3f, classUnderTest.readValue(0), 0.001);
+		assertTrue(Float.isNaN(classUnderTest.readValue(99)));
+		
+		//random access doesn't affect sequential reads
+		float[] value = new float[1];
+		classUnderTest.readNextValues(value);
+		assertEquals(0.3f, value[0], 0.001);
+	}
+	
+	@Test
+	public void testReadValuesStrided() throws Exception
+	{
+		FloatReader classUnderTest = FloatReader.Builder.newFloatReaderForBuffer(readBytes()).build();
+		
+		float[] values = new float[4];
+		classUnderTest.readValues(1, 2, values, 1, 3);
+		assertArrayEquals(new float[]{0f, 0.3f, 0.9f, 1.5f}, values, 0.001f);
+	}
+	
+	@Test (expected = UnsupportedOperationException.class)
+	public void testReadValueFromStreamNotSupported() throws Exception
+	{
+		FloatReader classUnderTest = new FloatReader(is);
+		assertFalse(classUnderTest.isRandomAccess());
+		classUnderTest.readValue(0);
+	}
+	
+	@Test
+	public void testReadValueFromFileMatchesStream() throws Exception
+	{
+		byte[] bytes = new byte[400];
+		new Random(0).nextBytes(bytes);
+		File file = File.createTempFile("floatreader", ".bin");
+		file.deleteOnExit();
+		FileOutputStream fos = new FileOutputStream(file);
+		fos.write(bytes);
+		fos.close();
+		
+		for (ByteOrder order : new ByteOrder[] { ByteOrder.LITTLE_ENDIAN, ByteOrder.BIG_ENDIAN })
+		{
+			FloatReader streamReader = FloatReader.Builder.newFloatReaderForStream(new ByteArrayInputStream(bytes))
+															.withByteOrder(order)
+															.build();
+			FloatReader classUnderTest = FloatReader.Builder.newFloatReaderForFile(file)
+															.withByteOrder(order)
+															.build();
+			float[] value = new float[1];
+			for (int i = 0; i < 100; i++)
+			{
+				streamReader.readNextValues(value);
+				assertEquals(Float.floatToRawIntBits(value[0]), Float.floatToRawIntBits(classUnderTest.readValue(i)));
+			}
+			assertTrue(Float.isNaN(classUnderTest.readValue(100)));
+			classUnderTest.close();
+		}
+	}
+	
+	@Test
+	public void testBitsToFloatMatchesBytesToFloat()
+	{
+		Random random = new Random(0);
+		for (int i = 0; i < 1000; i++)
+		{
+			int bits = random.nextInt();
+			int b0 = bits & 0xff, b1 = (bits >>> 8) & 0xff, b2 = (bits >>> 16) & 0xff, b3 = bits >>> 24;
+			for (FloatFormat format : FloatFormat.values())
+			{
+				float expected = format.bytesToFloat(b0, b1, b2, b3);
+				float actual = format.bitsToFloat(bits);
+				assertEquals(Float.floatToIntBits(expected), Float.floatToIntBits(actual));
+			}
+		}
+	}
+	
+	private ByteBuffer readBytes() throws Exception
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = is.read(buffer)) >= 0)
+		{
+			baos.write(buffer, 0, read);
+		}
+		is.close();
+		return ByteBuffer.wrap(baos.toByteArray());
+	}
+	
 	private void assertPatternCorrect(FloatReader classUnderTest, int offset, int groupSize, int groupSeparation, int groupValueGap, FloatFormat format, ByteOrder order)
 	{
 		assertEquals(offset, classUnderTest.getOffset());
@@ -47,6 +47,7 @@ import org.w3c.dom.Element;
 
 import au.gov.ga.earthsci.worldwind.common.layers.Bounded;
 import au.gov.ga.earthsci.worldwind.common.layers.Bounds;
+import au.gov.ga.earthsci.worldwind.common.retrieve.RetrievalPrioritizer;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
 
 import com.jogamp.opengl.util.awt.TextRenderer;
@@ -836,6 +837,38 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 		return this.computeReferencePoint(dc);
 	}
 
+	/**
+	 * Create a {@link RetrievalPrioritizer} for the given tile's retriever,
+	 * which prioritizes the retrieval by the distance of the tile's segment
+	 * from the view, and cancels it if the segment is no longer visible.
+	 * 
+	 * @param tile
+	 *            Tile being retrieved
+	 * @return Prioritizer for the tile's retriever
+	 */
+	protected RetrievalPrioritizer createRetrievalPrioritizer(final CurtainTextureTile tile)
+	{
+		return new RetrievalPrioritizer()
+		{
+			@Override
+			public double getRetrievalPriority(DrawContext dc)
+			{
+				if (!isEnabled() || !isLayerActive(dc) || !isTileVisible(dc, tile))
+				{
+					return Double.NaN;
+				}
+				Vec4 referencePoint = getReferencePoint(dc);
+				if (referencePoint == null)
+				{
+					return tile.getPriority();
+				}
+				Vec4 centroid =
+						path.getSegmentCenterPoint(dc, tile.getSegment(), curtainTop, curtainBottom, followTerrain);
+				return centroid.distanceTo3(referencePoint);
+			}
+		};
+	}
+
 	protected static class LevelComparer implements Comparator<CurtainTextureTile>
 	{
 		@Override
@@ -22,6 +22,7 @@ import gov.nasa.worldwind.avlist.AVListImpl;
 import gov.nasa.worldwind.cache.FileStore;
 import gov.nasa.worldwind.formats.dds.DDSCompressor;
 import gov.nasa.worldwind.formats.dds.DXTCompressionAttributes;
+import gov.nasa.worldwind.geom.Sector;
 import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.layers.TextureTile;
@@ -49,6 +50,8 @@ import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegatorLayer;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.ITileRequesterDelegate;
 import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
+import au.gov.ga.earthsci.worldwind.common.retrieve.PrefetchBudget;
+import au.gov.ga.earthsci.worldwind.common.retrieve.Prefetchable;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
 import au.gov.ga.earthsci.worldwind.common.util.DDSUncompressor;
 
@@ -67,7 +70,7 @@ import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implements
-		IDelegatorLayer<DelegatorCurtainTextureTile>
+		IDelegatorLayer<DelegatorCurtainTextureTile>, Prefetchable
 {
 	protected final Object fileLock;
 	protected final URL context;
@@ -383,6 +386,64 @@ public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implement
 		return context;
 	}
 
+	@Override
+	public void prefetch(Globe globe, Sector sector, double texelSize, PrefetchBudget budget)
+	{
+		if (!isEnabled() || !isNetworkRetrievalEnabled() || getPath() == null)
+		{
+			return;
+		}
+
+		//same as TilePrefetcher.getPrefetchLevel(), but for a curtain level set
+		CurtainLevel level = null;
+		for (CurtainLevel l : getLevels().getLevels())
+		{
+			if (!l.isEmpty())
+			{
+				level = l;
+				if (l.getTexelSize() <= texelSize)
+				{
+					break;
+				}
+			}
+		}
+		if (level == null)
+		{
+			return;
+		}
+
+		//prefetch all rows of the columns whose center is within the sector
+		for (int col = 0; col < level.getColumnCount(); col++)
+		{
+			Segment column = level.computeSegmentForRowColumn(0, col);
+			if (!sector.contains(getPath().getPercentLatLon(column.getHorizontalCenter())))
+			{
+				continue;
+			}
+
+			for (int row = 0; row < level.getRowCount(); row++)
+			{
+				Segment segment = level.computeSegmentForRowColumn(row, col);
+				DelegatorCurtainTextureTile tile = delegateKit.createTextureTile(segment, level, row, col);
+				if (getLevels().isResourceAbsent(tile)
+						|| CurtainTextureTile.getMemoryCache().getObject(tile.getTileKey()) != null
+						|| delegateKit.getLocalTileURL(tile, this, false) != null)
+				{
+					continue;
+				}
+				if (!budget.reserve())
+				{
+					return;
+				}
+				Retriever retriever = createRetriever(tile, null);
+				if (retriever != null)
+				{
+					budget.runRetriever(retriever);
+				}
+			}
+		}
+	}
+
 	/* **********************************************************************************************
 	 * Below here is copied from BasicTiledImageLayer, with some modifications to use the delegates *
 	 ********************************************************************************************** */
@@ -474,6 +535,7 @@ public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implement
 			retriever.setStaleRequestLimit(srl);
 
 		//MODIFIED
+		retriever.setValue(AVKeyMore.RETRIEVAL_PRIORITIZER, createRetrievalPrioritizer(tile));
 		//WorldWind.getRetrievalService().runRetriever(retriever, tile.getPriority());
 		return retriever;
 		//MODIFIED
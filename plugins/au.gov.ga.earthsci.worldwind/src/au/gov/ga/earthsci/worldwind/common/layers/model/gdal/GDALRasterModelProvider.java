@@ -153,20 +153,33 @@ public class GDALRasterModelProvider extends AbstractDataProvider<ModelLayer> im
 
 		int dataType = band.getDataType();
 
-		for (int y = 0; y < rows; y++)
+		//calculate the untransformed coordinates of each pixel, and transform them in one batch
+		double[] points = new double[columns * rows * 3];
+		boolean[] noData = new boolean[columns * rows];
+		for (int y = 0, i = 0; y < rows; y++)
 		{
-			for (int x = 0; x < columns; x++)
+			for (int x = 0; x < columns; x++, i++)
 			{
 				double datasetValue = getValue(buffer, dataType);
 				double elevation = toElevation(elevationOffset, elevationScale, datasetValue);
 
 				double[] transformedCoords = transformCoordinates(geoTransform, x, y);
-				Position projectedCoordinates =
-						projectCoordinates(coordinateTransformation, transformedCoords[0], transformedCoords[1],
-								elevation);
+				points[i * 3] = transformedCoords[0];
+				points[i * 3 + 1] = transformedCoords[1];
+				points[i * 3 + 2] = elevation;
+				noData[i] = isNoData(nodata, (float) datasetValue);
+			}
+		}
+		CoordinateTransformationUtil.transformPoints(coordinateTransformation, points);
+
+		for (int y = 0, i = 0; y < rows; y++)
+		{
+			for (int x = 0; x < columns; x++, i++)
+			{
+				Position projectedCoordinates = Position.fromDegrees(points[i * 3 + 1], points[i * 3], points[i * 3 + 2]);
 
 				Position position;
-				if (isNoData(nodata, (float) datasetValue))
+				if (noData[i])
 				{
 					// 'Smooth' out the mesh by setting nodata elevations to the last 'real' elevation value if available
 					// This avoids nodata values 'falling' to the centre of the globe
@@ -253,39 +266,6 @@ public class GDALRasterModelProvider extends AbstractDataProvider<ModelLayer> im
 		return new double[] { Xp, Yp };
 	}
 
-	/**
-	 * Project the provided x,y,z coordinates from the source SRS to WGS84
-	 * 
-	 * @param ct
-	 *            The coordinate transformation to use for transforming the
-	 *            coordinates
-	 * @param x
-	 *            The x coordinate in source SRS
-	 * @param y
-	 *            The y coordinate in source SRS
-	 * @param elevation
-	 *            The elevation in source SRS
-	 * 
-	 * @return The coordinates projected in WGS84
-	 */
-	private Position projectCoordinates(CoordinateTransformation ct, double x, double y, double elevation)
-	{
-		if (ct == null)
-		{
-			return new Position(Angle.fromDegrees(y),
-					Angle.fromDegrees(x),
-					elevation);
-		}
-
-		double transformed[] = new double[3];
-		ct.TransformPoint(transformed, x, y, elevation);
-
-		Position projectedPosition = new Position(Angle.fromDegrees(transformed[1]),
-				Angle.fromDegrees(transformed[0]),
-				transformed[2]);
-		return projectedPosition;
-	}
-
 	/**
 	 * @return The data scale for the provided band
 	 */
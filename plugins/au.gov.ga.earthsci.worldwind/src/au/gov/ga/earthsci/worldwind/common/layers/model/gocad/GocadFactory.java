@@ -15,7 +15,6 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
@@ -26,18 +25,48 @@ import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Pattern;
 
 import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.earthsci.worldwind.common.util.WorkerPool;
 
 /**
  * Factory for creating {@link Object}s from GOCAD files.
+ * <p/>
+ * Files are streamed through a {@link GocadLexer} on the calling thread, which
+ * tokenizes each object's lines as they are read. Building the shape from an
+ * object's parsed vertices and elements (index conversion, colouring and
+ * projection) is then done on a pool of worker threads, while the calling
+ * thread parses the next object. The resulting shapes are returned in file
+ * order.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class GocadFactory
 {
-	private static final String COMMENT_REGEX = "\\s*#.*";
+	static final WorkerPool workers = new WorkerPool(GocadFactory.class.getName());
+
+	/**
+	 * Listener that is notified as each shape in a GOCAD file is read.
+	 */
+	public static interface GocadReadListener
+	{
+		/**
+		 * Called when a shape has been read. Shapes are notified in file
+		 * order, on the thread that called {@link GocadFactory}'s read method.
+		 * 
+		 * @param shape
+		 *            Shape that was read
+		 */
+		void shapeRead(FastShape shape);
+	}
 
 	public static boolean isGocadFileSuffix(String suffix)
 	{
@@ -67,6 +96,12 @@ public class GocadFactory
 		 * Regular expression used for matching the end of the GOCAD object of this type.
 		 */
 		public final String endRegex;
+
+		/**
+		 * Compiled {@link #endRegex}, or null if the object ends with a
+		 * standard END line.
+		 */
+		private final Pattern endPattern;
 		
 		/**
 		 * {@link GocadReader} implementation used for reading this type.
@@ -77,6 +112,7 @@ public class GocadFactory
 		{
 			this.headerRegex = headerRegex;
 			this.endRegex = endRegex;
+			this.endPattern = GocadReader.END_REGEX.equals(endRegex) ? null : Pattern.compile(endRegex);
 			this.readerClass = readerClass;
 		}
 
@@ -99,10 +135,15 @@ public class GocadFactory
 	}
 
 	public static List<FastShape> read(File file, GocadReaderParameters parameters)
+	{
+		return read(file, parameters, null);
+	}
+
+	public static List<FastShape> read(File file, GocadReaderParameters parameters, GocadReadListener listener)
 	{
 		try
 		{
-			return read(new FileReader(file), file.toURI().toURL(), parameters);
+			return read(new FileReader(file), file.toURI().toURL(), parameters, listener);
 		}
 		catch (MalformedURLException e)
 		{
@@ -118,7 +159,13 @@ public class GocadFactory
 
 	public static List<FastShape> read(InputStream is, URL context, GocadReaderParameters parameters)
 	{
-		return read(new InputStreamReader(is), context, parameters);
+		return read(is, context, parameters, null);
+	}
+
+	public static List<FastShape> read(InputStream is, URL context, GocadReaderParameters parameters,
+			GocadReadListener listener)
+	{
+		return read(new InputStreamReader(is), context, parameters, listener);
 	}
 
 	/**
@@ -130,52 +177,153 @@ public class GocadFactory
 	 *         GOCAD file
 	 */
 	public static List<FastShape> read(Reader reader, URL context, GocadReaderParameters parameters)
+	{
+		return read(reader, context, parameters, null);
+	}
+
+	/**
+	 * Read a GOCAD source to a {@link Object}, notifying the listener as each
+	 * object is read.
+	 * 
+	 * @param reader
+	 *            Reader to read from
+	 * @param listener
+	 *            Listener to notify as each shape is read (can be null)
+	 * @return A list of {@link Object}s containing the geometry from the
+	 *         GOCAD file
+	 */
+	public static List<FastShape> read(Reader reader, URL context, GocadReaderParameters parameters,
+			GocadReadListener listener)
 	{
 		List<FastShape> shapes = new ArrayList<FastShape>();
+		int parallelism = workers.getParallelism();
+		ExecutorService executor = parallelism > 1 ? workers.getExecutor() : null;
+		//limit the number of parsed objects waiting for their shapes to be built
+		Semaphore pending = new Semaphore(parallelism * 2);
+		LinkedList<Future<Object>> futures = new LinkedList<Future<Object>>();
 
 		try
 		{
-			BufferedReader br = new BufferedReader(reader);
-			while (true)
+			GocadLexer lexer = new GocadLexer(reader);
+			while (lexer.nextLine())
 			{
-				String line = br.readLine();
-				if (line == null)
-				{
-					if (shapes.size() == 0)
-					{
-						throw new IllegalArgumentException("No GOCAD objects found");
-					}
-					//file is finished, so break out of loop
-					break;
-				}
-
 				//check if the line matches any of the GOCAD object header regexes
-				GocadType type = determineGocadType(line);
+				GocadType type = determineGocadType(lexer.getLine());
 				if (type == null)
 				{
 					//if this line doesn't, try the next line
 					continue;
 				}
 
-				Object object = readFromGocadObject(type, parameters, br, context);
-				if (object instanceof FastShape)
+				boolean inline = executor == null || type == GocadType.Group;
+				if (!inline)
 				{
-					shapes.add((FastShape) object);
+					pending.acquire();
 				}
-				else if (object instanceof GocadReaderParameters)
+				GocadReader<?> gocadReader = parseGocadObject(type, parameters, lexer);
+				if (inline)
 				{
-					parameters = (GocadReaderParameters) object;
+					//groups modify the parameters of the objects that follow, so are built in order
+					Object object = gocadReader.end(context);
+					if (object instanceof GocadReaderParameters)
+					{
+						parameters = (GocadReaderParameters) object;
+					}
+					else
+					{
+						collectResults(futures, shapes, listener, true);
+						addResult(object, shapes, listener);
+					}
+					continue;
 				}
+
+				futures.add(executor.submit(new GocadShapeTask(gocadReader, context, pending)));
+				collectResults(futures, shapes, listener, false);
+			}
+			collectResults(futures, shapes, listener, true);
+
+			if (shapes.size() == 0)
+			{
+				throw new IllegalArgumentException("No GOCAD objects found");
 			}
 		}
 		catch (IOException e)
 		{
 			e.printStackTrace();
 		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			//if reading failed, don't continue building the remaining objects
+			for (Future<Object> future : futures)
+			{
+				future.cancel(true);
+			}
+		}
 
 		return shapes;
 	}
 
+	/**
+	 * Add the results of the completed tasks at the head of the futures list
+	 * to the list of shapes, preserving file order.
+	 * 
+	 * @param wait
+	 *            If true, wait for all tasks to complete
+	 */
+	private static void collectResults(LinkedList<Future<Object>> futures, List<FastShape> shapes,
+			GocadReadListener listener, boolean wait) throws IOException, InterruptedException
+	{
+		while (!futures.isEmpty() && (wait || futures.getFirst().isDone()))
+		{
+			Object object;
+			try
+			{
+				object = futures.getFirst().get();
+			}
+			catch (ExecutionException e)
+			{
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException)
+				{
+					throw (IOException) cause;
+				}
+				if (cause instanceof RuntimeException)
+				{
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error)
+				{
+					throw (Error) cause;
+				}
+				throw new IllegalStateException(cause);
+			}
+			futures.removeFirst();
+			addResult(object, shapes, listener);
+		}
+	}
+
+	private static void addResult(Object object, List<FastShape> shapes, GocadReadListener listener)
+	{
+		if (object instanceof FastShape)
+		{
+			FastShape shape = (FastShape) object;
+			shapes.add(shape);
+			if (listener != null)
+			{
+				listener.shapeRead(shape);
+			}
+		}
+	}
+
+	private static boolean isGocadObjectEnd(GocadType type, GocadLexer lexer)
+	{
+		return type.endPattern == null ? lexer.isEnd() : type.endPattern.matcher(lexer.getLine()).matches();
+	}
+
 	/**
 	 * Determine the {@link GocadType} from the header line in the file.
 	 * 
@@ -196,44 +344,85 @@ public class GocadFactory
 	}
 	
 	/**
-	 * Reads a GOCAD object of the defined type from the buffered reader provided. 
+	 * Parses the lines of a GOCAD object of the defined type from the lexer
+	 * provided.
 	 * <p/>
-	 * The provided buffered reader will be advanced to the last line of the GOCAD object
-	 * on successful return from this method. 
+	 * The provided lexer will be advanced to the last line of the GOCAD object
+	 * on successful return from this method. Readers that implement
+	 * {@link GocadLexerReader} are passed the lexer directly, otherwise each
+	 * line is passed as a {@link String}.
 	 * 
 	 * @param type The type of GOCAD object to read
 	 * @param parameters Global reader parameters to use
-	 * @param br The buffered reader to read the GOCAD object from
-	 * @param context The URL of the file being read
+	 * @param lexer The lexer to read the GOCAD object from
 	 * 
-	 * @return A {@link Object} that represents the read GOCAD object
+	 * @return The reader containing the parsed object; call
+	 *         {@link GocadReader#end(URL)} to create the object
 	 * 
 	 * @throws IOException
 	 */
-	private static Object readFromGocadObject(GocadType type, GocadReaderParameters parameters, BufferedReader br, URL context) throws IOException
+	private static GocadReader<?> parseGocadObject(GocadType type, GocadReaderParameters parameters, GocadLexer lexer) throws IOException
 	{
 		GocadReader<?> gocadReader = type.instanciateReader();
+		GocadLexerReader<?> lexerReader =
+				gocadReader instanceof GocadLexerReader ? (GocadLexerReader<?>) gocadReader : null;
 		gocadReader.begin(parameters);
 		while (true)
 		{
-			String line = br.readLine();
-			if (line == null)
+			if (!lexer.nextLine())
 			{
 				throw new IllegalArgumentException("GOCAD file ended unexpectedly");
 			}
-			if (line.matches(COMMENT_REGEX))
+			if (lexer.isComment())
 			{
 				//don't pass comment lines to the reader
 				continue;
 			}
-			if (line.matches(type.endRegex))
+			if (isGocadObjectEnd(type, lexer))
 			{
 				//object has ended, break out of the loop to parse the next object (if any)
 				break;
 			}
-			gocadReader.addLine(line);
+			if (lexerReader != null)
+			{
+				lexerReader.addLine(lexer);
+			}
+			else
+			{
+				gocadReader.addLine(lexer.getLine());
+			}
+		}
+		return gocadReader;
+	}
+
+	/**
+	 * Task that builds the object from a parsed GOCAD object on a worker
+	 * thread.
+	 */
+	private static class GocadShapeTask implements Callable<Object>
+	{
+		private final GocadReader<?> gocadReader;
+		private final URL context;
+		private final Semaphore pending;
+
+		public GocadShapeTask(GocadReader<?> gocadReader, URL context, Semaphore pending)
+		{
+			this.gocadReader = gocadReader;
+			this.context = context;
+			this.pending = pending;
+		}
+
+		@Override
+		public Object call() throws Exception
+		{
+			try
+			{
+				return gocadReader.end(context);
+			}
+			finally
+			{
+				pending.release();
+			}
 		}
-		return gocadReader.end(context);
 	}
-	
 }
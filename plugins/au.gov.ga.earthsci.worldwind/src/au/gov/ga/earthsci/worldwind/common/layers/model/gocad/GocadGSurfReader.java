@@ -31,10 +31,9 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.gdal.osr.CoordinateTransformation;
-
 import au.gov.ga.earthsci.worldwind.common.layers.volume.btt.BinaryTriangleTree;
 import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.earthsci.worldwind.common.util.GrowableDoubleArray;
 import au.gov.ga.earthsci.worldwind.common.util.Validate;
 
 /**
@@ -409,8 +408,8 @@ public class GocadGSurfReader implements GocadReader<FastShape>
 		minmax[0] = Float.MAX_VALUE;
 		minmax[1] = -Float.MAX_VALUE;
 
-		double[] transformed = new double[3];
-		CoordinateTransformation transformation = parameters.getCoordinateTransformation();
+		//untransformed (x, y, z) of each position, transformed in one batch once read
+		GrowableDoubleArray points = positions != null ? new GrowableDoubleArray(uSamples * vSamples * 3) : null;
 
 		URL eFileUrl = new URL(context, file);
 		InputStream eis = new BufferedInputStream(eFileUrl.openStream());
@@ -479,16 +478,9 @@ public class GocadGSurfReader implements GocadReader<FastShape>
 										* value, origin.y + uAdd.y + vAdd.y + axisW.y * value, origin.z + uAdd.z
 										+ vAdd.z + axisW.z * value);
 
-						if (transformation != null)
-						{
-							transformation.TransformPoint(transformed, p.x, p.y, zPositive ? p.z : -p.z);
-							positions.add(PositionWithCoord.fromDegrees(transformed[1], transformed[0], transformed[2],
-									ui, vi));
-						}
-						else
-						{
-							positions.add(PositionWithCoord.fromDegrees(p.y, p.x, zPositive ? p.z : -p.z, ui, vi));
-						}
+						points.add(p.x);
+						points.add(p.y);
+						points.add(zPositive ? p.z : -p.z);
 					}
 				}
 			}
@@ -528,16 +520,9 @@ public class GocadGSurfReader implements GocadReader<FastShape>
 									new Vec4(origin.x + uAdd.x + vAdd.x, origin.y + uAdd.y + vAdd.y, origin.z + uAdd.z
 											+ vAdd.z);
 						}
-						if (transformation != null)
-						{
-							transformation.TransformPoint(transformed, p.x, p.y, zPositive ? p.z : -p.z);
-							positions.add(PositionWithCoord.fromDegrees(transformed[1], transformed[0], transformed[2],
-									ui, vi));
-						}
-						else
-						{
-							positions.add(PositionWithCoord.fromDegrees(p.y, p.x, zPositive ? p.z : -p.z, ui, vi));
-						}
+						points.add(p.x);
+						points.add(p.y);
+						points.add(zPositive ? p.z : -p.z);
 					}
 
 					valueIndex++;
@@ -546,6 +531,17 @@ public class GocadGSurfReader implements GocadReader<FastShape>
 				skipBytes(eis, esize * nu * Math.min(strideV - 1, nv - v - 1));
 			}
 		}
+
+		if (positions != null)
+		{
+			double[] transformed =
+					GocadVertexBuffer.toLatLonElevation(points.toArray(), parameters.getCoordinateTransformation());
+			for (int i = 0; i < transformed.length / 3; i++)
+			{
+				positions.add(PositionWithCoord.fromDegrees(transformed[i * 3], transformed[i * 3 + 1],
+						transformed[i * 3 + 2], i % uSamples, i / uSamples));
+			}
+		}
 	}
 
 	protected static class PositionWithCoord extends Position
@@ -0,0 +1,592 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Hand-written tokenizer for GOCAD files. Lines are read from a {@link Reader}
+ * into a reusable character buffer, and can be matched against keyword
+ * prefixes and tokenized in place, without creating a {@link String} per line
+ * or per token. Numbers are parsed directly from the character buffer.
+ * <p/>
+ * Each line has a cursor which is advanced by the keyword matching and token
+ * reading methods. Tokens are separated by whitespace; numbers may also be
+ * separated by commas.
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class GocadLexer
+{
+	private final static int DEFAULT_BUFFER_SIZE = 1 << 16;
+	private final static int MAX_FAST_EXPONENT = 22;
+	private final static long MAX_FAST_MANTISSA = 1L << 53;
+	private final static double[] POWERS_OF_TEN = new double[MAX_FAST_EXPONENT + 1];
+	static
+	{
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++)
+		{
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private final Reader reader;
+	private char[] buffer;
+	private int bufferLength = 0;
+	private boolean eof = false;
+
+	private int lineStart = 0;
+	private int lineEnd = 0;
+	private int nextLineStart = 0;
+	private int position = 0;
+	private String line;
+
+	/**
+	 * Create a lexer that reads lines from the given reader using
+	 * {@link #nextLine()}.
+	 *
+	 * @param reader
+	 *            Reader to read from
+	 */
+	public GocadLexer(Reader reader)
+	{
+		this.reader = reader;
+		this.buffer = new char[DEFAULT_BUFFER_SIZE];
+	}
+
+	/**
+	 * Create a lexer without a reader, that tokenizes lines passed to
+	 * {@link #setLine(String)}.
+	 */
+	public GocadLexer()
+	{
+		this.reader = null;
+		this.buffer = new char[256];
+		this.eof = true;
+	}
+
+	/**
+	 * Advance to the next line from the reader.
+	 *
+	 * @return True if a line was read, false if the end of the stream has been
+	 *         reached
+	 * @throws IOException
+	 */
+	public boolean nextLine() throws IOException
+	{
+		int scan = nextLineStart;
+		while (true)
+		{
+			for (int i = scan; i < bufferLength; i++)
+			{
+				char c = buffer[i];
+				if (c == '\n' || c == '\r')
+				{
+					if (c == '\r' && i + 1 >= bufferLength && !eof)
+					{
+						//need the next character to check for a \r\n line ending
+						scan = i;
+						break;
+					}
+					setCurrentLine(nextLineStart, i);
+					nextLineStart = i + 1;
+					if (c == '\r' && nextLineStart < bufferLength && buffer[nextLineStart] == '\n')
+					{
+						nextLineStart++;
+					}
+					return true;
+				}
+				scan = i + 1;
+			}
+
+			if (eof)
+			{
+				if (nextLineStart < bufferLength)
+				{
+					setCurrentLine(nextLineStart, bufferLength);
+					nextLineStart = bufferLength;
+					return true;
+				}
+				return false;
+			}
+
+			scan -= fill();
+		}
+	}
+
+	/**
+	 * Compact and refill the buffer from the reader.
+	 *
+	 * @return Number of characters the unread data was shifted by
+	 */
+	private int fill() throws IOException
+	{
+		int shift = nextLineStart;
+		int remaining = bufferLength - nextLineStart;
+		if (remaining == buffer.length)
+		{
+			//a single line fills the buffer
+			char[] newBuffer = new char[buffer.length * 2];
+			System.arraycopy(buffer, nextLineStart, newBuffer, 0, remaining);
+			buffer = newBuffer;
+		}
+		else if (shift > 0)
+		{
+			System.arraycopy(buffer, nextLineStart, buffer, 0, remaining);
+		}
+		nextLineStart = 0;
+		bufferLength = remaining;
+		lineStart = lineEnd = position = 0;
+
+		int read = reader.read(buffer, bufferLength, buffer.length - bufferLength);
+		if (read < 0)
+		{
+			eof = true;
+		}
+		else
+		{
+			bufferLength += read;
+		}
+		return shift;
+	}
+
+	private void setCurrentLine(int start, int end)
+	{
+		lineStart = start;
+		lineEnd = end;
+		position = start;
+		line = null;
+	}
+
+	/**
+	 * Set the current line to tokenize. Only valid for lexers created without
+	 * a reader.
+	 *
+	 * @param line
+	 */
+	public void setLine(String line)
+	{
+		if (reader != null)
+		{
+			throw new IllegalStateException("Cannot set the line of a lexer that reads from a reader");
+		}
+		int length = line.length();
+		if (buffer.length < length)
+		{
+			buffer = new char[Math.max(length, buffer.length * 2)];
+		}
+		line.getChars(0, length, buffer, 0);
+		bufferLength = length;
+		setCurrentLine(0, length);
+		this.line = line;
+	}
+
+	/**
+	 * @return The current line as a {@link String}
+	 */
+	public String getLine()
+	{
+		if (line == null)
+		{
+			line = new String(buffer, lineStart, lineEnd - lineStart);
+		}
+		return line;
+	}
+
+	/**
+	 * Reset the cursor to the start of the current line.
+	 */
+	public void rewind()
+	{
+		position = lineStart;
+	}
+
+	/**
+	 * @return True if the current line is a comment (the first non-whitespace
+	 *         character is a '#')
+	 */
+	public boolean isComment()
+	{
+		int i = lineStart;
+		while (i < lineEnd && isWhitespace(buffer[i]))
+		{
+			i++;
+		}
+		return i < lineEnd && buffer[i] == '#';
+	}
+
+	/**
+	 * @return True if the current line is an END line (the word "END" followed
+	 *         only by whitespace)
+	 */
+	public boolean isEnd()
+	{
+		if (!regionMatches(lineStart, "END"))
+		{
+			return false;
+		}
+		for (int i = lineStart + 3; i < lineEnd; i++)
+		{
+			if (!isWhitespace(buffer[i]))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Check if the current line starts with the given prefix. If it does, the
+	 * cursor is moved to just after the prefix.
+	 *
+	 * @param prefix
+	 * @return True if the line starts with the prefix
+	 */
+	public boolean startsWith(String prefix)
+	{
+		if (!regionMatches(lineStart, prefix))
+		{
+			return false;
+		}
+		position = lineStart + prefix.length();
+		return true;
+	}
+
+	/**
+	 * Check if the current line starts with the given keyword, followed by
+	 * whitespace or the end of the line. If it does, the cursor is moved to
+	 * just after the keyword.
+	 *
+	 * @param keyword
+	 * @return True if the line starts with the keyword
+	 */
+	public boolean keyword(String keyword)
+	{
+		if (!regionMatches(lineStart, keyword))
+		{
+			return false;
+		}
+		int end = lineStart + keyword.length();
+		if (end < lineEnd && !isWhitespace(buffer[end]))
+		{
+			return false;
+		}
+		position = end;
+		return true;
+	}
+
+	private boolean regionMatches(int start, String s)
+	{
+		int length = s.length();
+		if (lineEnd - start < length)
+		{
+			return false;
+		}
+		for (int i = 0; i < length; i++)
+		{
+			if (buffer[start + i] != s.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return True if there are non-whitespace characters after the cursor
+	 */
+	public boolean hasMoreTokens()
+	{
+		skipWhitespace();
+		return position < lineEnd;
+	}
+
+	/**
+	 * @return The next whitespace separated token, or null if there are no
+	 *         more tokens
+	 */
+	public String nextToken()
+	{
+		skipWhitespace();
+		if (position >= lineEnd)
+		{
+			return null;
+		}
+		int start = position;
+		while (position < lineEnd && !isWhitespace(buffer[position]))
+		{
+			position++;
+		}
+		return new String(buffer, start, position - start);
+	}
+
+	/**
+	 * @return The remainder of the line after the cursor, with leading
+	 *         whitespace removed
+	 */
+	public String rest()
+	{
+		skipWhitespace();
+		String rest = new String(buffer, position, lineEnd - position);
+		position = lineEnd;
+		return rest;
+	}
+
+	/**
+	 * Parse the next whitespace separated token as an integer.
+	 *
+	 * @return The parsed integer
+	 * @throws NumberFormatException
+	 *             If there are no more tokens, or the next token is not an
+	 *             integer
+	 */
+	public int nextInt()
+	{
+		skipWhitespace();
+		int start = position;
+		boolean negative = false;
+		if (position < lineEnd && (buffer[position] == '-' || buffer[position] == '+'))
+		{
+			negative = buffer[position] == '-';
+			position++;
+		}
+		long value = 0;
+		int digitsStart = position;
+		while (position < lineEnd)
+		{
+			char c = buffer[position];
+			if (c < '0' || c > '9')
+			{
+				break;
+			}
+			value = value * 10 + (c - '0');
+			if (value > (long) Integer.MAX_VALUE + 1)
+			{
+				throw numberFormatException(start);
+			}
+			position++;
+		}
+		if (position == digitsStart || (position < lineEnd && !isWhitespace(buffer[position])))
+		{
+			throw numberFormatException(start);
+		}
+		value = negative ? -value : value;
+		if (value > Integer.MAX_VALUE)
+		{
+			throw numberFormatException(start);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Parse the next token as a double. Numbers can be separated by whitespace
+	 * or commas.
+	 *
+	 * @return The parsed double
+	 * @throws NumberFormatException
+	 *             If there are no more tokens, or the next token is not a
+	 *             number
+	 */
+	public double nextDouble()
+	{
+		skipNumberSeparators();
+		int start = position;
+		while (position < lineEnd && !isNumberSeparator(buffer[position]))
+		{
+			position++;
+		}
+		if (start == position)
+		{
+			throw new NumberFormatException("Expected a number at end of line: " + getLine());
+		}
+		return parseDouble(buffer, start, position);
+	}
+
+	/**
+	 * Find the number at the given (1-based) index in the remaining tokens.
+	 * Tokens that are not numbers are skipped and not counted, which mirrors
+	 * the behaviour of {@link GocadTSurfReader#splitStringToDoubles(String)}.
+	 * The cursor is moved to the end of the line.
+	 *
+	 * @param index
+	 *            1-based index of the number to return
+	 * @return The number at the given index, or {@link Double#NaN} if there
+	 *         are fewer numbers
+	 */
+	public double nthDouble(int index)
+	{
+		int count = 0;
+		double value = Double.NaN;
+		while (count < index)
+		{
+			skipNumberSeparators();
+			if (position >= lineEnd)
+			{
+				value = Double.NaN;
+				break;
+			}
+			try
+			{
+				value = nextDouble();
+				count++;
+			}
+			catch (NumberFormatException e)
+			{
+				//skip unparsable tokens
+			}
+		}
+		position = lineEnd;
+		return value;
+	}
+
+	private void skipWhitespace()
+	{
+		while (position < lineEnd && isWhitespace(buffer[position]))
+		{
+			position++;
+		}
+	}
+
+	private void skipNumberSeparators()
+	{
+		while (position < lineEnd && isNumberSeparator(buffer[position]))
+		{
+			position++;
+		}
+	}
+
+	private NumberFormatException numberFormatException(int start)
+	{
+		int end = start;
+		while (end < lineEnd && !isWhitespace(buffer[end]))
+		{
+			end++;
+		}
+		return new NumberFormatException("For input string: \"" + new String(buffer, start, end - start) + "\"");
+	}
+
+	/**
+	 * Whitespace characters, as matched by the regular expression
+	 * <code>\s</code>.
+	 */
+	private static boolean isWhitespace(char c)
+	{
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == 0x0B;
+	}
+
+	private static boolean isNumberSeparator(char c)
+	{
+		return c == ',' || isWhitespace(c);
+	}
+
+	/**
+	 * Parse a double from a region of a character array. Simple decimal
+	 * numbers are parsed directly (and are correctly rounded); anything else
+	 * is passed to {@link Double#parseDouble(String)}.
+	 *
+	 * @param chars
+	 *            Characters to parse
+	 * @param start
+	 *            Start of the number (inclusive)
+	 * @param end
+	 *            End of the number (exclusive)
+	 * @return Parsed double
+	 * @throws NumberFormatException
+	 *             If the region doesn't contain a number
+	 */
+	public static double parseDouble(char[] chars, int start, int end)
+	{
+		int i = start;
+		boolean negative = false;
+		if (i < end && (chars[i] == '-' || chars[i] == '+'))
+		{
+			negative = chars[i] == '-';
+			i++;
+		}
+
+		long mantissa = 0;
+		int exponent = 0;
+		boolean anyDigits = false;
+		boolean exact = true;
+		while (i < end && chars[i] >= '0' && chars[i] <= '9')
+		{
+			anyDigits = true;
+			if (mantissa < MAX_FAST_MANTISSA)
+			{
+				mantissa = mantissa * 10 + (chars[i] - '0');
+			}
+			else
+			{
+				exact = false;
+			}
+			i++;
+		}
+		if (i < end && chars[i] == '.')
+		{
+			i++;
+			while (i < end && chars[i] >= '0' && chars[i] <= '9')
+			{
+				anyDigits = true;
+				if (mantissa < MAX_FAST_MANTISSA)
+				{
+					mantissa = mantissa * 10 + (chars[i] - '0');
+					exponent--;
+				}
+				else
+				{
+					exact = false;
+				}
+				i++;
+			}
+		}
+		if (anyDigits && i < end && (chars[i] == 'e' || chars[i] == 'E'))
+		{
+			i++;
+			boolean negativeExponent = false;
+			if (i < end && (chars[i] == '-' || chars[i] == '+'))
+			{
+				negativeExponent = chars[i] == '-';
+				i++;
+			}
+			int exponentStart = i;
+			int explicitExponent = 0;
+			while (i < end && chars[i] >= '0' && chars[i] <= '9')
+			{
+				if (explicitExponent < 10000)
+				{
+					explicitExponent = explicitExponent * 10 + (chars[i] - '0');
+				}
+				i++;
+			}
+			if (i == exponentStart)
+			{
+				exact = false;
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+
+		if (!anyDigits || i != end || !exact || mantissa > MAX_FAST_MANTISSA || exponent < -MAX_FAST_EXPONENT
+				|| exponent > MAX_FAST_EXPONENT)
+		{
+			return Double.parseDouble(new String(chars, start, end - start));
+		}
+
+		double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+		return negative ? -value : value;
+	}
+}
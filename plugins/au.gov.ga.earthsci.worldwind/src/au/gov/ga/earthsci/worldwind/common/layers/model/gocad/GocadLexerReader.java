@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
+
+/**
+ * A {@link GocadReader} that can read lines directly from a
+ * {@link GocadLexer}, avoiding the creation of a {@link String} per line.
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public interface GocadLexerReader<T> extends GocadReader<T>
+{
+	/**
+	 * Parse the current line of the given lexer. The HEADER line and the END
+	 * line are not passed to this function.
+	 *
+	 * @param lexer
+	 *            Lexer positioned at a single line read from the GOCAD file
+	 */
+	void addLine(GocadLexer lexer);
+}
@@ -15,6 +15,7 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
 
+import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.util.WWIO;
 
 import java.io.File;
@@ -29,6 +30,7 @@ import au.gov.ga.earthsci.worldwind.common.layers.Bounds;
 import au.gov.ga.earthsci.worldwind.common.layers.data.AbstractDataProvider;
 import au.gov.ga.earthsci.worldwind.common.layers.model.ModelLayer;
 import au.gov.ga.earthsci.worldwind.common.layers.model.ModelProvider;
+import au.gov.ga.earthsci.worldwind.common.layers.model.gocad.GocadFactory.GocadReadListener;
 import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
 import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
 
@@ -61,15 +63,29 @@ public class GocadModelProvider extends AbstractDataProvider<ModelLayer> impleme
 	}
 
 	@Override
-	protected boolean doLoadData(URL url, ModelLayer layer)
+	protected boolean doLoadData(URL url, final ModelLayer layer)
 	{
-		List<FastShape> shapes;
-		File file = URLUtil.urlToFile(url);
-		if (file.getName().endsWith(".zip"))
+		final List<FastShape> shapes = new ArrayList<FastShape>();
+
+		//add the shapes to the layer as they are read, so that files containing
+		//many objects are displayed progressively while loading
+		GocadReadListener listener = new GocadReadListener()
 		{
-			shapes = new ArrayList<FastShape>();
+			@Override
+			public void shapeRead(FastShape shape)
+			{
+				shapes.add(shape);
+				layer.addShape(shape);
+				followTerrain = shape.isFollowTerrain();
+				bounds = Bounds.union(bounds, shape.getBounds());
+				layer.firePropertyChange(AVKey.LAYER, null, layer);
+			}
+		};
 
-			try
+		File file = URLUtil.urlToFile(url);
+		try
+		{
+			if (file.getName().endsWith(".zip"))
 			{
 				URL context = new URL("jar:" + url.toExternalForm() + "!/");
 				ZipFile zipFile = new ZipFile(file);
@@ -85,33 +101,27 @@ public class GocadModelProvider extends AbstractDataProvider<ModelLayer> impleme
 					}
 					if (GocadFactory.isGocadFileSuffix(suffix))
 					{
-						List<FastShape> tempList =
-								GocadFactory.read(zipFile.getInputStream(entry), context, parameters);
-						shapes.addAll(tempList);
+						GocadFactory.read(zipFile.getInputStream(entry), context, parameters, listener);
 					}
 				}
 				zipFile.close();
 			}
-			catch (Exception e)
+			else
 			{
-				e.printStackTrace();
-				return false;
+				GocadFactory.read(file, parameters, listener);
 			}
 		}
-		else
-		{
-			shapes = GocadFactory.read(file, parameters);
-		}
-		if (shapes != null && !shapes.isEmpty())
+		catch (Exception e)
 		{
+			e.printStackTrace();
+			//don't leave a partially loaded model in the layer
 			for (FastShape shape : shapes)
 			{
-				layer.addShape(shape);
-				followTerrain = shape.isFollowTerrain();
-				bounds = Bounds.union(bounds, shape.getBounds());
+				layer.removeShape(shape);
 			}
-			return true;
+			bounds = null;
+			return false;
 		}
-		return false;
+		return !shapes.isEmpty();
 	}
 }
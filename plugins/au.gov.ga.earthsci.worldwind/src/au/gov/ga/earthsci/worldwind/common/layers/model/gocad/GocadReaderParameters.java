@@ -308,7 +308,8 @@ public class GocadReaderParameters
 
 	/**
 	 * @return Map reprojection to use when reading GOCAD vertices (null for no
-	 *         reprojection).
+	 *         reprojection). GOCAD objects may be read in parallel, so callers
+	 *         must synchronize on the transformation when using it.
 	 */
 	public CoordinateTransformation getCoordinateTransformation()
 	{
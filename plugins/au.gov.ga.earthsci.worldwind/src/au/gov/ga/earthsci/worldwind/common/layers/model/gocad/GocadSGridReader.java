@@ -30,12 +30,11 @@ import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.gdal.osr.CoordinateTransformation;
-
 import au.gov.ga.earthsci.worldwind.common.layers.model.gocad.GocadGSurfReader.PositionWithCoord;
 import au.gov.ga.earthsci.worldwind.common.layers.volume.VolumeLayer;
 import au.gov.ga.earthsci.worldwind.common.layers.volume.btt.BinaryTriangleTree;
 import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.earthsci.worldwind.common.util.GrowableDoubleArray;
 import au.gov.ga.earthsci.worldwind.common.util.Validate;
 
 /**
@@ -177,12 +176,8 @@ public class GocadSGridReader implements GocadReader<FastShape>
 			//TODO add support for SGrid binary property files
 
 			//setup data variables
-			double[] transformed = new double[3];
-			CoordinateTransformation transformation = parameters.getCoordinateTransformation();
-
+			GrowableDoubleArray points = new GrowableDoubleArray(xSize * ySize * 3);
 			int positionIndex = 0;
-			double firstXValue = 0, firstYValue = 0;
-			boolean reverseX = false, reverseY = false;
 
 			//setup the ASCII data file line regex
 			String doublePattern = "([\\d.\\-]+)";
@@ -212,37 +207,12 @@ public class GocadSGridReader implements GocadReader<FastShape>
 					double z = Double.parseDouble(matcher.group(3));
 					float value = Float.parseFloat(matcher.group(4));
 
-					//transform the point
-					if (transformation != null)
-					{
-						transformation.TransformPoint(transformed, x, y, z);
-						x = transformed[0];
-						y = transformed[1];
-						z = transformed[2];
-					}
-
 					//only store the first width*height positions (the rest are evenly spaced at different depths)
 					if (positionIndex < xSize * ySize)
 					{
-						Position position =
-								PositionWithCoord.fromDegrees(y, x, z, positionIndex % xSize, positionIndex / xSize);
-						positions.add(position);
-					}
-
-					if (positionIndex == 0)
-					{
-						firstXValue = x;
-						firstYValue = y;
-					}
-					else if (positionIndex == 1)
-					{
-						//second x value
-						reverseX = x < firstXValue;
-					}
-					else if (positionIndex == xSize)
-					{
-						//second y value
-						reverseY = y < firstYValue;
+						points.add(x);
+						points.add(y);
+						points.add(z);
 					}
 
 					//put the data into the float array
@@ -257,9 +227,22 @@ public class GocadSGridReader implements GocadReader<FastShape>
 				}
 			}
 
-			Validate.isTrue(positions.size() == xSize * ySize,
+			Validate.isTrue(points.size() == xSize * ySize * 3,
 					"Data file doesn't contain the correct number of positions");
 
+			//transform all the points in one batch
+			double[] transformed =
+					GocadVertexBuffer.toLatLonElevation(points.toArray(), parameters.getCoordinateTransformation());
+			for (int i = 0; i < xSize * ySize; i++)
+			{
+				positions.add(PositionWithCoord.fromDegrees(transformed[i * 3], transformed[i * 3 + 1],
+						transformed[i * 3 + 2], i % xSize, i / xSize));
+			}
+
+			//compare the second x and y values with the first (transformed is in lat/lon order)
+			boolean reverseX = xSize > 1 && transformed[3 + 1] < transformed[1];
+			boolean reverseY = ySize > 1 && transformed[xSize * 3] < transformed[0];
+
 			if (reverseX || reverseY)
 			{
 				//if the x-axis or y-axis are reversed, mirror them
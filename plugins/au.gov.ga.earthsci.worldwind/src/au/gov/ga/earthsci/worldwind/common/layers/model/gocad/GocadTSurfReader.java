@@ -15,242 +15,99 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
 
-import gov.nasa.worldwind.geom.Position;
-
 import java.awt.Color;
 import java.net.URL;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.media.opengl.GL2;
 
 import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
 import au.gov.ga.earthsci.worldwind.common.util.ColorMap;
+import au.gov.ga.earthsci.worldwind.common.util.GrowableIntArray;
 
 /**
  * {@link GocadReader} implementation for reading TSurf GOCAD files.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
-public class GocadTSurfReader implements GocadReader<FastShape>
+public class GocadTSurfReader implements GocadLexerReader<FastShape>
 {
 	public final static String HEADER_REGEX = "(?i).*tsurf.*";
 
-	private final static Pattern trianglePattern = Pattern.compile("TRGL\\s+(\\d+)\\s+(\\d+)\\s+(\\d+).*");
-
 	private GocadReaderParameters parameters;
-	private List<Position> positions;
-	private List<Float> values;
-	private float min, max;
-	private List<Integer> triangleIds;
+	private GocadLexer lineLexer;
+	private GocadVertexBuffer vertices;
+	private GrowableIntArray triangleIds;
 	private Color color;
 	private ColorMap colorMap;
-	private Map<Integer, Integer> vertexIdMap;
 	private String name;
-	private boolean zPositive = true;
-	private String paintedVariableName;
-	private int paintedVariableId = 0;
-	private float noDataValue = -Float.MAX_VALUE;
 
 	@Override
 	public void begin(GocadReaderParameters parameters)
 	{
 		this.parameters = parameters;
-		positions = new ArrayList<Position>();
-		values = new ArrayList<Float>();
-		min = Float.MAX_VALUE;
-		max = -Float.MAX_VALUE;
-		triangleIds = new ArrayList<Integer>();
-		vertexIdMap = new HashMap<Integer, Integer>();
-		paintedVariableName = parameters.getPaintedVariable();
+		lineLexer = new GocadLexer();
+		vertices = new GocadVertexBuffer(parameters, true, true);
+		triangleIds = new GrowableIntArray(3 * 1024);
 	}
 
 	@Override
 	public void addLine(String line)
 	{
-		Matcher matcher;
+		lineLexer.setLine(line);
+		addLine(lineLexer);
+	}
 
-		matcher = vertexPattern.matcher(line);
-		if (matcher.matches())
+	@Override
+	public void addLine(GocadLexer lexer)
+	{
+		if (vertices.addLine(lexer))
 		{
-			int id = Integer.parseInt(matcher.group(1));
-			if (vertexIdMap.containsKey(id))
-			{
-				throw new IllegalArgumentException("Duplicate vertex id: " + id);
-			}
-
-			double x = Double.parseDouble(matcher.group(2));
-			double y = Double.parseDouble(matcher.group(3));
-			double z = Double.parseDouble(matcher.group(4));
-			z = zPositive ? z : -z;
-			if (parameters.getCoordinateTransformation() != null)
-			{
-				double[] transformed = new double[3];
-				parameters.getCoordinateTransformation().TransformPoint(transformed, x, y, z);
-				x = transformed[0];
-				y = transformed[1];
-				z = transformed[2];
-			}
-			Position position = Position.fromDegrees(y, x, z);
-			vertexIdMap.put(id, positions.size());
-			positions.add(position);
-
-			float value = Float.NaN;
-			if (paintedVariableId <= 0)
-			{
-				value = (float) z;
-			}
-			else
-			{
-				double[] values = splitStringToDoubles(matcher.group(5));
-				if (paintedVariableId <= values.length)
-				{
-					value = (float) values[paintedVariableId - 1];
-				}
-			}
-			if (!Float.isNaN(value) && value != noDataValue)
-			{
-				min = Math.min(min, value);
-				max = Math.max(max, value);
-			}
-			values.add(value);
-
 			return;
 		}
 
-		matcher = atomPattern.matcher(line);
-		if (matcher.matches())
+		if (lexer.keyword("TRGL"))
 		{
-			int id1 = Integer.parseInt(matcher.group(1));
-			int id2 = Integer.parseInt(matcher.group(2));
-
-			if (vertexIdMap.containsKey(id1))
-			{
-				throw new IllegalArgumentException("Duplicate vertex id: " + id1);
-			}
-			if (!vertexIdMap.containsKey(id2))
-			{
-				throw new IllegalArgumentException("Unknown vertex id: " + id2);
-			}
-
-			Position position = positions.get(vertexIdMap.get(id2));
-			vertexIdMap.put(id1, positions.size());
-			positions.add(position);
-
-			float value = Float.NaN;
-			if (paintedVariableId <= 0)
-			{
-				value = (float) position.elevation;
-			}
-			else
+			try
 			{
-				double[] values = splitStringToDoubles(matcher.group(3));
-				if (paintedVariableId <= values.length)
-				{
-					value = (float) values[paintedVariableId - 1];
-				}
+				int t1 = lexer.nextInt();
+				int t2 = lexer.nextInt();
+				int t3 = lexer.nextInt();
+				triangleIds.add(t1);
+				triangleIds.add(t2);
+				triangleIds.add(t3);
 			}
-			if (!Float.isNaN(value) && value != noDataValue)
+			catch (NumberFormatException e)
 			{
-				min = Math.min(min, value);
-				max = Math.max(max, value);
+				//ignore malformed triangle lines
 			}
-			values.add(value);
-
-			return;
-		}
-
-		matcher = trianglePattern.matcher(line);
-		if (matcher.matches())
-		{
-			int t1 = Integer.parseInt(matcher.group(1));
-			int t2 = Integer.parseInt(matcher.group(2));
-			int t3 = Integer.parseInt(matcher.group(3));
-			triangleIds.add(t1);
-			triangleIds.add(t2);
-			triangleIds.add(t3);
 			return;
 		}
 
 		if (!parameters.isColorInformationAvailable())
 		{
-			matcher = solidColorPattern.matcher(line);
-			if (matcher.matches())
+			if (lexer.startsWith("*solid*color:") && lexer.hasMoreTokens())
 			{
-				color = GocadColor.gocadLineToColor(line);
+				color = GocadColor.gocadLineToColor(lexer.getLine());
 				return;
 			}
 
-			matcher = colormapColorsPattern.matcher(line);
-			if (matcher.matches())
+			if (lexer.startsWith("*colormap**colors:") && lexer.hasMoreTokens())
 			{
-				colorMap = addColorsToColorMap(line);
+				colorMap = addColorsToColorMap(lexer.getLine());
 				return;
 			}
 
-			matcher = colormapAlphaPattern.matcher(line);
-			if (matcher.matches())
+			if (lexer.startsWith("*colormap*alphas:") && lexer.hasMoreTokens())
 			{
-				colorMap = addAlphasToColorMap(line);
+				colorMap = addAlphasToColorMap(lexer.getLine());
 				return;
 			}
 		}
 
-		matcher = namePattern.matcher(line);
-		if (matcher.matches())
+		if (lexer.startsWith("name:"))
 		{
-			name = matcher.group(1);
-			return;
-		}
-
-		matcher = zpositivePattern.matcher(line);
-		if (matcher.matches())
-		{
-			zPositive = !matcher.group(1).equalsIgnoreCase("depth");
-			return;
-		}
-
-		matcher = paintedVariablePattern.matcher(line);
-		if (matcher.matches())
-		{
-			if (parameters.getPaintedVariable() == null)
-			{
-				paintedVariableName = matcher.group(1);
-			}
-			return;
-		}
-
-		matcher = propertiesPattern.matcher(line);
-		if (matcher.matches())
-		{
-			String properties = matcher.group(1).trim();
-			String[] split = properties.split("\\s+");
-			for (int i = 0; i < split.length; i++)
-			{
-				if (split[i].equalsIgnoreCase(paintedVariableName))
-				{
-					paintedVariableId = i + 1;
-					break;
-				}
-			}
-			return;
-		}
-
-		matcher = nodataValuesPattern.matcher(line);
-		if (matcher.matches())
-		{
-			double[] values = splitStringToDoubles(matcher.group(1));
-			if (0 < paintedVariableId && paintedVariableId <= values.length)
-			{
-				noDataValue = (float) values[paintedVariableId - 1];
-			}
+			name = lexer.rest();
 			return;
 		}
 	}
@@ -258,22 +115,14 @@ public class GocadTSurfReader implements GocadReader<FastShape>
 	@Override
 	public FastShape end(URL context)
 	{
-		IntBuffer indicesBuffer = IntBuffer.allocate(triangleIds.size());
-		for (Integer i : triangleIds)
-		{
-			if (!vertexIdMap.containsKey(i))
-			{
-				throw new IllegalArgumentException("Unknown vertex id: " + i);
-			}
-			indicesBuffer.put(vertexIdMap.get(i));
-		}
+		int[] indices = vertices.idsToIndices(triangleIds);
 
 		if (name == null)
 		{
 			name = "TSurf";
 		}
 
-		FastShape shape = new FastShape(positions, indicesBuffer.array(), GL2.GL_TRIANGLES);
+		FastShape shape = new FastShape(vertices.getPositions(), indices, GL2.GL_TRIANGLES);
 		shape.setName(name);
 		shape.setLighted(true);
 		shape.setTwoSidedLighting(true);
@@ -286,7 +135,7 @@ public class GocadTSurfReader implements GocadReader<FastShape>
 		// (4) Colour from the GOCAD file
 		if (parameters.getColorMap() != null)
 		{
-			float[] colorBuffer = createColorBufferFromColorMap(parameters.getColorMap());
+			float[] colorBuffer = vertices.createColorBuffer(parameters.getColorMap());
 			shape.setColorBufferElementSize(4);
 			shape.setColorBuffer(colorBuffer);
 		}
@@ -296,7 +145,7 @@ public class GocadTSurfReader implements GocadReader<FastShape>
 		}
 		else if (colorMap != null)
 		{
-			float[] colorBuffer = createColorBufferFromColorMap(colorMap);
+			float[] colorBuffer = vertices.createColorBuffer(colorMap);
 			shape.setColorBufferElementSize(4);
 			shape.setColorBuffer(colorBuffer);
 		}
@@ -401,23 +250,4 @@ public class GocadTSurfReader implements GocadReader<FastShape>
 
 		return result;
 	}
-
-	private float[] createColorBufferFromColorMap(ColorMap colorMap)
-	{
-		FloatBuffer colorBuffer = FloatBuffer.allocate(positions.size() * 4);
-		for (float value : values)
-		{
-			if (Float.isNaN(value) || value == noDataValue)
-			{
-				colorBuffer.put(0).put(0).put(0).put(0);
-			}
-			else
-			{
-				Color color = colorMap.calculateColorNotingIsValuesPercentages(value, min, max);
-				colorBuffer.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f)
-						.put(color.getAlpha() / 255f);
-			}
-		}
-		return colorBuffer.array();
-	}
 }
@@ -15,17 +15,8 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
 
-import gov.nasa.worldwind.geom.Position;
-
 import java.awt.Color;
 import java.net.URL;
-import java.nio.FloatBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.media.opengl.GL2;
 
@@ -36,110 +27,61 @@ import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
  * 
  * @author James Navin (james.navin@ga.gov.au)
  */
-public class GocadVSetReader implements GocadReader<FastShape>
+public class GocadVSetReader implements GocadLexerReader<FastShape>
 {
 
 	public final static String HEADER_REGEX = "(?i).*vset.*";
 
-	private final static Pattern atomSizePattern = Pattern.compile("\\*atoms\\*size:(.+)");
-	private final static Pattern atomColorPattern = Pattern.compile("\\*atoms\\*color:.+");
-
 	private GocadReaderParameters parameters;
-	private List<Position> positions;
+	private GocadLexer lineLexer;
+	private GocadVertexBuffer vertices;
 
-	private boolean zPositive;
 	private String name;
 	private Float size;
 	private Color color;
 
-	private List<Float> values;
-	private float min, max;
-	private String paintedVariableName;
-	private int paintedVariableId = 0;
-	private float noDataValue = -Float.MAX_VALUE;
-	private Map<Integer, Integer> vertexIdMap;
-
 	@Override
 	public void begin(GocadReaderParameters parameters)
 	{
 		this.parameters = parameters;
-		positions = new ArrayList<Position>();
-		values = new ArrayList<Float>();
-		min = Float.MAX_VALUE;
-		max = -Float.MAX_VALUE;
-		vertexIdMap = new HashMap<Integer, Integer>();
-		paintedVariableName = parameters.getPaintedVariable();
+		lineLexer = new GocadLexer();
+		vertices = new GocadVertexBuffer(parameters, false, false);
 	}
 
 	@Override
 	public void addLine(String line)
 	{
-		Matcher matcher;
-
-		// Vertex / PVertex
-		matcher = vertexPattern.matcher(line);
-		if (matcher.matches())
-		{
-			processVertexLine(matcher);
-			return;
-		}
+		lineLexer.setLine(line);
+		addLine(lineLexer);
+	}
 
-		// ZPOSITIVE directive
-		matcher = zpositivePattern.matcher(line);
-		if (matcher.matches())
+	@Override
+	public void addLine(GocadLexer lexer)
+	{
+		// Vertex / PVertex, ZPOSITIVE, NODATA, properties and painted variable
+		if (vertices.addLine(lexer))
 		{
-			zPositive = !matcher.group(1).equalsIgnoreCase("depth");
 			return;
 		}
 
 		// Atom size
-		matcher = atomSizePattern.matcher(line);
-		if (matcher.matches())
+		if (lexer.startsWith("*atoms*size:") && lexer.hasMoreTokens())
 		{
-			size = Float.parseFloat(matcher.group(1));
+			size = Float.parseFloat(lexer.rest());
 			return;
 		}
 
 		// Atom color
-		matcher = atomColorPattern.matcher(line);
-		if (matcher.matches())
-		{
-			color = GocadColor.gocadLineToColor(line);
-			return;
-		}
-
-		// NODATA value
-		matcher = nodataValuesPattern.matcher(line);
-		if (matcher.matches())
-		{
-			processNodataValue(matcher);
-			return;
-		}
-
-		// Properties
-		matcher = propertiesPattern.matcher(line);
-		if (matcher.matches())
-		{
-			processPropertiesLine(matcher);
-			return;
-		}
-
-		// Painted variable
-		matcher = paintedVariablePattern.matcher(line);
-		if (matcher.matches())
+		if (lexer.startsWith("*atoms*color:") && lexer.hasMoreTokens())
 		{
-			if (parameters.getPaintedVariable() == null)
-			{
-				paintedVariableName = matcher.group(1);
-			}
+			color = GocadColor.gocadLineToColor(lexer.getLine());
 			return;
 		}
 
 		// Name
-		matcher = namePattern.matcher(line);
-		if (matcher.matches())
+		if (lexer.startsWith("name:"))
 		{
-			name = matcher.group(1);
+			name = lexer.rest();
 			return;
 		}
 	}
@@ -152,7 +94,7 @@ public class GocadVSetReader implements GocadReader<FastShape>
 			name = "VSet";
 		}
 
-		FastShape shape = new FastShape(positions, GL2.GL_POINTS);
+		FastShape shape = new FastShape(vertices.getPositions(), null, GL2.GL_POINTS);
 		shape.setName(name);
 
 		if (parameters.getPointSize() != null)
@@ -172,7 +114,7 @@ public class GocadVSetReader implements GocadReader<FastShape>
 
 		if (parameters.getColorMap() != null)
 		{
-			float[] colorBuffer = createColorBuffer();
+			float[] colorBuffer = vertices.createColorBuffer(parameters.getColorMap());
 			shape.setColorBufferElementSize(4);
 			shape.setColorBuffer(colorBuffer);
 		}
@@ -187,101 +129,4 @@ public class GocadVSetReader implements GocadReader<FastShape>
 
 		return shape;
 	}
-
-	private float[] createColorBuffer()
-	{
-		FloatBuffer colorBuffer = FloatBuffer.allocate(positions.size() * 4);
-		for (float value : values)
-		{
-			if (Float.isNaN(value) || value == noDataValue)
-			{
-				colorBuffer.put(0).put(0).put(0).put(0);
-			}
-			else
-			{
-				Color color = parameters.getColorMap().calculateColorNotingIsValuesPercentages(value, min, max);
-				colorBuffer.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f)
-						.put(color.getAlpha() / 255f);
-			}
-		}
-		return colorBuffer.array();
-	}
-
-	private void processVertexLine(Matcher matcher)
-	{
-		int id = Integer.parseInt(matcher.group(1));
-
-		Position position =
-				createPositionFromVertex(Double.parseDouble(matcher.group(2)), Double.parseDouble(matcher.group(3)),
-						Double.parseDouble(matcher.group(4)));
-		positions.add(position);
-
-		vertexIdMap.put(id, positions.size() - 1);
-
-		float value = Float.NaN;
-		if (paintedVariableId <= 0)
-		{
-			value = (float) position.elevation;
-		}
-		else
-		{
-			double[] values = GocadTSurfReader.splitStringToDoubles(matcher.group(5));
-			if (paintedVariableId <= values.length)
-			{
-				value = (float) values[paintedVariableId - 1];
-			}
-		}
-
-		if (!Float.isNaN(value) && value != noDataValue)
-		{
-			min = Math.min(min, value);
-			max = Math.max(max, value);
-		}
-
-		values.add(value);
-	}
-
-	private Position createPositionFromVertex(double x, double y, double z)
-	{
-		if (!zPositive)
-		{
-			z = -z;
-		}
-		double[] xyz = transformVertex(x, y, z);
-		return Position.fromDegrees(xyz[1], xyz[0], xyz[2]);
-	}
-
-	private double[] transformVertex(double... xyz)
-	{
-		if (parameters.getCoordinateTransformation() == null)
-		{
-			return xyz;
-		}
-		parameters.getCoordinateTransformation().TransformPoint(xyz);
-		return xyz;
-	}
-
-	private void processNodataValue(Matcher matcher)
-	{
-		double[] values = GocadTSurfReader.splitStringToDoubles(matcher.group(1));
-		if (0 < paintedVariableId && paintedVariableId <= values.length)
-		{
-			noDataValue = (float) values[paintedVariableId - 1];
-		}
-	}
-
-	private void processPropertiesLine(Matcher matcher)
-	{
-		String properties = matcher.group(1).trim();
-		String[] split = properties.split("\\s+");
-		for (int i = 0; i < split.length; i++)
-		{
-			if (split[i].equalsIgnoreCase(paintedVariableName))
-			{
-				paintedVariableId = i + 1;
-				break;
-			}
-		}
-	}
-
 }
@@ -0,0 +1,341 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
+
+import org.gdal.osr.CoordinateTransformation;
+
+import au.gov.ga.earthsci.worldwind.common.util.ColorLookupTable;
+import au.gov.ga.earthsci.worldwind.common.util.ColorMap;
+import au.gov.ga.earthsci.worldwind.common.util.CoordinateTransformationUtil;
+import au.gov.ga.earthsci.worldwind.common.util.GrowableDoubleArray;
+import au.gov.ga.earthsci.worldwind.common.util.GrowableFloatArray;
+import au.gov.ga.earthsci.worldwind.common.util.GrowableIntArray;
+import au.gov.ga.earthsci.worldwind.common.util.IntIntHashMap;
+
+/**
+ * Accumulates the vertices (VRTX/PVRTX and ATOM/PATOM lines) and per-vertex
+ * property values of a GOCAD object into primitive arrays, along with the
+ * vertex-related header lines (ZPOSITIVE, PROPERTIES, NO_DATA_VALUES and
+ * *painted*variable). Shared by the {@link GocadLexerReader} implementations.
+ * <p/>
+ * Vertices are stored untransformed, and are transformed to (latitude,
+ * longitude, elevation) in a single batch when the positions are first
+ * requested.
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class GocadVertexBuffer
+{
+	private final GocadReaderParameters parameters;
+	private final boolean allowAtoms;
+	private final GrowableDoubleArray positions = new GrowableDoubleArray(3 * 1024);
+	private final GrowableFloatArray values = new GrowableFloatArray(1024);
+	private final IntIntHashMap vertexIdMap = new IntIntHashMap(1024);
+	private double[] transformedPositions;
+	private float min = Float.MAX_VALUE;
+	private float max = -Float.MAX_VALUE;
+	private boolean zPositive;
+	private String paintedVariableName;
+	private int paintedVariableId = 0;
+	private float noDataValue = -Float.MAX_VALUE;
+
+	/**
+	 * @param parameters
+	 *            Reader parameters
+	 * @param zPositive
+	 *            Default z direction, used if the object has no ZPOSITIVE line
+	 * @param allowAtoms
+	 *            Should ATOM lines be read, and duplicate vertex ids be
+	 *            rejected?
+	 */
+	public GocadVertexBuffer(GocadReaderParameters parameters, boolean zPositive, boolean allowAtoms)
+	{
+		this.parameters = parameters;
+		this.zPositive = zPositive;
+		this.allowAtoms = allowAtoms;
+		this.paintedVariableName = parameters.getPaintedVariable();
+	}
+
+	/**
+	 * Read the current line of the lexer if it is a vertex-related line.
+	 *
+	 * @param lexer
+	 * @return True if the line was consumed by this buffer
+	 */
+	public boolean addLine(GocadLexer lexer)
+	{
+		if (lexer.keyword("VRTX") || lexer.keyword("PVRTX"))
+		{
+			addVertex(lexer);
+			return true;
+		}
+		if (allowAtoms && (lexer.keyword("ATOM") || lexer.keyword("PATOM")))
+		{
+			addAtom(lexer);
+			return true;
+		}
+		if (lexer.keyword("ZPOSITIVE"))
+		{
+			String direction = lexer.nextToken();
+			if (direction != null)
+			{
+				zPositive = !direction.equalsIgnoreCase("depth");
+			}
+			return true;
+		}
+		if (lexer.startsWith("*painted*variable:"))
+		{
+			if (parameters.getPaintedVariable() == null)
+			{
+				paintedVariableName = lexer.rest().trim();
+			}
+			return true;
+		}
+		if (lexer.keyword("PROPERTIES"))
+		{
+			String property;
+			for (int i = 1; (property = lexer.nextToken()) != null; i++)
+			{
+				if (property.equalsIgnoreCase(paintedVariableName))
+				{
+					paintedVariableId = i;
+					break;
+				}
+			}
+			return true;
+		}
+		if (lexer.startsWith("NO_DATA_VALUES"))
+		{
+			if (paintedVariableId > 0)
+			{
+				double value = lexer.nthDouble(paintedVariableId);
+				if (!Double.isNaN(value))
+				{
+					noDataValue = (float) value;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private void addVertex(GocadLexer lexer)
+	{
+		int id;
+		double x, y, z;
+		try
+		{
+			id = lexer.nextInt();
+			x = lexer.nextDouble();
+			y = lexer.nextDouble();
+			z = lexer.nextDouble();
+		}
+		catch (NumberFormatException e)
+		{
+			//ignore malformed vertex lines
+			return;
+		}
+		if (allowAtoms && vertexIdMap.containsKey(id))
+		{
+			throw new IllegalArgumentException("Duplicate vertex id: " + id);
+		}
+
+		z = zPositive ? z : -z;
+
+		vertexIdMap.put(id, values.size());
+		positions.add(x);
+		positions.add(y);
+		positions.add(z);
+		addValue(lexer, z);
+	}
+
+	private void addAtom(GocadLexer lexer)
+	{
+		int id1, id2;
+		try
+		{
+			id1 = lexer.nextInt();
+			id2 = lexer.nextInt();
+		}
+		catch (NumberFormatException e)
+		{
+			//ignore malformed atom lines
+			return;
+		}
+		if (vertexIdMap.containsKey(id1))
+		{
+			throw new IllegalArgumentException("Duplicate vertex id: " + id1);
+		}
+		int index = vertexIdMap.get(id2, -1);
+		if (index < 0)
+		{
+			throw new IllegalArgumentException("Unknown vertex id: " + id2);
+		}
+
+		vertexIdMap.put(id1, values.size());
+		double elevation = positions.get(index * 3 + 2);
+		positions.add(positions.get(index * 3 + 0));
+		positions.add(positions.get(index * 3 + 1));
+		positions.add(elevation);
+		addValue(lexer, elevation);
+	}
+
+	private void addValue(GocadLexer lexer, double elevation)
+	{
+		float value = Float.NaN;
+		if (paintedVariableId <= 0)
+		{
+			value = (float) elevation;
+		}
+		else
+		{
+			value = (float) lexer.nthDouble(paintedVariableId);
+		}
+		if (!Float.isNaN(value) && value != noDataValue)
+		{
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		values.add(value);
+	}
+
+	/**
+	 * Convert a list of vertex ids to vertex indices.
+	 *
+	 * @param ids
+	 *            Vertex ids, as referenced by TRGL/SEG lines
+	 * @return Array of indices into the vertex array
+	 * @throws IllegalArgumentException
+	 *             If an id doesn't reference a vertex
+	 */
+	public int[] idsToIndices(GrowableIntArray ids)
+	{
+		int[] indices = new int[ids.size()];
+		for (int i = 0; i < indices.length; i++)
+		{
+			int id = ids.get(i);
+			int index = vertexIdMap.get(id, -1);
+			if (index < 0)
+			{
+				throw new IllegalArgumentException("Unknown vertex id: " + id);
+			}
+			indices[i] = index;
+		}
+		return indices;
+	}
+
+	/**
+	 * @return Number of vertices read
+	 */
+	public int getVertexCount()
+	{
+		return values.size();
+	}
+
+	/**
+	 * @return Packed array of (latitude, longitude, elevation) triples for
+	 *         each vertex read
+	 */
+	public double[] getPositions()
+	{
+		transform();
+		return transformedPositions;
+	}
+
+	/**
+	 * Transform the vertices read to (latitude, longitude, elevation), if not
+	 * already transformed. Values taken from the vertex elevation are updated
+	 * to the transformed elevation.
+	 */
+	private void transform()
+	{
+		if (transformedPositions != null)
+		{
+			return;
+		}
+
+		CoordinateTransformation transformation = parameters.getCoordinateTransformation();
+		transformedPositions = toLatLonElevation(positions.toArray(), transformation);
+		if (paintedVariableId <= 0 && !CoordinateTransformationUtil.isIdentity(transformation))
+		{
+			min = Float.MAX_VALUE;
+			max = -Float.MAX_VALUE;
+			for (int i = 0; i < values.size(); i++)
+			{
+				float value = (float) transformedPositions[i * 3 + 2];
+				values.set(i, value);
+				if (!Float.isNaN(value) && value != noDataValue)
+				{
+					min = Math.min(min, value);
+					max = Math.max(max, value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Transform an array of points in place, and reorder each point from
+	 * (x, y, z) to (y, x, z), so that the points can be passed to a
+	 * {@link au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape}
+	 * as (latitude, longitude, elevation) triples.
+	 *
+	 * @param points
+	 *            Packed array of (x, y, z) triples
+	 * @param transformation
+	 *            Transformation to apply, or null
+	 * @return The points array
+	 */
+	public static double[] toLatLonElevation(double[] points, CoordinateTransformation transformation)
+	{
+		CoordinateTransformationUtil.transformPoints(transformation, points);
+		for (int i = 0; i < points.length; i += 3)
+		{
+			double x = points[i];
+			points[i] = points[i + 1];
+			points[i + 1] = x;
+		}
+		return points;
+	}
+
+	/**
+	 * Create an RGBA color buffer, containing a color for each vertex
+	 * calculated from the vertex's painted variable value.
+	 *
+	 * @param colorMap
+	 *            Color map to use
+	 * @return Color buffer
+	 */
+	public float[] createColorBuffer(ColorMap colorMap)
+	{
+		transform();
+		int count = values.size();
+		float[] colorBuffer = new float[count * 4];
+		ColorLookupTable lookupTable = colorMap.getLookupTable(ColorLookupTable.DEFAULT_SIZE, min, max);
+		for (int i = 0, j = 0; i < count; i++, j += 4)
+		{
+			float value = values.get(i);
+			if (!Float.isNaN(value) && value != noDataValue)
+			{
+				int argb = lookupTable.getColor(value);
+				colorBuffer[j + 0] = ((argb >> 16) & 0xff) / 255f;
+				colorBuffer[j + 1] = ((argb >> 8) & 0xff) / 255f;
+				colorBuffer[j + 2] = (argb & 0xff) / 255f;
+				colorBuffer[j + 3] = (argb >>> 24) / 255f;
+			}
+		}
+		return colorBuffer;
+	}
+}
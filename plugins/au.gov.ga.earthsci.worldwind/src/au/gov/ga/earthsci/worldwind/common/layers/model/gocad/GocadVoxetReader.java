@@ -15,22 +15,23 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
 
-import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Vec4;
 
 import java.awt.Color;
 import java.io.BufferedInputStream;
-import java.io.InputStream;
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.nio.FloatBuffer;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.regex.Matcher;
 
 import javax.media.opengl.GL2;
 
 import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.earthsci.worldwind.common.util.ColorLookupTable;
+import au.gov.ga.earthsci.worldwind.common.util.GrowableDoubleArray;
 import au.gov.ga.earthsci.worldwind.common.util.HSLColor;
+import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
 import au.gov.ga.earthsci.worldwind.common.util.Validate;
 import au.gov.ga.earthsci.worldwind.common.util.io.FloatReader;
 import au.gov.ga.earthsci.worldwind.common.util.io.FloatReader.FloatFormat;
@@ -209,120 +210,86 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 		long[] axisN = calculateAxisN();
 		int[] samples = calculateSamples(strides, axisN);
 
-		List<Position> positions = new ArrayList<Position>();
+		GrowableDoubleArray positions = new GrowableDoubleArray();
 		float[] values = createValuesArray(samples);
 
-		double[] transformed = new double[3];
 		float[] minmax = new float[] { Float.MAX_VALUE, -Float.MAX_VALUE };
 		try
 		{
-			URL fileUrl = new URL(context, file);
-			InputStream is = new BufferedInputStream(fileUrl.openStream());
-			FloatReader reader = FloatReader.Builder.newFloatReaderForStream(is)
-					.withOffset(offset)
-					.withFormat(FloatFormat.valueOf(etype))
-					.withByteOrder(parameters.getByteOrder())
-					.build();
-			float[] floatValue = new float[1];
-			if (parameters.isBilinearMinification())
+			FloatReader reader = createFloatReader(context);
+			try
 			{
-				//contains the number of values summed
-				int[] count = new int[values.length];
-
-				//read all the values, and sum them in regions
-				for (int w = 0; w < axisN[W]; w++)
+				if (parameters.isBilinearMinification())
 				{
-					int wRegion = (w / strides[W]) * samples[V] * samples[U];
-					for (int v = 0; v < axisN[V]; v++)
+					readBilinear(reader, strides, axisN, samples, values, minmax);
+
+					//create points for each summed region that has a value
+					int valueIndex = 0;
+					for (int w = 0; w < axisN[W]; w += strides[W])
 					{
-						int vRegion = (v / strides[V]) * samples[U];
-						for (int u = 0; u < axisN[U]; u++)
+						for (int v = 0; v < axisN[V]; v += strides[V])
 						{
-							reader.readNextValues(floatValue);
-							if (!Float.isNaN(floatValue[0]) && floatValue[0] != noDataValue)
+							for (int u = 0; u < axisN[U]; u += strides[U])
 							{
-								int uRegion = (u / strides[U]);
-								int valueIndex = wRegion + vRegion + uRegion;
-
-								//if this is the first value for this region, set it, otherwise add it
-								if (count[valueIndex] == 0)
-								{
-									values[valueIndex] = floatValue[0];
-								}
-								else
+								if (!Float.isNaN(values[valueIndex++]))
 								{
-									values[valueIndex] += floatValue[0];
+									addPosition(positions, origin, axisUStride, axisVStride, axisWStride, u, v, w);
 								}
-								count[valueIndex]++;
 							}
 						}
 					}
 				}
-
-				normaliseValues(values, minmax, count);
-
-				//create points for each summed region that has a value
-				for (int w = 0, wi = 0; w < axisN[W]; w += strides[W], wi++)
+				else
 				{
-					int wOffset = wi * samples[V] * samples[U];
-					Vec4 wAdd = axisWStride.multiply3(w);
-					for (int v = 0, vi = 0; v < axisN[V]; v += strides[V], vi++)
+					//non-bilinear is simple; we only need to read the input values that contribute to the points
+					boolean randomAccess = reader.isRandomAccess() && esize == 4;
+					float[] floatValue = new float[1];
+					int valueIndex = 0;
+					for (int w = 0; w < axisN[W]; w += strides[W])
 					{
-						int vOffset = vi * samples[U];
-						Vec4 vAdd = axisVStride.multiply3(v);
-						for (int u = 0, ui = 0; u < axisN[U]; u += strides[U], ui++)
+						for (int v = 0; v < axisN[V]; v += strides[V])
 						{
-							int uOffset = ui;
-							int valueIndex = wOffset + vOffset + uOffset;
-							float value = values[valueIndex];
-
-							if (!Float.isNaN(value))
+							long rowIndex = (w * axisN[V] + v) * axisN[U];
+							for (int u = 0; u < axisN[U]; u += strides[U])
 							{
-								Vec4 uAdd = axisUStride.multiply3(u);
-								Vec4 point = new Vec4(origin.x + uAdd.x + vAdd.x + wAdd.x,
-										origin.y + uAdd.y + vAdd.y + wAdd.y,
-										origin.z + uAdd.z + vAdd.z + wAdd.z);
+								float value;
+								if (randomAccess)
+								{
+									value = reader.readValue(rowIndex + u);
+								}
+								else
+								{
+									reader.readNextValues(floatValue);
+									value = floatValue[0];
+									reader.skip(esize * Math.min(strides[U] - 1, axisN[U] - u - 1));
+								}
+
+								if (!Float.isNaN(value) && value != noDataValue)
+								{
+									values[valueIndex] = value;
+									minmax[0] = Math.min(minmax[0], value);
+									minmax[1] = Math.max(minmax[1], value);
 
-								positions.add(createPositionFromPoint(transformed, point));
+									addPosition(positions, origin, axisUStride, axisVStride, axisWStride, u, v, w);
+								}
+								valueIndex++;
 							}
-						}
-					}
-				}
-			}
-			else
-			{
-				//non-bilinear is simple; we can skip over any input values that don't contribute to the points
-				int valueIndex = 0;
-				for (int w = 0; w < axisN[W]; w += strides[W])
-				{
-					Vec4 wAdd = axisWStride.multiply3(w);
-					for (int v = 0; v < axisN[V]; v += strides[V])
-					{
-						Vec4 vAdd = axisVStride.multiply3(v);
-						for (int u = 0; u < axisN[U]; u += strides[U])
-						{
-							reader.readNextValues(floatValue);
-							if (!Float.isNaN(floatValue[0]) && floatValue[0] != noDataValue)
+							if (!randomAccess)
 							{
-								values[valueIndex] = floatValue[0];
-								minmax[0] = Math.min(minmax[0], floatValue[0]);
-								minmax[1] = Math.max(minmax[1], floatValue[0]);
-
-								Vec4 uAdd = axisUStride.multiply3(u);
-								Vec4 point = new Vec4(origin.x + uAdd.x + vAdd.x + wAdd.x,
-										origin.y + uAdd.y + vAdd.y + wAdd.y,
-										origin.z + uAdd.z + vAdd.z + wAdd.z);
-
-								positions.add(createPositionFromPoint(transformed, point));
+								reader.skip(esize * axisN[U] * Math.min(strides[V] - 1, axisN[V] - v - 1));
 							}
-							valueIndex++;
-							reader.skip(esize * Math.min(strides[U] - 1, axisN[U] - u - 1));
 						}
-						reader.skip(esize * axisN[U] * Math.min(strides[V] - 1, axisN[V] - v - 1));
+						if (!randomAccess)
+						{
+							reader.skip(esize * axisN[U] * axisN[V] * Math.min(strides[W] - 1, axisN[W] - w - 1));
+						}
 					}
-					reader.skip(esize * axisN[U] * axisN[V] * Math.min(strides[W] - 1, axisN[W] - w - 1));
 				}
 			}
+			finally
+			{
+				reader.close();
+			}
 		}
 		catch (Exception e)
 		{
@@ -337,7 +304,9 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 			name = "Voxet";
 		}
 
-		FastShape shape = new FastShape(positions, GL2.GL_POINTS);
+		double[] points =
+				GocadVertexBuffer.toLatLonElevation(positions.toArray(), parameters.getCoordinateTransformation());
+		FastShape shape = new FastShape(points, null, GL2.GL_POINTS);
 		shape.setName(name);
 		shape.setColorBuffer(colorBuffer.array());
 		shape.setColorBufferElementSize(4);
@@ -361,18 +330,96 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 		}
 	}
 
-	private Position createPositionFromPoint(double[] transformed, Vec4 point)
+	/**
+	 * Read all the values from the reader, and average them in each
+	 * subsampled region.
+	 */
+	private void readBilinear(FloatReader reader, int[] strides, long[] axisN, int[] samples, float[] values,
+			float[] minmax) throws IOException
 	{
-		if (parameters.getCoordinateTransformation() != null)
+		//contains the number of values summed
+		int[] count = new int[values.length];
+
+		float[] row = new float[(int) axisN[U]];
+		float[] floatValue = new float[1];
+		for (int w = 0; w < axisN[W]; w++)
 		{
-			parameters.getCoordinateTransformation().TransformPoint(transformed, point.x, point.y,
-					zPositive ? point.z : -point.z);
-			return Position.fromDegrees(transformed[1], transformed[0], transformed[2]);
+			int wRegion = (w / strides[W]) * samples[V] * samples[U];
+			for (int v = 0; v < axisN[V]; v++)
+			{
+				int vRegion = (v / strides[V]) * samples[U];
+				if (reader.isRandomAccess() && esize == 4)
+				{
+					reader.readValues((w * axisN[V] + v) * axisN[U], 1, row, 0, row.length);
+				}
+				else
+				{
+					for (int u = 0; u < row.length; u++)
+					{
+						reader.readNextValues(floatValue);
+						row[u] = floatValue[0];
+					}
+				}
+				for (int u = 0; u < row.length; u++)
+				{
+					float value = row[u];
+					if (!Float.isNaN(value) && value != noDataValue)
+					{
+						int uRegion = (u / strides[U]);
+						int valueIndex = wRegion + vRegion + uRegion;
+
+						//if this is the first value for this region, set it, otherwise add it
+						if (count[valueIndex] == 0)
+						{
+							values[valueIndex] = value;
+						}
+						else
+						{
+							values[valueIndex] += value;
+						}
+						count[valueIndex]++;
+					}
+				}
+			}
+		}
+
+		normaliseValues(values, minmax, count);
+	}
+
+	/**
+	 * Create a {@link FloatReader} for the voxet's property file. Local files
+	 * are memory-mapped so that only the values required are read.
+	 */
+	private FloatReader createFloatReader(URL context) throws IOException
+	{
+		URL fileUrl = new URL(context, file);
+		File localFile = URLUtil.urlToFile(fileUrl);
+		FloatReader.Builder builder;
+		if (localFile != null && localFile.isFile())
+		{
+			builder = FloatReader.Builder.newFloatReaderForFile(localFile);
 		}
 		else
 		{
-			return Position.fromDegrees(point.y, point.x, zPositive ? point.z : -point.z);
+			builder = FloatReader.Builder.newFloatReaderForStream(new BufferedInputStream(fileUrl.openStream()));
 		}
+		return builder.withOffset(offset)
+				.withFormat(FloatFormat.valueOf(etype))
+				.withByteOrder(parameters.getByteOrder())
+				.build();
+	}
+
+	/**
+	 * Add the untransformed (x, y, z) coordinates of the given voxel to the
+	 * positions array.
+	 */
+	private void addPosition(GrowableDoubleArray positions, Vec4 origin, Vec4 axisUStride, Vec4 axisVStride,
+			Vec4 axisWStride, int u, int v, int w)
+	{
+		double z = origin.z + axisUStride.z * u + axisVStride.z * v + axisWStride.z * w;
+		positions.add(origin.x + axisUStride.x * u + axisVStride.x * v + axisWStride.x * w);
+		positions.add(origin.y + axisUStride.y * u + axisVStride.y * v + axisWStride.y * w);
+		positions.add(zPositive ? z : -z);
 	}
 
 	private void validateProperties()
@@ -385,19 +432,20 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 	private FloatBuffer createColorBuffer(float[] values, float[] minmax)
 	{
 		FloatBuffer colorBuffer = FloatBuffer.allocate(values.length * 4);
+		ColorLookupTable lookupTable = parameters.getColorMap() == null ? null :
+				parameters.getColorMap().getLookupTable(ColorLookupTable.DEFAULT_SIZE, minmax[0], minmax[1]);
 		for (float value : values)
 		{
 			//check that this value is valid; only non-NaN floats have points associated
 			if (!Float.isNaN(value))
 			{
-				if (parameters.getColorMap() != null)
+				if (lookupTable != null)
 				{
-					Color color = parameters.getColorMap().calculateColorNotingIsValuesPercentages(value,
-							minmax[0], minmax[1]);
-					colorBuffer.put(color.getRed() / 255f)
-							.put(color.getGreen() / 255f)
-							.put(color.getBlue() / 255f)
-							.put(color.getAlpha() / 255f);
+					int argb = lookupTable.getColor(value);
+					colorBuffer.put(((argb >> 16) & 0xff) / 255f)
+							.put(((argb >> 8) & 0xff) / 255f)
+							.put((argb & 0xff) / 255f)
+							.put((argb >>> 24) / 255f);
 				}
 				else
 				{
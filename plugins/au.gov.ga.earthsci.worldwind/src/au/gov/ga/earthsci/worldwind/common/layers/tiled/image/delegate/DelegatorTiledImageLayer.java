@@ -67,6 +67,10 @@ import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegatorLayer;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.ITileRequesterDelegate;
 import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.URLTransformerBasicTiledImageLayer;
+import au.gov.ga.earthsci.worldwind.common.retrieve.PrefetchBudget;
+import au.gov.ga.earthsci.worldwind.common.retrieve.Prefetchable;
+import au.gov.ga.earthsci.worldwind.common.retrieve.RetrievalPrioritizer;
+import au.gov.ga.earthsci.worldwind.common.retrieve.TilePrefetcher;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
 import au.gov.ga.earthsci.worldwind.common.util.DDSUncompressor;
 import au.gov.ga.earthsci.worldwind.common.util.XMLUtil;
@@ -88,7 +92,7 @@ import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer implements Bounded,
-		IDelegatorLayer<DelegatorTextureTile>
+		IDelegatorLayer<DelegatorTextureTile>, Prefetchable
 {
 	protected final Object fileLock;
 	protected final URL context;
@@ -700,11 +704,79 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		{
 			retriever.setValue(URLRetriever.EXTRACT_ZIP_ENTRY, "true");
 		}
+		retriever.setValue(AVKeyMore.RETRIEVAL_PRIORITIZER, createRetrievalPrioritizer(tile));
 		//WorldWind.getRetrievalService().runRetriever(retriever, tile.getPriority());
 		return retriever;
 		//MODIFIED
 	}
 
+	/**
+	 * Create a {@link RetrievalPrioritizer} for the given tile's retriever,
+	 * which prioritizes the retrieval by the tile's distance from the view,
+	 * and cancels it if the tile is no longer visible.
+	 * 
+	 * @param tile
+	 *            Tile being retrieved
+	 * @return Prioritizer for the tile's retriever
+	 */
+	protected RetrievalPrioritizer createRetrievalPrioritizer(final TextureTile tile)
+	{
+		return new RetrievalPrioritizer()
+		{
+			@Override
+			public double getRetrievalPriority(DrawContext dc)
+			{
+				if (!isEnabled() || !isLayerActive(dc) || !isTileVisible(dc, tile))
+				{
+					return Double.NaN;
+				}
+				Vec4 referencePoint = getReferencePoint(dc);
+				if (referencePoint == null)
+				{
+					return tile.getPriority();
+				}
+				return tile.getCentroidPoint(dc.getGlobe()).distanceTo3(referencePoint);
+			}
+		};
+	}
+
+	@Override
+	public void prefetch(Globe globe, Sector sector, double texelSize, PrefetchBudget budget)
+	{
+		if (!isEnabled() || !isNetworkRetrievalEnabled())
+		{
+			return;
+		}
+
+		Level level = TilePrefetcher.getPrefetchLevel(getLevels(), texelSize);
+		if (level == null)
+		{
+			return;
+		}
+
+		for (TileKey key : TilePrefetcher.getTileKeys(getLevels(), level, sector))
+		{
+			DelegatorTextureTile tile =
+					delegateKit.createTextureTile(getLevels().computeSectorForKey(key), level, key.getRow(),
+							key.getColumn());
+			if (getLevels().isResourceAbsent(tile)
+					|| TextureTile.getMemoryCache().getObject(tile.getTransformedTileKey()) != null
+					|| delegateKit.getLocalTileURL(tile, this, false) != null)
+			{
+				continue;
+			}
+			if (!budget.reserve())
+			{
+				return;
+			}
+			Retriever retriever = createRetriever(tile, null);
+			if (retriever != null)
+			{
+				budget.runRetriever(retriever);
+			}
+		}
+	}
+
 	@Override
 	protected void writeConfigurationParams(FileStore fileStore, AVList params)
 	{
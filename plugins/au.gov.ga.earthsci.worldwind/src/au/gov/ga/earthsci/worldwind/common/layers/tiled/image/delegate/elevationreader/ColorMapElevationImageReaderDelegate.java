@@ -29,6 +29,7 @@ import java.util.regex.Pattern;
 import org.w3c.dom.Element;
 
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegate;
+import au.gov.ga.earthsci.worldwind.common.util.ColorLookupTable;
 import au.gov.ga.earthsci.worldwind.common.util.ColorMap;
 import au.gov.ga.earthsci.worldwind.common.util.XMLUtil;
 
@@ -78,6 +79,7 @@ public class ColorMapElevationImageReaderDelegate extends ElevationImageReaderDe
 	private final static String DEFINITION_STRING = "ColorMapReader";
 
 	private final ColorMap colorMap;
+	private final ColorLookupTable lookupTable;
 
 	@SuppressWarnings("unused")
 	private ColorMapElevationImageReaderDelegate()
@@ -90,6 +92,7 @@ public class ColorMapElevationImageReaderDelegate extends ElevationImageReaderDe
 	{
 		super(pixelType, byteOrder, missingDataSignal);
 		this.colorMap = colorMap;
+		this.lookupTable = colorMap.getLookupTable(ColorLookupTable.DEFAULT_SIZE);
 	}
 
 	@Override
@@ -129,22 +132,13 @@ public class ColorMapElevationImageReaderDelegate extends ElevationImageReaderDe
 	{
 		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
 
-		for (int y = 0, i = 0; y < height; y++)
+		int[] rgbas = new int[width * height];
+		for (int i = 0; i < rgbas.length; i++)
 		{
-			for (int x = 0; x < width; x++, i++)
-			{
-				double elevation = elevations.getDouble(i);
-				if (elevation == missingDataSignal)
-				{
-					image.setRGB(x, y, 0);
-				}
-				else
-				{
-					int rgba = colorMap.calculateColor(elevation).getRGB();
-					image.setRGB(x, y, rgba);
-				}
-			}
+			double elevation = elevations.getDouble(i);
+			rgbas[i] = elevation == missingDataSignal ? 0 : lookupTable.getColor(elevation);
 		}
+		image.setRGB(0, 0, width, height, rgbas, 0, width);
 
 		return image;
 	}
@@ -34,14 +34,13 @@ import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.layers.AbstractLayer;
 import gov.nasa.worldwind.render.DrawContext;
 
-import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Arrays;
@@ -57,6 +56,7 @@ import au.gov.ga.earthsci.worldwind.common.layers.Wireframeable;
 import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
 import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShapeRenderListener;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
+import au.gov.ga.earthsci.worldwind.common.util.ColorLookupTable;
 import au.gov.ga.earthsci.worldwind.common.util.ColorMap;
 import au.gov.ga.earthsci.worldwind.common.util.CoordinateTransformationUtil;
 import au.gov.ga.earthsci.worldwind.common.util.GeometryUtil;
@@ -81,7 +81,8 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	protected double maxVariance = 0;
 	protected CoordinateTransformation coordinateTransformation;
 	protected String paintedVariable;
-	protected ColorMap colorMap;
+	protected volatile ColorMap colorMap;
+	protected volatile CachedColorLookupTable colorLookupTable;
 	protected Color noDataColor;
 	protected boolean reverseNormals = false;
 	protected boolean useOrderedRendering = false;
@@ -95,6 +96,25 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	protected int topOffset = 0, bottomOffset = 0, minXOffset = 0, maxXOffset = 0, minYOffset = 0, maxYOffset = 0;
 	protected int lastTopOffset = -1, lastBottomOffset = -1, lastMinXOffset = -1, lastMaxXOffset = -1,
 			lastMinYOffset = -1, lastMaxYOffset = -1;
+
+	protected static final int MIN_X_SLOT = 0, MAX_X_SLOT = 1, MIN_Y_SLOT = 2, MAX_Y_SLOT = 3, TOP_SLOT = 4,
+			BOTTOM_SLOT = 5;
+	protected final int[] textureSlices = new int[] { -1, -1, -1, -1, -1, -1 };
+	protected final VolumeSliceGenerator sliceGenerator = new VolumeSliceGenerator(
+			new VolumeSliceGenerator.SliceSource()
+			{
+				@Override
+				public void generateRow(int axis, int position, int width, int height, int y, int[] pixels)
+				{
+					generateSliceRow(axis, position, width, height, y, pixels);
+				}
+
+				@Override
+				public void sliceGenerated(int axis, int position)
+				{
+					firePropertyChange(AVKey.LAYER, null, BasicVolumeLayer.this);
+				}
+			});
 	protected double lastVerticalExaggeration = -Double.MAX_VALUE;
 
 	protected final double[] curtainTextureMatrix = new double[] { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1 };
@@ -317,8 +337,8 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 
 	/**
 	 * Recalculate any surfaces that require recalculation. This includes
-	 * regenerating textures when the user has dragged a surface to a different
-	 * slice.
+	 * requesting new textures when the user has dragged a surface to a
+	 * different slice, and applying any textures that have been generated.
 	 */
 	protected void recalculateSurfaces()
 	{
@@ -364,7 +384,6 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			TopBottomFastShape newMinXCurtain = dataProvider.createXCurtain(minXOffset);
 			minXCurtain.setPositions(newMinXCurtain.getPositions());
 
-			updateTexture(generateTexture(0, minXOffset, xTextureSize), minXTexture, minXCurtain);
 			lastMinXOffset = minXOffset;
 		}
 		if (recalculateMaxX)
@@ -374,7 +393,6 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			TopBottomFastShape newMaxXCurtain = dataProvider.createXCurtain(xSize - 1 - maxXOffset);
 			maxXCurtain.setPositions(newMaxXCurtain.getPositions());
 
-			updateTexture(generateTexture(0, maxXSlice, xTextureSize), maxXTexture, maxXCurtain);
 			lastMaxXOffset = maxXOffset;
 		}
 		if (recalculateMinY)
@@ -384,7 +402,6 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			TopBottomFastShape newMinYCurtain = dataProvider.createYCurtain(minYOffset);
 			minYCurtain.setPositions(newMinYCurtain.getPositions());
 
-			updateTexture(generateTexture(1, minYOffset, yTextureSize), minYTexture, minYCurtain);
 			lastMinYOffset = minYOffset;
 		}
 		if (recalculateMaxY)
@@ -394,15 +411,12 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			TopBottomFastShape newMaxYCurtain = dataProvider.createYCurtain(ySize - 1 - maxYOffset);
 			maxYCurtain.setPositions(newMaxYCurtain.getPositions());
 
-			updateTexture(generateTexture(1, maxYSlice, yTextureSize), maxYTexture, maxYCurtain);
 			lastMaxYOffset = maxYOffset;
 		}
 		if (recalculateTop)
 		{
 			topClipDirty = true;
 			double elevation = -dataProvider.getDepth() * topPercent;
-
-			updateTexture(generateTexture(2, topOffset, zTextureSize), topTexture, topSurface);
 			lastTopOffset = topOffset;
 
 			topSurface.setElevation(elevation);
@@ -417,8 +431,6 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 		{
 			bottomClipDirty = true;
 			double elevation = -dataProvider.getDepth() * bottomPercent;
-
-			updateTexture(generateTexture(2, bottomSlice, zTextureSize), bottomTexture, bottomSurface);
 			lastBottomOffset = bottomOffset;
 
 			bottomSurface.setElevation(elevation);
@@ -429,6 +441,49 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 
 			recalculateTextureMatrix(topPercent, bottomPercent);
 		}
+
+		//slice textures are generated in the background, and may lag behind the surfaces while dragging
+		updateSliceTexture(MIN_X_SLOT, 0, minXOffset, xTextureSize, minXTexture, minXCurtain);
+		updateSliceTexture(MAX_X_SLOT, 0, maxXSlice, xTextureSize, maxXTexture, maxXCurtain);
+		updateSliceTexture(MIN_Y_SLOT, 1, minYOffset, yTextureSize, minYTexture, minYCurtain);
+		updateSliceTexture(MAX_Y_SLOT, 1, maxYSlice, yTextureSize, maxYTexture, maxYCurtain);
+		updateSliceTexture(TOP_SLOT, 2, topOffset, zTextureSize, topTexture, topSurface);
+		updateSliceTexture(BOTTOM_SLOT, 2, bottomSlice, zTextureSize, bottomTexture, bottomSurface);
+	}
+
+	/**
+	 * Update the texture of the given surface to the given slice, if the
+	 * slice has been generated. Otherwise the slice is requested from the
+	 * {@link VolumeSliceGenerator}, and the surface keeps its current texture
+	 * until it is available.
+	 * 
+	 * @param slot
+	 *            Index of the surface in {@link #textureSlices}
+	 * @param axis
+	 *            Slicing axis
+	 * @param position
+	 *            Slice to display on the surface
+	 * @param size
+	 *            Size of the slice (before subsampling)
+	 * @param texture
+	 *            Texture to update
+	 * @param shape
+	 *            Shape to set texture in
+	 */
+	protected void updateSliceTexture(int slot, int axis, int position, Dimension size, TextureRenderer texture,
+			FastShape shape)
+	{
+		if (textureSlices[slot] == position)
+		{
+			return;
+		}
+		int height = getSliceHeight(axis, size);
+		int[] pixels = sliceGenerator.getSlice(slot, axis, position, size.width, height);
+		if (pixels != null)
+		{
+			updateTexture(pixels, size.width, height, texture, shape);
+			textureSlices[slot] = position;
+		}
 	}
 
 	/**
@@ -678,102 +733,164 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	}
 
 	/**
-	 * Generate a texture slice through the volume at the given position. Uses a
-	 * {@link ColorMap} to map values to colors (or simply interpolates the hue
-	 * if no colormap is provided - assumes values between 0 and 1).
+	 * @return The height of the texture for a slice along the given axis; the
+	 *         curtains are subsampled vertically if the data provider requires
+	 */
+	protected int getSliceHeight(int axis, Dimension size)
+	{
+		int zSubsamples = dataProvider.getZSubsamples();
+		return axis != 2 && zSubsamples > 1 ? size.height * zSubsamples : size.height;
+	}
+
+	/**
+	 * Generate a row of a texture slice through the volume at the given
+	 * position. Uses a {@link ColorMap} to map values to colors (or simply
+	 * interpolates the hue if no colormap is provided - assumes values between
+	 * 0 and 1). Called concurrently from the {@link VolumeSliceGenerator}'s
+	 * worker threads.
 	 * 
 	 * @param axis
 	 *            Slicing axis (0 for a longitude slice, 1 for a latitude slice,
 	 *            2 for an elevation slice).
 	 * @param position
 	 *            Longitude, latitude, or elevation at which to slice.
-	 * @param size
-	 *            Size of the texture to generate.
-	 * @return A {@link BufferedImage} containing a representation of the volume
-	 *         slice.
+	 * @param width
+	 *            Width of the texture to generate.
+	 * @param height
+	 *            Height of the texture to generate.
+	 * @param y
+	 *            Row of the texture to generate.
+	 * @param pixels
+	 *            Array to write the row of premultiplied ARGB pixels into,
+	 *            starting at <code>y * width</code>.
 	 */
-	protected BufferedImage generateTexture(int axis, int position, Dimension size)
+	protected void generateSliceRow(int axis, int position, int width, int height, int y, int[] pixels)
 	{
-		int zSubsamples = dataProvider.getZSubsamples();
-		boolean subsample = axis != 2 && zSubsamples > 1;
-		int height = size.height;
+		boolean subsample = axis != 2 && dataProvider.getZSubsamples() > 1;
+		float minimum = dataProvider.getMinValue();
+		float maximum = dataProvider.getMaxValue();
+		float noDataValue = dataProvider.getNoDataValue();
+		ColorLookupTable lookupTable = getColorLookupTable(minimum, maximum);
+		int noDataRGB = noDataColor != null ? noDataColor.getRGB() : 0;
+
+		int z1 = y, z2 = y;
+		float zp = 0;
 		if (subsample)
 		{
-			height *= zSubsamples;
+			double percent = y / (double) (height - 1);
+			double z = dataProvider.getElevationPercentSlice(percent);
+			z1 = (int) Math.floor(z);
+			z2 = (int) Math.ceil(z);
+			zp = (float) (z % 1.0);
 		}
 
-		BufferedImage image = new BufferedImage(size.width, height, BufferedImage.TYPE_INT_ARGB);
-		float minimum = dataProvider.getMinValue();
-		float maximum = dataProvider.getMaxValue();
-		for (int y = 0; y < height; y++)
+		for (int x = 0, i = y * width; x < width; x++, i++)
 		{
-			for (int x = 0; x < size.width; x++)
+			int vx = axis == 2 ? x : axis == 1 ? x : position;
+			int vy = axis == 2 ? y : axis == 1 ? position : x;
+			int vz = axis == 2 ? position : y;
+			float value;
+			if (subsample)
+			{
+				float value1 = dataProvider.getValue(vx, vy, z1);
+				float value2 = dataProvider.getValue(vx, vy, z2);
+				value = value1 * (1f - zp) + value2 * zp;
+			}
+			else
+			{
+				value = dataProvider.getValue(vx, vy, vz);
+			}
+			int rgb = noDataRGB;
+			if (value != noDataValue)
 			{
-				int vx = axis == 2 ? x : axis == 1 ? x : position;
-				int vy = axis == 2 ? y : axis == 1 ? position : x;
-				int vz = axis == 2 ? position : y;
-				float value;
-				if (subsample)
+				if (lookupTable != null)
 				{
-					double percent = y / (double) (height - 1);
-					double z = dataProvider.getElevationPercentSlice(percent);
-					int z1 = (int) Math.floor(z);
-					int z2 = (int) Math.ceil(z);
-					float value1 = dataProvider.getValue(vx, vy, z1);
-					float value2 = dataProvider.getValue(vx, vy, z2);
-					float zp = (float) (z % 1.0);
-					value = value1 * (1f - zp) + value2 * zp;
+					rgb = lookupTable.getColor(value);
 				}
 				else
 				{
-					value = dataProvider.getValue(vx, vy, vz);
+					rgb = Color.HSBtoRGB(-0.3f - value * 0.7f, 1.0f, 1.0f);
 				}
-				int rgb = noDataColor != null ? noDataColor.getRGB() : 0;
-				if (value != dataProvider.getNoDataValue())
-				{
-					if (colorMap != null)
-					{
-						rgb = colorMap.calculateColorNotingIsValuesPercentages(value, minimum, maximum).getRGB();
-					}
-					else
-					{
-						rgb = Color.HSBtoRGB(-0.3f - value * 0.7f, 1.0f, 1.0f);
-					}
-				}
-				image.setRGB(x, y, rgb);
 			}
+			pixels[i] = premultiply(rgb);
+		}
+	}
+
+	/**
+	 * @return The given ARGB colour with its color components premultiplied
+	 *         by its alpha, as stored by the {@link TextureRenderer}s
+	 */
+	protected static int premultiply(int argb)
+	{
+		int a = argb >>> 24;
+		if (a == 0xff)
+		{
+			return argb;
+		}
+		if (a == 0)
+		{
+			return 0;
+		}
+		int r = ((argb >> 16) & 0xff) * a / 0xff;
+		int g = ((argb >> 8) & 0xff) * a / 0xff;
+		int b = (argb & 0xff) * a / 0xff;
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+
+	/**
+	 * @return A lookup table compiled from the {@link ColorMap} for the given
+	 *         value range, or <code>null</code> if there is no colormap. The
+	 *         table is cached, as the slice textures are regenerated often;
+	 *         called concurrently by the slice generation threads.
+	 */
+	protected ColorLookupTable getColorLookupTable(float minimum, float maximum)
+	{
+		ColorMap colorMap = this.colorMap;
+		if (colorMap == null)
+		{
+			return null;
+		}
+		//a table built from a colormap that has since been replaced is never reused
+		CachedColorLookupTable cached = colorLookupTable;
+		if (cached == null || cached.colorMap != colorMap || cached.table.getMinValue() != Math.min(minimum, maximum)
+				|| cached.table.getMaxValue() != Math.max(minimum, maximum))
+		{
+			cached =
+					new CachedColorLookupTable(colorMap, colorMap.getLookupTable(ColorLookupTable.DEFAULT_SIZE,
+							minimum, maximum));
+			colorLookupTable = cached;
 		}
-		return image;
+		return cached.table;
 	}
 
 	/**
-	 * Update the given {@link TextureRenderer} with the provided image, and
-	 * sets the {@link FastShape}'s texture it.
+	 * Update the given {@link TextureRenderer} with the provided pixels, and
+	 * sets the {@link FastShape}'s texture it. The pixels are copied directly
+	 * into the renderer's image, which is then uploaded to the existing
+	 * texture with glTexSubImage2D.
 	 * 
-	 * @param image
-	 *            Image to update texture with
+	 * @param pixels
+	 *            Premultiplied ARGB pixels to update texture with
+	 * @param width
+	 *            Width of the pixels
+	 * @param height
+	 *            Height of the pixels
 	 * @param texture
 	 *            Texture to update
 	 * @param shape
 	 *            Shape to set texture in
 	 */
-	protected void updateTexture(BufferedImage image, TextureRenderer texture, FastShape shape)
+	protected void updateTexture(int[] pixels, int width, int height, TextureRenderer texture, FastShape shape)
 	{
-		Graphics2D g = null;
-		try
-		{
-			g = (Graphics2D) texture.getImage().getGraphics();
-			g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC));
-			g.drawImage(image, 0, 0, null);
-		}
-		finally
+		BufferedImage image = (BufferedImage) texture.getImage();
+		int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		int rowLength = Math.min(width, image.getWidth());
+		int rows = Math.min(height, image.getHeight());
+		for (int y = 0; y < rows; y++)
 		{
-			if (g != null)
-			{
-				g.dispose();
-			}
+			System.arraycopy(pixels, y * width, data, y * image.getWidth(), rowLength);
 		}
-		texture.markDirty(0, 0, texture.getWidth(), texture.getHeight());
+		texture.markDirty(0, 0, rowLength, rows);
 		shape.setTexture(texture.getTexture());
 	}
 
@@ -961,6 +1078,33 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 		boundingBoxShape.render(dc);
 	}
 
+	/**
+	 * @return The {@link ColorMap} used to colour the slices of this volume
+	 */
+	public ColorMap getColorMap()
+	{
+		return colorMap;
+	}
+
+	/**
+	 * Set the {@link ColorMap} used to colour the slices of this volume. The
+	 * slice textures are regenerated in the background from the already loaded
+	 * data, so the volume data is not reloaded.
+	 * 
+	 * @param colorMap
+	 */
+	public void setColorMap(ColorMap colorMap)
+	{
+		synchronized (dataLock)
+		{
+			this.colorMap = colorMap;
+			colorLookupTable = null;
+			sliceGenerator.clear();
+			Arrays.fill(textureSlices, -1);
+		}
+		firePropertyChange(AVKey.LAYER, null, this);
+	}
+
 	@Override
 	public boolean isWireframe()
 	{
@@ -1241,6 +1385,22 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 		}
 	}
 
+	/**
+	 * A {@link ColorLookupTable} paired with the {@link ColorMap} instance it
+	 * was compiled from.
+	 */
+	protected static class CachedColorLookupTable
+	{
+		public final ColorMap colorMap;
+		public final ColorLookupTable table;
+
+		public CachedColorLookupTable(ColorMap colorMap, ColorLookupTable table)
+		{
+			this.colorMap = colorMap;
+			this.table = table;
+		}
+	}
+
 	/**
 	 * {@link Comparator} used to sort {@link FastShape}s from back-to-front
 	 * (from the view eye point).
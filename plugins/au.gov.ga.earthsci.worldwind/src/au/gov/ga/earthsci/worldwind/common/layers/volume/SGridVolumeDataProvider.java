@@ -37,9 +37,9 @@ import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
-import org.gdal.osr.CoordinateTransformation;
-
 import au.gov.ga.earthsci.worldwind.common.layers.Bounds;
+import au.gov.ga.earthsci.worldwind.common.util.CoordinateTransformationUtil;
+import au.gov.ga.earthsci.worldwind.common.util.GrowableDoubleArray;
 import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
 import au.gov.ga.earthsci.worldwind.common.util.io.FloatReader;
 import au.gov.ga.earthsci.worldwind.common.util.io.FloatReader.FloatFormat;
@@ -169,12 +169,8 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 
 			Pattern linePattern = createAsciiLineMatchingPattern(getPaintedProperty());
 
-			CoordinateTransformation transformation = layer.getCoordinateTransformation();
-			double firstXValue = 0, firstYValue = 0, firstZValue = 0;
-			double[] transformed = new double[3];
+			GrowableDoubleArray points = new GrowableDoubleArray((xSize * ySize + zSize) * 3);
 			int positionIndex = 0;
-			zValues = new double[zSize];
-			int zSlice = 0;
 			String line;
 			BufferedReader reader = new BufferedReader(new InputStreamReader(dataInputStream));
 			while ((line = reader.readLine()) != null)
@@ -185,63 +181,12 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 					continue;
 				}
 
-				// Only need to look at positions in the first slice of the volume or in the first position of the top slice
-				boolean newZValue = positionIndex % (xSize * ySize) == 0;
-				if ((positionIndex < xSize * ySize) || (positionIndex == xSize * ySize * (zSize - 1)) || newZValue)
+				// Only need to look at positions in the first slice of the volume or in the first position of each other slice
+				if (isRequiredPosition(positionIndex))
 				{
-					double x = Double.parseDouble(matcher.group(1));
-					double y = Double.parseDouble(matcher.group(2));
-					double z = Double.parseDouble(matcher.group(3));
-
-					//transform the point;
-					if (transformation != null)
-					{
-						transformation.TransformPoint(transformed, x, y, z);
-						x = transformed[0];
-						y = transformed[1];
-						z = transformed[2];
-					}
-
-					//only store the first width*height positions (the rest are evenly spaced at different depths)
-					if (positionIndex < xSize * ySize)
-					{
-						Position position = Position.fromDegrees(y, x, z);
-						positions.add(position);
-						top += z / (xSize * ySize);
-
-						//update the sector to include this latitude/longitude
-						updateSectorToIncludePosition(position);
-					}
-
-					if (positionIndex == 0)
-					{
-						firstXValue = x;
-						firstYValue = y;
-						firstZValue = z;
-					}
-					else if (positionIndex == 1)
-					{
-						//second x value
-						reverseX = x < firstXValue;
-					}
-					else if (positionIndex == xSize)
-					{
-						//second y value
-						reverseY = y < firstYValue;
-					}
-					else if (positionIndex == xSize * ySize * (zSize - 1))
-					{
-						//positionIndex is the same x/y as 0, but at the bottom elevation instead of top,
-						//so we can calculate the depth as the difference between the two elevations
-						reverseZ = z > firstZValue;
-						depth = reverseZ ? z - firstZValue : firstZValue - z;
-						top += reverseZ ? depth : 0;
-					}
-
-					if (newZValue)
-					{
-						zValues[zSlice++] = z;
-					}
+					points.add(Double.parseDouble(matcher.group(1)));
+					points.add(Double.parseDouble(matcher.group(2)));
+					points.add(Double.parseDouble(matcher.group(3)));
 				}
 
 				float value = Float.parseFloat(matcher.group(4));
@@ -253,6 +198,8 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 
 				positionIndex++;
 			}
+
+			addPoints(points.toArray());
 		}
 		finally
 		{
@@ -270,6 +217,83 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 		}
 	}
 
+	/**
+	 * @return Is the position at the given index required to calculate the
+	 *         volume's positions, extents and z values? These are the
+	 *         positions in the first z slice, and the first position in
+	 *         each other z slice.
+	 */
+	private boolean isRequiredPosition(int positionIndex)
+	{
+		return positionIndex < xSize * ySize || positionIndex % (xSize * ySize) == 0;
+	}
+
+	/**
+	 * Transform the required points (see {@link #isRequiredPosition(int)})
+	 * in a single batch, and use them to calculate the volume's positions,
+	 * extents and z values.
+	 * 
+	 * @param points
+	 *            Packed array of untransformed (x, y, z) triples for each
+	 *            required position, in data file order
+	 */
+	private void addPoints(double[] points)
+	{
+		CoordinateTransformationUtil.transformPoints(layer.getCoordinateTransformation(), points);
+
+		int sliceSize = xSize * ySize;
+		double firstXValue = 0, firstYValue = 0, firstZValue = 0;
+		int zSlice = 0;
+		for (int i = 0; i < points.length / 3; i++)
+		{
+			int positionIndex = i < sliceSize ? i : (i - sliceSize + 1) * sliceSize;
+			double x = points[i * 3];
+			double y = points[i * 3 + 1];
+			double z = points[i * 3 + 2];
+
+			//only store the first width*height positions (the rest are evenly spaced at different depths)
+			if (positionIndex < sliceSize)
+			{
+				Position position = Position.fromDegrees(y, x, z);
+				positions.add(position);
+				top += z / sliceSize;
+
+				//update the sector to include this latitude/longitude
+				updateSectorToIncludePosition(position);
+			}
+
+			if (positionIndex == 0)
+			{
+				firstXValue = x;
+				firstYValue = y;
+				firstZValue = z;
+			}
+			else if (positionIndex == 1)
+			{
+				//second x value
+				reverseX = x < firstXValue;
+			}
+			else if (positionIndex == xSize)
+			{
+				//second y value
+				reverseY = y < firstYValue;
+			}
+			else if (positionIndex == sliceSize * (zSize - 1))
+			{
+				//positionIndex is the same x/y as 0, but at the bottom elevation instead of top,
+				//so we can calculate the depth as the difference between the two elevations
+				reverseZ = z > firstZValue;
+				depth = reverseZ ? z - firstZValue : firstZValue - z;
+				top += reverseZ ? depth : 0;
+			}
+
+			if (positionIndex % sliceSize == 0)
+			{
+				zValues[zSlice++] = z;
+			}
+		}
+	}
+
 	private boolean putDataValue(int positionIndex, float value)
 	{
 		if (!cellCentred)
@@ -300,90 +324,53 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 	 */
 	private void readBinaryDataFile(Object source) throws IOException
 	{
-		InputStream pointsInputStream = null;
-		InputStream propertiesInputStream = null;
+		FloatReader pointsReader = null;
+		FloatReader propertiesReader = null;
 		try
 		{
-			pointsInputStream = openSGridDataStream(source, pointsDataFile);
-			FloatReader pointsReader = FloatReader.Builder.newFloatReaderForStream(pointsInputStream)
+			pointsReader = newSGridDataReaderBuilder(source, pointsDataFile)
 					.withGroupSize(3)
 					.withOffset(pointsOffset)
 					.build();
 
-			CoordinateTransformation transformation = layer.getCoordinateTransformation();
-			double firstXValue = 0, firstYValue = 0, firstZValue = 0;
-			double[] transformed = new double[3];
+			GrowableDoubleArray points = new GrowableDoubleArray((xSize * ySize + zSize) * 3);
 			float[] coords = new float[3];
-			int zSlice = 0;
 			for (int positionIndex = 0; positionIndex < totalNumberOfPositions(); positionIndex++)
 			{
-				boolean newZValue = positionIndex % (xSize * ySize) == 0;
-
-				// We only care about a specific subset of points (bottom slice and first point on the top slice).
+				// We only care about a specific subset of points (bottom slice and first point on each other slice).
 				// All other points can be ignored
-				if ((positionIndex >= xSize * ySize) && (positionIndex != xSize * ySize * (zSize - 1)) && !newZValue)
+				if (!isRequiredPosition(positionIndex))
 				{
-					pointsReader.skipToNextGroup();
+					if (pointsReader.isRandomAccess())
+					{
+						//jump straight to the last position before the next z slice
+						positionIndex = (positionIndex / (xSize * ySize) + 1) * xSize * ySize - 1;
+					}
+					else
+					{
+						pointsReader.skipToNextGroup();
+					}
 					continue;
 				}
 
-				pointsReader.readNextValues(coords);
-
-				//transform the point;
-				if (transformation != null)
-				{
-					transformation.TransformPoint(transformed, coords[0], coords[1], coords[2]);
-					coords[0] = (float) transformed[0];
-					coords[1] = (float) transformed[1];
-					coords[2] = (float) transformed[2];
-				}
-
-				//only store the first width*height positions (the rest are evenly spaced at different depths)
-				if (positionIndex < xSize * ySize)
+				if (pointsReader.isRandomAccess())
 				{
-					Position position = Position.fromDegrees(coords[1], coords[0], coords[2]);
-					positions.add(position);
-					top += coords[2] / (xSize * ySize);
-
-					//update the sector to include this latitude/longitude
-					updateSectorToIncludePosition(position);
+					pointsReader.readValues(positionIndex * 3L, 1, coords, 0, 3);
 				}
-
-				if (positionIndex == 0)
+				else
 				{
-					firstXValue = coords[0];
-					firstYValue = coords[1];
-					firstZValue = coords[2];
-				}
-				else if (positionIndex == 1)
-				{
-					//second x value
-					reverseX = coords[0] < firstXValue;
-				}
-				else if (positionIndex == xSize)
-				{
-					//second y value
-					reverseY = coords[1] < firstYValue;
-				}
-				else if (positionIndex == xSize * ySize * (zSize - 1))
-				{
-					//positionIndex is the same x/y as 0, but at the bottom elevation instead of top,
-					//so we can calculate the depth as the difference between the two elevations
-					reverseZ = coords[2] > firstZValue;
-					depth = reverseZ ? coords[2] - firstZValue : firstZValue - coords[2];
-					top += reverseZ ? depth : 0;
-				}
-
-				if (newZValue)
-				{
-					zValues[zSlice++] = coords[2];
+					pointsReader.readNextValues(coords);
 				}
+				points.add(coords[0]);
+				points.add(coords[1]);
+				points.add(coords[2]);
 			}
 
+			addPoints(points.toArray());
+
 			// Read the painted property from the nominated property file
 			GocadPropertyDefinition paintedProperty = getPaintedProperty();
-			propertiesInputStream = openSGridDataStream(source, paintedProperty.getFile());
-			FloatReader propertiesReader = FloatReader.Builder.newFloatReaderForStream(propertiesInputStream)
+			propertiesReader = newSGridDataReaderBuilder(source, paintedProperty.getFile())
 					.withGroupSize(1)
 					.withOffset(paintedProperty.getOffset())
 					.withFormat(FloatFormat.valueOf(paintedProperty.getType()))
@@ -402,13 +389,13 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 		}
 		finally
 		{
-			if (pointsInputStream != null)
+			if (pointsReader != null)
 			{
-				pointsInputStream.close();
+				pointsReader.close();
 			}
-			if (propertiesInputStream != null)
+			if (propertiesReader != null)
 			{
-				propertiesInputStream.close();
+				propertiesReader.close();
 			}
 		}
 	}
@@ -538,6 +525,23 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 		}
 	}
 
+	/**
+	 * Create a {@link FloatReader} builder for a binary SGrid data file. Local
+	 * files are memory-mapped, so that only the values required are read.
+	 */
+	private FloatReader.Builder newSGridDataReaderBuilder(Object source, String file) throws IOException
+	{
+		if (source instanceof File)
+		{
+			File data = new File(((File) source).getParent(), file);
+			if (data.exists())
+			{
+				return FloatReader.Builder.newFloatReaderForFile(data);
+			}
+		}
+		return FloatReader.Builder.newFloatReaderForStream(openSGridDataStream(source, file));
+	}
+
 	/**
 	 * Open an input stream that reads from the named data file
 	 */
@@ -35,6 +35,12 @@ public class TopBottomFastShape extends FastShape
 	protected double topElevationOffset = 0d;
 	protected double bottomElevationOffset = 0d;
 	protected LatLon latlonOffset = LatLon.ZERO;
+	//no initializer, as this is set by positionsChanged() during the super constructor
+	protected byte[] positionTypes;
+
+	private final static byte POSITION_NORMAL = 0;
+	private final static byte POSITION_TOP = 1;
+	private final static byte POSITION_BOTTOM = 2;
 
 	public TopBottomFastShape(List<Position> positions, int mode)
 	{
@@ -123,6 +129,35 @@ public class TopBottomFastShape extends FastShape
 		return elevationOffset;
 	}
 
+	@Override
+	protected double calculateElevationOffset(int index)
+	{
+		double elevationOffset = super.calculateElevationOffset(index);
+		byte type = positionTypes[index];
+		if (type != POSITION_NORMAL)
+		{
+			elevationOffset += type == POSITION_BOTTOM ? bottomElevationOffset : topElevationOffset;
+		}
+		return elevationOffset;
+	}
+
+	@Override
+	protected void positionsChanged()
+	{
+		super.positionsChanged();
+		byte[] positionTypes = new byte[positions.size()];
+		int i = 0;
+		for (Position position : positions)
+		{
+			if (position instanceof TopBottomPosition)
+			{
+				positionTypes[i] = ((TopBottomPosition) position).isBottom() ? POSITION_BOTTOM : POSITION_TOP;
+			}
+			i++;
+		}
+		this.positionTypes = positionTypes;
+	}
+
 	@Override
 	protected LatLon calculateLatLonOffset()
 	{
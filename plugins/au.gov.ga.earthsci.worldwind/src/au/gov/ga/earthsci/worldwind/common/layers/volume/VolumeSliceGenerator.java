@@ -0,0 +1,324 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.volume;
+
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import au.gov.ga.earthsci.worldwind.common.util.WorkerPool;
+
+/**
+ * Generates the pixels of slices through a volume on a background thread
+ * pool, so that dragging a slice doesn't stall rendering.
+ * <p/>
+ * Each slice is split into bands of rows that are generated in parallel. The
+ * slices most recently generated are cached by axis and position, so that
+ * dragging a slice back and forth doesn't regenerate them.
+ * <p/>
+ * Slices are requested for a <i>slot</i> (such as the top surface, or the
+ * minimum X curtain). Requesting a different slice for a slot cancels the
+ * slot's previous request if it is still pending and no other slot wants it,
+ * so only the latest position is generated while the user keeps dragging.
+ * <p/>
+ * If generating a slice fails, the failure is logged and the slice is
+ * requested again once a delay has passed.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class VolumeSliceGenerator
+{
+	/** Default number of slices to cache */
+	public static final int DEFAULT_CACHE_SIZE = 32;
+
+	/** Number of rows generated by each task */
+	private static final int ROWS_PER_TASK = 16;
+
+	/** Default time (in milliseconds) to wait before retrying a failed slice */
+	public static final long DEFAULT_RETRY_DELAY = 5000;
+
+	private static final WorkerPool workers = new WorkerPool(VolumeSliceGenerator.class.getName());
+
+	/**
+	 * Generates the rows of slices for a {@link VolumeSliceGenerator}. Rows
+	 * are generated concurrently, so implementations must be thread-safe.
+	 */
+	public interface SliceSource
+	{
+		/**
+		 * Generate the pixels for a single row of a slice.
+		 * 
+		 * @param axis
+		 *            Axis of the slice (0 = x, 1 = y, 2 = z)
+		 * @param position
+		 *            Index of the slice along the axis
+		 * @param width
+		 *            Width of the slice in pixels
+		 * @param height
+		 *            Height of the slice in pixels
+		 * @param y
+		 *            Row to generate
+		 * @param pixels
+		 *            Array to write the row's pixels into, starting at
+		 *            <code>y * width</code>
+		 */
+		void generateRow(int axis, int position, int width, int height, int y, int[] pixels);
+
+		/**
+		 * Called (from a worker thread) when a requested slice has been
+		 * generated and is available from
+		 * {@link VolumeSliceGenerator#getSlice(int, int, int, int, int)}.
+		 */
+		void sliceGenerated(int axis, int position);
+	}
+
+	private final SliceSource source;
+	private final Map<Long, int[]> cache;
+	private final Map<Long, SliceJob> pending = new HashMap<Long, SliceJob>();
+	private final Map<Integer, Long> requested = new HashMap<Integer, Long>();
+	private final Map<Long, Long> retryTimes = new HashMap<Long, Long>();
+	private volatile long retryDelay = DEFAULT_RETRY_DELAY;
+
+	public VolumeSliceGenerator(SliceSource source)
+	{
+		this(source, DEFAULT_CACHE_SIZE);
+	}
+
+	@SuppressWarnings("serial")
+	public VolumeSliceGenerator(SliceSource source, final int cacheSize)
+	{
+		this.source = source;
+		this.cache = new LinkedHashMap<Long, int[]>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest)
+			{
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * @return Time (in milliseconds) to wait before retrying a slice whose
+	 *         generation failed
+	 */
+	public long getRetryDelay()
+	{
+		return retryDelay;
+	}
+
+	/**
+	 * Set the time (in milliseconds) to wait before retrying a slice whose
+	 * generation failed.
+	 * 
+	 * @param retryDelay
+	 */
+	public void setRetryDelay(long retryDelay)
+	{
+		this.retryDelay = retryDelay;
+	}
+
+	/**
+	 * Get the pixels of the given slice for a slot. If the slice has not been
+	 * generated, it is requested in the background and <code>null</code> is
+	 * returned; the {@link SliceSource} is notified when it is available.
+	 * 
+	 * @param slot
+	 *            Identifier of the surface the slice is for
+	 * @param axis
+	 *            Axis of the slice (0 = x, 1 = y, 2 = z)
+	 * @param position
+	 *            Index of the slice along the axis
+	 * @param width
+	 *            Width of the slice in pixels
+	 * @param height
+	 *            Height of the slice in pixels
+	 * @return Pixels of the slice, or <code>null</code> if not yet generated
+	 */
+	public synchronized int[] getSlice(int slot, int axis, int position, int width, int height)
+	{
+		Long key = getKey(axis, position);
+		Long previous = requested.put(slot, key);
+		if (previous != null && !previous.equals(key) && !requested.containsValue(previous))
+		{
+			SliceJob stale = pending.remove(previous);
+			if (stale != null)
+			{
+				stale.cancel();
+			}
+		}
+
+		int[] pixels = cache.get(key);
+		if (pixels == null && !pending.containsKey(key) && !isWaitingToRetry(key))
+		{
+			SliceJob job = new SliceJob(key, axis, position, width, height);
+			pending.put(key, job);
+			job.submit();
+		}
+		return pixels;
+	}
+
+	/**
+	 * Discard all cached slices and cancel any pending requests, such as when
+	 * the colouring of the volume changes.
+	 */
+	public synchronized void clear()
+	{
+		for (SliceJob job : pending.values())
+		{
+			job.cancel();
+		}
+		pending.clear();
+		requested.clear();
+		retryTimes.clear();
+		cache.clear();
+	}
+
+	private boolean isWaitingToRetry(Long key)
+	{
+		Long retryTime = retryTimes.get(key);
+		if (retryTime == null)
+		{
+			return false;
+		}
+		if (System.currentTimeMillis() < retryTime)
+		{
+			return true;
+		}
+		retryTimes.remove(key);
+		return false;
+	}
+
+	private synchronized boolean complete(SliceJob job)
+	{
+		if (pending.get(job.key) != job)
+		{
+			return false;
+		}
+		pending.remove(job.key);
+		cache.put(job.key, job.pixels);
+		return true;
+	}
+
+	private synchronized boolean failed(SliceJob job)
+	{
+		if (pending.get(job.key) != job)
+		{
+			return false;
+		}
+		pending.remove(job.key);
+		retryTimes.put(job.key, System.currentTimeMillis() + retryDelay);
+		return true;
+	}
+
+	private static Long getKey(int axis, int position)
+	{
+		return ((long) axis << 32) | (position & 0xffffffffL);
+	}
+
+	/**
+	 * The generation of a single slice, split into tasks that each generate a
+	 * band of rows.
+	 */
+	private class SliceJob
+	{
+		private final Long key;
+		private final int axis;
+		private final int position;
+		private final int width;
+		private final int height;
+		private final int[] pixels;
+		private final List<Future<?>> futures = new ArrayList<Future<?>>();
+		private final AtomicInteger remaining;
+		private volatile boolean cancelled = false;
+
+		public SliceJob(Long key, int axis, int position, int width, int height)
+		{
+			this.key = key;
+			this.axis = axis;
+			this.position = position;
+			this.width = width;
+			this.height = height;
+			this.pixels = new int[width * height];
+			this.remaining = new AtomicInteger((height + ROWS_PER_TASK - 1) / ROWS_PER_TASK);
+		}
+
+		public void submit()
+		{
+			ExecutorService executor = workers.getExecutor();
+			for (int start = 0; start < height; start += ROWS_PER_TASK)
+			{
+				final int first = start;
+				final int last = Math.min(height, start + ROWS_PER_TASK);
+				futures.add(executor.submit(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						generateRows(first, last);
+					}
+				}));
+			}
+		}
+
+		public void cancel()
+		{
+			cancelled = true;
+			for (Future<?> future : futures)
+			{
+				future.cancel(false);
+			}
+		}
+
+		private void generateRows(int first, int last)
+		{
+			try
+			{
+				for (int y = first; y < last; y++)
+				{
+					if (cancelled)
+					{
+						return;
+					}
+					source.generateRow(axis, position, width, height, y, pixels);
+				}
+			}
+			catch (RuntimeException e)
+			{
+				//stop the job's other tasks, and only log the first failure
+				cancelled = true;
+				if (failed(this))
+				{
+					Logging.logger().log(Level.SEVERE, "Error generating volume slice", e);
+				}
+				return;
+			}
+
+			if (remaining.decrementAndGet() == 0 && !cancelled && complete(this))
+			{
+				source.sliceGenerated(axis, position);
+			}
+		}
+	}
+}
@@ -17,9 +17,11 @@ package au.gov.ga.earthsci.worldwind.common.render;
 
 import gov.nasa.worldwind.BasicSceneController;
 import gov.nasa.worldwind.SceneController;
+import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.geom.Sector;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.render.SurfaceObjectTileBuilder;
+import gov.nasa.worldwind.retrieve.RetrievalService;
 import gov.nasa.worldwind.terrain.SectorGeometryList;
 import gov.nasa.worldwind.terrain.Tessellator;
 
@@ -35,6 +37,7 @@ import java.util.concurrent.locks.ReentrantLock;
 import au.gov.ga.earthsci.worldwind.common.effects.Effect;
 import au.gov.ga.earthsci.worldwind.common.exaggeration.VerticalExaggerationListener;
 import au.gov.ga.earthsci.worldwind.common.exaggeration.VerticalExaggerationService;
+import au.gov.ga.earthsci.worldwind.common.retrieve.PrioritizedRetrievalService;
 import au.gov.ga.earthsci.worldwind.common.util.SectorClipPlanes;
 import au.gov.ga.earthsci.worldwind.common.view.delegate.IDelegateView;
 
@@ -138,6 +141,7 @@ public class ExtendedSceneController extends BasicSceneController implements Dra
 			{
 				this.draw(dc);
 			}
+			this.reprioritizeRetrievals(dc);
 		}
 		finally
 		{
@@ -146,6 +150,22 @@ public class ExtendedSceneController extends BasicSceneController implements Dra
 		doPostPaintTasks(dc);
 	}
 
+	/**
+	 * Reorder the pending retrievals from the view that has just been drawn,
+	 * cancelling those for tiles that are no longer visible, if the retrieval
+	 * service supports it.
+	 * 
+	 * @param dc
+	 */
+	protected void reprioritizeRetrievals(DrawContext dc)
+	{
+		RetrievalService retrievalService = WorldWind.getRetrievalService();
+		if (retrievalService instanceof PrioritizedRetrievalService)
+		{
+			((PrioritizedRetrievalService) retrievalService).reprioritize(dc);
+		}
+	}
+
 	/**
 	 * @return Draw dimensions used when drawing with this scene controller
 	 */
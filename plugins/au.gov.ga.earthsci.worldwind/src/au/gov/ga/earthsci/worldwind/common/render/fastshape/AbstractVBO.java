@@ -143,6 +143,24 @@ public abstract class AbstractVBO<ARRAY>
 		gl.glBindBuffer(getTarget(), 0);
 	}
 
+	/**
+	 * Delete this VBO's buffer from the video card. The buffer is uploaded
+	 * again if this VBO is bound again.
+	 * 
+	 * @param gl
+	 *            OpenGL context
+	 */
+	public void delete(GL2 gl)
+	{
+		if (vboId >= 0)
+		{
+			gl.glDeleteBuffers(1, new int[] { vboId }, 0);
+			vboId = -1;
+			dirty = true;
+			uploadRequired = true;
+		}
+	}
+
 	/**
 	 * @return OpenGL target to which to bind/unbind this VBO. Either
 	 *         {@link GL#GL_ARRAY_BUFFER} or {@link GL#GL_ELEMENT_ARRAY_BUFFER}.
@@ -17,11 +17,14 @@ package au.gov.ga.earthsci.worldwind.common.render.fastshape;
 
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.cache.Cacheable;
+import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Extent;
 import gov.nasa.worldwind.geom.LatLon;
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Sphere;
 import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.EllipsoidalGlobe;
+import gov.nasa.worldwind.globes.FlatGlobe;
 import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.layers.Layer;
 import gov.nasa.worldwind.pick.PickSupport;
@@ -38,9 +41,8 @@ import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.net.URL;
-import java.nio.FloatBuffer;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -60,6 +62,11 @@ import com.jogamp.opengl.util.texture.Texture;
  * for meshes or points or lines with a large number of vertices, as the vertex
  * positions aren't updated every frame (instead they are updated in a vertex
  * updater thread).
+ * <p/>
+ * Positions are stored internally in a packed array of (latitude, longitude,
+ * elevation) triples, and the vertices, normals, bounding sphere and sort keys
+ * are calculated from this array using scalar loops. The {@link List} of
+ * {@link Position}s API is kept for compatibility.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -75,6 +82,7 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 	protected Layer pickLayer = null;
 
 	protected List<Position> positions;
+	protected double[] positionArray;
 	protected ReadWriteLock positionsLock = new ReentrantReadWriteLock();
 	protected String name = "Shape";
 	protected final int mode;
@@ -141,6 +149,17 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 	protected Layer lastLayer;
 	protected long lastFollowTerrainUpdateTime;
 
+	//sorting state, only accessed by the IndexUpdater (the sort keys are shared by each IndexUpdater thread):
+	protected volatile int[] sortOrder;
+	protected Vec4 lastSortEyePoint;
+
+	/**
+	 * If the eye has moved less than this fraction of the bounding sphere's
+	 * radius since the last sort, the previous order is re-sorted
+	 * incrementally.
+	 */
+	protected final static double INCREMENTAL_SORT_THRESHOLD = 0.1;
+
 	protected final List<FastShapeRenderListener> renderListeners = new ArrayList<FastShapeRenderListener>();
 
 	public FastShape(List<Position> positions, int mode)
@@ -155,6 +174,24 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		setIndices(indices);
 	}
 
+	/**
+	 * Create a new shape from a packed array of positions.
+	 * 
+	 * @param positions
+	 *            Array of (latitude degrees, longitude degrees, elevation)
+	 *            triples
+	 * @param indices
+	 *            Vertex indices, or null if the positions are drawn in order
+	 * @param mode
+	 *            OpenGL primitive mode
+	 */
+	public FastShape(double[] positions, int[] indices, int mode)
+	{
+		this.mode = mode;
+		setPositionArray(positions);
+		setIndices(indices);
+	}
+
 	@Override
 	public double getDistanceFromEye()
 	{
@@ -586,6 +623,27 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 			lastEyePoint = eyePoint;
 			resortIndices(dc, lastEyePoint);
 		}
+		else if (sortOrder != null && !(forceSortedPrimitives || (sortTransparentPrimitives && alpha < 1.0)))
+		{
+			releaseSortState();
+		}
+	}
+
+	/**
+	 * Release the buffers used for incrementally sorting the primitives, once
+	 * they are no longer being sorted.
+	 */
+	protected void releaseSortState()
+	{
+		IndexUpdater.run(this, new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				sortOrder = null;
+				lastSortEyePoint = null;
+			}
+		});
 	}
 
 	protected boolean recalculateVertices(final DrawContext dc, boolean runNow)
@@ -598,7 +656,7 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 				positionsLock.readLock().lock();
 				try
 				{
-					int size = positions.size() * 3;
+					int size = positionArray.length;
 					float[] vertices;
 
 					vertexVBO.lock();
@@ -666,17 +724,24 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 
 	protected synchronized void calculateVertices(DrawContext dc, float[] vertices)
 	{
-		int index = 0;
-		for (LatLon position : positions)
+		Globe globe = dc.getGlobe();
+		if (!followTerrain && globe instanceof EllipsoidalGlobe && !(globe instanceof FlatGlobe))
+		{
+			calculateEllipsoidalVertices(globe, dc.getVerticalExaggeration(), vertices);
+		}
+		else
 		{
-			Vec4 v = calculateVertex(dc, position);
-			vertices[index++] = (float) v.x;
-			vertices[index++] = (float) v.y;
-			vertices[index++] = (float) v.z;
+			int index = 0;
+			for (LatLon position : positions)
+			{
+				Vec4 v = calculateVertex(dc, position);
+				vertices[index++] = (float) v.x;
+				vertices[index++] = (float) v.y;
+				vertices[index++] = (float) v.z;
+			}
 		}
 
-		BufferWrapper wrapper = new BufferWrapper.FloatBufferWrapper(FloatBuffer.wrap(vertices));
-		modBoundingSphere = createBoundingSphere(wrapper);
+		modBoundingSphere = createBoundingSphere(vertices);
 
 		//prevent NullPointerExceptions when there's no vertices:
 		if (modBoundingSphere == null)
@@ -684,11 +749,56 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 			modBoundingSphere = new Sphere(Vec4.ZERO, 1);
 		}
 
+		float cx = (float) modBoundingSphere.getCenter().x;
+		float cy = (float) modBoundingSphere.getCenter().y;
+		float cz = (float) modBoundingSphere.getCenter().z;
 		for (int i = 0; i < vertices.length; i += 3)
 		{
-			vertices[i + 0] -= (float) modBoundingSphere.getCenter().x;
-			vertices[i + 1] -= (float) modBoundingSphere.getCenter().y;
-			vertices[i + 2] -= (float) modBoundingSphere.getCenter().z;
+			vertices[i + 0] -= cx;
+			vertices[i + 1] -= cy;
+			vertices[i + 2] -= cz;
+		}
+	}
+
+	/**
+	 * Calculate the vertices directly from the packed position array, without
+	 * allocating an object per vertex. This performs the same calculation as
+	 * {@link EllipsoidalGlobe#computePointFromPosition(LatLon, double)}, and
+	 * therefore can only be used for ellipsoidal globes when the shape isn't
+	 * following the terrain.
+	 */
+	protected void calculateEllipsoidalVertices(Globe globe, double verticalExaggeration, float[] vertices)
+	{
+		double equatorialRadius = globe.getEquatorialRadius();
+		double es = globe.getEccentricitySquared();
+		double minimumElevation = -globe.getMaximumRadius();
+		LatLon offset = calculateLatLonOffset();
+		double latitudeOffset = offset.getLatitude().degrees;
+		double longitudeOffset = offset.getLongitude().degrees;
+
+		int count = vertices.length / 3;
+		for (int i = 0, j = 0; i < count; i++, j += 3)
+		{
+			double latitude = positionArray[j + 0] + latitudeOffset;
+			if (latitude < -90 || latitude > 90)
+			{
+				latitude = Angle.normalizedDegreesLatitude(latitude);
+			}
+			double longitude = positionArray[j + 1] + longitudeOffset;
+			double elevation = (this.elevation + calculateElevationOffset(i)) * verticalExaggeration;
+			elevation = Math.max(elevation, minimumElevation);
+
+			double latitudeRadians = latitude * Angle.DEGREES_TO_RADIANS;
+			double longitudeRadians = longitude * Angle.DEGREES_TO_RADIANS;
+			double cosLat = Math.cos(latitudeRadians);
+			double sinLat = Math.sin(latitudeRadians);
+			double cosLon = Math.cos(longitudeRadians);
+			double sinLon = Math.sin(longitudeRadians);
+			double rpm = equatorialRadius / Math.sqrt(1.0 - es * sinLat * sinLat);
+
+			vertices[j + 0] = (float) ((rpm + elevation) * cosLat * sinLon);
+			vertices[j + 1] = (float) ((rpm * (1.0 - es) + elevation) * sinLat);
+			vertices[j + 2] = (float) ((rpm + elevation) * cosLat * cosLon);
 		}
 	}
 
@@ -714,6 +824,17 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		return 0;
 	}
 
+	/**
+	 * Calculate the elevation offset of the position at the given index in the
+	 * packed position array. Subclasses that override
+	 * {@link #calculateElevationOffset(LatLon)} should also override this
+	 * method.
+	 */
+	protected double calculateElevationOffset(int index)
+	{
+		return positionArray[index * 3 + 2];
+	}
+
 	protected LatLon calculateLatLonOffset()
 	{
 		return LatLon.ZERO;
@@ -734,18 +855,35 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		return new Sphere(center, radius);
 	}
 
+	protected static Sphere createBoundingSphere(float[] vertices)
+	{
+		if (vertices.length < 3)
+		{
+			return null;
+		}
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+		for (int i = 0; i < vertices.length; i += 3)
+		{
+			double x = vertices[i + 0], y = vertices[i + 1], z = vertices[i + 2];
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			minZ = Math.min(minZ, z);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+			maxZ = Math.max(maxZ, z);
+		}
+		double dx = maxX - minX, dy = maxY - minY, dz = maxZ - minZ;
+		Vec4 center = new Vec4((minX + maxX) / 2.0, (minY + maxY) / 2.0, (minZ + maxZ) / 2.0);
+		double radius = Math.max(1, Math.sqrt(dx * dx + dy * dy + dz * dz) / 2.0);
+		return new Sphere(center, radius);
+	}
+
 	protected void calculateNormals(float[] vertices, float[] normals)
 	{
 		int size = normals.length / 3;
 		int[] count = new int[size];
-		Vec4[] verts = new Vec4[size];
-		Vec4[] norms = new Vec4[size];
-
-		for (int i = 0, j = 0; i < vertices.length; i += 3, j++)
-		{
-			verts[j] = new Vec4(vertices[i + 0], vertices[i + 1], vertices[i + 2]);
-			norms[j] = new Vec4(0);
-		}
+		double[] norms = new double[normals.length];
 
 		int[] indices = indexVBO.getBuffer();
 		boolean hasIndices = indices != null;
@@ -763,20 +901,50 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 			int index0 = hasIndices ? indices[i + 0] : i + 0;
 			int index1 = hasIndices ? indices[i + 1] : i + 1;
 			int index2 = hasIndices ? indices[i + 2] : i + 2;
-			Vec4 v0 = verts[index0];
-			Vec4 v1 = verts[index1];
-			Vec4 v2 = verts[index2];
+			int v0 = index0 * 3, v1 = index1 * 3, v2 = index2 * 3;
+
+			double e1x = vertices[v1 + 0] - vertices[v0 + 0];
+			double e1y = vertices[v1 + 1] - vertices[v0 + 1];
+			double e1z = vertices[v1 + 2] - vertices[v0 + 2];
+			double e2x, e2y, e2z;
+			if (mode == GL2.GL_TRIANGLE_STRIP && i % 2 == 0)
+			{
+				e2x = vertices[v0 + 0] - vertices[v2 + 0];
+				e2y = vertices[v0 + 1] - vertices[v2 + 1];
+				e2z = vertices[v0 + 2] - vertices[v2 + 2];
+			}
+			else
+			{
+				e2x = vertices[v2 + 0] - vertices[v0 + 0];
+				e2y = vertices[v2 + 1] - vertices[v0 + 1];
+				e2z = vertices[v2 + 2] - vertices[v0 + 2];
+			}
 
-			Vec4 e1 = v1.subtract3(v0);
-			Vec4 e2 = mode == GL2.GL_TRIANGLE_STRIP && i % 2 == 0 ? v0.subtract3(v2) : v2.subtract3(v0);
-			Vec4 N = reverseNormals ? e2.cross3(e1).normalize3() : e1.cross3(e2).normalize3();
+			double nx = e1y * e2z - e1z * e2y;
+			double ny = e1z * e2x - e1x * e2z;
+			double nz = e1x * e2y - e1y * e2x;
+			double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
 
 			// if N is 0, the triangle is degenerate
-			if (N.getLength3() > 0)
+			if (length > 0)
 			{
-				norms[index0] = norms[index0].add3(N);
-				norms[index1] = norms[index1].add3(N);
-				norms[index2] = norms[index2].add3(N);
+				if (reverseNormals)
+				{
+					length = -length;
+				}
+				nx /= length;
+				ny /= length;
+				nz /= length;
+
+				norms[v0 + 0] += nx;
+				norms[v0 + 1] += ny;
+				norms[v0 + 2] += nz;
+				norms[v1 + 0] += nx;
+				norms[v1 + 1] += ny;
+				norms[v1 + 2] += nz;
+				norms[v2 + 0] += nx;
+				norms[v2 + 1] += ny;
+				norms[v2 + 2] += nz;
 
 				count[index0]++;
 				count[index1]++;
@@ -787,9 +955,9 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		for (int i = 0, j = 0; i < normals.length; i += 3, j++)
 		{
 			int c = count[j] > 0 ? count[j] : 1; //prevent divide by zero
-			normals[i + 0] = (float) norms[j].x / c;
-			normals[i + 1] = (float) norms[j].y / c;
-			normals[i + 2] = (float) norms[j].z / c;
+			normals[i + 0] = (float) norms[i + 0] / c;
+			normals[i + 1] = (float) norms[i + 1] / c;
+			normals[i + 2] = (float) norms[i + 2] / c;
 		}
 	}
 
@@ -831,71 +999,117 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 
 	protected void sortIndices(DrawContext dc, Vec4 eyePoint, float[] vertices, int[] indices, int[] sortedIndices)
 	{
-		int size = vertices.length / 3;
-		Vec4[] verts = new Vec4[size];
-
-		for (int i = 0, j = 0; i < vertices.length; i += 3, j++)
+		if (mode != GL2.GL_TRIANGLES && mode != GL2.GL_POINTS)
 		{
-			verts[j] = new Vec4(vertices[i + 0], vertices[i + 1], vertices[i + 2]);
+			return;
 		}
 
+		Sphere boundingSphere = this.boundingSphere;
 		if (boundingSphere != null)
 		{
 			eyePoint = eyePoint.subtract3(boundingSphere.getCenter());
 		}
+		double ex = eyePoint.x, ey = eyePoint.y, ez = eyePoint.z;
 
-		if (mode == GL2.GL_TRIANGLES)
+		boolean triangles = mode == GL2.GL_TRIANGLES;
+		boolean hasIndices = triangles && indices != null;
+		int primitiveCount = triangles ? sortedIndices.length / 3 : vertices.length / 3;
+		if (primitiveCount == 0)
 		{
-			boolean hasIndices = indices != null;
-			int triangleCountBy3 = hasIndices ? indices.length : size;
-			IndexAndDistance[] distances = new IndexAndDistance[triangleCountBy3 / 3];
+			return;
+		}
 
-			for (int i = 0, j = 0; i < triangleCountBy3; i += 3, j++)
+		//if the eye hasn't moved far, the previous order will be nearly sorted
+		int[] order = sortOrder;
+		boolean incremental =
+				order != null && order.length == primitiveCount && lastSortEyePoint != null
+						&& boundingSphere != null
+						&& lastSortEyePoint.distanceTo3(eyePoint) < boundingSphere.getRadius() * INCREMENTAL_SORT_THRESHOLD;
+		if (!incremental)
+		{
+			if (order == null || order.length != primitiveCount)
 			{
-				int index0 = hasIndices ? indices[i + 0] : i + 0;
-				int index1 = hasIndices ? indices[i + 1] : i + 1;
-				int index2 = hasIndices ? indices[i + 2] : i + 2;
-				Vec4 v0 = verts[index0];
-				Vec4 v1 = verts[index1];
-				Vec4 v2 = verts[index2];
-				double distance =
-						v0.distanceToSquared3(eyePoint) + v1.distanceToSquared3(eyePoint)
-								+ v2.distanceToSquared3(eyePoint);
-				distances[j] = new IndexAndDistance(distance, i);
+				order = new int[primitiveCount];
+				sortOrder = order;
 			}
-
-			Arrays.sort(distances);
-			IndexAndDistance closest = distances[distances.length - 1];
-			Vec4 closestPoint = verts[hasIndices ? indices[closest.index] : closest.index];
-			distanceFromEye = closestPoint.distanceTo3(eyePoint);
-
-			for (int i = 0, j = 0; i < triangleCountBy3; i += 3, j++)
+			for (int i = 0; i < primitiveCount; i++)
 			{
-				IndexAndDistance distance = distances[j];
-				sortedIndices[i + 0] = hasIndices ? indices[distance.index + 0] : distance.index + 0;
-				sortedIndices[i + 1] = hasIndices ? indices[distance.index + 1] : distance.index + 1;
-				sortedIndices[i + 2] = hasIndices ? indices[distance.index + 2] : distance.index + 2;
+				order[i] = i;
 			}
 		}
-		else if (mode == GL2.GL_POINTS)
+		lastSortEyePoint = eyePoint;
+
+		PrimitiveSorter sorter = PrimitiveSorter.forCurrentThread();
+		float[] keys = sorter.getKeyBuffer(primitiveCount);
+		for (int i = 0; i < primitiveCount; i++)
 		{
-			IndexAndDistance[] distances = new IndexAndDistance[size];
-			for (int i = 0; i < size; i++)
+			int primitive = order[i];
+			if (triangles)
 			{
-				double distance = verts[i].distanceToSquared3(eyePoint);
-				distances[i] = new IndexAndDistance(distance, i);
+				int i0 = primitive * 3;
+				int index0 = hasIndices ? indices[i0 + 0] : i0 + 0;
+				int index1 = hasIndices ? indices[i0 + 1] : i0 + 1;
+				int index2 = hasIndices ? indices[i0 + 2] : i0 + 2;
+				keys[i] =
+						(float) (distanceSquared(vertices, index0, ex, ey, ez)
+								+ distanceSquared(vertices, index1, ex, ey, ez) + distanceSquared(vertices, index2, ex,
+								ey, ez));
 			}
+			else
+			{
+				keys[i] = (float) distanceSquared(vertices, primitive, ex, ey, ez);
+			}
+		}
+
+		//sort furthest first; fall back to a full sort if the order has changed too much
+		if (!incremental || !PrimitiveSorter.insertionSortDescending(keys, order, primitiveCount, primitiveCount))
+		{
+			sorter.sortDescending(keys, order, primitiveCount);
+		}
 
-			Arrays.sort(distances);
-			IndexAndDistance closest = distances[distances.length - 1];
-			Vec4 closestPoint = verts[closest.index];
-			distanceFromEye = closestPoint.distanceTo3(eyePoint);
+		int closest = order[primitiveCount - 1];
+		if (triangles)
+		{
+			int i0 = closest * 3;
+			int closestIndex = hasIndices ? indices[i0] : i0;
+			distanceFromEye = Math.sqrt(distanceSquared(vertices, closestIndex, ex, ey, ez));
 
-			for (int i = 0; i < size; i++)
+			for (int i = 0, j = 0; i < primitiveCount; i++, j += 3)
 			{
-				sortedIndices[i] = distances[i].index;
+				int p = order[i] * 3;
+				sortedIndices[j + 0] = hasIndices ? indices[p + 0] : p + 0;
+				sortedIndices[j + 1] = hasIndices ? indices[p + 1] : p + 1;
+				sortedIndices[j + 2] = hasIndices ? indices[p + 2] : p + 2;
 			}
 		}
+		else
+		{
+			distanceFromEye = Math.sqrt(distanceSquared(vertices, closest, ex, ey, ez));
+			System.arraycopy(order, 0, sortedIndices, 0, primitiveCount);
+		}
+	}
+
+	protected static double distanceSquared(float[] vertices, int index, double x, double y, double z)
+	{
+		int i = index * 3;
+		double dx = vertices[i + 0] - x;
+		double dy = vertices[i + 1] - y;
+		double dz = vertices[i + 2] - z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * Set the number of threads used to recalculate the vertices and sort the
+	 * indices of all shapes.
+	 * 
+	 * @param threadCount
+	 *            Number of threads used by each of the vertex and index
+	 *            updaters
+	 */
+	public static void setUpdaterThreadCount(int threadCount)
+	{
+		VertexUpdater.setThreadCount(threadCount);
+		IndexUpdater.setThreadCount(threadCount);
 	}
 
 	public String getName()
@@ -1004,17 +1218,68 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 	}
 
 	public void setPositions(List<Position> positions)
+	{
+		double[] positionArray = new double[positions.size() * 3];
+		int i = 0;
+		for (Position position : positions)
+		{
+			positionArray[i++] = position.latitude.degrees;
+			positionArray[i++] = position.longitude.degrees;
+			positionArray[i++] = position.elevation;
+		}
+		setPositions(positions, positionArray);
+	}
+
+	/**
+	 * @return Packed array of (latitude degrees, longitude degrees, elevation)
+	 *         triples for each of this shape's positions
+	 */
+	public double[] getPositionArray()
+	{
+		return positionArray;
+	}
+
+	/**
+	 * Set this shape's positions from a packed array. The array is used
+	 * directly (not copied), and {@link #getPositions()} will return a view of
+	 * the array.
+	 * 
+	 * @param positionArray
+	 *            Array of (latitude degrees, longitude degrees, elevation)
+	 *            triples
+	 */
+	public void setPositionArray(double[] positionArray)
+	{
+		setPositions(new PositionArrayList(positionArray), positionArray);
+	}
+
+	protected void setPositions(List<Position> positions, double[] positionArray)
 	{
 		positionsLock.writeLock().lock();
 		try
 		{
 			this.positions = positions;
+			this.positionArray = positionArray;
 			verticesDirty = true;
+			positionsChanged();
 
 			bounds = null;
-			for (Position position : positions)
+			if (positionArray.length >= 3)
 			{
-				bounds = Bounds.union(bounds, position);
+				double minLat = Double.MAX_VALUE, minLon = Double.MAX_VALUE, minElevation = Double.MAX_VALUE;
+				double maxLat = -Double.MAX_VALUE, maxLon = -Double.MAX_VALUE, maxElevation = -Double.MAX_VALUE;
+				for (int i = 0; i < positionArray.length; i += 3)
+				{
+					minLat = Math.min(minLat, positionArray[i + 0]);
+					minLon = Math.min(minLon, positionArray[i + 1]);
+					minElevation = Math.min(minElevation, positionArray[i + 2]);
+					maxLat = Math.max(maxLat, positionArray[i + 0]);
+					maxLon = Math.max(maxLon, positionArray[i + 1]);
+					maxElevation = Math.max(maxElevation, positionArray[i + 2]);
+				}
+				bounds =
+						new Bounds(Position.fromDegrees(minLat, minLon, minElevation), Position.fromDegrees(maxLat,
+								maxLon, maxElevation));
 			}
 		}
 		finally
@@ -1023,6 +1288,14 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		}
 	}
 
+	/**
+	 * Called (within the positions write lock) after this shape's positions
+	 * have changed. Subclasses can override to precompute per-position data.
+	 */
+	protected void positionsChanged()
+	{
+	}
+
 	public int[] getIndices()
 	{
 		return indexVBO.getBuffer();
@@ -1304,7 +1577,7 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 	public long getSizeInBytes()
 	{
 		//very approximate, measured by checking JVM memory usage over many object creations
-		return 500 + 80 * getPositions().size();
+		return 500 + 80 * (positionArray.length / 3);
 	}
 
 	/**
@@ -1391,4 +1664,34 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		}
 		return floats;
 	}
+
+	/**
+	 * Read-only {@link List} view of a packed position array.
+	 */
+	protected static class PositionArrayList extends AbstractList<Position>
+	{
+		protected final double[] positionArray;
+
+		public PositionArrayList(double[] positionArray)
+		{
+			this.positionArray = positionArray;
+		}
+
+		@Override
+		public Position get(int index)
+		{
+			int i = index * 3;
+			if (index < 0 || i >= positionArray.length)
+			{
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size()); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			return Position.fromDegrees(positionArray[i + 0], positionArray[i + 1], positionArray[i + 2]);
+		}
+
+		@Override
+		public int size()
+		{
+			return positionArray.length / 3;
+		}
+	}
 }
@@ -0,0 +1,380 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.render.fastshape;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import au.gov.ga.earthsci.worldwind.common.util.WorkerPool;
+
+/**
+ * Sorts primitive indices by a non-negative float key (such as the squared
+ * distance from the eye) in descending order, without allocating an object
+ * per primitive.
+ * <p/>
+ * Sorting is performed using a stable least-significant-digit radix sort on
+ * the key bits. Large inputs are split across a shared worker pool. Inputs
+ * that are already nearly sorted (such as when re-sorting after a small eye
+ * movement) can be re-sorted incrementally using
+ * {@link #insertionSortDescending(float[], int[], int, int)}.
+ * <p/>
+ * Instances hold temporary buffers that are reused between sorts, and are not
+ * thread safe. Callers that sort intermittently should use the
+ * {@link #forCurrentThread() shared instance} for the current thread, rather
+ * than holding their own buffers.
+ *
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class PrimitiveSorter
+{
+	/**
+	 * Inputs with at least this many elements are sorted in parallel.
+	 */
+	public final static int PARALLEL_THRESHOLD = 1 << 16;
+
+	private final static int RADIX_BITS = 8;
+	private final static int RADIX = 1 << RADIX_BITS;
+	private final static int RADIX_MASK = RADIX - 1;
+
+	static final WorkerPool workers = new WorkerPool(PrimitiveSorter.class.getName());
+
+	private static final ThreadLocal<PrimitiveSorter> threadSorters = new ThreadLocal<PrimitiveSorter>()
+	{
+		@Override
+		protected PrimitiveSorter initialValue()
+		{
+			return new PrimitiveSorter();
+		}
+	};
+
+	private float[] keys;
+	private int[] keyBits;
+	private int[] tempKeyBits;
+	private int[] tempValues;
+
+	/**
+	 * @return A sorter whose buffers are shared by all users on the current
+	 *         thread
+	 */
+	public static PrimitiveSorter forCurrentThread()
+	{
+		return threadSorters.get();
+	}
+
+	/**
+	 * Get a buffer for computing the keys to pass to
+	 * {@link #sortDescending(float[], int[], int)}. The buffer is reused by
+	 * this sorter, so its contents are only valid until the next call.
+	 *
+	 * @param count
+	 *            Minimum length of the buffer
+	 * @return Key buffer with at least <code>count</code> elements
+	 */
+	public float[] getKeyBuffer(int count)
+	{
+		if (keys == null || keys.length < count)
+		{
+			keys = new float[count];
+		}
+		return keys;
+	}
+
+	/**
+	 * Sort the first <code>count</code> keys in descending order, applying the
+	 * same permutation to the values. The sort is stable. Negative and NaN
+	 * keys are treated as 0.
+	 *
+	 * @param keys
+	 *            Keys to sort by; sorted in place
+	 * @param values
+	 *            Values to permute along with the keys
+	 * @param count
+	 *            Number of elements to sort
+	 */
+	public void sortDescending(float[] keys, int[] values, int count)
+	{
+		int parallelism = workers.getParallelism();
+		if (count >= PARALLEL_THRESHOLD && parallelism > 1)
+		{
+			parallelSortDescending(keys, values, count, parallelism);
+		}
+		else
+		{
+			serialSortDescending(keys, values, count);
+		}
+	}
+
+	/**
+	 * Incrementally sort the first <code>count</code> keys in descending
+	 * order, applying the same permutation to the values. This is efficient
+	 * when the keys are already nearly sorted. The sort is stable.
+	 *
+	 * @param keys
+	 *            Keys to sort by; sorted in place
+	 * @param values
+	 *            Values to permute along with the keys
+	 * @param count
+	 *            Number of elements to sort
+	 * @param maxShifts
+	 *            Maximum number of element shifts to perform before giving up
+	 * @return True if the keys were sorted, false if more than
+	 *         <code>maxShifts</code> shifts were required (the keys and values
+	 *         are then partially sorted, but still correspond)
+	 */
+	public static boolean insertionSortDescending(float[] keys, int[] values, int count, int maxShifts)
+	{
+		int shifts = 0;
+		for (int i = 1; i < count; i++)
+		{
+			float key = keys[i];
+			if (!(key > keys[i - 1]))
+			{
+				continue;
+			}
+			int value = values[i];
+			int j = i - 1;
+			do
+			{
+				keys[j + 1] = keys[j];
+				values[j + 1] = values[j];
+				j--;
+				shifts++;
+			}
+			while (j >= 0 && key > keys[j]);
+			keys[j + 1] = key;
+			values[j + 1] = value;
+
+			if (shifts > maxShifts)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Convert a non-negative float key to an int that sorts in ascending order
+	 * when the float keys are in descending order.
+	 */
+	private static int toDescendingBits(float key)
+	{
+		return Integer.MAX_VALUE - Float.floatToIntBits(key > 0 ? key : 0f);
+	}
+
+	private static float fromDescendingBits(int bits)
+	{
+		return Float.intBitsToFloat(Integer.MAX_VALUE - bits);
+	}
+
+	private void ensureCapacity(int count)
+	{
+		if (keyBits == null || keyBits.length < count)
+		{
+			keyBits = new int[count];
+			tempKeyBits = new int[count];
+			tempValues = new int[count];
+		}
+	}
+
+	private void serialSortDescending(float[] keys, int[] values, int count)
+	{
+		ensureCapacity(count);
+		int[] k = keyBits, kt = tempKeyBits;
+		int[] v = values, vt = tempValues;
+		for (int i = 0; i < count; i++)
+		{
+			k[i] = toDescendingBits(keys[i]);
+		}
+
+		int[] histogram = new int[RADIX];
+		for (int shift = 0; shift < 32; shift += RADIX_BITS)
+		{
+			for (int i = 0; i < RADIX; i++)
+			{
+				histogram[i] = 0;
+			}
+			for (int i = 0; i < count; i++)
+			{
+				histogram[(k[i] >>> shift) & RADIX_MASK]++;
+			}
+			if (isSingleBucket(histogram, count))
+			{
+				continue;
+			}
+			int offset = 0;
+			for (int i = 0; i < RADIX; i++)
+			{
+				int c = histogram[i];
+				histogram[i] = offset;
+				offset += c;
+			}
+			for (int i = 0; i < count; i++)
+			{
+				int bits = k[i];
+				int destination = histogram[(bits >>> shift) & RADIX_MASK]++;
+				kt[destination] = bits;
+				vt[destination] = v[i];
+			}
+
+			int[] swap = k;
+			k = kt;
+			kt = swap;
+			swap = v;
+			v = vt;
+			vt = swap;
+		}
+
+		finish(keys, values, count, k, v);
+	}
+
+	private void parallelSortDescending(final float[] keys, final int[] values, final int count, int parallelism)
+	{
+		ensureCapacity(count);
+		final int chunkCount = parallelism;
+		final int chunkSize = (count + chunkCount - 1) / chunkCount;
+		final int[][] histograms = new int[chunkCount][RADIX];
+		final int[] totals = new int[RADIX];
+		final int[][] buffers = { keyBits, tempKeyBits, values, tempValues };
+
+		List<Callable<Object>> convertTasks = new ArrayList<Callable<Object>>(chunkCount);
+		for (int c = 0; c < chunkCount; c++)
+		{
+			final int start = Math.min(count, c * chunkSize);
+			final int end = Math.min(count, start + chunkSize);
+			convertTasks.add(new Callable<Object>()
+			{
+				@Override
+				public Object call()
+				{
+					int[] k = buffers[0];
+					for (int i = start; i < end; i++)
+					{
+						k[i] = toDescendingBits(keys[i]);
+					}
+					return null;
+				}
+			});
+		}
+		workers.invokeAll(convertTasks);
+
+		for (int shift = 0; shift < 32; shift += RADIX_BITS)
+		{
+			final int s = shift;
+			List<Callable<Object>> histogramTasks = new ArrayList<Callable<Object>>(chunkCount);
+			List<Callable<Object>> scatterTasks = new ArrayList<Callable<Object>>(chunkCount);
+			for (int c = 0; c < chunkCount; c++)
+			{
+				final int start = Math.min(count, c * chunkSize);
+				final int end = Math.min(count, start + chunkSize);
+				final int[] histogram = histograms[c];
+				histogramTasks.add(new Callable<Object>()
+				{
+					@Override
+					public Object call()
+					{
+						int[] k = buffers[0];
+						for (int i = 0; i < RADIX; i++)
+						{
+							histogram[i] = 0;
+						}
+						for (int i = start; i < end; i++)
+						{
+							histogram[(k[i] >>> s) & RADIX_MASK]++;
+						}
+						return null;
+					}
+				});
+				scatterTasks.add(new Callable<Object>()
+				{
+					@Override
+					public Object call()
+					{
+						int[] k = buffers[0], kt = buffers[1], v = buffers[2], vt = buffers[3];
+						for (int i = start; i < end; i++)
+						{
+							int bits = k[i];
+							int destination = histogram[(bits >>> s) & RADIX_MASK]++;
+							kt[destination] = bits;
+							vt[destination] = v[i];
+						}
+						return null;
+					}
+				});
+			}
+			workers.invokeAll(histogramTasks);
+
+			for (int i = 0; i < RADIX; i++)
+			{
+				totals[i] = 0;
+				for (int c = 0; c < chunkCount; c++)
+				{
+					totals[i] += histograms[c][i];
+				}
+			}
+			if (isSingleBucket(totals, count))
+			{
+				continue;
+			}
+
+			//convert the per-chunk histograms to destination offsets, keeping chunks in order for stability
+			int offset = 0;
+			for (int i = 0; i < RADIX; i++)
+			{
+				for (int c = 0; c < chunkCount; c++)
+				{
+					int h = histograms[c][i];
+					histograms[c][i] = offset;
+					offset += h;
+				}
+			}
+			workers.invokeAll(scatterTasks);
+
+			int[] swap = buffers[0];
+			buffers[0] = buffers[1];
+			buffers[1] = swap;
+			swap = buffers[2];
+			buffers[2] = buffers[3];
+			buffers[3] = swap;
+		}
+
+		finish(keys, values, count, buffers[0], buffers[2]);
+	}
+
+	private void finish(float[] keys, int[] values, int count, int[] sortedKeyBits, int[] sortedValues)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			keys[i] = fromDescendingBits(sortedKeyBits[i]);
+		}
+		if (sortedValues != values)
+		{
+			System.arraycopy(sortedValues, 0, values, 0, count);
+		}
+	}
+
+	private static boolean isSingleBucket(int[] histogram, int count)
+	{
+		for (int i = 0; i < RADIX; i++)
+		{
+			if (histogram[i] != 0)
+			{
+				return histogram[i] == count;
+			}
+		}
+		return true;
+	}
+}
@@ -20,48 +20,112 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Helper class for running tasks. Contains a number of threads that accepts
  * runnables and their owner. Ensures that only one runnable from each owner
- * exists in the runnable queue.
+ * exists in the runnable queue. The number of threads can be changed at
+ * runtime.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class SingleTaskRunner
 {
+	public final static int DEFAULT_THREAD_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+
 	private BlockingQueue<OwnerRunnable> queue = new LinkedBlockingQueue<OwnerRunnable>();
 	private Set<OwnerRunnable> set = Collections.synchronizedSet(new HashSet<OwnerRunnable>());
-	private final int THREAD_COUNT = 2;
+	private final String threadName;
+	private int threadCount;
+	private int runningThreadCount = 0;
+	private int threadNumber = 0;
 
 	public SingleTaskRunner(String threadName)
 	{
-		for (int i = 0; i < THREAD_COUNT; i++)
+		this(threadName, DEFAULT_THREAD_COUNT);
+	}
+
+	public SingleTaskRunner(String threadName, int threadCount)
+	{
+		this.threadName = threadName;
+		setThreadCount(threadCount);
+	}
+
+	/**
+	 * @return Number of threads used to run tasks
+	 */
+	public synchronized int getThreadCount()
+	{
+		return threadCount;
+	}
+
+	/**
+	 * Set the number of threads used to run tasks. If the count is reduced,
+	 * the extra threads finish once they complete their current task.
+	 * 
+	 * @param threadCount
+	 *            Number of threads
+	 */
+	public synchronized void setThreadCount(int threadCount)
+	{
+		if (threadCount < 1)
+		{
+			throw new IllegalArgumentException("Thread count must be at least 1"); //$NON-NLS-1$
+		}
+		this.threadCount = threadCount;
+		while (runningThreadCount < threadCount)
+		{
+			startThread();
+		}
+	}
+
+	private void startThread()
+	{
+		runningThreadCount++;
+		Thread thread = new Thread(new Runnable()
 		{
-			Thread thread = new Thread(new Runnable()
+			@Override
+			public void run()
 			{
-				@Override
-				public void run()
+				while (!shouldStop())
 				{
-					while (true)
+					try
 					{
+						OwnerRunnable or = queue.poll(1, TimeUnit.SECONDS);
+						if (or == null)
+						{
+							continue;
+						}
 						try
 						{
-							OwnerRunnable or = queue.take();
 							or.runnable.run();
-							set.remove(or);
 						}
-						catch (Throwable t)
+						finally
 						{
-							t.printStackTrace();
+							set.remove(or);
 						}
 					}
+					catch (Throwable t)
+					{
+						t.printStackTrace();
+					}
 				}
-			});
-			thread.setName(threadName + " " + i);
-			thread.setDaemon(true);
-			thread.start();
+			}
+		});
+		thread.setName(threadName + " " + threadNumber++);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private synchronized boolean shouldStop()
+	{
+		if (runningThreadCount > threadCount)
+		{
+			runningThreadCount--;
+			return true;
 		}
+		return false;
 	}
 
 	public synchronized boolean run(Object owner, Runnable runnable)
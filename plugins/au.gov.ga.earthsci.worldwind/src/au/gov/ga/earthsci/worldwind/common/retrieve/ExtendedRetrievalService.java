@@ -6,10 +6,11 @@
 package au.gov.ga.earthsci.worldwind.common.retrieve;
 
 import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.View;
 import gov.nasa.worldwind.WWObjectImpl;
 import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.retrieve.RetrievalFuture;
-import gov.nasa.worldwind.retrieve.RetrievalService;
 import gov.nasa.worldwind.retrieve.Retriever;
 import gov.nasa.worldwind.util.Logging;
 
@@ -22,10 +23,13 @@ import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import javax.net.ssl.SSLHandshakeException;
 
+import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
+
 /**
  * Performs threaded retrieval of data.
  *
@@ -33,7 +37,7 @@ import javax.net.ssl.SSLHandshakeException;
  * @version $Id: BasicRetrievalService.java 448 2012-03-13 14:50:11Z tgaskins $
  */
 public class ExtendedRetrievalService extends WWObjectImpl
-    implements RetrievalService, Thread.UncaughtExceptionHandler
+    implements PrioritizedRetrievalService, Thread.UncaughtExceptionHandler
 {
     // These constants are last-ditch values in case Configuration lacks defaults
     private static final int DEFAULT_QUEUE_SIZE = 100;
@@ -234,7 +238,7 @@ public class ExtendedRetrievalService extends WWObjectImpl
             
 			// ADDED
 			if (!task.isCancelled())
-				beforeDownload(task);
+				beforeDownload(task.getRetriever());
 			// ADDED
 
             thread.setName(RUNNING_THREAD_NAME_PREFIX + task.getRetriever().getName());
@@ -264,7 +268,9 @@ public class ExtendedRetrievalService extends WWObjectImpl
             RetrievalTask task = (RetrievalTask) runnable;
             
 			// ADDED
-			afterDownload(task);
+			afterDownload(task.getRetriever());
+			if (!task.isCancelled())
+				completedCount.incrementAndGet();
 			// ADDED
             
             ExtendedRetrievalService.this.activeTasks.remove(task);
@@ -543,6 +549,70 @@ public class ExtendedRetrievalService extends WWObjectImpl
 
 	// CODE BELOW ADDED 2010-08-24
 
+	protected final AtomicLong completedCount = new AtomicLong();
+	protected final AtomicLong cancelledCount = new AtomicLong();
+	protected final RetrievalPriorityVotes priorityVotes = new RetrievalPriorityVotes();
+
+	@Override
+	public void reprioritize(DrawContext dc)
+	{
+		//remove the pending tasks so that they are reordered when re-added to the priority queue
+		List<Runnable> pending = new ArrayList<Runnable>();
+		View view = dc != null ? dc.getView() : null;
+		priorityVotes.beginView(view);
+		synchronized (this)
+		{
+			executor.getQueue().drainTo(pending);
+			long now = System.currentTimeMillis();
+			for (Runnable runnable : pending)
+			{
+				RetrievalTask task = (RetrievalTask) runnable;
+				RetrievalPrioritizer prioritizer = getPrioritizer(task.getRetriever());
+				if (prioritizer == null)
+				{
+					executor.getQueue().offer(task);
+					continue;
+				}
+
+				//only cancelled once no view requires it
+				double priority = priorityVotes.vote(view, task.getRetriever(), prioritizer.getRetrievalPriority(dc));
+				if (Double.isNaN(priority))
+				{
+					cancelledCount.incrementAndGet();
+					task.cancel(false);
+					continue;
+				}
+
+				//tasks still in view are as relevant as if they were just requested
+				task.priority = priority;
+				task.getRetriever().setSubmitTime(now);
+				executor.getQueue().offer(task);
+			}
+		}
+	}
+
+	@Override
+	public long getCompletedCount()
+	{
+		return completedCount.get();
+	}
+
+	@Override
+	public long getCancelledCount()
+	{
+		return cancelledCount.get();
+	}
+
+	/**
+	 * @return The {@link RetrievalPrioritizer} attached to the given retriever,
+	 *         or null if it has none
+	 */
+	protected static RetrievalPrioritizer getPrioritizer(Retriever retriever)
+	{
+		Object prioritizer = retriever.getValue(AVKeyMore.RETRIEVAL_PRIORITIZER);
+		return prioritizer instanceof RetrievalPrioritizer ? (RetrievalPrioritizer) prioritizer : null;
+	}
+
 	private final List<RetrievalListener> listeners = new ArrayList<RetrievalListener>();
 
 	public interface RetrievalListener
@@ -567,24 +637,24 @@ public class ExtendedRetrievalService extends WWObjectImpl
 		}
 	}
 
-	private void beforeDownload(RetrievalTask task)
+	protected void beforeDownload(Retriever retriever)
 	{
 		synchronized (listeners)
 		{
 			for (int i = listeners.size() - 1; i >= 0; i--)
 			{
-				listeners.get(i).beforeRetrieve(task.getRetriever());
+				listeners.get(i).beforeRetrieve(retriever);
 			}
 		}
 	}
 
-	private void afterDownload(RetrievalTask task)
+	protected void afterDownload(Retriever retriever)
 	{
 		synchronized (listeners)
 		{
 			for (int i = listeners.size() - 1; i >= 0; i--)
 			{
-				listeners.get(i).afterRetrieve(task.getRetriever());
+				listeners.get(i).afterRetrieve(retriever);
 			}
 		}
 	}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.retrieve;
+
+import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.retrieve.RetrievalService;
+import gov.nasa.worldwind.retrieve.Retriever;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
+
+/**
+ * Limits the tiles retrieved by a {@link TilePrefetcher}: the total number of
+ * tiles that can be requested (which bounds the bandwidth and cache space
+ * used), and the number of retrievals that can be pending in the
+ * {@link RetrievalService} at once (so that prefetching doesn't fill the
+ * retrieval queue). Prefetching pauses while the service is busy, and resumes
+ * once it has capacity again.
+ * <p/>
+ * The budget is also the {@link RetrievalPrioritizer} for the prefetched
+ * tiles' retrievers, which keeps them behind any tiles required by the current
+ * view, and cancels any still queued once the budget is cancelled.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class PrefetchBudget implements RetrievalPrioritizer
+{
+	/**
+	 * Retrieval priority of prefetched tiles; larger than the distance based
+	 * priorities of tiles required by the current view
+	 */
+	public static final double PREFETCH_PRIORITY = 1e12;
+
+	/**
+	 * Time (in milliseconds) between checks of whether the retrieval service
+	 * can accept more prefetch tiles, while prefetching is paused
+	 */
+	public static final long BUSY_WAIT_INTERVAL = 100;
+
+	private final AtomicInteger remaining;
+	private final int maxPending;
+	private volatile boolean cancelled = false;
+
+	/**
+	 * @param maxTiles
+	 *            Maximum number of tiles to request
+	 * @param maxPending
+	 *            Maximum number of retrievals pending in the retrieval service
+	 *            (including those not requested by the prefetcher) before
+	 *            prefetching stops; 0 for no limit
+	 */
+	public PrefetchBudget(int maxTiles, int maxPending)
+	{
+		this.remaining = new AtomicInteger(maxTiles);
+		this.maxPending = maxPending;
+	}
+
+	/**
+	 * Reserve a tile retrieval from this budget. While the retrieval service
+	 * is too busy, prefetching is paused: this waits (on the calling
+	 * prefetch thread) until the service has capacity again, or this budget
+	 * is cancelled.
+	 * 
+	 * @return True if the tile can be requested, false if this budget is
+	 *         exhausted or cancelled
+	 */
+	public boolean reserve()
+	{
+		while (!isExhausted())
+		{
+			if (!isServiceBusy())
+			{
+				return remaining.getAndDecrement() > 0;
+			}
+			try
+			{
+				Thread.sleep(BUSY_WAIT_INTERVAL);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return Is the retrieval service too busy to request more prefetch
+	 *         tiles?
+	 */
+	protected boolean isServiceBusy()
+	{
+		RetrievalService service = WorldWind.getRetrievalService();
+		return !service.isAvailable() || (maxPending > 0 && service.getNumRetrieversPending() >= maxPending);
+	}
+
+	/**
+	 * @return Can no more tiles be requested from this budget?
+	 */
+	public boolean isExhausted()
+	{
+		return cancelled || remaining.get() <= 0;
+	}
+
+	/**
+	 * @return Number of tiles that can still be requested
+	 */
+	public int getRemaining()
+	{
+		return Math.max(0, remaining.get());
+	}
+
+	/**
+	 * Cancel this budget; no more tiles can be requested, and retrievals
+	 * requested that are still queued are cancelled.
+	 */
+	public void cancel()
+	{
+		cancelled = true;
+	}
+
+	/**
+	 * @return Has this budget been cancelled?
+	 */
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
+	/**
+	 * Attach this budget to a prefetch retriever, and run it at the prefetch
+	 * priority.
+	 * 
+	 * @param retriever
+	 *            Retriever to run
+	 */
+	public void runRetriever(Retriever retriever)
+	{
+		retriever.setValue(AVKeyMore.RETRIEVAL_PRIORITIZER, this);
+		WorldWind.getRetrievalService().runRetriever(retriever, PREFETCH_PRIORITY);
+	}
+
+	@Override
+	public double getRetrievalPriority(DrawContext dc)
+	{
+		return cancelled ? Double.NaN : PREFETCH_PRIORITY;
+	}
+}
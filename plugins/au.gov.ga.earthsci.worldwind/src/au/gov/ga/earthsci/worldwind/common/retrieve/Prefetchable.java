@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.retrieve;
+
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.globes.Globe;
+
+/**
+ * Implemented by tiled layers and elevation models that can retrieve the
+ * tiles required to view a region ahead of time, such as before the camera
+ * arrives at the end of an animation.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ * @see TilePrefetcher
+ */
+public interface Prefetchable
+{
+	/**
+	 * Retrieve the tiles required to view the given region at the given
+	 * resolution that aren't already available locally. Tiles are downloaded
+	 * into the file store, not loaded into memory.
+	 * <p/>
+	 * Implementations should stop requesting tiles once
+	 * {@link PrefetchBudget#reserve()} returns false, and should attach the
+	 * budget to each retriever as its {@link RetrievalPrioritizer}. As
+	 * reserving can wait while the retrieval service is busy, this is called
+	 * on a background thread.
+	 * 
+	 * @param globe
+	 *            Globe the region is on
+	 * @param sector
+	 *            Region to retrieve tiles for
+	 * @param texelSize
+	 *            Required resolution, in radians per texel
+	 * @param budget
+	 *            Budget limiting the number of tiles retrieved
+	 */
+	void prefetch(Globe globe, Sector sector, double texelSize, PrefetchBudget budget);
+}
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.retrieve;
+
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.retrieve.RetrievalService;
+import gov.nasa.worldwind.retrieve.Retriever;
+
+/**
+ * {@link RetrievalService} that can reorder its pending retrievals from the
+ * current view, using the {@link RetrievalPrioritizer}s attached to their
+ * {@link Retriever}s.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public interface PrioritizedRetrievalService extends RetrievalService
+{
+	/**
+	 * Re-score the pending retrievals that haven't started, and cancel those
+	 * that are no longer required. Retrievals without a
+	 * {@link RetrievalPrioritizer} are left unchanged. Should be called on
+	 * the rendering thread once per frame, by each view sharing the service;
+	 * retrievals are only cancelled once no view requires them.
+	 * 
+	 * @param dc
+	 *            Draw context of the frame that has just been rendered
+	 */
+	void reprioritize(DrawContext dc);
+
+	/**
+	 * @return Number of retrievals that have run to completion
+	 */
+	long getCompletedCount();
+
+	/**
+	 * @return Number of pending retrievals that have been cancelled because
+	 *         they were no longer required
+	 */
+	long getCancelledCount();
+}
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.retrieve;
+
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.retrieve.Retriever;
+import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
+
+/**
+ * Scores a pending retrieval against the current view, so that a
+ * {@link PrioritizedRetrievalService} can reorder its queued retrievals each
+ * frame, and cancel those that are no longer required (such as retrievals for
+ * tiles that have left the view after the user panned away).
+ * <p/>
+ * The layer or elevation model that creates a {@link Retriever} attaches a
+ * prioritizer to it using the {@link AVKeyMore#RETRIEVAL_PRIORITIZER} key.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public interface RetrievalPrioritizer
+{
+	/**
+	 * Calculate the priority of a pending retrieval in the view being
+	 * rendered. Called on the rendering thread, once per frame for each
+	 * queued retrieval.
+	 * 
+	 * @param dc
+	 *            Draw context of the frame that has just been rendered
+	 * @return The retrieval's priority (retrievals with smaller values are
+	 *         retrieved first, such as the distance of a tile from the eye), or
+	 *         {@link Double#NaN} if the retrieval is no longer required
+	 */
+	double getRetrievalPriority(DrawContext dc);
+}
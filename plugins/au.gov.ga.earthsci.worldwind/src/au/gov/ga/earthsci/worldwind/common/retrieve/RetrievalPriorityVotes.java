@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.retrieve;
+
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.retrieve.Retriever;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.WeakHashMap;
+
+/**
+ * Combines the priorities calculated for a {@link PrioritizedRetrievalService}'s
+ * pending retrievals by each {@link View} that reprioritizes it. When several
+ * world windows share the retrieval service, a retrieval is only cancelled
+ * once every view agrees that it is no longer required, and is ordered by the
+ * view that needs it most.
+ * <p/>
+ * Views that haven't reprioritized for {@link #DEFAULT_VIEW_TIMEOUT}
+ * milliseconds (such as those of closed windows) no longer take part.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class RetrievalPriorityVotes
+{
+	/**
+	 * Default time (in milliseconds) after which a view that hasn't
+	 * reprioritized no longer takes part
+	 */
+	public static final long DEFAULT_VIEW_TIMEOUT = 2000;
+
+	private final long viewTimeout;
+	private final Map<View, Long> views = new HashMap<View, Long>();
+	private final Map<Retriever, Map<View, Double>> votes = new WeakHashMap<Retriever, Map<View, Double>>();
+
+	public RetrievalPriorityVotes()
+	{
+		this(DEFAULT_VIEW_TIMEOUT);
+	}
+
+	/**
+	 * @param viewTimeout
+	 *            Time (in milliseconds) after which a view that hasn't
+	 *            reprioritized no longer takes part
+	 */
+	public RetrievalPriorityVotes(long viewTimeout)
+	{
+		this.viewTimeout = viewTimeout;
+	}
+
+	/**
+	 * Start reprioritizing from the given view. Must be called before the
+	 * view's {@link #vote(View, Retriever, double) votes}.
+	 * 
+	 * @param view
+	 *            View being reprioritized from
+	 */
+	public synchronized void beginView(View view)
+	{
+		long now = System.currentTimeMillis();
+		views.put(view, now);
+		for (Iterator<Entry<View, Long>> iterator = views.entrySet().iterator(); iterator.hasNext();)
+		{
+			if (now - iterator.next().getValue() > viewTimeout)
+			{
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Record a view's priority for a pending retrieval, and combine it with
+	 * the latest priorities from the other views.
+	 * 
+	 * @param view
+	 *            View the priority was calculated from
+	 * @param retriever
+	 *            Retriever of the pending retrieval
+	 * @param priority
+	 *            The view's priority for the retrieval (smaller values first),
+	 *            or {@link Double#NaN} if the view doesn't require it
+	 * @return The smallest priority of the views that require the retrieval;
+	 *         {@link Double#POSITIVE_INFINITY} if no view that has calculated
+	 *         a priority requires it, but some views haven't yet; or
+	 *         {@link Double#NaN} if no view requires it
+	 */
+	public synchronized double vote(View view, Retriever retriever, double priority)
+	{
+		Map<View, Double> retrieverVotes = votes.get(retriever);
+		if (retrieverVotes == null)
+		{
+			retrieverVotes = new HashMap<View, Double>();
+			votes.put(retriever, retrieverVotes);
+		}
+		retrieverVotes.put(view, priority);
+		retrieverVotes.keySet().retainAll(views.keySet());
+
+		double combined = Double.NaN;
+		for (Double vote : retrieverVotes.values())
+		{
+			if (!vote.isNaN() && !(combined <= vote))
+			{
+				combined = vote;
+			}
+		}
+		if (Double.isNaN(combined) && retrieverVotes.size() < views.size())
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+		return combined;
+	}
+}
@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.retrieve;
+
+import gov.nasa.worldwind.Model;
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.globes.ElevationModel;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.layers.Layer;
+import gov.nasa.worldwind.terrain.CompoundElevationModel;
+import gov.nasa.worldwind.util.Level;
+import gov.nasa.worldwind.util.LevelSet;
+import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.Tile;
+import gov.nasa.worldwind.util.TileKey;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import au.gov.ga.earthsci.worldwind.common.util.WorkerPool;
+
+/**
+ * Retrieves the tiles that will be required to view a location before the
+ * camera gets there, such as at the end of a bookmark transition, so that the
+ * animation doesn't end on a blurry globe while the tiles download.
+ * <p/>
+ * For each camera position, the region around the look-at position that is
+ * visible from the eye, and the resolution required at that distance, are
+ * estimated. Each enabled {@link Prefetchable} layer in the model, and each
+ * enabled {@link Prefetchable} elevation model in the globe, is then asked to
+ * retrieve its tiles for that region and resolution, within a
+ * {@link PrefetchBudget}. Tiles are downloaded to the file store at a low
+ * priority, and are loaded from there when the camera arrives.
+ * <p/>
+ * The region is an estimate from the field of view, and doesn't account for
+ * tilted views; it's intended to cover the centre of the view, where the
+ * detail is noticed first.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class TilePrefetcher
+{
+	/** Default number of positions sampled along a transition */
+	public static final int DEFAULT_PATH_SAMPLES = 3;
+
+	/**
+	 * Scale applied to the radius of the region visible at the look-at
+	 * position, to cover the corners of the viewport
+	 */
+	private static final double FOOTPRINT_SCALE = 1.5;
+
+	private static final WorkerPool worker = new WorkerPool(TilePrefetcher.class.getName(), 1);
+
+	private final View view;
+	private final Model model;
+
+	/**
+	 * @param view
+	 *            View that will be animated, used for its globe and field of
+	 *            view
+	 * @param model
+	 *            Model containing the layers to prefetch tiles for
+	 */
+	public TilePrefetcher(View view, Model model)
+	{
+		this.view = view;
+		this.model = model;
+	}
+
+	/**
+	 * Prefetch the tiles required to view the given look-at position from the
+	 * given eye position, in the background.
+	 * 
+	 * @param eyePosition
+	 *            Position of the camera
+	 * @param lookatPosition
+	 *            Position the camera is looking at
+	 * @param budget
+	 *            Budget limiting the tiles retrieved
+	 */
+	public void prefetch(final Position eyePosition, final Position lookatPosition, final PrefetchBudget budget)
+	{
+		worker.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				prefetchNow(eyePosition, lookatPosition, budget);
+			}
+		});
+	}
+
+	/**
+	 * Prefetch the tiles required along a camera transition, in the
+	 * background. The destination is prefetched first, as that's where the
+	 * camera comes to rest, followed by the given number of positions sampled
+	 * backwards along the great circle path to the start.
+	 * 
+	 * @param beginEyePosition
+	 *            Eye position at the start of the transition
+	 * @param beginLookatPosition
+	 *            Look-at position at the start of the transition
+	 * @param endEyePosition
+	 *            Eye position at the end of the transition
+	 * @param endLookatPosition
+	 *            Look-at position at the end of the transition
+	 * @param samples
+	 *            Number of positions to sample between the start and end
+	 * @param budget
+	 *            Budget limiting the tiles retrieved
+	 */
+	public void prefetchTransition(final Position beginEyePosition, final Position beginLookatPosition,
+			final Position endEyePosition, final Position endLookatPosition, final int samples,
+			final PrefetchBudget budget)
+	{
+		worker.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				prefetchNow(endEyePosition, endLookatPosition, budget);
+				for (int i = samples; i > 0 && !budget.isExhausted(); i--)
+				{
+					double amount = i / (double) (samples + 1);
+					prefetchNow(Position.interpolateGreatCircle(amount, beginEyePosition, endEyePosition),
+							Position.interpolateGreatCircle(amount, beginLookatPosition, endLookatPosition), budget);
+				}
+			}
+		});
+	}
+
+	protected void prefetchNow(Position eyePosition, Position lookatPosition, PrefetchBudget budget)
+	{
+		Globe globe = view.getGlobe();
+		if (globe == null || budget.isExhausted())
+		{
+			return;
+		}
+
+		double distance =
+				globe.computePointFromPosition(eyePosition).distanceTo3(
+						globe.computePointFromPosition(lookatPosition));
+		double texelSize = view.computePixelSizeAtDistance(distance) / globe.getRadius();
+		double radius = distance * Math.tan(view.getFieldOfView().radians / 2d) * FOOTPRINT_SCALE;
+		Sector sector = computeSector(globe, lookatPosition, radius);
+
+		try
+		{
+			for (Layer layer : model.getLayers())
+			{
+				if (budget.isExhausted())
+				{
+					return;
+				}
+				if (layer.isEnabled() && layer instanceof Prefetchable)
+				{
+					((Prefetchable) layer).prefetch(globe, sector, texelSize, budget);
+				}
+			}
+			prefetchElevations(globe.getElevationModel(), globe, sector, texelSize, budget);
+		}
+		catch (RuntimeException e)
+		{
+			//prefetching is only an optimisation, so don't let it interrupt the caller
+			Logging.logger().log(java.util.logging.Level.WARNING, "Error prefetching tiles", e);
+		}
+	}
+
+	protected void prefetchElevations(ElevationModel elevationModel, Globe globe, Sector sector, double texelSize,
+			PrefetchBudget budget)
+	{
+		if (elevationModel == null || !elevationModel.isEnabled() || budget.isExhausted())
+		{
+			return;
+		}
+		if (elevationModel instanceof CompoundElevationModel)
+		{
+			for (ElevationModel child : ((CompoundElevationModel) elevationModel).getElevationModels())
+			{
+				prefetchElevations(child, globe, sector, texelSize, budget);
+			}
+		}
+		else if (elevationModel instanceof Prefetchable)
+		{
+			((Prefetchable) elevationModel).prefetch(globe, sector, texelSize, budget);
+		}
+	}
+
+	/**
+	 * Compute the sector bounding a circle on the globe.
+	 */
+	protected static Sector computeSector(Globe globe, LatLon center, double radius)
+	{
+		double angle = radius / globe.getRadius();
+		double minLat = Math.max(-Math.PI / 2d, center.getLatitude().radians - angle);
+		double maxLat = Math.min(Math.PI / 2d, center.getLatitude().radians + angle);
+		double cosLat = Math.cos(Math.max(Math.abs(minLat), Math.abs(maxLat)));
+		double lonAngle = cosLat > 1e-6 ? Math.min(Math.PI, angle / cosLat) : Math.PI;
+		double minLon = Math.max(-Math.PI, center.getLongitude().radians - lonAngle);
+		double maxLon = Math.min(Math.PI, center.getLongitude().radians + lonAngle);
+		return Sector.fromRadians(minLat, maxLat, minLon, maxLon);
+	}
+
+	/**
+	 * Find the level in a level set that should be used for the given
+	 * resolution: the first non-empty level with texels at least as small as
+	 * the given texel size, or the last non-empty level if there is none.
+	 * 
+	 * @param levels
+	 *            Level set to search
+	 * @param texelSize
+	 *            Required resolution, in radians per texel
+	 * @return Level to prefetch, or null if all levels are empty
+	 */
+	public static Level getPrefetchLevel(LevelSet levels, double texelSize)
+	{
+		Level result = null;
+		for (Level level : levels.getLevels())
+		{
+			if (level.isEmpty())
+			{
+				continue;
+			}
+			result = level;
+			if (level.getTexelSize() <= texelSize)
+			{
+				break;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Calculate the keys of the tiles in a level that intersect a sector.
+	 * 
+	 * @param levels
+	 *            Level set containing the level
+	 * @param level
+	 *            Level of the tiles
+	 * @param sector
+	 *            Sector to find tiles in
+	 * @return Keys of the tiles intersecting the sector
+	 */
+	public static List<TileKey> getTileKeys(LevelSet levels, Level level, Sector sector)
+	{
+		List<TileKey> keys = new ArrayList<TileKey>();
+		Sector intersection = sector.intersection(levels.getSector());
+		if (intersection == null)
+		{
+			return keys;
+		}
+
+		Angle dLat = level.getTileDelta().getLatitude();
+		Angle dLon = level.getTileDelta().getLongitude();
+		LatLon origin = levels.getTileOrigin();
+		int firstRow = Tile.computeRow(dLat, intersection.getMinLatitude(), origin.getLatitude());
+		int lastRow = Tile.computeRow(dLat, intersection.getMaxLatitude(), origin.getLatitude());
+		int firstCol = Tile.computeColumn(dLon, intersection.getMinLongitude(), origin.getLongitude());
+		int lastCol = Tile.computeColumn(dLon, intersection.getMaxLongitude(), origin.getLongitude());
+
+		for (int row = firstRow; row <= lastRow; row++)
+		{
+			for (int col = firstCol; col <= lastCol; col++)
+			{
+				keys.add(new TileKey(level.getLevelNumber(), row, col, level.getCacheName()));
+			}
+		}
+		return keys;
+	}
+}
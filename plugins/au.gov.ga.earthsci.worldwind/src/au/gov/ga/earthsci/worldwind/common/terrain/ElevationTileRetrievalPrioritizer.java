@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.terrain;
+
+import gov.nasa.worldwind.geom.Extent;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.ElevationModel;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.util.Tile;
+import au.gov.ga.earthsci.worldwind.common.retrieve.RetrievalPrioritizer;
+
+/**
+ * {@link RetrievalPrioritizer} for the retrieval of an elevation model tile.
+ * Retrievals are cancelled if the tile's sector is no longer in view, and
+ * otherwise prioritized by the tile's distance from the eye.
+ * <p/>
+ * Elevation tiles have always been retrieved ahead of imagery, so the
+ * priorities are negative: nearer tiles have smaller (more negative) values,
+ * and all are smaller than the (distance based) priorities of image tiles.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ElevationTileRetrievalPrioritizer implements RetrievalPrioritizer
+{
+	private final ElevationModel model;
+	private final Tile tile;
+
+	public ElevationTileRetrievalPrioritizer(ElevationModel model, Tile tile)
+	{
+		this.model = model;
+		this.tile = tile;
+	}
+
+	@Override
+	public double getRetrievalPriority(DrawContext dc)
+	{
+		if (!model.isEnabled())
+		{
+			return Double.NaN;
+		}
+
+		Sector sector = tile.getSector();
+		Position eyePosition = dc.getView().getEyePosition();
+		//always keep the tile under the eye, which may be outside a steeply tilted frustum
+		if (!sector.contains(eyePosition))
+		{
+			Extent extent = Sector.computeBoundingBox(dc.getGlobe(), dc.getVerticalExaggeration(), sector);
+			if (!extent.intersects(dc.getView().getFrustumInModelCoordinates()))
+			{
+				return Double.NaN;
+			}
+		}
+
+		Vec4 centroid = dc.getGlobe().computePointFromLocation(sector.getCentroid());
+		double distance = centroid.distanceTo3(dc.getView().getEyePoint());
+		return -1d / (1d + distance);
+	}
+}
@@ -19,13 +19,17 @@ import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.cache.FileStore;
 import gov.nasa.worldwind.exception.WWRuntimeException;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.retrieve.HTTPRetriever;
 import gov.nasa.worldwind.retrieve.URLRetriever;
 import gov.nasa.worldwind.terrain.BasicElevationModel;
 import gov.nasa.worldwind.util.BufferWrapper;
 import gov.nasa.worldwind.util.DataConfigurationUtils;
+import gov.nasa.worldwind.util.Level;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.Tile;
+import gov.nasa.worldwind.util.TileKey;
 import gov.nasa.worldwind.util.WWXML;
 
 import java.io.IOException;
@@ -36,6 +40,9 @@ import javax.xml.xpath.XPath;
 import org.w3c.dom.Element;
 
 import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
+import au.gov.ga.earthsci.worldwind.common.retrieve.PrefetchBudget;
+import au.gov.ga.earthsci.worldwind.common.retrieve.Prefetchable;
+import au.gov.ga.earthsci.worldwind.common.retrieve.TilePrefetcher;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
 import au.gov.ga.earthsci.worldwind.common.util.IOUtil;
 
@@ -48,7 +55,7 @@ import au.gov.ga.earthsci.worldwind.common.util.IOUtil;
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
-public class SharedLockWMSBasicElevationModel extends BoundedWMSBasicElevationModel
+public class SharedLockWMSBasicElevationModel extends BoundedWMSBasicElevationModel implements Prefetchable
 {
 	protected final Object fileLock;
 	protected boolean extractZipEntry = false;
@@ -178,15 +185,63 @@ public class SharedLockWMSBasicElevationModel extends BoundedWMSBasicElevationMo
 	@Override
 	protected void retrieveRemoteElevations(final Tile tile,
 			gov.nasa.worldwind.terrain.BasicElevationModel.DownloadPostProcessor postProcessor)
+	{
+		URLRetriever retriever = createRetriever(tile, postProcessor);
+		if (retriever == null || WorldWind.getRetrievalService().contains(retriever))
+			return;
+
+		WorldWind.getRetrievalService().runRetriever(retriever, 0d);
+	}
+
+	@Override
+	public void prefetch(Globe globe, Sector sector, double texelSize, PrefetchBudget budget)
+	{
+		if (!this.isEnabled() || !this.isNetworkRetrievalEnabled())
+			return;
+
+		Level level = TilePrefetcher.getPrefetchLevel(this.getLevels(), texelSize);
+		if (level == null)
+			return;
+
+		for (TileKey key : TilePrefetcher.getTileKeys(this.getLevels(), level, sector))
+		{
+			Tile tile = new Tile(this.getLevels().computeSectorForKey(key), level, key.getRow(), key.getColumn());
+			if (this.getLevels().isResourceAbsent(tile)
+					|| this.getDataFileStore().findFile(tile.getPath(), false) != null)
+				continue;
+
+			//don't spend the budget on tiles that are already being retrieved
+			URLRetriever retriever = createRetriever(tile, null);
+			if (retriever == null || WorldWind.getRetrievalService().contains(retriever))
+				continue;
+
+			if (!budget.reserve())
+				return;
+			budget.runRetriever(retriever);
+		}
+	}
+
+	/**
+	 * Create a retriever for the given tile's elevations.
+	 * 
+	 * @param tile
+	 *            Tile to retrieve
+	 * @param postProcessor
+	 *            Post processor for the retriever; if null, a
+	 *            {@link DownloadPostProcessor} is used
+	 * @return Retriever for the tile, or null if the tile cannot be retrieved
+	 */
+	protected URLRetriever createRetriever(final Tile tile,
+			gov.nasa.worldwind.terrain.BasicElevationModel.DownloadPostProcessor postProcessor)
 	{
 		if (!this.isNetworkRetrievalEnabled())
 		{
 			this.getLevels().markResourceAbsent(tile);
-			return;
+			return null;
 		}
 
 		if (!WorldWind.getRetrievalService().isAvailable())
-			return;
+			return null;
 
 		java.net.URL url = null;
 		try
@@ -195,14 +250,14 @@ public class SharedLockWMSBasicElevationModel extends BoundedWMSBasicElevationMo
 			if (WorldWind.getNetworkStatus().isHostUnavailable(url))
 			{
 				this.getLevels().markResourceAbsent(tile);
-				return;
+				return null;
 			}
 		}
 		catch (java.net.MalformedURLException e)
 		{
 			Logging.logger().log(java.util.logging.Level.SEVERE,
 					Logging.getMessage("TiledElevationModel.ExceptionCreatingElevationsUrl", url), e);
-			return;
+			return null;
 		}
 
 		if (postProcessor == null)
@@ -214,10 +269,8 @@ public class SharedLockWMSBasicElevationModel extends BoundedWMSBasicElevationMo
 		{
 			retriever.setValue(URLRetriever.EXTRACT_ZIP_ENTRY, "true"); // supports legacy elevation models
 		}
+		retriever.setValue(AVKeyMore.RETRIEVAL_PRIORITIZER, new ElevationTileRetrievalPrioritizer(this, tile));
 		//END MODIFICATION
-		if (WorldWind.getRetrievalService().contains(retriever))
-			return;
-
-		WorldWind.getRetrievalService().runRetriever(retriever, 0d);
+		return retriever;
 	}
 }
@@ -30,6 +30,7 @@ public interface AVKeyMore extends AVKey
 	final static String DELEGATE_KIT = "au.gov.ga.worldwind.AVKeyMore.DelegateKit";
 	final static String DOWNLOADER_CONNECT_TIMEOUT = "au.gov.ga.worldwind.AVKeyMore.DownloaderConnectTimeout";
 	final static String DOWNLOADER_READ_TIMEOUT = "au.gov.ga.worldwind.AVKeyMore.DownloaderReadTimeout";
+	final static String RETRIEVAL_PRIORITIZER = "au.gov.ga.worldwind.AVKeyMore.RetrievalPrioritizer";
 	final static String EXPIRY_TIMESPAN = "au.gov.ga.worldwind.AVKeyMore.ExpiryTimespan";
 	final static String EXPIRY_START_TIME = "au.gov.ga.worldwind.AVKeyMore.ExpiryStartTime";
 	final static String MINIMUM_DISTANCE = "au.gov.ga.worldwind.AVKeyMore.MinimumDistance";
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import java.util.Arrays;
+
+/**
+ * A compiled form of a colour map, for mapping large numbers of values to
+ * packed ARGB colours without walking the colour map entries or allocating a
+ * colour per value.
+ * <p/>
+ * Continuous colour maps are compiled into a table of colours sampled evenly
+ * over a value range; values are mapped to the nearest sample, and values
+ * outside the range are clamped to the first or last sample. Colour maps that
+ * only match exact values are compiled into a sorted table of those values.
+ * <p/>
+ * NaN values, and values equal to the NODATA value passed to the bulk
+ * mapping methods, are mapped to the NODATA colour.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class ColorLookupTable
+{
+	/**
+	 * Default number of samples in a table compiled from a continuous colour
+	 * map
+	 */
+	public static final int DEFAULT_SIZE = 4096;
+
+	private final int[] colors;
+	private final double minValue;
+	private final double maxValue;
+	private final double scale;
+	private final double[] exactValues;
+	private final int nodataColor;
+
+	/**
+	 * Create a lookup table from colours sampled evenly over the given range,
+	 * the first at minValue and the last at maxValue.
+	 * 
+	 * @param colors
+	 *            Packed ARGB colour samples
+	 * @param minValue
+	 *            Value of the first sample
+	 * @param maxValue
+	 *            Value of the last sample
+	 * @param nodataColor
+	 *            Packed ARGB colour for NODATA values
+	 */
+	public ColorLookupTable(int[] colors, double minValue, double maxValue, int nodataColor)
+	{
+		Validate.isTrue(colors != null && colors.length > 0, "At least one colour is required");
+		this.colors = colors;
+		this.minValue = Math.min(minValue, maxValue);
+		this.maxValue = Math.max(minValue, maxValue);
+		this.scale = this.maxValue > this.minValue ? (colors.length - 1) / (this.maxValue - this.minValue) : 0;
+		this.exactValues = null;
+		this.nodataColor = nodataColor;
+	}
+
+	/**
+	 * Create a lookup table that maps only the given values exactly; all
+	 * other values map to the NODATA colour.
+	 * 
+	 * @param exactValues
+	 *            Values to match, in ascending order
+	 * @param colors
+	 *            Packed ARGB colour for each value
+	 * @param nodataColor
+	 *            Packed ARGB colour for NODATA and unmatched values
+	 */
+	public ColorLookupTable(double[] exactValues, int[] colors, int nodataColor)
+	{
+		Validate.isTrue(exactValues != null && colors != null && exactValues.length == colors.length,
+				"A colour is required for each value");
+		this.colors = colors;
+		this.exactValues = exactValues;
+		this.minValue = exactValues.length > 0 ? exactValues[0] : 0;
+		this.maxValue = exactValues.length > 0 ? exactValues[exactValues.length - 1] : 0;
+		this.scale = 0;
+		this.nodataColor = nodataColor;
+	}
+
+	/**
+	 * @return The packed ARGB colour for the given value
+	 */
+	public int getColor(double value)
+	{
+		if (Double.isNaN(value))
+		{
+			return nodataColor;
+		}
+		if (exactValues != null)
+		{
+			int index = Arrays.binarySearch(exactValues, value);
+			return index >= 0 ? colors[index] : nodataColor;
+		}
+		if (value <= minValue)
+		{
+			return colors[0];
+		}
+		if (value >= maxValue)
+		{
+			return colors[colors.length - 1];
+		}
+		return colors[(int) ((value - minValue) * scale + 0.5)];
+	}
+
+	/**
+	 * @return The packed ARGB colour at the given index in this table
+	 */
+	public int getColorAt(int index)
+	{
+		return colors[index];
+	}
+
+	/**
+	 * Map a run of values to packed ARGB colours.
+	 * 
+	 * @param values
+	 *            Values to map
+	 * @param valuesOffset
+	 *            Index of the first value to map
+	 * @param target
+	 *            Array to put the colours into
+	 * @param targetOffset
+	 *            Index in the target array of the first colour
+	 * @param count
+	 *            Number of values to map
+	 * @param nodataValue
+	 *            Values equal to this are mapped to the NODATA colour; may be
+	 *            <code>null</code>
+	 */
+	public void map(float[] values, int valuesOffset, int[] target, int targetOffset, int count, Float nodataValue)
+	{
+		boolean hasNodata = nodataValue != null;
+		float nodata = hasNodata ? nodataValue : Float.NaN;
+		for (int i = 0; i < count; i++)
+		{
+			float value = values[valuesOffset + i];
+			target[targetOffset + i] = hasNodata && value == nodata ? nodataColor : getColor(value);
+		}
+	}
+
+	/**
+	 * Map values to packed ARGB colours.
+	 * 
+	 * @return An array containing a colour for each value
+	 * @see #map(float[], int, int[], int, int, Float)
+	 */
+	public int[] map(float[] values, Float nodataValue)
+	{
+		int[] target = new int[values.length];
+		map(values, 0, target, 0, values.length, nodataValue);
+		return target;
+	}
+
+	/**
+	 * Map a run of values to RGBA colours, with components in the range
+	 * <code>[0,1]</code>, as used by vertex colour buffers.
+	 * 
+	 * @param values
+	 *            Values to map
+	 * @param valuesOffset
+	 *            Index of the first value to map
+	 * @param target
+	 *            Array to put the colour components into
+	 * @param targetOffset
+	 *            Index in the target array of the first colour's red component
+	 * @param count
+	 *            Number of values to map
+	 * @param nodataValue
+	 *            Values equal to this are mapped to the NODATA colour; may be
+	 *            <code>null</code>
+	 */
+	public void mapToRGBA(float[] values, int valuesOffset, float[] target, int targetOffset, int count,
+			Float nodataValue)
+	{
+		boolean hasNodata = nodataValue != null;
+		float nodata = hasNodata ? nodataValue : Float.NaN;
+		for (int i = 0, j = targetOffset; i < count; i++, j += 4)
+		{
+			float value = values[valuesOffset + i];
+			int argb = hasNodata && value == nodata ? nodataColor : getColor(value);
+			target[j] = ((argb >> 16) & 0xff) / 255f;
+			target[j + 1] = ((argb >> 8) & 0xff) / 255f;
+			target[j + 2] = (argb & 0xff) / 255f;
+			target[j + 3] = ((argb >>> 24) & 0xff) / 255f;
+		}
+	}
+
+	/**
+	 * @return The packed ARGB colour used for NODATA values
+	 */
+	public int getNodataColor()
+	{
+		return nodataColor;
+	}
+
+	/**
+	 * @return The smallest value that maps to a distinct colour
+	 */
+	public double getMinValue()
+	{
+		return minValue;
+	}
+
+	/**
+	 * @return The largest value that maps to a distinct colour
+	 */
+	public double getMaxValue()
+	{
+		return maxValue;
+	}
+
+	/**
+	 * @return The number of colours in this table
+	 */
+	public int getSize()
+	{
+		return colors.length;
+	}
+}
@@ -129,4 +129,61 @@ public class ColorMap extends TreeMap<Double, Color>
 			return calculateColorAsPercentage(value, minimum, maximum);
 		return calculateColor(value);
 	}
+
+	/**
+	 * Compile this color map into a lookup table that maps values in the
+	 * range of this map's keys, as per {@link #calculateColor(double)}.
+	 * Values outside the range are clamped to it, which matches
+	 * {@link #calculateColor(double)}. NODATA values map to transparent.
+	 * <p/>
+	 * The table is a snapshot; it does not reflect later changes to this map.
+	 * 
+	 * @param size
+	 *            Number of colours in the table
+	 * @return Lookup table for this color map
+	 */
+	public ColorLookupTable getLookupTable(int size)
+	{
+		double minimum = isEmpty() ? 0 : firstKey();
+		double maximum = isEmpty() ? 0 : lastKey();
+		int[] colors = new int[size];
+		for (int i = 0; i < size; i++)
+		{
+			colors[i] = calculateColor(sampleValue(i, size, minimum, maximum)).getRGB();
+		}
+		return new ColorLookupTable(colors, minimum, maximum, 0);
+	}
+
+	/**
+	 * Compile this color map into a lookup table that maps values in the
+	 * given range, as per
+	 * {@link #calculateColorNotingIsValuesPercentages(double, double, double)}.
+	 * Values outside the range are clamped to it. NODATA values map to
+	 * transparent.
+	 * <p/>
+	 * The table is a snapshot; it does not reflect later changes to this map.
+	 * 
+	 * @param size
+	 *            Number of colours in the table
+	 * @param minimum
+	 *            Minimum value to be mapped
+	 * @param maximum
+	 *            Maximum value to be mapped
+	 * @return Lookup table for this color map
+	 */
+	public ColorLookupTable getLookupTable(int size, double minimum, double maximum)
+	{
+		int[] colors = new int[size];
+		for (int i = 0; i < size; i++)
+		{
+			double value = sampleValue(i, size, minimum, maximum);
+			colors[i] = calculateColorNotingIsValuesPercentages(value, minimum, maximum).getRGB();
+		}
+		return new ColorLookupTable(colors, minimum, maximum, 0);
+	}
+
+	private static double sampleValue(int i, int size, double minimum, double maximum)
+	{
+		return size > 1 ? minimum + (maximum - minimum) * i / (size - 1) : minimum;
+	}
 }
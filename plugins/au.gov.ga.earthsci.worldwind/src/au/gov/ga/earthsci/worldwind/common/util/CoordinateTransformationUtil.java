@@ -15,17 +15,49 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
 import org.gdal.osr.CoordinateTransformation;
 import org.gdal.osr.SpatialReference;
 
 /**
  * Utility class for the creation of {@link CoordinateTransformation} and
- * {@link SpatialReference} instances.
+ * {@link SpatialReference} instances, and for transforming arrays of points.
+ * <p/>
+ * {@link CoordinateTransformation} instances are not thread safe. The
+ * {@link #transformPoints(CoordinateTransformation, double[], int, int)}
+ * method synchronizes on the transformation it is passed; large arrays are
+ * split across worker threads, each using its own copy of the
+ * transformation. Copies can only be created for transformations created by
+ * this class.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class CoordinateTransformationUtil
 {
+	/**
+	 * Arrays with at least this many points are transformed in parallel.
+	 */
+	public final static int PARALLEL_THRESHOLD = 1 << 16;
+
+	/**
+	 * Number of points passed to GDAL in each
+	 * {@link CoordinateTransformation#TransformPoints(double[][])} call.
+	 */
+	final static int BATCH_SIZE = 4096;
+
+	private final static Map<CoordinateTransformation, TransformationInfo> transformations = Collections
+			.synchronizedMap(new WeakHashMap<CoordinateTransformation, TransformationInfo>());
+
+	static final WorkerPool workers = new WorkerPool(CoordinateTransformationUtil.class.getName());
+
 	/**
 	 * Create a {@link CoordinateTransformation} that projects from the given
 	 * projection string back to WGS84 (EPSG:4326).
@@ -46,7 +78,198 @@ public class CoordinateTransformationUtil
 		SpatialReference dst = new SpatialReference();
 		dst.ImportFromEPSG(4326);
 
-		return new CoordinateTransformation(src, dst);
+		return getTransformation(src, dst);
+	}
+
+	/**
+	 * Create a {@link CoordinateTransformation} between the given spatial
+	 * references. Transformations created by this method can be used by
+	 * {@link #transformPoints(CoordinateTransformation, double[], int, int)}
+	 * to transform large arrays in parallel, and to skip transformations
+	 * between identical spatial references.
+	 * 
+	 * @param src
+	 *            Source spatial reference
+	 * @param dst
+	 *            Destination spatial reference
+	 * @return Coordinate transformation from src to dst
+	 */
+	public static CoordinateTransformation getTransformation(SpatialReference src, SpatialReference dst)
+	{
+		CoordinateTransformation transformation = new CoordinateTransformation(src, dst);
+		transformations.put(transformation, new TransformationInfo(src, dst));
+		return transformation;
+	}
+
+	/**
+	 * Is the given transformation known to leave coordinates unchanged? This
+	 * is the case for null transformations, and for transformations created
+	 * by {@link #getTransformation(SpatialReference, SpatialReference)}
+	 * between identical spatial references.
+	 * 
+	 * @param transformation
+	 *            Transformation to test
+	 * @return True if the transformation is an identity transformation
+	 */
+	public static boolean isIdentity(CoordinateTransformation transformation)
+	{
+		if (transformation == null)
+		{
+			return true;
+		}
+		TransformationInfo info = transformations.get(transformation);
+		return info != null && info.identity;
+	}
+
+	/**
+	 * Transform all the points in the given array in place.
+	 * 
+	 * @param transformation
+	 *            Transformation to apply; null is treated as the identity
+	 * @param points
+	 *            Packed array of (x, y, z) triples
+	 * @see #transformPoints(CoordinateTransformation, double[], int, int)
+	 */
+	public static void transformPoints(CoordinateTransformation transformation, double[] points)
+	{
+		transformPoints(transformation, points, 0, points.length / 3);
+	}
+
+	/**
+	 * Transform a range of points in the given array in place. Points are
+	 * passed to GDAL in batches rather than one at a time, and large arrays
+	 * are transformed in parallel if the transformation was created by this
+	 * class. Identity transformations are skipped.
+	 * 
+	 * @param transformation
+	 *            Transformation to apply; null is treated as the identity
+	 * @param points
+	 *            Packed array of (x, y, z) triples
+	 * @param first
+	 *            Index of the first point (not array element) to transform
+	 * @param count
+	 *            Number of points to transform
+	 */
+	public static void transformPoints(CoordinateTransformation transformation, double[] points, int first, int count)
+	{
+		transformPoints(transformation, points, first, count, true);
+	}
+
+	/**
+	 * Transform a range of points in the given array in place, optionally
+	 * preventing the range from being split across the transformation
+	 * threads. Callers that already transform separate ranges concurrently
+	 * should pass <code>false</code> to avoid oversubscribing the processors.
+	 * <p/>
+	 * Concurrent serial transformations using a transformation created by
+	 * this class each use their own copy of the transformation, and so do
+	 * not block each other.
+	 * 
+	 * @param transformation
+	 *            Transformation to apply; null is treated as the identity
+	 * @param points
+	 *            Packed array of (x, y, z) triples
+	 * @param first
+	 *            Index of the first point (not array element) to transform
+	 * @param count
+	 *            Number of points to transform
+	 * @param allowParallel
+	 *            Whether large ranges may be transformed in parallel
+	 */
+	public static void transformPoints(CoordinateTransformation transformation, double[] points, int first,
+			int count, boolean allowParallel)
+	{
+		if (count <= 0 || isIdentity(transformation))
+		{
+			return;
+		}
+
+		TransformationInfo info = transformations.get(transformation);
+		int parallelism = workers.getParallelism();
+		if (info != null && allowParallel && count >= PARALLEL_THRESHOLD && parallelism > 1)
+		{
+			parallelTransformPoints(info, points, first, count, parallelism);
+		}
+		else if (info != null)
+		{
+			CoordinateTransformation copy = info.acquire();
+			try
+			{
+				serialTransformPoints(copy, points, first, count);
+			}
+			finally
+			{
+				info.release(copy);
+			}
+		}
+		else
+		{
+			synchronized (transformation)
+			{
+				serialTransformPoints(transformation, points, first, count);
+			}
+		}
+	}
+
+	private static void serialTransformPoints(CoordinateTransformation transformation, double[] points, int first,
+			int count)
+	{
+		double[][] batch = new double[Math.min(count, BATCH_SIZE)][3];
+		for (int start = first, end = first + count; start < end; start += BATCH_SIZE)
+		{
+			int size = Math.min(BATCH_SIZE, end - start);
+			if (size < batch.length)
+			{
+				//TransformPoints transforms the whole array, so the last batch needs its own
+				batch = new double[size][3];
+			}
+			for (int i = 0, j = start * 3; i < size; i++)
+			{
+				double[] point = batch[i];
+				point[0] = points[j++];
+				point[1] = points[j++];
+				point[2] = points[j++];
+			}
+			transformation.TransformPoints(batch);
+			for (int i = 0, j = start * 3; i < size; i++)
+			{
+				double[] point = batch[i];
+				points[j++] = point[0];
+				points[j++] = point[1];
+				points[j++] = point[2];
+			}
+		}
+	}
+
+	private static void parallelTransformPoints(final TransformationInfo info, final double[] points, int first,
+			int count, int parallelism)
+	{
+		int chunkSize = (count + parallelism - 1) / parallelism;
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(parallelism);
+		for (int start = first, end = first + count; start < end; start += chunkSize)
+		{
+			final int chunkStart = start;
+			final int chunkCount = Math.min(chunkSize, end - start);
+			tasks.add(new Callable<Object>()
+			{
+				@Override
+				public Object call()
+				{
+					CoordinateTransformation transformation = info.acquire();
+					try
+					{
+						serialTransformPoints(transformation, points, chunkStart, chunkCount);
+					}
+					finally
+					{
+						info.release(transformation);
+					}
+					return null;
+				}
+			});
+		}
+
+		workers.invokeAll(tasks);
 	}
 
 	/**
@@ -97,4 +320,41 @@ public class CoordinateTransformationUtil
 		//assume wkt format
 		return new SpatialReference(s);
 	}
+
+	/**
+	 * The spatial references of a transformation created by this class, and
+	 * a pool of copies of the transformation for use by worker threads.
+	 */
+	private static class TransformationInfo
+	{
+		private final SpatialReference source;
+		private final SpatialReference destination;
+		private final boolean identity;
+		private final Queue<CoordinateTransformation> pool = new ConcurrentLinkedQueue<CoordinateTransformation>();
+
+		public TransformationInfo(SpatialReference source, SpatialReference destination)
+		{
+			this.source = source;
+			this.destination = destination;
+			this.identity = source.IsSame(destination) != 0;
+		}
+
+		public CoordinateTransformation acquire()
+		{
+			CoordinateTransformation transformation = pool.poll();
+			if (transformation == null)
+			{
+				synchronized (this)
+				{
+					transformation = new CoordinateTransformation(source, destination);
+				}
+			}
+			return transformation;
+		}
+
+		public void release(CoordinateTransformation transformation)
+		{
+			pool.offer(transformation);
+		}
+	}
 }
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of primitive <code>float</code>s, used to accumulate values
+ * without boxing them into a {@link java.util.List}.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class GrowableFloatArray
+{
+	private float[] array;
+	private int size = 0;
+
+	public GrowableFloatArray()
+	{
+		this(16);
+	}
+
+	public GrowableFloatArray(int initialCapacity)
+	{
+		array = new float[Math.max(1, initialCapacity)];
+	}
+
+	/**
+	 * Append a value to the end of this array.
+	 * 
+	 * @param value
+	 */
+	public void add(float value)
+	{
+		if (size == array.length)
+		{
+			ensureCapacity(size + 1);
+		}
+		array[size++] = value;
+	}
+
+	/**
+	 * @param index
+	 * @return The value at the given index
+	 */
+	public float get(int index)
+	{
+		checkIndex(index);
+		return array[index];
+	}
+
+	/**
+	 * Set the value at the given index.
+	 * 
+	 * @param index
+	 * @param value
+	 */
+	public void set(int index, float value)
+	{
+		checkIndex(index);
+		array[index] = value;
+	}
+
+	/**
+	 * @return Number of values in this array
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Remove all values from this array (the capacity is retained).
+	 */
+	public void clear()
+	{
+		size = 0;
+	}
+
+	/**
+	 * Ensure this array can hold at least the given number of values without
+	 * growing.
+	 * 
+	 * @param capacity
+	 */
+	public void ensureCapacity(int capacity)
+	{
+		if (capacity > array.length)
+		{
+			int newCapacity = Math.max(capacity, array.length + (array.length >> 1) + 1);
+			array = Arrays.copyOf(array, newCapacity);
+		}
+	}
+
+	/**
+	 * @return A copy of the values in this array, with a length equal to
+	 *         {@link #size()}
+	 */
+	public float[] toArray()
+	{
+		return Arrays.copyOf(array, size);
+	}
+
+	private void checkIndex(int index)
+	{
+		if (index < 0 || index >= size)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+/**
+ * A hash map from primitive <code>int</code> keys to primitive
+ * <code>int</code> values, using open addressing. This avoids boxing the keys
+ * and values as a {@link java.util.Map} would.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class IntIntHashMap
+{
+	private final static float LOAD_FACTOR = 0.5f;
+
+	private int[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int size = 0;
+	private int mask;
+
+	public IntIntHashMap()
+	{
+		this(16);
+	}
+
+	public IntIntHashMap(int expectedSize)
+	{
+		int capacity = 2;
+		while (capacity * LOAD_FACTOR < expectedSize)
+		{
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new int[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+	}
+
+	private static int hash(int key)
+	{
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private int indexOf(int key)
+	{
+		int index = hash(key) & mask;
+		while (used[index])
+		{
+			if (keys[index] == key)
+			{
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+		return -index - 1;
+	}
+
+	/**
+	 * Associate the given value with the given key.
+	 * 
+	 * @param key
+	 * @param value
+	 */
+	public void put(int key, int value)
+	{
+		int index = indexOf(key);
+		if (index >= 0)
+		{
+			values[index] = value;
+			return;
+		}
+		if (size + 1 > keys.length * LOAD_FACTOR)
+		{
+			rehash(keys.length << 1);
+			index = indexOf(key);
+		}
+		index = -index - 1;
+		used[index] = true;
+		keys[index] = key;
+		values[index] = value;
+		size++;
+	}
+
+	/**
+	 * @param key
+	 * @param defaultValue
+	 *            Value to return if the key isn't in this map
+	 * @return The value associated with the given key, or
+	 *         <code>defaultValue</code> if the key isn't in this map
+	 */
+	public int get(int key, int defaultValue)
+	{
+		int index = indexOf(key);
+		return index >= 0 ? values[index] : defaultValue;
+	}
+
+	/**
+	 * @param key
+	 * @return True if this map contains the given key
+	 */
+	public boolean containsKey(int key)
+	{
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * @return Number of entries in this map
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	private void rehash(int capacity)
+	{
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldUsed[i])
+			{
+				int index = -indexOf(oldKeys[i]) - 1;
+				used[index] = true;
+				keys[index] = oldKeys[i];
+				values[index] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A lazily created pool of daemon worker threads for running background and
+ * data-parallel work, such as parsing, sorting and projecting large arrays.
+ * <p/>
+ * Pools either have a fixed number of threads, or follow the
+ * {@link #setDefaultParallelism(int) default parallelism}, which is shared by
+ * all pools and is normally set from the user's preferences. Idle threads time
+ * out, so pools cost nothing while unused.
+ * <p/>
+ * Tasks must not wait on other tasks submitted to the same pool, as every
+ * thread could end up waiting; work that is nested within another pool's
+ * tasks should use its own pool.
+ * 
+ * @author Michael de Hoog (michael.dehoog@ga.gov.au)
+ */
+public class WorkerPool
+{
+	private static final long KEEP_ALIVE_SECONDS = 30;
+
+	private static int defaultParallelism = Runtime.getRuntime().availableProcessors();
+
+	private final String name;
+	private int parallelism;
+	private ThreadPoolExecutor executor;
+
+	/**
+	 * Create a pool that uses the default parallelism.
+	 * 
+	 * @param name
+	 *            Name of the pool's threads
+	 */
+	public WorkerPool(String name)
+	{
+		this(name, 0);
+	}
+
+	/**
+	 * Create a pool with a fixed number of threads.
+	 * 
+	 * @param name
+	 *            Name of the pool's threads
+	 * @param parallelism
+	 *            Number of threads, or 0 to use the default parallelism
+	 */
+	public WorkerPool(String name, int parallelism)
+	{
+		this.name = name;
+		setParallelism(parallelism);
+	}
+
+	/**
+	 * @return The number of threads used by pools that don't have a fixed
+	 *         number of threads
+	 */
+	public static synchronized int getDefaultParallelism()
+	{
+		return defaultParallelism;
+	}
+
+	/**
+	 * Set the number of threads used by pools that don't have a fixed number
+	 * of threads. A value of 1 disables parallel processing in those pools.
+	 * 
+	 * @param parallelism
+	 *            Number of threads, or 0 to use one per available processor
+	 */
+	public static synchronized void setDefaultParallelism(int parallelism)
+	{
+		Validate.isTrue(parallelism >= 0, "Parallelism cannot be negative"); //$NON-NLS-1$
+		defaultParallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * @return The number of threads used by this pool
+	 */
+	public int getParallelism()
+	{
+		synchronized (this)
+		{
+			if (parallelism > 0)
+			{
+				return parallelism;
+			}
+		}
+		return getDefaultParallelism();
+	}
+
+	/**
+	 * Set the number of threads used by this pool. If the number is reduced,
+	 * extra threads finish once they complete their current task.
+	 * 
+	 * @param parallelism
+	 *            Number of threads, or 0 to use the default parallelism
+	 */
+	public synchronized void setParallelism(int parallelism)
+	{
+		Validate.isTrue(parallelism >= 0, "Parallelism cannot be negative"); //$NON-NLS-1$
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * @return The executor that runs this pool's tasks
+	 */
+	public ExecutorService getExecutor()
+	{
+		int threads = getParallelism();
+		synchronized (this)
+		{
+			if (executor == null)
+			{
+				executor =
+						new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+								new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory(name));
+				executor.allowCoreThreadTimeOut(true);
+			}
+			else if (executor.getCorePoolSize() != threads)
+			{
+				//the maximum size can never be less than the core size
+				if (threads > executor.getMaximumPoolSize())
+				{
+					executor.setMaximumPoolSize(threads);
+					executor.setCorePoolSize(threads);
+				}
+				else
+				{
+					executor.setCorePoolSize(threads);
+					executor.setMaximumPoolSize(threads);
+				}
+			}
+			return executor;
+		}
+	}
+
+	/**
+	 * Run the given task in this pool.
+	 */
+	public void execute(Runnable task)
+	{
+		getExecutor().execute(task);
+	}
+
+	/**
+	 * Submit the given task to this pool.
+	 * 
+	 * @return Future representing the task's completion
+	 */
+	public <T> Future<T> submit(Callable<T> task)
+	{
+		return getExecutor().submit(task);
+	}
+
+	/**
+	 * Run the given tasks in this pool, and wait for them all to complete.
+	 * Exceptions thrown by the tasks are rethrown (wrapped in an
+	 * {@link IllegalStateException} if checked) once all tasks are done.
+	 * 
+	 * @param tasks
+	 *            Tasks to run
+	 * @return The results of the tasks, in the same order as the tasks
+	 */
+	public <T> List<T> invokeAll(Collection<? extends Callable<T>> tasks)
+	{
+		try
+		{
+			List<T> results = new ArrayList<T>(tasks.size());
+			for (Future<T> future : getExecutor().invokeAll(tasks))
+			{
+				results.add(future.get());
+			}
+			return results;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error)
+			{
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+}
@@ -15,9 +15,15 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.util.io;
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 
 import au.gov.ga.earthsci.worldwind.common.util.Validate;
 
@@ -29,16 +35,32 @@ import au.gov.ga.earthsci.worldwind.common.util.Validate;
  * the pattern of bytes that are read. This allows complex striding patterns to be specified 
  * as required.
  * <p/>
+ * Readers created for a {@link File} or {@link ByteBuffer} are backed by a
+ * memory-mapped buffer, and also support random access to the values (see
+ * {@link #readValue(long)}), so that subsets of large files can be read
+ * without reading the rest of the file.
+ * <p/>
  * This implementation is threadsafe <em>if all access to the underlying stream is performed through this class's methods</em>.
  * If the underlying stream is accessed outside of this class behaviour is indeterminate.
  * 
  * @author James Navin (james.navin@ga.gov.au)
  */
-public class FloatReader
+public class FloatReader implements Closeable
 {
+	/** The size of each memory-mapped segment of a file (a single mapping is limited to 2GB) */
+	private static final long SEGMENT_SIZE = 1L << 30;
 
-	/** The input stream to read bytes from */
+	/** The input stream to read bytes from (null if memory-mapped) */
 	private final InputStream is;
+
+	/** The memory-mapped segments to read bytes from (null if reading from a stream) */
+	private final ByteBuffer[] segments;
+
+	/** The number of bytes in the memory-mapped segments */
+	private final long length;
+
+	/** The position of the next sequential read in the memory-mapped segments */
+	private long position = 0;
 	
 	/** The offset to start reading from in the provided input stream */
 	private final int offset;
@@ -65,7 +87,7 @@ public class FloatReader
 	 */
 	public FloatReader(InputStream is) throws IOException
 	{
-		this(is, 0, 1, 0, 0, FloatFormat.IEEE, ByteOrder.LITTLE_ENDIAN);
+		this(is, null, 0, 0, 1, 0, 0, FloatFormat.IEEE, ByteOrder.LITTLE_ENDIAN);
 	}
 	
 	/**
@@ -73,10 +95,25 @@ public class FloatReader
 	 * <p/>
 	 * Use the builder class to instantiate fully configured readers.
 	 */
-	private FloatReader(InputStream is, int offset, int groupSize, int groupSeparation, int groupValueGap, FloatFormat format, ByteOrder byteOrder) throws IOException
+	private FloatReader(InputStream is, ByteBuffer[] segments, long length, int offset, int groupSize, int groupSeparation, int groupValueGap, FloatFormat format, ByteOrder byteOrder) throws IOException
 	{
-		Validate.notNull(is, "An input stream is required");
+		if (segments == null)
+		{
+			Validate.notNull(is, "An input stream is required");
+		}
+		else
+		{
+			//match the byte assembly of readFloat(), which treats the first byte
+			//of a LITTLE_ENDIAN value as the most significant
+			ByteOrder segmentOrder = byteOrder == ByteOrder.LITTLE_ENDIAN ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+			for (ByteBuffer segment : segments)
+			{
+				segment.order(segmentOrder);
+			}
+		}
 		this.is = is;
+		this.segments = segments;
+		this.length = length;
 		this.offset = offset;
 		this.groupSize = groupSize;
 		this.groupSeparation = groupSeparation;
@@ -161,7 +198,115 @@ public class FloatReader
 	 */
 	synchronized public void skip(long numBytes) throws IOException
 	{
-		is.skip(numBytes);
+		if (segments != null)
+		{
+			position = Math.min(length, position + numBytes);
+		}
+		else
+		{
+			is.skip(numBytes);
+		}
+	}
+	
+	/**
+	 * @return Whether this reader supports random access to values using
+	 *         {@link #readValue(long)} and
+	 *         {@link #readValues(long, int, float[], int, int)}
+	 */
+	public boolean isRandomAccess()
+	{
+		return segments != null;
+	}
+	
+	/**
+	 * Read the value at the provided index, without affecting the position of
+	 * the sequential read methods.
+	 * <p/>
+	 * Values are indexed from the configured offset, and are assumed to be
+	 * stored contiguously; the group pattern is not applied.
+	 * <p/>
+	 * Only supported by random access readers (see {@link #isRandomAccess()}).
+	 * 
+	 * @param index The index of the value to read
+	 * @return The value at the provided index, or NaN if the index is outside the bounds of the data
+	 * 
+	 * @throws UnsupportedOperationException if this reader doesn't support random access
+	 */
+	public float readValue(long index)
+	{
+		checkRandomAccess();
+		return getFloat(offset + index * 4);
+	}
+	
+	/**
+	 * Read a number of values, starting at the provided index and separated
+	 * by the provided stride, into the values array.
+	 * <p/>
+	 * Values are indexed as for {@link #readValue(long)}.
+	 * 
+	 * @param index The index of the first value to read
+	 * @param stride The difference in index between successive values to read
+	 * @param values An array to store the read values in
+	 * @param valuesOffset The index in the values array at which to store the first value 
+	 * @param count The number of values to read
+	 * 
+	 * @throws UnsupportedOperationException if this reader doesn't support random access
+	 */
+	public void readValues(long index, int stride, float[] values, int valuesOffset, int count)
+	{
+		checkRandomAccess();
+		Validate.notNull(values, "A values array is required");
+		Validate.isTrue(valuesOffset >= 0 && valuesOffset + count <= values.length, "Provided values array has length " + values.length + ". Must have at least " + (valuesOffset + count) + " elements to read values");
+		
+		long bytePosition = offset + index * 4;
+		long byteStride = stride * 4L;
+		for (int i = 0; i < count; i++)
+		{
+			values[valuesOffset + i] = getFloat(bytePosition);
+			bytePosition += byteStride;
+		}
+	}
+	
+	private void checkRandomAccess()
+	{
+		if (segments == null)
+		{
+			throw new UnsupportedOperationException("Random access is only supported by memory-mapped readers");
+		}
+	}
+	
+	/**
+	 * Closes the underlying stream, if any. Memory-mapped buffers are released when this reader is garbage collected.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (is != null)
+		{
+			is.close();
+		}
+	}
+	
+	/**
+	 * @return The float value at the provided byte position in the memory-mapped segments, or NaN if out of range
+	 */
+	private float getFloat(long bytePosition)
+	{
+		if (bytePosition < 0 || bytePosition + 4 > length)
+		{
+			return Float.NaN;
+		}
+		int bits;
+		if (segments.length == 1)
+		{
+			bits = segments[0].getInt((int) bytePosition);
+		}
+		else
+		{
+			int segment = (int) (bytePosition / SEGMENT_SIZE);
+			bits = segments[segment].getInt((int) (bytePosition - segment * SEGMENT_SIZE));
+		}
+		return format.bitsToFloat(bits);
 	}
 	
 	/**
@@ -169,6 +314,13 @@ public class FloatReader
 	 */
 	private float readFloat() throws IOException
 	{
+		if (segments != null)
+		{
+			float value = getFloat(position);
+			position = Math.min(length, position + 4);
+			return value;
+		}
+		
 		int b0, b1, b2, b3;
 		if (byteOrder == ByteOrder.LITTLE_ENDIAN)
 		{
@@ -228,6 +380,12 @@ public class FloatReader
 			{
 				return Float.intBitsToFloat((b0) | (b1 << 8) | (b2 << 16) | b3 << 24);
 			}
+			
+			@Override
+			public float bitsToFloat(int bits)
+			{
+				return Float.intBitsToFloat(bits);
+			}
 		},
 		IBM {
 			@Override
@@ -253,6 +411,14 @@ public class FloatReader
 		};
 		
 		public abstract float bytesToFloat(int b0, int b1, int b2, int b3);
+		
+		/**
+		 * Convert the provided 32 bits (b3 being the most significant byte) to a float.
+		 */
+		public float bitsToFloat(int bits)
+		{
+			return bytesToFloat(bits & 0xff, (bits >>> 8) & 0xff, (bits >>> 16) & 0xff, bits >>> 24);
+		}
 	}
 	
 	/**
@@ -265,6 +431,8 @@ public class FloatReader
 		private Builder(){};
 		
 		private InputStream is;
+		private File file;
+		private ByteBuffer buffer;
 		private int offset = 0;
 		private int groupSize = 1;
 		private int groupSeparation = 0;
@@ -280,6 +448,22 @@ public class FloatReader
 			return result;
 		}
 		
+		/** Create a new builder for a random access {@link FloatReader} that memory-maps the provided {@link File} */
+		public static Builder newFloatReaderForFile(File f)
+		{
+			Builder result = new Builder();
+			result.file = f;
+			return result;
+		}
+		
+		/** Create a new builder for a random access {@link FloatReader} that reads from the remaining bytes of the provided {@link ByteBuffer} */
+		public static Builder newFloatReaderForBuffer(ByteBuffer b)
+		{
+			Builder result = new Builder();
+			result.buffer = b;
+			return result;
+		}
+		
 		/** Configure the offset to start reading from in the input stream */
 		public Builder withOffset(int offset)
 		{
@@ -325,7 +509,44 @@ public class FloatReader
 		/** Construct a {@link FloatReader} using the configured parameters */
 		public FloatReader build() throws IOException
 		{
-			return new FloatReader(is, offset, groupSize, groupSeparation, groupValueGap, format, byteOrder);
+			if (file != null)
+			{
+				return new FloatReader(null, mapFile(file), file.length(), offset, groupSize, groupSeparation, groupValueGap, format, byteOrder);
+			}
+			if (buffer != null)
+			{
+				ByteBuffer[] segments = { buffer.slice() };
+				return new FloatReader(null, segments, segments[0].remaining(), offset, groupSize, groupSeparation, groupValueGap, format, byteOrder);
+			}
+			return new FloatReader(is, null, 0, offset, groupSize, groupSeparation, groupValueGap, format, byteOrder);
+		}
+		
+		/**
+		 * Map the provided file into memory, as a number of segments of size
+		 * {@link FloatReader#SEGMENT_SIZE}. Each segment overlaps the next by
+		 * 3 bytes so that values never span two segments.
+		 */
+		private static ByteBuffer[] mapFile(File file) throws IOException
+		{
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try
+			{
+				FileChannel channel = raf.getChannel();
+				long length = channel.size();
+				int count = (int) Math.max(1, (length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+				ByteBuffer[] segments = new ByteBuffer[count];
+				for (int i = 0; i < count; i++)
+				{
+					long start = i * SEGMENT_SIZE;
+					segments[i] = channel.map(MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE + 3, length - start));
+				}
+				return segments;
+			}
+			finally
+			{
+				//mappings remain valid after the file is closed
+				raf.close();
+			}
 		}
 	}
 